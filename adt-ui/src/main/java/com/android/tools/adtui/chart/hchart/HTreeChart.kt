@@ -29,6 +29,7 @@ import java.awt.Dimension
 import java.awt.Graphics2D
 import java.awt.Image
 import java.awt.Point
+import java.awt.Rectangle
 import java.awt.event.ActionEvent
 import java.awt.event.KeyEvent
 import java.awt.event.MouseAdapter
@@ -36,12 +37,12 @@ import java.awt.event.MouseEvent
 import java.awt.event.MouseWheelEvent
 import java.awt.geom.Rectangle2D
 import java.awt.image.BufferedImage
-import java.util.LinkedList
-import java.util.Queue
 import javax.swing.AbstractAction
 import javax.swing.KeyStroke
+import kotlin.math.abs
 import kotlin.math.max
 import kotlin.math.min
+import kotlin.math.roundToInt
 
 /**
  * A chart which renders nodes using a horizontal flow. That is, while normal trees are vertical,
@@ -53,6 +54,7 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
   val orientation: Orientation = builder.orientation
   private val renderer = builder.renderer
   private var root = builder.root
+  private var index: HTreeChartIndex<N>? = null
   private val xRange = builder.xRange
 
   /**
@@ -91,14 +93,29 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
 
   private val drawnRectangles = ArrayList<Rectangle2D.Float>()
   private val drawnNodes = ArrayList<N>()
+
+  /**
+   * Indices into [drawnNodes] where each row of nodes of the same depth starts. Nodes within a row are sorted by x,
+   * which lets [getNodeAt] find a node by binary search.
+   */
+  private var drawnRowStarts = IntArray(0)
   private val reducer = builder.reducer
   private var canvas: Image? = null
 
+  /**
+   * The X range minimum, the X range length and the Y range minimum the canvas was drawn for. When the chart is only
+   * panned horizontally by a whole number of pixels, the canvas is scrolled and only the newly exposed strip is drawn.
+   */
+  private var canvasXMin = 0.0
+  private var canvasXLength = 0.0
+  private var canvasYMin = 0.0
+
   /**
    * If true, the next render pass will forcefully rebuild this chart's canvas (an expensive
    * operation which doesn't have to be done too often as usually the contents are static)
    */
   private var dataUpdated = false
+  private var treeUpdated = false
   private var selectionUpdated = false
   var maximumHeight = 0
     private set
@@ -133,6 +150,8 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
   }
 
   private fun rootChanged() {
+    index = root?.let { HTreeChartIndex(it) }
+    treeUpdated = true
     maximumHeight = calculateMaximumHeight()
     // Update preferred size using calculated height to make sure containers of this chart account for the height change during layout.
     preferredSize = Dimension(preferredSize.width, maximumHeight)
@@ -150,9 +169,17 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
     }
 
     if (dataUpdated) {
-      // Nulling out the canvas will trigger a render pass, below
-      updateNodesAndClearCanvas()
+      updateNodes()
+      val scrollDistance = if (treeUpdated) 0 else getCanvasScrollDistance(dim)
+      if (scrollDistance == 0) {
+        // Nulling out the canvas will trigger a render pass, below
+        canvas = null
+      }
+      else {
+        scrollCanvas(dim, scrollDistance)
+      }
       dataUpdated = false
+      treeUpdated = false
     }
     g.font = font
     if (root == null || root!!.childCount == 0) {
@@ -182,13 +209,78 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
       // to render their text clearly (ARGB prevents LCD rendering from working).
       canvas = ImageUtil.createImage(dim.width, dim.height, BufferedImage.TYPE_INT_ARGB)
     }
-    val g = canvas!!.graphics as Graphics2D
-    g.color = background
+    val g = createCanvasGraphics()
     g.composite = AlphaComposite.Clear
     g.fillRect(0, 0, dim.width, dim.height)
     g.composite = AlphaComposite.Src
+    updateDrawnNodes(dim)
+    for (i in drawnNodes.indices) {
+      renderNode(g, i, dim)
+    }
+    g.dispose()
+    canvasXMin = xRange.min
+    canvasXLength = xRange.length
+    canvasYMin = yRange.min
+  }
+
+  /**
+   * Returns the distance in pixels the contents of the canvas have to be moved by to reflect the current X range,
+   * or zero if the canvas has to be redrawn entirely.
+   */
+  private fun getCanvasScrollDistance(dim: Dimension): Int {
+    val canvas = canvas ?: return 0
+    if (ImageUtil.getUserWidth(canvas) != dim.width || ImageUtil.getUserHeight(canvas) != dim.height ||
+        yRange.min != canvasYMin || xRange.length == 0.0 || abs(xRange.length - canvasXLength) > xRange.length * 1e-9) {
+      return 0
+    }
+    val distance = (canvasXMin - xRange.min) / xRange.length * dim.width
+    // Scrolling by a fraction of a pixel, in user or device space, would blur or misalign the existing contents.
+    val scale = ImageUtil.getRealWidth(canvas).toDouble() / dim.width
+    val deviceDistance = distance * scale
+    if (abs(deviceDistance - deviceDistance.roundToInt()) > 0.01 || abs(distance - distance.roundToInt()) > 0.01) {
+      return 0
+    }
+    return if (abs(distance) < dim.width) distance.roundToInt() else 0
+  }
+
+  /**
+   * Moves the contents of the canvas horizontally by [distance] pixels and draws the nodes intersecting the newly
+   * exposed strip. Nodes crossing the opposite edge of the canvas are drawn again as well since their clamped
+   * drawing areas, and thus their labels, have changed.
+   */
+  private fun scrollCanvas(dim: Dimension, distance: Int) {
+    val g = createCanvasGraphics()
+    g.copyArea(0, 0, dim.width, dim.height, distance, 0)
+    val strip = if (distance > 0) Rectangle(0, 0, distance, dim.height) else Rectangle(dim.width + distance, 0, -distance, dim.height)
+    g.composite = AlphaComposite.Clear
+    g.fill(strip)
+    updateDrawnNodes(dim)
+    val edgeX = (dim.width - nodeXPaddingPx).toFloat()
+    for (i in drawnNodes.indices) {
+      val rect = drawnRectangles[i]
+      val crossesEdge = if (distance > 0) rect.maxX > edgeX else rect.x < 0
+      if (crossesEdge || rect.maxX > strip.minX && rect.x < strip.maxX) {
+        val clamped = clampDrawingArea(rect, dim)
+        g.composite = AlphaComposite.Clear
+        g.fill(clamped)
+        g.composite = AlphaComposite.Src
+        renderNode(g, i, dim)
+      }
+    }
+    g.dispose()
+    canvasXMin = xRange.min
+  }
+
+  private fun createCanvasGraphics(): Graphics2D {
+    val g = canvas!!.graphics as Graphics2D
+    g.color = background
     UISettings.setupAntialiasing(g)
     g.font = font
+    return g
+  }
+
+  /** Transforms [rectangles] to the coordinates of a component of the size [dim] and reduces them to [drawnRectangles]. */
+  private fun updateDrawnNodes(dim: Dimension) {
     drawnNodes.clear()
     drawnNodes.addAll(nodes)
     drawnRectangles.clear()
@@ -206,51 +298,42 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
     }
     reducer.reduce(drawnRectangles, drawnNodes)
     assert(drawnRectangles.size == drawnNodes.size)
+    val rowStarts = ArrayList<Int>()
     for (i in drawnNodes.indices) {
-      val node = drawnNodes[i]
-      val drawingArea = drawnRectangles[i]
-      val clampedDrawingArea = Rectangle2D.Float(
-        max(0f, drawingArea.x),
-        drawingArea.y,
-        min(drawingArea.x + drawingArea.width, (dim.width - nodeXPaddingPx).toFloat()) - max(0f, drawingArea.x),
-        drawingArea.height
-      )
-      // In an effort to optimize performance of this chart's usage (b/281850040), hovering over a node no longer triggers a redraw.
-      // However, after this change, if something else (like a timeline range change) does trigger a redraw, we do not want to show a
-      // different fill color on the last hovered node. Thus, the isFocused parameter of render is now statically set as false to prevent
-      // all hover coloring. This achieves a consistent UI (if a mouse position change does not update the node's fill color, no other
-      // chart update should either).
-      renderer.render(g, node, drawingArea, clampedDrawingArea, false, selectedNode != null && node !== selectedNode)
+      if (i == 0 || drawnNodes[i].depth != drawnNodes[i - 1].depth) {
+        rowStarts.add(i)
+      }
     }
-    g.dispose()
+    drawnRowStarts = rowStarts.toIntArray()
   }
 
-  private fun updateNodesAndClearCanvas() {
+  private fun clampDrawingArea(drawingArea: Rectangle2D.Float, dim: Dimension) = Rectangle2D.Float(
+    max(0f, drawingArea.x),
+    drawingArea.y,
+    min(drawingArea.x + drawingArea.width, (dim.width - nodeXPaddingPx).toFloat()) - max(0f, drawingArea.x),
+    drawingArea.height
+  )
+
+  private fun renderNode(g: Graphics2D, i: Int, dim: Dimension) {
+    val node = drawnNodes[i]
+    val drawingArea = drawnRectangles[i]
+    // In an effort to optimize performance of this chart's usage (b/281850040), hovering over a node no longer triggers a redraw.
+    // However, after this change, if something else (like a timeline range change) does trigger a redraw, we do not want to show a
+    // different fill color on the last hovered node. Thus, the isFocused parameter of render is now statically set as false to prevent
+    // all hover coloring. This achieves a consistent UI (if a mouse position change does not update the node's fill color, no other
+    // chart update should either).
+    renderer.render(g, node, drawingArea, clampDrawingArea(drawingArea, dim), false, selectedNode != null && node !== selectedNode)
+  }
+
+  private fun updateNodes() {
     nodes.clear()
     rectangles.clear()
-    canvas = null
-    if (root == null) {
+    val root = root ?: return
+    if (!inRange(root)) {
       return
     }
-    if (inRange(root!!)) {
-      nodes.add(root!!)
-      rectangles.add(createRectangle(root!!))
-    }
-    var head = 0
-    while (head < nodes.size) {
-      val curNode = nodes[head++]
-      for (i in 0 until curNode.childCount) {
-        val child = curNode.getChildAt(i)
-        if (inRange(child)) {
-          nodes.add(child)
-          rectangles.add(createRectangle(child))
-        }
-      }
-    }
-    if (!rootVisible && nodes.isNotEmpty()) {
-      nodes.removeAt(0)
-      rectangles.removeAt(0)
-    }
+    index?.collectNodesInRange(xRange.min, xRange.max, rootVisible, nodes)
+    nodes.mapTo(rectangles, ::createRectangle)
   }
 
   private fun inRange(node: N) = node.start <= xRange.max && node.end >= xRange.min
@@ -273,7 +356,30 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
     rootChanged()
   }
 
-  fun getNodeAt(point: Point): N? = (drawnNodes zip drawnRectangles).find { (_, rect) -> point in rect }?.first
+  fun getNodeAt(point: Point): N? {
+    for (row in drawnRowStarts.indices) {
+      val rowStart = drawnRowStarts[row]
+      val rowEnd = if (row + 1 < drawnRowStarts.size) drawnRowStarts[row + 1] else drawnNodes.size
+      val rowRect = drawnRectangles[rowStart]
+      if (point.y < rowRect.y || point.y >= rowRect.y + rowRect.height) {
+        continue
+      }
+      // Find the last node of the row starting at or before the point.
+      var low = rowStart
+      var high = rowEnd
+      while (low < high) {
+        val mid = (low + high) ushr 1
+        if (drawnRectangles[mid].x <= point.x) {
+          low = mid + 1
+        }
+        else {
+          high = mid
+        }
+      }
+      return if (low > rowStart && point in drawnRectangles[low - 1]) drawnNodes[low - 1] else null
+    }
+    return null
+  }
 
   private fun initializeInputMap() {
     fun bindKey(key: Int, action: String) = inputMap.put(KeyStroke.getKeyStroke(key, 0), action)
@@ -376,22 +482,8 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
   }
 
   private fun calculateMaximumHeight(): Int {
-    if (root == null) {
-      return 0
-    }
-    var maxDepth = -1
-    val queue: Queue<N> = LinkedList()
-    queue.add(root)
-    while (!queue.isEmpty()) {
-      val n = queue.poll()!!
-      if (n.depth > maxDepth) {
-        maxDepth = n.depth
-      }
-      for (i in 0 until n.childCount) {
-        queue.add(n.getChildAt(i))
-      }
-    }
-    maxDepth += 1
+    val index = index ?: return 0
+    val maxDepth = index.maxDepth + 1
     // The HEIGHT_PADDING is for the chart's toe (the innermost frame on call stacks).
     // We have this because the padding near the chart's head (the outermost frame on call stacks)
     // is there because the root node of the tree is invisible.
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.chart.hchart
+
+import com.android.tools.adtui.model.HNode
+import java.util.TreeMap
+
+/**
+ * Spatial index of the nodes of an [HTreeChart].
+ *
+ * The nodes are grouped by depth and sorted by start within each depth, so the nodes overlapping a range
+ * can be found in O(log n + k) time, where k is the number of nodes returned, instead of walking the
+ * whole tree. The index is a snapshot and has to be rebuilt when the tree changes.
+ */
+internal class HTreeChartIndex<N : HNode<N>>(val root: N) {
+  /**
+   * Nodes of a single depth sorted by start. [maxEnds] holds the running maximum of node ends, which is
+   * non-decreasing even if nodes of the depth overlap.
+   */
+  private class Level<N>(val nodes: List<N>, val starts: LongArray, val maxEnds: LongArray)
+
+  private val levels: List<Level<N>>
+
+  /** The maximum depth of the indexed nodes, or -1 if the tree has no nodes. */
+  val maxDepth: Int
+
+  init {
+    val nodesByDepth = TreeMap<Int, ArrayList<N>>()
+    val queue = ArrayDeque<N>()
+    queue.add(root)
+    while (queue.isNotEmpty()) {
+      val node = queue.removeFirst()
+      nodesByDepth.getOrPut(node.depth) { ArrayList() }.add(node)
+      for (i in 0 until node.childCount) {
+        queue.add(node.getChildAt(i))
+      }
+    }
+    // Nodes of a depth are usually already in the start order, in which case sorting is linear.
+    levels = nodesByDepth.values.map { nodes ->
+      nodes.sortWith(compareBy { it.start })
+      val starts = LongArray(nodes.size) { nodes[it].start }
+      val maxEnds = LongArray(nodes.size)
+      var maxEnd = Long.MIN_VALUE
+      for (i in nodes.indices) {
+        maxEnd = maxOf(maxEnd, nodes[i].end)
+        maxEnds[i] = maxEnd
+      }
+      Level(nodes, starts, maxEnds)
+    }
+    maxDepth = nodesByDepth.keys.lastOrNull() ?: -1
+  }
+
+  /**
+   * Adds the nodes with `start <= max && end >= min` to [result] ordered by depth and then by start.
+   * The root is skipped unless [includeRoot] is true.
+   */
+  fun collectNodesInRange(min: Double, max: Double, includeRoot: Boolean, result: MutableList<N>) {
+    for (level in levels) {
+      val from = findFirst(level.maxEnds) { it >= min }
+      val to = findFirst(level.starts) { it > max }
+      for (i in from until to) {
+        val node = level.nodes[i]
+        if (node.end >= min && (includeRoot || node !== root)) {
+          result.add(node)
+        }
+      }
+    }
+  }
+
+  /** Returns the index of the first element of the non-decreasing [values] satisfying [predicate], or the size of [values]. */
+  private inline fun findFirst(values: LongArray, predicate: (Double) -> Boolean): Int {
+    var low = 0
+    var high = values.size
+    while (low < high) {
+      val mid = (low + high) ushr 1
+      if (predicate(values[mid].toDouble())) {
+        high = mid
+      }
+      else {
+        low = mid + 1
+      }
+    }
+    return low
+  }
+}
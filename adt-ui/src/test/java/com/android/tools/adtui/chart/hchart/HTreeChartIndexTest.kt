@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.chart.hchart
+
+import com.android.tools.adtui.model.DefaultHNode
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class HTreeChartIndexTest {
+  private val root = node("root", 0, 100, 0,
+                          node("a", 0, 40, 1,
+                               node("a1", 0, 10, 2),
+                               node("a2", 20, 40, 2)),
+                          node("b", 50, 100, 1,
+                               node("b1", 60, 70, 2)))
+
+  @Test
+  fun collectNodesInRange() {
+    val index = HTreeChartIndex(root)
+
+    assertThat(collect(index, 0.0, 100.0, true)).containsExactly("root", "a", "b", "a1", "a2", "b1").inOrder()
+    assertThat(collect(index, 15.0, 55.0, false)).containsExactly("a", "b", "a2").inOrder()
+    assertThat(collect(index, 41.0, 49.0, true)).containsExactly("root")
+    assertThat(collect(index, 10.0, 20.0, true)).containsExactly("root", "a", "a1", "a2").inOrder()
+    assertThat(collect(index, 101.0, 200.0, true)).isEmpty()
+    assertThat(index.maxDepth).isEqualTo(2)
+  }
+
+  @Test
+  fun collectNodesInRange_overlappingNodes() {
+    // A long node followed by short ones at the same depth must still be found when the range is past the short ones.
+    val root = node("root", 0, 100, 0,
+                    node("long", 0, 100, 1),
+                    node("short1", 10, 20, 1),
+                    node("short2", 30, 40, 1))
+    val index = HTreeChartIndex(root)
+
+    assertThat(collect(index, 50.0, 60.0, false)).containsExactly("long")
+    assertThat(collect(index, 35.0, 35.0, false)).containsExactly("long", "short2").inOrder()
+  }
+
+  private fun collect(index: HTreeChartIndex<DefaultHNode<String>>, min: Double, max: Double, includeRoot: Boolean): List<String> =
+    ArrayList<DefaultHNode<String>>().also { index.collectNodesInRange(min, max, includeRoot, it) }.map { it.data }
+
+  private fun node(name: String, start: Long, end: Long, depth: Int, vararg children: DefaultHNode<String>) =
+    DefaultHNode(name, start, end).apply {
+      this.depth = depth
+      children.forEach { addChild(it) }
+    }
+}
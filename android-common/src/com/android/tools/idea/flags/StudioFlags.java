@@ -280,6 +280,12 @@ public final class StudioFlags {
     "If enabled, the surface displays background class preloading progress",
     false);
 
+  public static final Flag<Boolean> NELE_RENDER_TASK_WARM_POOL = Flag.create(
+    NELE, "render.task.warm.pool", "Keep render tasks ready for the layout editor",
+    "If enabled, the layout editor keeps render tasks created in advance for the devices, qualifiers and themes it renders " +
+    "repeatedly, so the next inflation does not have to wait for their creation",
+    false);
+
   public static final Flag<Boolean> NELE_NEW_COMPONENT_TREE = Flag.create(
     NELE, "use.component.tree.builder", "Use the Component Tree builder",
     "If enabled, use the Component Tree builder for the Nele component tree",
@@ -943,6 +949,14 @@ public final class StudioFlags {
     DEVICE_MIRRORING, "video.codec", "Video Codec Used for Mirroring of Physical Devices",
     "The name of a video codec, e.g. \"vp8\" or \"vp9\"; the default is \"vp8\"",
     "");
+  public static final Flag<Boolean> DEVICE_MIRRORING_FRAME_STATISTICS = new BooleanFlag(
+    DEVICE_MIRRORING, "frame.statistics", "Enable Collection of Video Frame Statistics",
+    "Captures decoding, conversion and display latency statistics of mirrored video frames",
+    false);
+  public static final Flag<Integer> DEVICE_MIRRORING_STATISTICS_INTERVAL_SECONDS = new IntFlag(
+    DEVICE_MIRRORING, "frame.statistics.interval", "Aggregation Interval for Video Frame Statistics",
+    "Aggregation interval in seconds for statistics of mirrored video frames",
+    120);
   //endregion
 
   // region Device Definition Download Service
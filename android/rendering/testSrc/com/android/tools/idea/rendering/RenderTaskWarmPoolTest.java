@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import static com.android.testutils.AsyncTestUtils.waitForCondition;
+import static com.android.tools.idea.rendering.RenderTestUtil.createRenderTask;
+import static com.android.tools.idea.rendering.StudioRenderServiceKt.taskBuilder;
+
+import com.android.tools.configurations.Configuration;
+import com.android.tools.idea.rendering.parsers.PsiXmlFile;
+import com.android.tools.module.ModuleKey;
+import com.android.tools.rendering.RenderService;
+import com.android.tools.rendering.RenderTask;
+import com.android.tools.rendering.RenderTaskWarmPool;
+import com.google.common.util.concurrent.Futures;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.xml.XmlFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.jetbrains.android.AndroidTestCase;
+import org.jetbrains.annotations.NotNull;
+
+public class RenderTaskWarmPoolTest extends AndroidTestCase {
+  private static final String LAYOUT = "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+                                       "    android:layout_height=\"match_parent\"\n" +
+                                       "    android:layout_width=\"match_parent\" />";
+
+  private final ModuleKey myModuleKey = new ModuleKey();
+  private final List<RenderTask> myTasks = new ArrayList<>();
+  private RenderTaskWarmPool myPool;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    RenderTestUtil.beforeRenderTestCase();
+    myPool = new RenderTaskWarmPool(2);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      myPool.dispose();
+      StudioRenderService.getInstance(getProject()).getWarmPool().dispose();
+      for (RenderTask task : myTasks) {
+        if (!task.isDisposed()) {
+          task.dispose().get(5, TimeUnit.SECONDS);
+        }
+      }
+      myTasks.clear();
+      RenderTestUtil.afterRenderTestCase();
+    } finally {
+      super.tearDown();
+    }
+  }
+
+  @NotNull
+  private Configuration createConfiguration(@NotNull String name) {
+    VirtualFile file = myFixture.addFileToProject("res/layout/" + name + ".xml", LAYOUT).getVirtualFile();
+    return RenderTestUtil.getConfiguration(myModule, file);
+  }
+
+  @NotNull
+  private RenderTask createTask(@NotNull Configuration configuration) {
+    @SuppressWarnings("deprecation")
+    RenderTask task = createRenderTask(myFacet, configuration.getFile(), configuration);
+    myTasks.add(task);
+    return task;
+  }
+
+  @NotNull
+  private RenderTaskWarmPool.Key createKey(@NotNull String theme, long resourcesVersion) {
+    return new RenderTaskWarmPool.Key(myModuleKey, "device", "", theme, null, resourcesVersion, Collections.emptyList());
+  }
+
+  @NotNull
+  private RenderTask buildWithWarmPool(@NotNull Configuration configuration, @NotNull AtomicInteger createdModules) {
+    RenderService renderService = StudioRenderService.getInstance(getProject());
+    XmlFile xmlFile = (XmlFile)ReadAction.compute(() -> PsiManager.getInstance(getProject()).findFile(configuration.getFile()));
+    RenderTask task = Futures.getUnchecked(
+      taskBuilder(renderService, myFacet, configuration, renderService.createLogger(getProject()))
+        .withPsiFile(new PsiXmlFile(xmlFile))
+        .disableSecurityManager()
+        .useWarmPool(() -> {
+                       createdModules.incrementAndGet();
+                       return new AndroidFacetRenderModelModule(myFacet);
+                     },
+                     () -> renderService.createLogger(getProject()))
+        .build());
+    assertNotNull(task);
+    myTasks.add(task);
+    return task;
+  }
+
+  public void testTakeOfferedTask() {
+    Configuration configuration = createConfiguration("a");
+    RenderTaskWarmPool.Key key = createKey("@style/Theme", 0);
+    RenderTask task = createTask(configuration);
+    assertEquals(-1.0, myPool.getHitRate());
+
+    myPool.offer(key, task);
+    assertEquals(1, myPool.getSize());
+
+    assertSame(task, myPool.take(key));
+    assertFalse(task.isDisposed());
+    // The task is owned by the caller of take and is not kept anymore.
+    assertNull(myPool.take(key));
+    assertEquals(0, myPool.getSize());
+    assertEquals(1, myPool.getHitCount());
+    assertEquals(1, myPool.getMissCount());
+    assertEquals(0.5, myPool.getHitRate());
+  }
+
+  public void testTakeWithDifferentKey() {
+    Configuration configuration = createConfiguration("a");
+    RenderTask task = createTask(configuration);
+    myPool.offer(createKey("@style/Theme", 0), task);
+
+    assertNull(myPool.take(createKey("@style/Theme", 1)));
+    assertNull(myPool.take(createKey("@style/OtherTheme", 0)));
+    assertEquals(0, myPool.getHitCount());
+    assertEquals(2, myPool.getMissCount());
+
+    // A new task for the same key replaces the previous one.
+    RenderTask newTask = createTask(configuration);
+    myPool.offer(createKey("@style/Theme", 0), newTask);
+    assertTrue(task.isDisposed());
+    assertSame(newTask, myPool.take(createKey("@style/Theme", 0)));
+  }
+
+  public void testLeastRecentlyOfferedTaskIsEvicted() {
+    Configuration configuration = createConfiguration("a");
+    RenderTask taskA = createTask(configuration);
+    RenderTask taskB = createTask(configuration);
+    RenderTask taskC = createTask(configuration);
+
+    myPool.offer(createKey("@style/ThemeA", 0), taskA);
+    myPool.offer(createKey("@style/ThemeB", 0), taskB);
+    myPool.offer(createKey("@style/ThemeC", 0), taskC);
+
+    assertTrue(taskA.isDisposed());
+    assertEquals(2, myPool.getSize());
+    assertNull(myPool.take(createKey("@style/ThemeA", 0)));
+    assertSame(taskB, myPool.take(createKey("@style/ThemeB", 0)));
+    assertSame(taskC, myPool.take(createKey("@style/ThemeC", 0)));
+  }
+
+  public void testReplenishRepeatedlyTakenKeys() {
+    Configuration configuration = createConfiguration("a");
+    RenderTaskWarmPool.Key key = createKey("@style/Theme", 0);
+    AtomicInteger createdTasks = new AtomicInteger();
+    Supplier<RenderTask> taskFactory = () -> {
+      createdTasks.incrementAndGet();
+      return createTask(configuration);
+    };
+
+    // Nothing is created for a key that has never been taken, or only once.
+    myPool.replenish(key, taskFactory::get);
+    assertNull(myPool.take(key));
+    myPool.replenish(key, taskFactory::get);
+    assertEquals(0, createdTasks.get());
+    assertEquals(0, myPool.getSize());
+
+    // A key taken again gets a task, and a single one.
+    assertNull(myPool.take(key));
+    myPool.replenish(key, taskFactory::get);
+    myPool.replenish(key, taskFactory::get);
+    assertEquals(1, createdTasks.get());
+    assertEquals(1, myPool.getSize());
+
+    // A key whose task was taken gets a new one.
+    RenderTask task = myPool.take(key);
+    assertNotNull(task);
+    myPool.replenish(key, taskFactory::get);
+    assertEquals(2, createdTasks.get());
+    assertNotSame(task, myPool.take(key));
+  }
+
+  public void testReplenishWhileCreatingTask() {
+    Configuration configuration = createConfiguration("a");
+    RenderTaskWarmPool.Key key = createKey("@style/Theme", 0);
+    AtomicInteger createdTasks = new AtomicInteger();
+    myPool.take(key);
+    myPool.take(key);
+
+    myPool.replenish(key, () -> {
+      // A replenishment started while the task of the key is being created does nothing.
+      myPool.replenish(key, () -> {
+        createdTasks.incrementAndGet();
+        return createTask(configuration);
+      });
+      return null;
+    });
+
+    assertEquals(0, createdTasks.get());
+    assertEquals(0, myPool.getSize());
+  }
+
+  public void testBuildTakesTaskFromWarmPool() {
+    RenderTaskWarmPool pool = StudioRenderService.getInstance(getProject()).getWarmPool();
+    AtomicInteger createdModules = new AtomicInteger();
+    long hits = pool.getHitCount();
+
+    // The files have the same device, qualifiers and theme. The second one is a repeated request, so a task is kept for the third one.
+    buildWithWarmPool(createConfiguration("a"), createdModules);
+    buildWithWarmPool(createConfiguration("b"), createdModules);
+    waitForCondition(10, TimeUnit.SECONDS, () -> pool.getSize() == 1);
+    assertEquals(1, createdModules.get());
+    assertEquals(hits, pool.getHitCount());
+
+    Configuration configuration = createConfiguration("c");
+    RenderTask task = buildWithWarmPool(configuration, createdModules);
+    assertEquals(hits + 1, pool.getHitCount());
+    // The pooled task renders the configuration of its new owner.
+    assertSame(configuration, task.getContext().getConfiguration());
+    assertNotNull(RenderTestUtil.renderOnSeparateThread(task));
+
+    // The task taken from the pool is replaced for the next request.
+    waitForCondition(10, TimeUnit.SECONDS, () -> createdModules.get() == 2 && pool.getSize() == 1);
+  }
+
+  public void testDisposedTaskIsNotReused() throws Exception {
+    Configuration configuration = createConfiguration("a");
+    RenderTaskWarmPool.Key key = createKey("@style/Theme", 0);
+    RenderTask task = createTask(configuration);
+    myPool.offer(key, task);
+
+    task.dispose().get(5, TimeUnit.SECONDS);
+
+    assertNull(myPool.take(key));
+    assertEquals(0, myPool.getHitCount());
+    assertEquals(1, myPool.getMissCount());
+  }
+
+  public void testRenderedTaskIsNotReused() {
+    Configuration configuration = createConfiguration("a");
+    RenderTaskWarmPool.Key key = createKey("@style/Theme", 0);
+    RenderTask task = createTask(configuration);
+    myPool.offer(key, task);
+
+    assertNotNull(RenderTestUtil.renderOnSeparateThread(task));
+
+    assertNull(myPool.take(key));
+    assertTrue(task.isDisposed());
+    assertEquals(0, myPool.getHitCount());
+    assertEquals(1, myPool.getMissCount());
+  }
+}
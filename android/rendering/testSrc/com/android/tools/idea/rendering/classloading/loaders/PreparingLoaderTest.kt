@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering.classloading.loaders
+
+import com.android.tools.rendering.classloading.loaders.StaticLoader
+import com.android.tools.rendering.classloading.prepareInParallel
+import com.google.common.util.concurrent.MoreExecutors
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class PreparingLoaderTest {
+  @Test
+  fun `prepared classes are only loaded once`() {
+    val loadedClasses = mutableListOf<String>()
+    val loader = PreparingLoader(
+      ListeningLoader(
+        StaticLoader(
+          "a.class1" to ByteArray(1),
+          "a.class2" to ByteArray(2)
+        ),
+        onBeforeLoad = { loadedClasses.add(it) }))
+
+    assertTrue(loader.prepare("a.class1"))
+    assertTrue(loader.prepare("a.class1"))
+    assertFalse(loader.prepare("not.found.class"))
+    assertEquals(listOf("a.class1", "not.found.class"), loadedClasses)
+    assertEquals(1, loader.preparedCount)
+
+    // The prepared class is returned without loading it again and then released.
+    assertEquals(1, loader.loadClass("a.class1")?.size ?: 0)
+    assertEquals(0, loader.preparedCount)
+    assertEquals(2, loader.loadClass("a.class2")?.size ?: 0)
+    assertNull(loader.loadClass("not.found.class"))
+    assertEquals(listOf("a.class1", "not.found.class", "a.class2", "not.found.class"), loadedClasses)
+
+    // Classes already requested are not prepared again.
+    assertTrue(loader.prepare("a.class2"))
+    assertEquals(0, loader.preparedCount)
+  }
+
+  @Test
+  fun `prepared bytes are limited`() {
+    val loader = PreparingLoader(
+      StaticLoader(
+        "a.class1" to ByteArray(6),
+        "a.class2" to ByteArray(6),
+        "a.class3" to ByteArray(6)
+      ),
+      maxPreparedBytes = 10)
+
+    assertTrue(loader.prepare("a.class1"))
+    assertFalse(loader.isFull)
+    assertTrue(loader.prepare("a.class2"))
+    assertTrue(loader.isFull)
+    assertFalse(loader.prepare("a.class3"))
+    assertEquals(2, loader.preparedCount)
+
+    // Loading a prepared class releases its bytes, so more classes can be prepared.
+    assertEquals(6, loader.loadClass("a.class1")?.size ?: 0)
+    assertFalse(loader.isFull)
+    assertTrue(loader.prepare("a.class3"))
+
+    loader.clear()
+    assertEquals(0, loader.preparedCount)
+    assertFalse(loader.isFull)
+  }
+
+  @Test
+  fun `classes are prepared in parallel`() {
+    val classes = (0 until 100).associate { "a.class$it" to ByteArray(it) }
+    val loader = PreparingLoader(StaticLoader(classes))
+    val executor = Executors.newFixedThreadPool(4)
+    try {
+      prepareInParallel(classes.keys + "not.found.class", { true }, executor, 4) { loader.prepare(it) }
+    } finally {
+      executor.shutdown()
+      assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS))
+    }
+
+    assertEquals(100, loader.preparedCount)
+    assertEquals(42, loader.loadClass("a.class42")?.size ?: 0)
+  }
+
+  @Test
+  fun `preparation stops when inactive`() {
+    val loader = PreparingLoader(StaticLoader("a.class1" to ByteArray(1)))
+    prepareInParallel(listOf("a.class1"), { false }, MoreExecutors.directExecutor(), 4) { loader.prepare(it) }
+
+    assertEquals(0, loader.preparedCount)
+  }
+}
@@ -53,6 +53,7 @@ import com.android.tools.rendering.parsers.RenderXmlAttribute;
 import com.android.tools.rendering.parsers.RenderXmlFile;
 import com.android.tools.rendering.parsers.RenderXmlTag;
 import com.android.tools.rendering.parsers.TagSnapshot;
+import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
@@ -336,6 +337,40 @@ public class LayoutRenderPullParserTest extends AndroidTestCase {
     assertEquals("Button1", parser.myRoot.children.get(0).getAttribute("text"));
   }
 
+  public void testCompiledLayoutIsSharedUntilTheFileChanges() {
+    @Language("XML")
+    final String content = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+                           "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+                           "    android:layout_width=\"match_parent\"\n" +
+                           "    android:layout_height=\"match_parent\">\n" +
+                           "    <TextView\n" +
+                           "        android:layout_width=\"wrap_content\"\n" +
+                           "        android:layout_height=\"wrap_content\"\n" +
+                           "        android:text=\"Hello\"/>\n" +
+                           "</LinearLayout>";
+    XmlFile psiFile = (XmlFile)myFixture.addFileToProject("res/layout/included.xml", content);
+    StudioResourceRepositoryManager manager = StudioResourceRepositoryManager.getInstance(myModule);
+
+    // Included layouts are parsed with different sample data offsets, but share the snapshot when they do not use sample data.
+    LayoutRenderPullParser parser = LayoutRenderPullParser.create(new PsiXmlFile(psiFile), RenderLogger.NOP_RENDER_LOGGER,
+                                                                  false, null, manager, 0);
+    LayoutRenderPullParser sameFileParser = LayoutRenderPullParser.create(new PsiXmlFile(psiFile), RenderLogger.NOP_RENDER_LOGGER,
+                                                                          false, null, manager, 1);
+    assertSame(parser.myRoot, sameFileParser.myRoot);
+    // Honoring the tools:parentTag creates a different snapshot
+    assertNotSame(parser.myRoot, LayoutRenderPullParser.create(new PsiXmlFile(psiFile), RenderLogger.NOP_RENDER_LOGGER,
+                                                               true, null, manager, 0).myRoot);
+
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      psiFile.getRootTag().getSubTags()[0].setAttribute(ATTR_TEXT, ANDROID_URI, "World");
+    });
+    LayoutRenderPullParser modifiedFileParser = LayoutRenderPullParser.create(new PsiXmlFile(psiFile), RenderLogger.NOP_RENDER_LOGGER,
+                                                                              false, null, manager, 0);
+    assertNotSame(parser.myRoot, modifiedFileParser.myRoot);
+    assertEquals("Hello", parser.myRoot.children.get(0).getAttribute(ATTR_TEXT, ANDROID_URI));
+    assertEquals("World", modifiedFileParser.myRoot.children.get(0).getAttribute(ATTR_TEXT, ANDROID_URI));
+  }
+
   public void testToolsAttributes() throws Exception {
     @Language("XML")
     final String content = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
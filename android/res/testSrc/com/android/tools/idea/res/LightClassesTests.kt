@@ -652,6 +652,37 @@ abstract class SingleModuleLightClassesTestBase {
     assertThat(myFixture.doHighlighting(ERROR)).hasSize(1)
   }
 
+  @Test
+  fun innerClassFieldsTrackTheirResourceType() {
+    myFixture.addFileToProject("res/drawable/foo.xml", "<vector-drawable />")
+    waitForResourceRepositoryUpdates(myFacet)
+    val scope = GlobalSearchScope.everythingScope(project)
+    val stringClass = myFixture.javaFacade.findClass("p1.p2.R.string", scope)!!
+    val drawableFields = myFixture.javaFacade.findClass("p1.p2.R.drawable", scope)!!.fields
+    val appString = stringClass.fields.single()
+    assertThat(appString.name).isEqualTo("appString")
+    assertThat(drawableFields.map(PsiField::getName)).containsExactly("foo")
+
+    myFixture.addFileToProject(
+      "/res/values/strings.xml",
+      // language=xml
+      """
+      <resources>
+        <string name="newString">New</string>
+      </resources>
+      """
+        .trimIndent()
+    )
+    waitForResourceRepositoryUpdates(myFacet)
+
+    // The inner classes are reused, and only the fields of R.string are recomputed.
+    assertThat(myFixture.javaFacade.findClass("p1.p2.R.string", scope)).isSameAs(stringClass)
+    assertThat(stringClass.fields.map(PsiField::getName)).containsExactly("appString", "newString")
+    assertThat(myFixture.javaFacade.findClass("p1.p2.R.drawable", scope)!!.fields).isSameAs(drawableFields)
+    // The unchanged field of R.string is reused when its fields are recomputed.
+    assertThat(stringClass.fields.single { it.name == "appString" }).isSameAs(appString)
+  }
+
   @Test
   fun containingClass() {
     val activity =
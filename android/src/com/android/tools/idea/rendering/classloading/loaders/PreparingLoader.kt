@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering.classloading.loaders
+
+import com.android.tools.rendering.classloading.loaders.DelegatingClassLoader
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * A [DelegatingClassLoader.Loader] that allows loading classes from [delegate] ahead of time. The bytes of the classes passed to
+ * [prepare] are retained until [loadClass] is called for them, and then released. At most [maxPreparedBytes] are retained at any
+ * time, classes prepared beyond that are not loaded ahead of time.
+ *
+ * [prepare] can be called from multiple threads, and concurrently with [loadClass], as long as [delegate] is thread-safe.
+ */
+class PreparingLoader(
+  private val delegate: DelegatingClassLoader.Loader,
+  private val maxPreparedBytes: Long = Long.MAX_VALUE
+) : DelegatingClassLoader.Loader {
+  private val preparedClasses = ConcurrentHashMap<String, ByteArray>()
+  private val preparedBytes = AtomicLong()
+
+  /** FQCNs of the classes already requested by [loadClass]. Those do not need to be prepared anymore. */
+  private val requestedClasses: MutableSet<String> = ConcurrentHashMap.newKeySet()
+
+  /** Number of classes prepared and not yet requested by [loadClass]. */
+  val preparedCount: Int
+    get() = preparedClasses.size
+
+  /** True if no more classes can be prepared until some of the prepared ones are loaded or [clear] is called. */
+  val isFull: Boolean
+    get() = preparedBytes.get() >= maxPreparedBytes
+
+  /**
+   * Loads the class [fqcn] from [delegate] and retains its bytes for a future [loadClass]. Returns false if the class was not found or
+   * if the loader [isFull].
+   */
+  fun prepare(fqcn: String): Boolean {
+    if (requestedClasses.contains(fqcn) || preparedClasses.containsKey(fqcn)) return true
+    if (isFull) return false
+    val bytes = delegate.loadClass(fqcn) ?: return false
+    if (preparedClasses.putIfAbsent(fqcn, bytes) == null) preparedBytes.addAndGet(bytes.size.toLong())
+    // The class might have been requested while it was being prepared, in which case it will not be requested again.
+    if (requestedClasses.contains(fqcn)) release(fqcn)
+    return true
+  }
+
+  override fun loadClass(fqcn: String): ByteArray? {
+    requestedClasses.add(fqcn)
+    return release(fqcn) ?: delegate.loadClass(fqcn)
+  }
+
+  /** Releases the classes that were prepared and not requested. */
+  fun clear() {
+    preparedClasses.keys.forEach { release(it) }
+  }
+
+  private fun release(fqcn: String): ByteArray? =
+    preparedClasses.remove(fqcn)?.also { preparedBytes.addAndGet(-it.size.toLong()) }
+}
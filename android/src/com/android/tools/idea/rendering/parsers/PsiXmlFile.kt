@@ -20,14 +20,24 @@ import com.android.resources.ResourceFolderType
 import com.android.tools.idea.AndroidPsiUtils
 import com.android.tools.idea.res.getFolderType
 import com.android.tools.idea.res.resourceNamespace
+import com.android.tools.rendering.parsers.CompiledLayout
 import com.android.tools.rendering.parsers.RenderXmlFile
 import com.android.tools.rendering.parsers.RenderXmlTag
 import com.google.common.annotations.VisibleForTesting
 import com.intellij.openapi.application.ApplicationManager
 import com.intellij.openapi.project.Project
 import com.intellij.openapi.util.Computable
+import com.intellij.openapi.util.Key
 import com.intellij.psi.PsiFile
 import com.intellij.psi.xml.XmlFile
+import java.util.function.Supplier
+
+/** [CompiledLayout] of a file and the modification stamp of the file it was created from. */
+private class CachedCompiledLayout(val modificationStamp: Long, val layout: CompiledLayout)
+
+private val COMPILED_LAYOUT_KEY = Key.create<CachedCompiledLayout>("PsiXmlFile.compiledLayout")
+private val COMPILED_LAYOUT_IGNORING_MERGE_PARENT_TAG_KEY =
+  Key.create<CachedCompiledLayout>("PsiXmlFile.compiledLayoutIgnoringMergeParentTag")
 
 /** Studio-specific [XmlFile]-based implementation of [RenderXmlFile]. */
 class PsiXmlFile(@VisibleForTesting val xmlFile: XmlFile) : RenderXmlFile {
@@ -62,5 +72,25 @@ class PsiXmlFile(@VisibleForTesting val xmlFile: XmlFile) : RenderXmlFile {
     }
   }
 
+  /**
+   * The [CompiledLayout] is cached in the [XmlFile] so it is shared by all the [PsiXmlFile]s of the file and released with it.
+   */
+  override fun getCompiledLayout(
+    honorMergeParentTag: Boolean,
+    compile: Supplier<CompiledLayout>
+  ): CompiledLayout {
+    val key =
+      if (honorMergeParentTag) COMPILED_LAYOUT_KEY else COMPILED_LAYOUT_IGNORING_MERGE_PARENT_TAG_KEY
+    val modificationStamp = xmlFile.modificationStamp
+    xmlFile.getUserData(key)?.let {
+      if (it.modificationStamp == modificationStamp) return it.layout
+    }
+    return compile.get().also {
+      // Layouts that are not shareable are kept too, so the next parsers know they have to create their own snapshot without
+      // compiling the file first.
+      xmlFile.putUserData(key, CachedCompiledLayout(modificationStamp, it))
+    }
+  }
+
   override fun get(): PsiFile = xmlFile
 }
\ No newline at end of file
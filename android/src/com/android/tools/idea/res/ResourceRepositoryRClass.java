@@ -27,6 +27,8 @@ import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiManager;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.jetbrains.android.augment.AndroidLightField;
 import org.jetbrains.android.augment.ResourceRepositoryInnerRClass;
 import org.jetbrains.annotations.NotNull;
@@ -56,6 +58,11 @@ public abstract class ResourceRepositoryRClass extends AndroidRClassBase {
   }
 
   @NotNull private final ResourcesSource mySource;
+  /**
+   * The inner classes created so far. They are reused when the inner classes are recomputed, so that each of them keeps its fields
+   * for as long as the resources of its type don't change.
+   */
+  @NotNull private final Map<ResourceType, ResourceRepositoryInnerRClass> myInnerClasses = new ConcurrentHashMap<>();
 
   public ResourceRepositoryRClass(@NotNull PsiManager psiManager, @NotNull ResourcesSource source) {
     // TODO(b/110188226): Update the file package name when the module's package name changes.
@@ -82,7 +89,7 @@ public abstract class ResourceRepositoryRClass extends AndroidRClassBase {
 
     for (ResourceType type : types) {
       if (type.getHasInnerClass()) {
-        result.add(new ResourceRepositoryInnerRClass(type, mySource, this));
+        result.add(myInnerClasses.computeIfAbsent(type, t -> new ResourceRepositoryInnerRClass(t, mySource, this)));
       }
     }
     LOG.debug("R_CLASS_AUGMENT: " + result.size() + " classes added");
@@ -16,6 +16,7 @@ import com.intellij.psi.JavaPsiFacade
 import com.intellij.psi.PsiClass
 import com.intellij.psi.PsiElementFactory
 import com.intellij.psi.PsiField
+import com.intellij.psi.PsiModifier
 import com.intellij.psi.PsiType
 import com.intellij.psi.PsiTypes
 import com.intellij.psi.util.CachedValue
@@ -39,6 +40,12 @@ abstract class InnerRClassBase(context: PsiClass, val resourceType: ResourceType
   AndroidLightInnerClassBase(context, resourceType.getName()) {
   private var fieldsCache: CachedValue<Array<PsiField>>? = null
   private val logger = thisLogger()
+
+  /** The fields computed by the last call to [doGetFields], which implementations can reuse for the unchanged resources. */
+  @Volatile
+  protected var previousFields: Array<PsiField> = PsiField.EMPTY_ARRAY
+    private set
+
   override fun getFields(): Array<PsiField> {
     if (fieldsCache == null) {
       fieldsCache = CachedValuesManager.getManager(project).createCachedValue {
@@ -49,7 +56,9 @@ abstract class InnerRClassBase(context: PsiClass, val resourceType: ResourceType
           // stop incrementing their modification count. We need to make sure the CachedValue doesn't hold on to any particular repository
           // instance and instead reads the modification count of the "current" instance.
           Verify.verify(it !is ResourceRepository, "Resource repository leaked in a CachedValue.")
-          CachedValueProvider.Result.create(doGetFields(), it)
+          val fields = doGetFields()
+          previousFields = fields
+          CachedValueProvider.Result.create(fields, it)
         }
       }
     }
@@ -71,6 +80,7 @@ abstract class InnerRClassBase(context: PsiClass, val resourceType: ResourceType
       context: PsiClass,
       studioResourceRepositoryManager: StudioResourceRepositoryManager? = null,
       resourceFilter: ResourceFilter = { true },
+      previousFields: Array<PsiField> = PsiField.EMPTY_ARRAY,
     ): Array<PsiField> {
       val otherFields = mutableMapOf<String, ResourceVisibility>()
       val styleableFields = mutableMapOf<String, ResourceVisibility>()
@@ -84,9 +94,15 @@ abstract class InnerRClassBase(context: PsiClass, val resourceType: ResourceType
         }
         else otherFields.merge(it.name, visibility, ResourceVisibility::max)
       }
-      return buildResourceFields(otherFields, styleableFields, styleableAttrFields, resourceType, context, fieldModifier)
+      return buildResourceFields(otherFields, styleableFields, styleableAttrFields, resourceType, context, fieldModifier, previousFields)
     }
 
+    /**
+     * Builds the fields for the given resources.
+     *
+     * Fields of [previousFields] that are identical to the ones that would be built are reused, so that only the fields of the added
+     * or changed resources are created, and the PSI of the others stays valid.
+     */
     @JvmStatic
     protected fun buildResourceFields(
       otherFields: Map<String, ResourceVisibility>,
@@ -94,21 +110,25 @@ abstract class InnerRClassBase(context: PsiClass, val resourceType: ResourceType
       styleableAttrFields: Collection<StyleableAttrFieldUrl>,
       resourceType: ResourceType,
       context: PsiClass,
-      fieldModifier: AndroidLightField.FieldModifier
+      fieldModifier: AndroidLightField.FieldModifier,
+      previousFields: Array<PsiField> = PsiField.EMPTY_ARRAY,
     ): Array<PsiField> {
       val factory = JavaPsiFacade.getElementFactory(context.project)
       val innerRClassFields = context.containingFile.viewProvider.virtualFile.getUserData(AndroidResolveScopeEnlarger.BACKING_CLASS)
         ?.getResources(resourceType)
+      val reusable = ReusableFields(previousFields, context, fieldModifier)
 
       val startId = resourceType.ordinal * 100_000
-      val otherLightFields = otherFields.toLightFields(innerRClassFields, factory, startId, PsiTypes.intType(), context, fieldModifier)
+      val otherLightFields =
+        otherFields.toLightFields(innerRClassFields, factory, startId, PsiTypes.intType(), context, fieldModifier, reusable)
 
       val styleableStartId = startId + otherFields.size
       val styleableLightFields = styleableFields.toLightFields(
-        innerRClassFields, factory, styleableStartId, PsiTypes.intType().createArrayType(), context, fieldModifier)
+        innerRClassFields, factory, styleableStartId, PsiTypes.intType().createArrayType(), context, fieldModifier, reusable)
 
       val attrStartId = styleableStartId + styleableFields.size
-      val styleableAttrLightFields = styleableAttrFields.toLightFields(innerRClassFields, factory, attrStartId, context, fieldModifier)
+      val styleableAttrLightFields =
+        styleableAttrFields.toLightFields(innerRClassFields, factory, attrStartId, context, fieldModifier, reusable)
 
       return (otherLightFields + styleableLightFields + styleableAttrLightFields).toTypedArray()
     }
@@ -161,9 +181,11 @@ abstract class InnerRClassBase(context: PsiClass, val resourceType: ResourceType
       psiType: PsiType,
       context: PsiClass,
       fieldModifier: AndroidLightField.FieldModifier,
+      reusable: ReusableFields,
     ): List<ResourceLightField> = entries.mapIndexed { i, (fieldName, visibility) ->
         val fieldId = innerRClassFields?.get(fieldName) ?: (nextId + i)
-        ResourceLightField(fieldName, context, psiType, fieldModifier, fieldId.takeIf { fieldModifier == FINAL }, visibility)
+        reusable.findResourceField(fieldName, psiType, fieldId, visibility)
+        ?: ResourceLightField(fieldName, context, psiType, fieldModifier, fieldId.takeIf { fieldModifier == FINAL }, visibility)
           .apply { initializer = factory.createExpressionFromText(fieldId.toString(), this) }
       }
 
@@ -174,10 +196,33 @@ abstract class InnerRClassBase(context: PsiClass, val resourceType: ResourceType
       nextId: Int,
       context: PsiClass,
       fieldModifier: AndroidLightField.FieldModifier,
+      reusable: ReusableFields,
     ) : List<StyleableAttrLightField> = mapIndexed { i, fieldContents ->
       val fieldId = innerRClass?.get(fieldContents.toFieldName()) ?: (nextId + i)
-      StyleableAttrLightField(fieldContents, context, fieldModifier, fieldId.takeIf { fieldModifier == FINAL })
+      reusable.findStyleableAttrField(fieldContents, fieldId)
+      ?: StyleableAttrLightField(fieldContents, context, fieldModifier, fieldId.takeIf { fieldModifier == FINAL })
         .apply { initializer = factory.createExpressionFromText(fieldId.toString(), this) }
     }
   }
+
+  /** The fields of a previous computation that can be returned again if nothing about them changed. */
+  private class ReusableFields(
+    previousFields: Array<PsiField>,
+    private val context: PsiClass,
+    private val fieldModifier: AndroidLightField.FieldModifier,
+  ) {
+    private val resourceFields = previousFields.filterIsInstance<ResourceLightField>().associateBy { it.resourceName }
+    private val styleableAttrFields = previousFields.filterIsInstance<StyleableAttrLightField>().associateBy { it.styleableAttrFieldUrl }
+
+    fun findResourceField(resourceName: String, psiType: PsiType, fieldId: Int, visibility: ResourceVisibility): ResourceLightField? =
+      resourceFields[resourceName]?.takeIf { it.type == psiType && it.resourceVisibility == visibility && isReusable(it, fieldId) }
+
+    fun findStyleableAttrField(url: StyleableAttrFieldUrl, fieldId: Int): StyleableAttrLightField? =
+      styleableAttrFields[url]?.takeIf { isReusable(it, fieldId) }
+
+    private fun isReusable(field: AndroidLightField, fieldId: Int) =
+      field.containingClass == context &&
+      field.hasModifierProperty(PsiModifier.FINAL) == (fieldModifier == FINAL) &&
+      field.initializer?.text == fieldId.toString()
+  }
 }
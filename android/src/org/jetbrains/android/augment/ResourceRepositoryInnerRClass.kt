@@ -3,13 +3,17 @@ package org.jetbrains.android.augment
 import com.android.ide.common.rendering.api.ResourceNamespace
 import com.android.ide.common.resources.ResourceItem
 import com.android.ide.common.resources.ResourceItemWithVisibility
+import com.android.ide.common.resources.ResourceRepository
 import com.android.resources.ResourceType
 import com.android.resources.ResourceVisibility
 import com.android.tools.idea.res.ResourceRepositoryRClass.ResourcesSource
+import com.google.common.hash.HashCode
+import com.google.common.hash.Hashing
 import com.intellij.openapi.util.ModificationTracker
 import com.intellij.psi.PsiClass
 import com.intellij.psi.PsiField
 import com.intellij.psi.PsiTypes
+import java.lang.ref.WeakReference
 
 /** Implementation of [InnerRClassBase] backed by a `ResourceRepository`. */
 class ResourceRepositoryInnerRClass(
@@ -17,7 +21,7 @@ class ResourceRepositoryInnerRClass(
   private val resourcesSource: ResourcesSource,
   parentClass: PsiClass
 ) : InnerRClassBase(parentClass, resourceType) {
-  override fun doGetFields() = buildLocalResourceFields(resourceType, resourcesSource, this)
+  override fun doGetFields() = buildLocalResourceFields(resourceType, resourcesSource, this, previousFields)
 
   /**
    * This implementation adds a fast path for non-final resources and delegates to the super implementation in
@@ -43,7 +47,7 @@ class ResourceRepositoryInnerRClass(
     )
   }
 
-  override val fieldsDependencies = ModificationTracker { resourcesSource.resourceRepository.modificationCount }
+  override val fieldsDependencies: ModificationTracker = ResourceTypeModificationTracker(resourceType, resourcesSource)
 
   /**
    * Returns whether this scenario is unsupported. This can be due to one of three reasons:
@@ -58,7 +62,12 @@ class ResourceRepositoryInnerRClass(
     || name.contains("_")
 
   companion object {
-    fun buildLocalResourceFields(resourceType: ResourceType, resourcesSource: ResourcesSource, context: PsiClass): Array<PsiField> =
+    fun buildLocalResourceFields(
+      resourceType: ResourceType,
+      resourcesSource: ResourcesSource,
+      context: PsiClass,
+      previousFields: Array<PsiField> = PsiField.EMPTY_ARRAY
+    ): Array<PsiField> =
       with(resourcesSource) {
         buildResourceFields(
           resourceRepository,
@@ -67,11 +76,12 @@ class ResourceRepositoryInnerRClass(
           resourceType,
           context,
           resourceRepositoryManager,
-          resourceFilter = ::isResourceAccessible)
+          resourceFilter = ::isResourceAccessible,
+          previousFields = previousFields)
       }
 
     /** Returns whether the [resource] is visible (as opposed to private). */
-    private fun isResourceAccessible(resource: ResourceItem) = when {
+    internal fun isResourceAccessible(resource: ResourceItem) = when {
       resource.namespace != ResourceNamespace.ANDROID && resource.libraryName == null -> true
       resource is ResourceItemWithVisibility -> resource.visibility == ResourceVisibility.PUBLIC
       else -> throw AssertionError(
@@ -81,3 +91,46 @@ class ResourceRepositoryInnerRClass(
     }
   }
 }
+
+/**
+ * A [ModificationTracker] that only changes when the fields of the inner R class for [resourceType] may have changed, i.e. when the
+ * names or the visibility of the resources of that type change, so that adding a string doesn't recompute the fields of `R.id`.
+ *
+ * Styleable fields also depend on the attributes of other resources, so for [ResourceType.STYLEABLE] this changes with every
+ * modification of the repository.
+ */
+private class ResourceTypeModificationTracker(
+  private val resourceType: ResourceType,
+  private val resourcesSource: ResourcesSource
+) : ModificationTracker {
+  // Like the CachedValue using this tracker, this must not hold on to a particular repository instance, see InnerRClassBase.
+  private var repository = WeakReference<ResourceRepository>(null)
+  private var repositoryModificationCount = -1L
+  private var resourcesHash: HashCode? = null
+  private var modificationCount = 0L
+
+  @Synchronized
+  override fun getModificationCount(): Long {
+    val currentRepository = resourcesSource.resourceRepository
+    val currentModificationCount = currentRepository.modificationCount
+    if (repository.get() !== currentRepository || repositoryModificationCount != currentModificationCount) {
+      repository = WeakReference(currentRepository)
+      repositoryModificationCount = currentModificationCount
+      val hash = if (resourceType == ResourceType.STYLEABLE) null else hashResources(currentRepository)
+      if (hash == null || hash != resourcesHash) {
+        modificationCount++
+      }
+      resourcesHash = hash
+    }
+    return modificationCount
+  }
+
+  private fun hashResources(repository: ResourceRepository): HashCode {
+    val hasher = Hashing.murmur3_128().newHasher()
+    repository.getResources(resourcesSource.resourceNamespace, resourceType).values().forEach {
+      hasher.putUnencodedChars(it.name)
+      hasher.putBoolean(ResourceRepositoryInnerRClass.isResourceAccessible(it))
+    }
+    return hasher.hash()
+  }
+}
@@ -28,6 +28,7 @@ import com.android.tools.idea.rendering.classloading.loaders.ListeningLoader
 import com.android.tools.idea.rendering.classloading.loaders.MultiLoader
 import com.android.tools.idea.rendering.classloading.loaders.MultiLoaderWithAffinity
 import com.android.tools.idea.rendering.classloading.loaders.NameRemapperLoader
+import com.android.tools.idea.rendering.classloading.loaders.PreparingLoader
 import com.android.tools.idea.rendering.classloading.loaders.RecyclerViewAdapterLoader
 import com.android.tools.rendering.classloading.ClassBinaryCache
 import com.android.tools.rendering.classloading.ClassLoaderOverlays
@@ -129,6 +130,12 @@ internal const val INTERNAL_PACKAGE = "_layoutlib_._internal_."
  */
 private fun onDiskClassNameLookup(name: String): String = StringUtil.trimStart(name, INTERNAL_PACKAGE)
 
+/**
+ * Max size of the non-project classes prepared ahead of time by a [ModuleClassLoaderImpl] and not loaded yet. See
+ * [ModuleClassLoaderImpl.prepareNonProjectClass].
+ */
+private const val MAX_PREPARED_CLASS_BYTES = 32L * 1024 * 1024
+
 
 /**
  * [DelegatingClassLoader.Loader] providing the implementation to load classes from a project. This loader can load user defined classes
@@ -162,6 +169,10 @@ internal class ModuleClassLoaderImpl(module: Module,
 
   private val holder = UserDataHolderBase()
 
+  /**
+   * Loader of the non-project classes after their transformation. Allows to prepare them ahead of time, see [prepareNonProjectClass].
+   */
+  private lateinit var nonProjectPreparingLoader: PreparingLoader
 
   /**
    * List of libraries used in this [ModuleClassLoaderImpl].
@@ -229,8 +240,9 @@ internal class ModuleClassLoaderImpl(module: Module,
                              onClassRewrite: (String, Long, Int) -> Unit): DelegatingClassLoader.Loader {
     // Non project classes loading pipeline
     val nonProjectTransformationId = nonProjectTransforms.id
-    // map of fqcn -> library path used to be able to insert classes into the ClassBinaryCache
-    val fqcnToLibraryPath = mutableMapOf<String, String>()
+    // map of fqcn -> library path used to be able to insert classes into the ClassBinaryCache. Classes can be prepared in parallel
+    // so the map needs to be thread-safe.
+    val fqcnToLibraryPath = ConcurrentHashMap<String, String>()
     val jarLoader = NameRemapperLoader(
       ClassLoaderLoader(externalLibrariesClassLoader) { fqcn, path, _ ->
         URLUtil.splitJarUrl(path)?.first?.let { libraryPath -> fqcnToLibraryPath[fqcn] = libraryPath }
@@ -239,21 +251,24 @@ internal class ModuleClassLoaderImpl(module: Module,
     // Loads a fake saved state registry, when [ViewTreeLifecycleOwner] requests a mocked lifecycle.
     // See also ViewTreeLifecycleTransform to check when this fake class gets created.
     val fakeSavedStateRegistryLoader = FakeSavedStateRegistryLoader(jarLoader)
+    nonProjectPreparingLoader = PreparingLoader(
+      AsmTransformingLoader(
+        transform = nonProjectTransforms,
+        delegate = fakeSavedStateRegistryLoader,
+        pseudoClassLocator = PseudoClassLocatorForLoader(
+          loaders = listOfNotNull(jarLoader, parentLoader).asSequence(),
+          fallbackClassloader = parentClassLoader
+        ),
+        asmFlags = ClassWriter.COMPUTE_MAXS,
+        onRewrite = onClassRewrite),
+      MAX_PREPARED_CLASS_BYTES)
 
     // Tree of the class Loaders:
     // Each node of this tree checks if it can load the current class, it delegates to its subtree otherwise.
     return ListeningLoader(
       delegate = ClassBinaryCacheLoader(
         delegate = ListeningLoader(
-          delegate = AsmTransformingLoader(
-            transform = nonProjectTransforms,
-            delegate = fakeSavedStateRegistryLoader,
-            pseudoClassLocator = PseudoClassLocatorForLoader(
-              loaders = listOfNotNull(jarLoader, parentLoader).asSequence(),
-              fallbackClassloader = parentClassLoader
-            ),
-            asmFlags = ClassWriter.COMPUTE_MAXS,
-            onRewrite = onClassRewrite),
+          delegate = nonProjectPreparingLoader,
           onAfterLoad = { fqcn, bytes ->
             onClassLoaded(fqcn)
             // Map the fqcn to the library path and insert the class into the class binary cache
@@ -325,11 +340,28 @@ internal class ModuleClassLoaderImpl(module: Module,
     return loader.loadClass(fqcn)
   }
 
+  /**
+   * Reads and transforms the non-project class [fqcn] so, when it is loaded, its bytes are already available. The class is not defined
+   * and it is not reported as loaded until it is actually loaded. This method is thread-safe and can be called while classes are loaded.
+   *
+   * Classes already in the [binaryCache] are skipped, since loading them does not need to transform them. At most
+   * [MAX_PREPARED_CLASS_BYTES] of prepared classes are retained, see [canPrepareNonProjectClasses].
+   */
+  fun prepareNonProjectClass(fqcn: String) {
+    if (Disposer.isDisposed(this)) return
+    if (binaryCache.get(fqcn, nonProjectTransforms.id) != null) return
+    nonProjectPreparingLoader.prepare(fqcn)
+  }
+
+  /** Returns false once no more classes can be prepared by [prepareNonProjectClass]. */
+  fun canPrepareNonProjectClasses(): Boolean = !Disposer.isDisposed(this) && !nonProjectPreparingLoader.isFull
+
   fun getResources(name: String): Enumeration<URL> = externalLibrariesClassLoader.getResources(name)
   fun getResource(name: String): URL? = externalLibrariesClassLoader.getResource(name)
 
   override fun dispose() {
     projectSystemLoader.invalidateCaches()
+    nonProjectPreparingLoader.clear()
   }
 
   /**
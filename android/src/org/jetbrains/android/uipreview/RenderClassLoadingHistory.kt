@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.uipreview
+
+import com.intellij.openapi.components.PersistentStateComponent
+import com.intellij.openapi.components.Service
+import com.intellij.openapi.components.State
+import com.intellij.openapi.components.Storage
+import com.intellij.openapi.components.StoragePathMacros
+import com.intellij.openapi.module.Module
+import com.intellij.openapi.project.Project
+import com.intellij.util.xmlb.annotations.Attribute
+import com.intellij.util.xmlb.annotations.Tag
+import com.intellij.util.xmlb.annotations.XCollection
+
+/** Max number of classes remembered by [RenderClassLoadingHistory] for each module. */
+private const val MAX_RECORDED_CLASSES = 20_000
+
+/**
+ * Records the non-project classes loaded by the [StudioModuleClassLoader]s of each module of a project during the renders, so they can
+ * be prepared in advance by the next class loaders of the same module. See [StudioModuleClassLoader.prepareClasses].
+ *
+ * The history is stored in the project cache, so the first render after restarting Studio also benefits from it.
+ */
+@Service(Service.Level.PROJECT)
+@State(name = "RenderClassLoadingHistory", storages = [Storage(StoragePathMacros.CACHE_FILE)])
+class RenderClassLoadingHistory : PersistentStateComponent<RenderClassLoadingHistory.LoadedClasses> {
+  /** Recorded classes by module name, from the least to the most recently recorded. */
+  private val classesByModule = mutableMapOf<String, LinkedHashSet<String>>()
+
+  /** Returns the classes recorded for [module], from the least to the most recently recorded. */
+  @Synchronized
+  fun getClasses(module: Module): List<String> = classesByModule[module.name]?.toList() ?: emptyList()
+
+  /** Adds [loadedClasses] to the history of [module], dropping its least recently recorded classes if it is full. */
+  @Synchronized
+  fun record(module: Module, loadedClasses: Collection<String>) = record(module.name, loadedClasses)
+
+  private fun record(moduleName: String, loadedClasses: Collection<String>) {
+    val classes = classesByModule.getOrPut(moduleName) { LinkedHashSet() }
+    loadedClasses.forEach {
+      // Re-insert the classes already recorded so they become the most recent ones
+      classes.remove(it)
+      classes.add(it)
+    }
+    val iterator = classes.iterator()
+    repeat(classes.size - MAX_RECORDED_CLASSES) {
+      iterator.next()
+      iterator.remove()
+    }
+  }
+
+  @Synchronized
+  override fun getState(): LoadedClasses = LoadedClasses().also { state ->
+    state.modules = classesByModule.mapTo(mutableListOf()) { (moduleName, classes) ->
+      ModuleClasses().also {
+        it.module = moduleName
+        it.classes = classes.toMutableList()
+      }
+    }
+  }
+
+  @Synchronized
+  override fun loadState(state: LoadedClasses) {
+    classesByModule.clear()
+    state.modules.forEach { record(it.module, it.classes) }
+  }
+
+  class LoadedClasses {
+    @XCollection(propertyElementName = "modules")
+    var modules: MutableList<ModuleClasses> = mutableListOf()
+  }
+
+  @Tag("module")
+  class ModuleClasses {
+    @Attribute("name")
+    var module: String = ""
+
+    @XCollection(propertyElementName = "loaded-classes", elementName = "class", valueAttributeName = "name")
+    var classes: MutableList<String> = mutableListOf()
+  }
+
+  companion object {
+    @JvmStatic
+    fun getInstance(project: Project): RenderClassLoadingHistory = project.getService(RenderClassLoadingHistory::class.java)
+  }
+}
@@ -9,6 +9,7 @@ import com.android.tools.idea.rendering.StudioModuleRenderContext;
 import com.android.tools.rendering.RenderService;
 import com.android.tools.rendering.classloading.ClassBinaryCache;
 import com.android.tools.rendering.classloading.ClassBinaryCacheManager;
+import com.android.tools.rendering.classloading.ClassLoaderPreloaderKt;
 import com.android.tools.rendering.classloading.ModuleClassLoader;
 import com.android.tools.rendering.classloading.ModuleClassLoaderDiagnosticsRead;
 import com.android.tools.rendering.classloading.ModuleClassLoaderDiagnosticsWrite;
@@ -43,13 +44,17 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
+import kotlin.Unit;
+import kotlin.jvm.functions.Function0;
 import org.jetbrains.android.uipreview.classloading.LibraryResourceClassLoader;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -258,6 +263,19 @@ public final class StudioModuleClassLoader extends ModuleClassLoader implements
   @NotNull
   public Set<String> getProjectLoadedClasses() { return myImpl.getProjectLoadedClassNames(); }
 
+  /**
+   * Reads and transforms the given non-project classes in parallel on the given {@link Executor}, without defining them. When the classes
+   * are later loaded by this class loader, their bytes are already available. The preparation stops when this class loader is disposed
+   * or when the limit of prepared classes is reached.
+   */
+  public void prepareClasses(@NotNull Collection<String> classes, @NotNull Executor executor, int parallelism) {
+    Function0<Boolean> isActive = () -> !isDisposed() && myImpl.canPrepareNonProjectClasses();
+    ClassLoaderPreloaderKt.prepareInParallel(classes, isActive, executor, parallelism, fqcn -> {
+      myImpl.prepareNonProjectClass(fqcn);
+      return Unit.INSTANCE;
+    });
+  }
+
   @NotNull
   public ClassTransform getProjectClassesTransform() { return myImpl.getProjectTransforms(); }
 
@@ -382,7 +400,12 @@ public final class StudioModuleClassLoader extends ModuleClassLoader implements
   }
 
   void dispose() {
-    isDisposed.set(true);
+    boolean wasDisposed = isDisposed.getAndSet(true);
+    Module module = getModule();
+    if (!wasDisposed && module != null && !module.isDisposed() && !module.getProject().isDisposed()) {
+      // Remember the classes used by the renders so the next class loaders can prepare them in advance
+      RenderClassLoadingHistory.getInstance(module.getProject()).record(module, getNonProjectLoadedClasses());
+    }
     myImpl.dispose();
     ourDisposeService.execute(() -> {
       waitForCoroutineThreadToStop();
@@ -44,6 +44,7 @@ import com.intellij.openapi.util.Key
 import com.intellij.openapi.util.UserDataHolder
 import com.intellij.openapi.util.removeUserData
 import com.intellij.serviceContainer.AlreadyDisposedException
+import com.intellij.util.concurrency.AppExecutorUtil
 import com.intellij.util.concurrency.AppExecutorUtil.getAppExecutorService
 import com.intellij.util.containers.MultiMap
 import java.lang.ref.SoftReference
@@ -156,6 +157,23 @@ class Preloader(
     classLoader.get()?.let { it.nonProjectLoadedClasses.size + it.projectLoadedClasses.size } ?: 0
 }
 
+/** Number of threads used to prepare the classes recorded by [RenderClassLoadingHistory] for a new [StudioModuleClassLoader]. */
+private val CLASS_PREPARATION_PARALLELISM = (Runtime.getRuntime().availableProcessors() / 2).coerceAtLeast(1)
+
+private val classPreparationExecutor =
+  AppExecutorUtil.createBoundedApplicationPoolExecutor("ModuleClassLoader Class Preparation", CLASS_PREPARATION_PARALLELISM)
+
+/**
+ * Prepares, in the background, the non-project classes loaded by the renders of previous [StudioModuleClassLoader]s of the module, so
+ * the first render using this [StudioModuleClassLoader] does not need to read and transform them.
+ */
+private fun StudioModuleClassLoader.prepareRecordedClasses(): StudioModuleClassLoader = apply {
+  val module = module ?: return@apply
+  if (module.isDisposed || module.project.isDisposed) return@apply
+  prepareClasses(RenderClassLoadingHistory.getInstance(module.project).getClasses(module), classPreparationExecutor,
+                 CLASS_PREPARATION_PARALLELISM)
+}
+
 private val PRELOADER: Key<Preloader> = Key.create(::PRELOADER.qualifiedName<StudioModuleClassLoaderManager>())
 val HATCHERY: Key<ModuleClassLoaderHatchery> = Key.create(::HATCHERY.qualifiedName<StudioModuleClassLoaderManager>())
 
@@ -307,7 +325,7 @@ class StudioModuleClassLoaderManager : ModuleClassLoaderManager<StudioModuleClas
                                                                           moduleRenderContext,
                                                                           combinedProjectTransformations,
                                                                           combinedNonProjectTransformations,
-                                                                          createDiagnostics())
+                                                                          createDiagnostics()).prepareRecordedClasses()
       module?.putUserData(PRELOADER, Preloader(moduleClassLoader))
       onNewModuleClassLoader.run()
     }
@@ -344,7 +362,7 @@ class StudioModuleClassLoaderManager : ModuleClassLoaderManager<StudioModuleClas
     return (preloadedClassLoader ?: StudioModuleClassLoader(parent, moduleRenderContext,
                                                             combinedProjectTransformations,
                                                             combinedNonProjectTransformations,
-                                                            createDiagnostics()))
+                                                            createDiagnostics()).prepareRecordedClasses())
       .let {
         val newModuleClassLoaderReference = ModuleClassLoaderManager.Reference(this, it)
         LOG.debug { "New ModuleClassLoader reference $newModuleClassLoaderReference to $it" }
@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer;
+
+import com.android.tools.apk.analyzer.ApkSizeCalculator;
+import com.android.tools.apk.analyzer.dex.DexReferences;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import com.intellij.openapi.diagnostic.Logger;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+import javax.swing.tree.DefaultMutableTreeNode;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Caches the results of analyzing archives, keyed by the hash of the archive contents, such that re-opening or diffing
+ * an archive that was already analyzed doesn't repeat the work even if the file was copied or rebuilt identically.
+ */
+public final class ApkAnalysisCache {
+  private static final ApkAnalysisCache ourInstance = new ApkAnalysisCache();
+
+  /** The number of archives whose sizes are kept. */
+  private static final int MAX_ARCHIVES = 16;
+
+  /** The number of diffs that are kept. */
+  private static final int MAX_DIFFS = 8;
+
+  /** The number of dex reference graphs that are kept. */
+  private static final int MAX_DEX_REFERENCES = 2;
+
+  /** The content hashes of the recently analyzed files, invalidated when a file is modified. */
+  private final Cache<FileStamp, HashCode> myHashes = CacheBuilder.newBuilder().maximumSize(4L * MAX_ARCHIVES).build();
+
+  private final Cache<ArchiveKey, ArchiveSizes> mySizes = CacheBuilder.newBuilder().maximumSize(MAX_ARCHIVES).build();
+
+  private final Cache<DiffKey, DefaultMutableTreeNode> myDiffs = CacheBuilder.newBuilder().maximumSize(MAX_DIFFS).build();
+
+  /**
+   * The references of recently viewed sets of dex files, keyed by their content hashes. These keep all the dex files in
+   * memory, so only a few are kept, and only as long as there is no memory pressure.
+   */
+  private final Cache<List<HashCode>, DexReferences> myDexReferences =
+    CacheBuilder.newBuilder().maximumSize(MAX_DEX_REFERENCES).softValues().build();
+
+  @NotNull
+  public static ApkAnalysisCache getInstance() {
+    return ourInstance;
+  }
+
+  /**
+   * Returns an {@link ApkSizeCalculator} that caches the results of {@code delegate} by the contents of the
+   * archive.
+   */
+  @NotNull
+  public ApkSizeCalculator cachingSizeCalculator(@NotNull ApkSizeCalculator delegate) {
+    return new CachingSizeCalculator(delegate);
+  }
+
+  /**
+   * Returns the diff of the archives at {@code oldArchive} and {@code newArchive} computed by {@code computeDiff}, or
+   * the result of a previous diff of archives with the same contents. {@code kind} identifies the kind of diff.
+   *
+   * <p>The returned tree is shared, and must not be modified.
+   */
+  @NotNull
+  public DefaultMutableTreeNode getDiff(@NotNull String kind,
+                                        @NotNull Path oldArchive,
+                                        @NotNull Path newArchive,
+                                        @NotNull Callable<DefaultMutableTreeNode> computeDiff) throws Exception {
+    DiffKey key = new DiffKey(kind, getContentHash(oldArchive), getContentHash(newArchive));
+    try {
+      return myDiffs.get(key, computeDiff);
+    }
+    catch (ExecutionException e) {
+      throw e.getCause() instanceof Exception ? (Exception)e.getCause() : e;
+    }
+  }
+
+  /**
+   * Returns the references between the classes of {@code dexFiles} computed by {@code computeReferences}, or the
+   * result of a previous computation for dex files with the same contents.
+   */
+  @NotNull
+  public DexReferences getDexReferences(@NotNull Path[] dexFiles, @NotNull Callable<DexReferences> computeReferences)
+    throws Exception {
+    ImmutableList.Builder<HashCode> key = ImmutableList.builderWithExpectedSize(dexFiles.length);
+    for (Path dexFile : dexFiles) {
+      key.add(getContentHash(dexFile));
+    }
+    try {
+      return myDexReferences.get(key.build(), computeReferences);
+    }
+    catch (ExecutionException e) {
+      throw e.getCause() instanceof Exception ? (Exception)e.getCause() : e;
+    }
+  }
+
+  /** Removes all cached results. */
+  public void invalidateAll() {
+    myHashes.invalidateAll();
+    mySizes.invalidateAll();
+    myDiffs.invalidateAll();
+    myDexReferences.invalidateAll();
+  }
+
+  @NotNull
+  private HashCode getContentHash(@NotNull Path path) throws IOException {
+    FileStamp stamp = new FileStamp(path.toUri().toString(), Files.size(path), Files.getLastModifiedTime(path).toMillis());
+    try {
+      // Hashing is much cheaper than computing the download size, but still reads the whole file, so concurrent
+      // requests for the same file wait for a single computation.
+      return myHashes.get(stamp, () -> MoreFiles.asByteSource(path).hash(Hashing.murmur3_128()));
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException)e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  @NotNull
+  private ArchiveSizes getSizes(@NotNull ApkSizeCalculator calculator, @NotNull Path archive) {
+    try {
+      ArchiveKey key = new ArchiveKey(calculator.getClass().getName(), getContentHash(archive));
+      return mySizes.get(key, ArchiveSizes::new);
+    }
+    catch (IOException e) {
+      Logger.getInstance(ApkAnalysisCache.class).warn("Unable to hash " + archive, e);
+      // Don't cache anything for an archive that can't be read.
+      return new ArchiveSizes();
+    }
+    catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  private final class CachingSizeCalculator implements ApkSizeCalculator {
+    @NotNull private final ApkSizeCalculator myDelegate;
+
+    private CachingSizeCalculator(@NotNull ApkSizeCalculator delegate) {
+      myDelegate = delegate;
+    }
+
+    @Override
+    public long getFullApkDownloadSize(@NotNull Path apk) {
+      return getSizes(myDelegate, apk).myDownloadSize.get(() -> myDelegate.getFullApkDownloadSize(apk));
+    }
+
+    @Override
+    public long getFullApkRawSize(@NotNull Path apk) {
+      return getSizes(myDelegate, apk).myRawSize.get(() -> myDelegate.getFullApkRawSize(apk));
+    }
+
+    @NotNull
+    @Override
+    public Map<String, Long> getDownloadSizePerFile(@NotNull Path apk) {
+      return getSizes(myDelegate, apk).myDownloadSizePerFile.get(() -> myDelegate.getDownloadSizePerFile(apk));
+    }
+
+    @NotNull
+    @Override
+    public Map<String, Long> getRawSizePerFile(@NotNull Path apk) {
+      return getSizes(myDelegate, apk).myRawSizePerFile.get(() -> myDelegate.getRawSizePerFile(apk));
+    }
+  }
+
+  /** The sizes of an archive. Each size is computed at most once, and different sizes can be computed in parallel. */
+  private static final class ArchiveSizes {
+    private final Slot<Long> myRawSize = new Slot<>();
+    private final Slot<Long> myDownloadSize = new Slot<>();
+    private final Slot<Map<String, Long>> myRawSizePerFile = new Slot<>();
+    private final Slot<Map<String, Long>> myDownloadSizePerFile = new Slot<>();
+  }
+
+  private static final class Slot<T> {
+    @Nullable private T myValue;
+
+    @NotNull
+    synchronized T get(@NotNull Supplier<T> compute) {
+      if (myValue == null) {
+        myValue = compute.get();
+      }
+      return myValue;
+    }
+  }
+
+  private static final class FileStamp {
+    @NotNull private final String myUri;
+    private final long mySize;
+    private final long myLastModified;
+
+    private FileStamp(@NotNull String uri, long size, long lastModified) {
+      myUri = uri;
+      mySize = size;
+      myLastModified = lastModified;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof FileStamp)) return false;
+      FileStamp stamp = (FileStamp)o;
+      return mySize == stamp.mySize && myLastModified == stamp.myLastModified && myUri.equals(stamp.myUri);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myUri, mySize, myLastModified);
+    }
+  }
+
+  private static final class ArchiveKey {
+    @NotNull private final String myCalculator;
+    @NotNull private final HashCode myContentHash;
+
+    private ArchiveKey(@NotNull String calculator, @NotNull HashCode contentHash) {
+      myCalculator = calculator;
+      myContentHash = contentHash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof ArchiveKey)) return false;
+      ArchiveKey key = (ArchiveKey)o;
+      return myCalculator.equals(key.myCalculator) && myContentHash.equals(key.myContentHash);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myCalculator, myContentHash);
+    }
+  }
+
+  private static final class DiffKey {
+    @NotNull private final String myKind;
+    @NotNull private final HashCode myOldContentHash;
+    @NotNull private final HashCode myNewContentHash;
+
+    private DiffKey(@NotNull String kind, @NotNull HashCode oldContentHash, @NotNull HashCode newContentHash) {
+      myKind = kind;
+      myOldContentHash = oldContentHash;
+      myNewContentHash = newContentHash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof DiffKey)) return false;
+      DiffKey key = (DiffKey)o;
+      return myKind.equals(key.myKind) && myOldContentHash.equals(key.myOldContentHash) &&
+             myNewContentHash.equals(key.myNewContentHash);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myKind, myOldContentHash, myNewContentHash);
+    }
+  }
+}
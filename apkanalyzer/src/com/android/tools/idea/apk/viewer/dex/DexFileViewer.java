@@ -27,6 +27,7 @@ import com.android.tools.apk.analyzer.dex.ProguardMappings;
 import com.android.tools.apk.analyzer.dex.tree.DexElementNode;
 import com.android.tools.apk.analyzer.dex.tree.DexPackageNode;
 import com.android.tools.apk.analyzer.internal.ProguardMappingFiles;
+import com.android.tools.idea.apk.viewer.ApkAnalysisCache;
 import com.android.tools.idea.apk.viewer.ApkFileEditorComponent;
 import com.android.tools.proguard.ProguardMap;
 import com.android.tools.proguard.ProguardSeedsMap;
@@ -118,6 +119,7 @@ public class DexFileViewer extends UserDataHolderBase implements ApkFileEditorCo
   @Nullable private ProguardMappings myProguardMappings;
   private boolean myDeobfuscateNames;
   private ListenableFuture<DexReferences> myDexReferences;
+  @Nullable private ListenableFuture<DexBackedDexFile[]> myLoadedDexFiles;
 
   @NotNull public static final NotificationGroup LOGGING_NOTIFICATION =
     NotificationGroup.logOnlyGroup("APK Analyzer (Info)", PluginId.getId("org.jetbrains.android"));
@@ -318,13 +320,13 @@ public class DexFileViewer extends UserDataHolderBase implements ApkFileEditorCo
 
   public void initDex() {
     ListeningExecutorService pooledThreadExecutor = MoreExecutors.listeningDecorator(PooledThreadExecutor.INSTANCE);
-    ListenableFuture<Map<Path, DexBackedDexFile>> dexFileFuture = pooledThreadExecutor.submit(() -> {
+    ListenableFuture<Map<Path, DexBackedDexFile>> dexFileFuture = Futures.transform(loadDexFiles(), files -> {
       Map<Path, DexBackedDexFile> dexFiles = Maps.newHashMapWithExpectedSize(myDexFiles.length);
       for (int i = 0; i < myDexFiles.length; i++) {
-        dexFiles.put(myDexFiles[i], DexFiles.getDexFile(myDexFiles[i]));
+        dexFiles.put(myDexFiles[i], files[i]);
       }
       return dexFiles;
-    });
+    }, MoreExecutors.directExecutor());
 
     ListenableFuture<DexPackageNode> treeNodeFuture =
       Futures.transform(dexFileFuture, new Function<Map<Path, DexBackedDexFile>, DexPackageNode>() {
@@ -489,25 +491,33 @@ public class DexFileViewer extends UserDataHolderBase implements ApkFileEditorCo
   ListenableFuture<DexReferences> getDexReferences() {
     if (myDexReferences == null) {
       ListeningExecutorService pooledThreadExecutor = MoreExecutors.listeningDecorator(PooledThreadExecutor.INSTANCE);
-      ListenableFuture<DexBackedDexFile[]> dexFileFuture = pooledThreadExecutor.submit(() -> {
-        DexBackedDexFile[] files = new DexBackedDexFile[myDexFiles.length];
-        for (int i = 0; i < files.length; i++) {
-          files[i] = DexFiles.getDexFile(myDexFiles[i]);
-        }
-        return files;
-      });
-      myDexReferences = Futures.transform(dexFileFuture, new Function<DexBackedDexFile[], DexReferences>() {
-        @Override
-        public DexReferences apply(@Nullable DexBackedDexFile[] inputs) {
-          assert inputs != null;
-          return new DexReferences(inputs);
-        }
-      }, pooledThreadExecutor);
+      // Building the references scans every instruction of every dex file, so the result is shared with other viewers
+      // of dex files with the same contents.
+      myDexReferences = pooledThreadExecutor.submit(
+        () -> ApkAnalysisCache.getInstance().getDexReferences(myDexFiles, () -> new DexReferences(loadDexFiles().get())));
     }
 
     return myDexReferences;
   }
 
+  /**
+   * Returns the parsed dex files, in the order of {@link #myDexFiles}. The files are parsed in parallel, and only once
+   * per viewer.
+   */
+  @NotNull
+  private synchronized ListenableFuture<DexBackedDexFile[]> loadDexFiles() {
+    if (myLoadedDexFiles == null) {
+      ListeningExecutorService pooledThreadExecutor = MoreExecutors.listeningDecorator(PooledThreadExecutor.INSTANCE);
+      List<ListenableFuture<DexBackedDexFile>> files = new ArrayList<>(myDexFiles.length);
+      for (Path dexFile : myDexFiles) {
+        files.add(pooledThreadExecutor.submit(() -> DexFiles.getDexFile(dexFile)));
+      }
+      myLoadedDexFiles = Futures.transform(Futures.allAsList(files), loaded -> loaded.toArray(new DexBackedDexFile[0]),
+                                           MoreExecutors.directExecutor());
+    }
+    return myLoadedDexFiles;
+  }
+
   private static class DexTreeNodeRenderer extends ColoredTreeCellRenderer {
 
     @Nullable private ProguardMappings myMappings;
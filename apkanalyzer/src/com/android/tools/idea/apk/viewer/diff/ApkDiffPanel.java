@@ -24,6 +24,7 @@ import com.android.tools.apk.analyzer.internal.ApkDiffEntry;
 import com.android.tools.apk.analyzer.internal.ApkDiffParser;
 import com.android.tools.apk.analyzer.internal.ApkEntry;
 import com.android.tools.apk.analyzer.internal.ApkFileByFileDiffParser;
+import com.android.tools.idea.apk.viewer.ApkAnalysisCache;
 import com.android.tools.idea.apk.viewer.ApkViewPanel.FutureCallBackAdapter;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -41,6 +42,7 @@ import com.intellij.util.containers.Convertor;
 import com.intellij.util.ui.JBUI;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
+import java.nio.file.Path;
 import javax.swing.JCheckBox;
 import javax.swing.JComponent;
 import javax.swing.JPanel;
@@ -56,6 +58,7 @@ public class ApkDiffPanel {
 
   private static final ListeningExecutorService ourExecutorService = MoreExecutors.listeningDecorator(PooledThreadExecutor.INSTANCE);
   private ListenableFuture<DefaultMutableTreeNode> myFbfTreeStructureFuture;
+  private ListenableFuture<DefaultMutableTreeNode> myTreeStructureFuture;
 
   private JPanel myContainer;
   private JComponent myColumnTreePane;
@@ -93,10 +96,14 @@ public class ApkDiffPanel {
   private void constructFbfTree(){
     if (myFbfTreeStructureFuture == null) {
       myFbfTreeStructureFuture = ourExecutorService.submit(() -> {
-        try (ArchiveContext archiveContext1 = Archives.open(VfsUtilCore.virtualToIoFile(myOldApk).toPath());
-             ArchiveContext archiveContext2 = Archives.open(VfsUtilCore.virtualToIoFile(myNewApk).toPath())) {
-          return ApkFileByFileDiffParser.createTreeNode(archiveContext1, archiveContext2);
-        }
+        Path oldPath = VfsUtilCore.virtualToIoFile(myOldApk).toPath();
+        Path newPath = VfsUtilCore.virtualToIoFile(myNewApk).toPath();
+        return ApkAnalysisCache.getInstance().getDiff("file-by-file", oldPath, newPath, () -> {
+          try (ArchiveContext archiveContext1 = Archives.open(oldPath);
+               ArchiveContext archiveContext2 = Archives.open(newPath)) {
+            return ApkFileByFileDiffParser.createTreeNode(archiveContext1, archiveContext2);
+          }
+        });
       });
     }
 
@@ -112,12 +119,18 @@ public class ApkDiffPanel {
 
   private void constructDiffTree(){
     // construct the main tree
-    ListenableFuture<DefaultMutableTreeNode> treeStructureFuture = ourExecutorService.submit(() -> {
-      try (ArchiveContext archiveContext1 = Archives.open(VfsUtilCore.virtualToIoFile(myOldApk).toPath());
-           ArchiveContext archiveContext2 = Archives.open(VfsUtilCore.virtualToIoFile(myNewApk).toPath())) {
-        return ApkDiffParser.createTreeNode(archiveContext1, archiveContext2);
-      }
-    });
+    if (myTreeStructureFuture == null) {
+      myTreeStructureFuture = ourExecutorService.submit(() -> {
+        Path oldPath = VfsUtilCore.virtualToIoFile(myOldApk).toPath();
+        Path newPath = VfsUtilCore.virtualToIoFile(myNewApk).toPath();
+        return ApkAnalysisCache.getInstance().getDiff("entries", oldPath, newPath, () -> {
+          try (ArchiveContext archiveContext1 = Archives.open(oldPath);
+               ArchiveContext archiveContext2 = Archives.open(newPath)) {
+            return ApkDiffParser.createTreeNode(archiveContext1, archiveContext2);
+          }
+        });
+      });
+    }
     FutureCallBackAdapter<DefaultMutableTreeNode> setRootNode = new FutureCallBackAdapter<DefaultMutableTreeNode>() {
       @Override
       public void onSuccess(DefaultMutableTreeNode result) {
@@ -125,7 +138,7 @@ public class ApkDiffPanel {
         myCalculateFileByFileCheckBox.setEnabled(true);
       }
     };
-    Futures.addCallback(treeStructureFuture, setRootNode, EdtExecutorService.getInstance());
+    Futures.addCallback(myTreeStructureFuture, setRootNode, EdtExecutorService.getInstance());
   }
 
   private void createUIComponents() {
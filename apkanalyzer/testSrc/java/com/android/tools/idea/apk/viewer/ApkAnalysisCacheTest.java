@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import com.android.testutils.TestResources;
+import com.android.tools.apk.analyzer.ApkSizeCalculator;
+import com.android.tools.apk.analyzer.dex.DexReferences;
+import com.android.tools.apk.analyzer.internal.GzipSizeCalculator;
+import com.android.tools.smali.dexlib2.dexbacked.DexBackedDexFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.tree.DefaultMutableTreeNode;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ApkAnalysisCacheTest {
+  @Rule public TemporaryFolder myTemporaryFolder = new TemporaryFolder();
+
+  private final ApkAnalysisCache myCache = ApkAnalysisCache.getInstance();
+
+  @After
+  public void tearDown() {
+    myCache.invalidateAll();
+  }
+
+  @Test
+  public void sizesAreCachedByContent() throws Exception {
+    Path apk = TestResources.getFile("/test.apk").toPath();
+    Path copy = myTemporaryFolder.getRoot().toPath().resolve("copy.apk");
+    Files.copy(apk, copy);
+    CountingSizeCalculator delegate = new CountingSizeCalculator();
+    ApkSizeCalculator calculator = myCache.cachingSizeCalculator(delegate);
+
+    long downloadSize = calculator.getFullApkDownloadSize(apk);
+    Map<String, Long> rawSizes = calculator.getRawSizePerFile(apk);
+
+    assertEquals(downloadSize, calculator.getFullApkDownloadSize(copy));
+    assertEquals(rawSizes, calculator.getRawSizePerFile(copy));
+    assertEquals(2, delegate.myCalls.get());
+
+    // A different archive is computed separately.
+    Path bundle = TestResources.getFile("/bundle.aab").toPath();
+    calculator.getFullApkDownloadSize(bundle);
+    assertEquals(3, delegate.myCalls.get());
+  }
+
+  @Test
+  public void diffsAreCachedByContent() throws Exception {
+    Path oldApk = TestResources.getFile("/test.apk").toPath();
+    Path newApk = TestResources.getFile("/bundle.zip").toPath();
+    AtomicInteger diffs = new AtomicInteger();
+
+    DefaultMutableTreeNode first = myCache.getDiff("entries", oldApk, newApk, () -> {
+      diffs.incrementAndGet();
+      return new DefaultMutableTreeNode();
+    });
+    DefaultMutableTreeNode second = myCache.getDiff("entries", oldApk, newApk, DefaultMutableTreeNode::new);
+    DefaultMutableTreeNode reversed = myCache.getDiff("entries", newApk, oldApk, DefaultMutableTreeNode::new);
+
+    assertSame(first, second);
+    assertNotSame(first, reversed);
+    assertEquals(1, diffs.get());
+  }
+
+  @Test
+  public void dexReferencesAreCachedByContent() throws Exception {
+    Path dex = TestResources.getFile("/test.apk").toPath();
+    Path copy = myTemporaryFolder.getRoot().toPath().resolve("classes.dex");
+    Files.copy(dex, copy);
+    Path other = TestResources.getFile("/bundle.zip").toPath();
+    AtomicInteger computations = new AtomicInteger();
+    Callable<DexReferences> compute = () -> {
+      computations.incrementAndGet();
+      return new DexReferences(new DexBackedDexFile[0]);
+    };
+
+    DexReferences first = myCache.getDexReferences(new Path[]{dex}, compute);
+    DexReferences second = myCache.getDexReferences(new Path[]{copy}, compute);
+    DexReferences multidex = myCache.getDexReferences(new Path[]{dex, other}, compute);
+
+    assertSame(first, second);
+    assertNotSame(first, multidex);
+    assertEquals(2, computations.get());
+  }
+
+  private static class CountingSizeCalculator implements ApkSizeCalculator {
+    private final ApkSizeCalculator myDelegate = new GzipSizeCalculator();
+    private final AtomicInteger myCalls = new AtomicInteger();
+
+    @Override
+    public long getFullApkDownloadSize(@NotNull Path apk) {
+      myCalls.incrementAndGet();
+      return myDelegate.getFullApkDownloadSize(apk);
+    }
+
+    @Override
+    public long getFullApkRawSize(@NotNull Path apk) {
+      myCalls.incrementAndGet();
+      return myDelegate.getFullApkRawSize(apk);
+    }
+
+    @NotNull
+    @Override
+    public Map<String, Long> getDownloadSizePerFile(@NotNull Path apk) {
+      myCalls.incrementAndGet();
+      return myDelegate.getDownloadSizePerFile(apk);
+    }
+
+    @NotNull
+    @Override
+    public Map<String, Long> getRawSizePerFile(@NotNull Path apk) {
+      myCalls.incrementAndGet();
+      return myDelegate.getRawSizePerFile(apk);
+    }
+  }
+}
@@ -23,6 +23,8 @@ import com.android.tools.idea.concurrency.finallySync
 import com.android.tools.idea.concurrency.transform
 import com.android.tools.idea.concurrency.transformAsync
 import com.android.tools.idea.sqlite.DatabaseInspectorAnalyticsTracker
+import com.android.tools.idea.sqlite.databaseConnection.KeyPagedSqliteResultSet
+import com.android.tools.idea.sqlite.databaseConnection.KeyPosition
 import com.android.tools.idea.sqlite.databaseConnection.SqliteResultSet
 import com.android.tools.idea.sqlite.model.ExportDialogParams
 import com.android.tools.idea.sqlite.model.ExportDialogParams.ExportQueryResultsDialogParams
@@ -55,6 +57,9 @@ import java.util.concurrent.CancellationException
 import java.util.concurrent.Executor
 import kotlin.math.min
 
+/** Maximum number of pages of rows kept by [TableController] in addition to the one in the view. */
+private const val MAX_PREFETCHED_PAGES = 4
+
 /**
  * Controller responsible for displaying data from a SQLite table.
  *
@@ -90,6 +95,25 @@ class TableController(
   /** The list of rows that is currently shown in the view. */
   private var currentRows = emptyList<SqliteRow>()
 
+  /** The offset of [currentRows] in the result set. */
+  private var currentRowsOffset = 0
+
+  /**
+   * Pages adjacent to [currentRows], keyed by row offset, fetched ahead of time when the result set
+   * supports key pagination. See [prefetchAdjacentRows].
+   */
+  private val prefetchedRows =
+    object : LinkedHashMap<Int, List<SqliteRow>>(16, 0.75f, true) {
+      override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Int, List<SqliteRow>>) =
+        size > MAX_PREFETCHED_PAGES
+    }
+
+  /** Incremented when [prefetchedRows] is invalidated, so that pending prefetches are dropped. */
+  private var prefetchGeneration = 0
+
+  /** Set by [TableViewListenerImpl.loadLastRowsInvoked] to fetch the last rows by key. */
+  private var lastPageRowCount: Int? = null
+
   /**
    * Future corresponding to a [refreshData] operation. If the future is done, the refresh operation
    * is over.
@@ -122,6 +146,7 @@ class TableController(
 
   override fun refreshData(): ListenableFuture<Unit> {
     if (!refreshDataFuture.isDone) return refreshDataFuture
+    invalidatePrefetchedRows()
     view.startTableLoading()
     refreshDataFuture = fetchAndDisplayTableData()
     return refreshDataFuture
@@ -130,6 +155,7 @@ class TableController(
   override fun notifyDataMightBeStale() {
     // refresh the table, without showing a loading screen.
     if (liveUpdatesEnabled && refreshDataFuture.isDone) {
+      invalidatePrefetchedRows()
       refreshDataFuture = fetchAndDisplayTableData()
     }
   }
@@ -210,8 +236,8 @@ class TableController(
    * keyboard we don't want to lose the navigation each time the data has to be updated.
    */
   private fun fetchAndDisplayRows(): ListenableFuture<Unit> {
-    return resultSet
-      .getRowBatch(rowOffset, rowBatchSize)
+    val fetchedRowsOffset = rowOffset
+    return fetchRows(fetchedRowsOffset, rowBatchSize)
       .transform(edtExecutor) { newRows ->
         val rowDiffOperations = mutableListOf<RowDiffOperation>()
 
@@ -237,10 +263,104 @@ class TableController(
         view.setEditable(isEditable())
 
         currentRows = newRows
+        currentRowsOffset = fetchedRowsOffset
+        prefetchAdjacentRows()
       }
       .cancelOnDispose(this)
   }
 
+  /**
+   * Returns the rows at [offset], from [prefetchedRows] if available.
+   *
+   * When the result set supports it, rows are fetched relative to the key of the rows in the view,
+   * so that moving to the next or previous page, or to the last page, doesn't make SQLite step
+   * through all the preceding rows.
+   */
+  private fun fetchRows(offset: Int, batchSize: Int): ListenableFuture<List<SqliteRow>> {
+    val lastPageRowCount = lastPageRowCount
+    this.lastPageRowCount = null
+    prefetchedRows[offset]?.let {
+      return Futures.immediateFuture(it)
+    }
+    val resultSet = resultSet
+    val keyColumnName = getKeyColumnName()
+    if (resultSet !is KeyPagedSqliteResultSet || keyColumnName == null) {
+      return resultSet.getRowBatch(offset, batchSize)
+    }
+    if (lastPageRowCount != null) {
+      return resultSet.getRowBatchByKey(keyColumnName, KeyPosition.Last, lastPageRowCount)
+    }
+    val position =
+      getAdjacentKeyPosition(keyColumnName, offset, batchSize) ?: KeyPosition.AtOffset(offset)
+    return resultSet.getRowBatchByKey(keyColumnName, position, batchSize)
+  }
+
+  /**
+   * Fetches the pages before and after [currentRows] into [prefetchedRows], so that they can be
+   * shown without waiting for the device.
+   */
+  private fun prefetchAdjacentRows() {
+    val resultSet = resultSet as? KeyPagedSqliteResultSet ?: return
+    val keyColumnName = getKeyColumnName() ?: return
+    val batchSize = rowBatchSize
+    val generation = prefetchGeneration
+    for (offset in listOf(currentRowsOffset + batchSize, currentRowsOffset - batchSize)) {
+      if (offset < 0 || prefetchedRows.containsKey(offset)) continue
+      val position = getAdjacentKeyPosition(keyColumnName, offset, batchSize) ?: continue
+      resultSet
+        .getRowBatchByKey(keyColumnName, position, batchSize)
+        .cancelOnDispose(this)
+        .addCallback(
+          edtExecutor,
+          success = { rows ->
+            if (rows != null && generation == prefetchGeneration && batchSize == rowBatchSize) {
+              prefetchedRows[offset] = rows
+            }
+          },
+          failure = {}
+        )
+    }
+  }
+
+  /**
+   * Returns the position of the rows at [offset] relative to the keys of [currentRows], or `null`
+   * if the rows are not adjacent to the ones in the view.
+   */
+  private fun getAdjacentKeyPosition(
+    keyColumnName: String,
+    offset: Int,
+    batchSize: Int
+  ): KeyPosition? {
+    if (currentRows.size != batchSize) return null
+    return when (offset) {
+      currentRowsOffset + batchSize ->
+        currentRows.last().getKey(keyColumnName)?.let { KeyPosition.After(it) }
+      currentRowsOffset - batchSize ->
+        currentRows.first().getKey(keyColumnName)?.let { KeyPosition.Before(it) }
+      else -> null
+    }
+  }
+
+  /**
+   * Returns the name of the rowid column of the table, if the rows can be fetched by key. This is
+   * only the case when [resultSet] is a [KeyPagedSqliteResultSet] and the rows are not sorted by a
+   * different column.
+   */
+  private fun getKeyColumnName(): String? {
+    if (orderBy != OrderBy.NotOrdered || resultSet !is KeyPagedSqliteResultSet) return null
+    return tableSupplier()?.rowIdName?.stringName
+  }
+
+  private fun invalidatePrefetchedRows() {
+    prefetchedRows.clear()
+    prefetchGeneration++
+  }
+
+  private fun SqliteRow.getKey(keyColumnName: String): Long? =
+    (values.firstOrNull { it.columnName == keyColumnName }?.value as? SqliteValue.StringValue)
+      ?.value
+      ?.toLongOrNull()
+
   /**
    * Returns a list of [UpdateCell] commands. A command is added to the list if [oldRow] and
    * [newRow] have different values in the same position.
@@ -282,6 +402,7 @@ class TableController(
     override fun toggleOrderByColumnInvoked(viewColumn: ViewColumn) {
       orderBy = orderBy.nextState(viewColumn.name)
 
+      invalidatePrefetchedRows()
       Disposer.dispose(resultSet)
       view.startTableLoading()
 
@@ -330,6 +451,7 @@ class TableController(
         }
 
         rowBatchSize = intRowCount
+        invalidatePrefetchedRows()
         updateDataAndButtonsWithLoadingScreens()
       } catch (e: NumberFormatException) {
         view.reportError(errorMessage, null)
@@ -356,6 +478,8 @@ class TableController(
         rowOffset = (rowCount / rowBatchSize) * rowBatchSize
 
         if (rowOffset == rowCount) rowOffset -= rowBatchSize
+        // The last page may be partial: fetch exactly the rows it contains.
+        lastPageRowCount = (rowCount - rowOffset).takeIf { rowOffset > 0 && it > 0 }
         updateDataAndButtonsWithLoadingScreens()
       }
     }
@@ -15,6 +15,7 @@
  */
 package com.android.tools.idea.sqlite.databaseConnection
 
+import com.android.tools.idea.lang.androidSql.parser.AndroidSqlLexer
 import com.android.tools.idea.sqlite.model.ResultSetSqliteColumn
 import com.android.tools.idea.sqlite.model.SqliteRow
 import com.android.tools.idea.sqlite.model.SqliteStatement
@@ -58,6 +59,63 @@ interface SqliteResultSet : Disposable {
   fun getRowBatch(rowOffset: Int, rowBatchSize: Int): ListenableFuture<List<SqliteRow>>
 }
 
+/** A [SqliteResultSet] that can also seek to its rows by a unique integer key. */
+interface KeyPagedSqliteResultSet : SqliteResultSet {
+  fun SqliteStatement.toSelectByKey(
+    keyColumnName: String,
+    position: KeyPosition,
+    rowBatchSize: Int
+  ) =
+    this.transform(SqliteStatementType.SELECT) {
+      val key = AndroidSqlLexer.getValidName(keyColumnName)
+      when (position) {
+        is KeyPosition.AtOffset ->
+          "SELECT * FROM ($it) ORDER BY $key LIMIT ${position.rowOffset}, $rowBatchSize"
+        is KeyPosition.After ->
+          "SELECT * FROM ($it) WHERE $key > ${position.key} ORDER BY $key LIMIT $rowBatchSize"
+        is KeyPosition.Before ->
+          "SELECT * FROM ($it) WHERE $key < ${position.key} ORDER BY $key DESC LIMIT $rowBatchSize"
+        is KeyPosition.Last -> "SELECT * FROM ($it) ORDER BY $key DESC LIMIT $rowBatchSize"
+      }
+    }
+
+  /**
+   * Returns a list of [SqliteRow]s, ordered by [keyColumnName].
+   *
+   * [keyColumnName] must be a unique integer column of the result set, e.g. the rowid of a table.
+   * Unlike [getRowBatch], which makes SQLite step through all the rows before `rowOffset`, seeking
+   * to a [KeyPosition.After] or [KeyPosition.Before] key uses the key index, so fetching a batch
+   * doesn't get slower the further it is in the result set.
+   *
+   * @param position The position of the returned list of rows
+   * @param rowBatchSize The maximum amount of rows returned. Must be > 0
+   */
+  fun getRowBatchByKey(
+    keyColumnName: String,
+    position: KeyPosition,
+    rowBatchSize: Int
+  ): ListenableFuture<List<SqliteRow>>
+}
+
+/** Position of a batch of rows in a result set ordered by a unique integer key. */
+sealed class KeyPosition {
+  /** The rows starting at [rowOffset]. */
+  data class AtOffset(val rowOffset: Int) : KeyPosition()
+
+  /** The rows following the row with the given [key]. */
+  data class After(val key: Long) : KeyPosition()
+
+  /** The rows preceding the row with the given [key]. */
+  data class Before(val key: Long) : KeyPosition()
+
+  /** The last rows of the result set. */
+  object Last : KeyPosition()
+
+  /** True if the statement returns the rows in descending key order, and they must be reversed. */
+  val isDescending
+    get() = this is Before || this is Last
+}
+
 /** Checks that [rowOffset] is >= 0 and [rowBatchSize] is > 0. */
 internal fun checkOffsetAndSize(rowOffset: Int, rowBatchSize: Int) {
   require(rowOffset >= 0) { "Offset must be >= 0." }
@@ -15,6 +15,8 @@
  */
 package com.android.tools.idea.sqlite.databaseConnection.jdbc
 
+import com.android.tools.idea.sqlite.databaseConnection.KeyPagedSqliteResultSet
+import com.android.tools.idea.sqlite.databaseConnection.KeyPosition
 import com.android.tools.idea.sqlite.databaseConnection.checkOffsetAndSize
 import com.android.tools.idea.sqlite.model.SqliteRow
 import com.android.tools.idea.sqlite.model.SqliteStatement
@@ -26,7 +28,7 @@ class PagedJdbcSqliteResultSet(
   taskExecutor: Executor,
   connection: Connection,
   private val sqliteStatement: SqliteStatement
-) : JdbcSqliteResultSet(taskExecutor, connection, sqliteStatement) {
+) : JdbcSqliteResultSet(taskExecutor, connection, sqliteStatement), KeyPagedSqliteResultSet {
   override val totalRowCount: ListenableFuture<Int>
     get() =
       getRowCount(sqliteStatement.toRowCountStatement()) {
@@ -47,4 +49,22 @@ class PagedJdbcSqliteResultSet(
       rows
     }
   }
+
+  override fun getRowBatchByKey(
+    keyColumnName: String,
+    position: KeyPosition,
+    rowBatchSize: Int
+  ): ListenableFuture<List<SqliteRow>> {
+    checkOffsetAndSize((position as? KeyPosition.AtOffset)?.rowOffset ?: 0, rowBatchSize)
+    return getRowBatch(sqliteStatement.toSelectByKey(keyColumnName, position, rowBatchSize)) {
+      resultSet,
+      columns ->
+      val rows = ArrayList<SqliteRow>()
+      while (resultSet.next()) {
+        rows.add(createCurrentRow(resultSet, columns))
+      }
+      if (position.isDescending) rows.reverse()
+      rows
+    }
+  }
 }
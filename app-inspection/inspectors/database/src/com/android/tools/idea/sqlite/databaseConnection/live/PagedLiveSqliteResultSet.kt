@@ -15,8 +15,11 @@
  */
 package com.android.tools.idea.sqlite.databaseConnection.live
 
+import androidx.sqlite.inspection.SqliteInspectorProtocol.Response
 import com.android.tools.idea.concurrency.transform
 import com.android.tools.idea.sqlite.DatabaseInspectorMessenger
+import com.android.tools.idea.sqlite.databaseConnection.KeyPagedSqliteResultSet
+import com.android.tools.idea.sqlite.databaseConnection.KeyPosition
 import com.android.tools.idea.sqlite.databaseConnection.checkOffsetAndSize
 import com.android.tools.idea.sqlite.model.ResultSetSqliteColumn
 import com.android.tools.idea.sqlite.model.SqliteRow
@@ -29,7 +32,9 @@ class PagedLiveSqliteResultSet(
   messenger: DatabaseInspectorMessenger,
   connectionId: Int,
   private val taskExecutor: Executor
-) : LiveSqliteResultSet(sqliteStatement, messenger, connectionId, taskExecutor) {
+) :
+  LiveSqliteResultSet(sqliteStatement, messenger, connectionId, taskExecutor),
+  KeyPagedSqliteResultSet {
 
   override val columns: ListenableFuture<List<ResultSetSqliteColumn>>
     get() = sendQueryCommand(sqliteStatement.toSelectLimitOffset(0, 1)).mapToColumns(taskExecutor)
@@ -51,15 +56,30 @@ class PagedLiveSqliteResultSet(
         sqliteStatement.toSelectLimitOffset(rowOffset, rowBatchSize),
         responseSizeByteLimitHint
       )
+      .transform(taskExecutor) { response -> response.toSqliteRows() }
+  }
+
+  override fun getRowBatchByKey(
+    keyColumnName: String,
+    position: KeyPosition,
+    rowBatchSize: Int
+  ): ListenableFuture<List<SqliteRow>> {
+    checkOffsetAndSize((position as? KeyPosition.AtOffset)?.rowOffset ?: 0, rowBatchSize)
+    return sendQueryCommand(sqliteStatement.toSelectByKey(keyColumnName, position, rowBatchSize))
       .transform(taskExecutor) { response ->
-        val columnNames = response.query.columnNamesList
-        response.query.rowsList.map {
-          val sqliteColumnValues =
-            it.valuesList.mapIndexed { index, cellValue ->
-              cellValue.toSqliteColumnValue(columnNames[index])
-            }
-          SqliteRow(sqliteColumnValues)
-        }
+        val rows = response.toSqliteRows()
+        if (position.isDescending) rows.asReversed() else rows
       }
   }
+
+  private fun Response.toSqliteRows(): List<SqliteRow> {
+    val columnNames = query.columnNamesList
+    return query.rowsList.map {
+      val sqliteColumnValues =
+        it.valuesList.mapIndexed { index, cellValue ->
+          cellValue.toSqliteColumnValue(columnNames[index])
+        }
+      SqliteRow(sqliteColumnValues)
+    }
+  }
 }
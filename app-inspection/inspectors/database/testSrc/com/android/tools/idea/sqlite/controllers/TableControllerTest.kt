@@ -28,10 +28,12 @@ import com.android.tools.idea.concurrency.pumpEventsAndWaitForFutureException
 import com.android.tools.idea.lang.androidSql.parser.AndroidSqlLexer
 import com.android.tools.idea.sqlite.DatabaseInspectorAnalyticsTracker
 import com.android.tools.idea.sqlite.databaseConnection.DatabaseConnection
+import com.android.tools.idea.sqlite.databaseConnection.KeyPosition
 import com.android.tools.idea.sqlite.databaseConnection.SqliteResultSet
 import com.android.tools.idea.sqlite.databaseConnection.jdbc.selectAllAndRowIdFromTable
 import com.android.tools.idea.sqlite.fileType.SqliteTestUtil
 import com.android.tools.idea.sqlite.mocks.DatabaseConnectionWrapper
+import com.android.tools.idea.sqlite.mocks.FakeKeyPagedSqliteResultSet
 import com.android.tools.idea.sqlite.mocks.FakeSqliteResultSet
 import com.android.tools.idea.sqlite.mocks.FakeTableView
 import com.android.tools.idea.sqlite.mocks.OpenDatabaseRepository
@@ -59,6 +61,7 @@ import com.android.tools.idea.sqlite.utils.toSqliteValues
 import com.android.tools.idea.sqlite.utils.toViewColumn
 import com.android.tools.idea.sqlite.utils.toViewColumns
 import com.android.tools.idea.testing.runDispatching
+import com.google.common.truth.Truth.assertThat
 import com.google.common.util.concurrent.Futures
 import com.google.common.util.concurrent.SettableFuture
 import com.google.wireless.android.sdk.stats.AppInspectionEvent
@@ -105,6 +108,7 @@ class TableControllerTest : LightPlatformTestCase() {
   private lateinit var authorsRow5: SqliteRow
 
   private val sqliteTable = SqliteTable("tableName", emptyList(), null, false)
+  private val rowIdTable = SqliteTable("tableName", emptyList(), RowIdName.ROWID, false)
 
   override fun setUp() {
     super.setUp()
@@ -1409,6 +1413,166 @@ class TableControllerTest : LightPlatformTestCase() {
     assertRowSequence(sqliteResultSet.invocations, expectedInvocations)
   }
 
+  fun `test KeyPagination Next Prev Last`() {
+    // Prepare
+    val sqliteResultSet = FakeKeyPagedSqliteResultSet(50)
+    whenever(mockDatabaseConnection.query(any(SqliteStatement::class.java)))
+      .thenReturn(Futures.immediateFuture(sqliteResultSet))
+    tableController =
+      TableController(
+        project,
+        10,
+        tableView,
+        mockDatabaseConnectionId,
+        { rowIdTable },
+        databaseRepository,
+        SqliteStatement(SqliteStatementType.UNKNOWN, ""),
+        {},
+        {},
+        edtExecutor,
+        edtExecutor
+      )
+    Disposer.register(testRootDisposable, tableController)
+
+    // Act
+    pumpEventsAndWaitForFuture(tableController.setUp())
+    PlatformTestUtil.dispatchAllEventsInIdeEventQueue()
+    tableView.listeners.first().loadNextRowsInvoked()
+    PlatformTestUtil.dispatchAllEventsInIdeEventQueue()
+    tableView.listeners.first().loadPreviousRowsInvoked()
+    PlatformTestUtil.dispatchAllEventsInIdeEventQueue()
+    tableView.listeners.first().loadLastRowsInvoked()
+    PlatformTestUtil.dispatchAllEventsInIdeEventQueue()
+
+    // Assert
+    // The next and previous pages are shown from the pages prefetched relative to the keys of the
+    // rows in the view, and the last page is fetched from the end of the table.
+    assertThat(sqliteResultSet.keyPositions)
+      .containsExactly(
+        KeyPosition.AtOffset(0),
+        KeyPosition.After(9),
+        KeyPosition.After(19),
+        KeyPosition.Before(10),
+        KeyPosition.Last,
+        KeyPosition.After(49),
+        KeyPosition.Before(40)
+      )
+      .inOrder()
+    assertThat(sqliteResultSet.invocations).hasSize(sqliteResultSet.keyPositions.size)
+    assertRowSequence(
+      listOf(sqliteResultSet.invocations[1], sqliteResultSet.invocations[4]),
+      listOf(listOf(10, 19), listOf(40, 49)).map { it.toSqliteValues() }
+    )
+
+    orderVerifier.verify(tableView).setRowOffset(0)
+    orderVerifier.verify(tableView).setRowOffset(10)
+    orderVerifier.verify(tableView).setRowOffset(0)
+    orderVerifier.verify(tableView).setRowOffset(40)
+  }
+
+  fun `test KeyPagination Refresh InvalidatesPrefetchedRows`() {
+    // Prepare
+    val sqliteResultSet = FakeKeyPagedSqliteResultSet(50)
+    whenever(mockDatabaseConnection.query(any(SqliteStatement::class.java)))
+      .thenReturn(Futures.immediateFuture(sqliteResultSet))
+    tableController =
+      TableController(
+        project,
+        10,
+        tableView,
+        mockDatabaseConnectionId,
+        { rowIdTable },
+        databaseRepository,
+        SqliteStatement(SqliteStatementType.UNKNOWN, ""),
+        {},
+        {},
+        edtExecutor,
+        edtExecutor
+      )
+    Disposer.register(testRootDisposable, tableController)
+
+    pumpEventsAndWaitForFuture(tableController.setUp())
+    PlatformTestUtil.dispatchAllEventsInIdeEventQueue()
+
+    // Act
+    sqliteResultSet.rows.removeAt(10)
+    pumpEventsAndWaitForFuture(tableController.refreshData())
+    PlatformTestUtil.dispatchAllEventsInIdeEventQueue()
+    tableView.listeners.first().loadNextRowsInvoked()
+    PlatformTestUtil.dispatchAllEventsInIdeEventQueue()
+
+    // Assert
+    // The page prefetched before the refresh is dropped, so the next page is the one fetched after
+    // the refresh, without the deleted row.
+    assertThat(sqliteResultSet.keyPositions)
+      .containsExactly(
+        KeyPosition.AtOffset(0),
+        KeyPosition.After(9),
+        KeyPosition.AtOffset(0),
+        KeyPosition.After(9),
+        KeyPosition.After(20),
+        KeyPosition.Before(11)
+      )
+      .inOrder()
+    assertRowSequence(
+      sqliteResultSet.invocations.take(4),
+      listOf(listOf(0, 9), listOf(10, 19), listOf(0, 9), listOf(11, 20)).map {
+        it.toSqliteValues()
+      }
+    )
+    orderVerifier.verify(tableView).setRowOffset(10)
+  }
+
+  fun `test KeyPagination ChangeBatchSize InvalidatesPrefetchedRows`() {
+    // Prepare
+    val sqliteResultSet = FakeKeyPagedSqliteResultSet(50)
+    whenever(mockDatabaseConnection.query(any(SqliteStatement::class.java)))
+      .thenReturn(Futures.immediateFuture(sqliteResultSet))
+    tableController =
+      TableController(
+        project,
+        10,
+        tableView,
+        mockDatabaseConnectionId,
+        { rowIdTable },
+        databaseRepository,
+        SqliteStatement(SqliteStatementType.UNKNOWN, ""),
+        {},
+        {},
+        edtExecutor,
+        edtExecutor
+      )
+    Disposer.register(testRootDisposable, tableController)
+
+    pumpEventsAndWaitForFuture(tableController.setUp())
+    PlatformTestUtil.dispatchAllEventsInIdeEventQueue()
+
+    // Act
+    tableView.listeners.first().rowCountChanged("5")
+    PlatformTestUtil.dispatchAllEventsInIdeEventQueue()
+    tableView.listeners.first().loadNextRowsInvoked()
+    PlatformTestUtil.dispatchAllEventsInIdeEventQueue()
+
+    // Assert
+    assertThat(sqliteResultSet.keyPositions)
+      .containsExactly(
+        KeyPosition.AtOffset(0),
+        KeyPosition.After(9),
+        KeyPosition.AtOffset(0),
+        KeyPosition.After(4),
+        KeyPosition.After(9),
+        KeyPosition.Before(5)
+      )
+      .inOrder()
+    assertRowSequence(
+      sqliteResultSet.invocations.take(4),
+      listOf(listOf(0, 9), listOf(10, 19), listOf(0, 4), listOf(5, 9)).map {
+        it.toSqliteValues()
+      }
+    )
+    orderVerifier.verify(tableView).setRowOffset(5)
+  }
+
   fun `test InsertAtBeginning Next Prev`() {
     // Prepare
     val sqliteResultSet = FakeSqliteResultSet()
@@ -19,9 +19,12 @@ import com.android.tools.idea.concurrency.FutureCallbackExecutor
 import com.android.tools.idea.concurrency.pumpEventsAndWaitForFuture
 import com.android.tools.idea.concurrency.pumpEventsAndWaitForFutureCancellation
 import com.android.tools.idea.sqlite.databaseConnection.DatabaseConnection
+import com.android.tools.idea.sqlite.databaseConnection.KeyPagedSqliteResultSet
+import com.android.tools.idea.sqlite.databaseConnection.KeyPosition
 import com.android.tools.idea.sqlite.fileType.SqliteTestUtil
 import com.android.tools.idea.sqlite.model.SqliteStatement
 import com.android.tools.idea.sqlite.model.SqliteStatementType
+import com.android.tools.idea.sqlite.model.SqliteValue
 import com.android.tools.idea.sqlite.utils.getJdbcDatabaseConnection
 import com.intellij.openapi.util.Disposer
 import com.intellij.testFramework.LightPlatformTestCase
@@ -161,6 +164,40 @@ class JdbcSqliteResultSetTest : LightPlatformTestCase() {
     assertEquals(10, rowCountAfter)
   }
 
+  fun testGetRowBatchByKey() {
+    // Prepare
+    val customSqliteFile =
+      sqliteUtil.createAdHocSqliteDatabase(
+        createStatement = "CREATE TABLE t1 (c1 INT)",
+        insertStatement = "INSERT INTO t1 (c1) VALUES (1), (2), (3), (4), (5)"
+      )
+    customConnection =
+      pumpEventsAndWaitForFuture(
+        getJdbcDatabaseConnection(
+          testRootDisposable,
+          customSqliteFile,
+          FutureCallbackExecutor.wrap(EdtExecutorService.getInstance())
+        )
+      )
+    val resultSet =
+      pumpEventsAndWaitForFuture(
+        customConnection!!.query(
+          SqliteStatement(SqliteStatementType.SELECT, "SELECT *, rowid as rowid FROM t1")
+        )
+      ) as KeyPagedSqliteResultSet
+    fun getValues(position: KeyPosition, rowBatchSize: Int) =
+      pumpEventsAndWaitForFuture(resultSet.getRowBatchByKey("rowid", position, rowBatchSize)).map {
+        it.values.first().value
+      }
+
+    // Act/Assert
+    assertEquals(values(1, 2), getValues(KeyPosition.AtOffset(0), 2))
+    assertEquals(values(3, 4), getValues(KeyPosition.After(2), 2))
+    assertEquals(values(2, 3), getValues(KeyPosition.Before(4), 2))
+    assertEquals(values(1), getValues(KeyPosition.Before(2), 2))
+    assertEquals(values(4, 5), getValues(KeyPosition.Last, 2))
+  }
+
   fun testDisposeCancelsGetColumns() {
     // Prepare
     val customSqliteFile =
@@ -236,3 +273,5 @@ class JdbcSqliteResultSetTest : LightPlatformTestCase() {
     pumpEventsAndWaitForFutureCancellation(resultSet.getRowBatch(0, 10))
   }
 }
+
+private fun values(vararg values: Int) = values.map { SqliteValue.fromAny(it) }
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.sqlite.mocks
+
+import com.android.tools.idea.sqlite.databaseConnection.KeyPagedSqliteResultSet
+import com.android.tools.idea.sqlite.databaseConnection.KeyPosition
+import com.android.tools.idea.sqlite.databaseConnection.SqliteResultSet
+import com.android.tools.idea.sqlite.model.RowIdName
+import com.android.tools.idea.sqlite.model.SqliteRow
+import com.android.tools.idea.sqlite.model.SqliteValue
+import com.google.common.util.concurrent.Futures
+import com.google.common.util.concurrent.ListenableFuture
+
+/**
+ * A [FakeSqliteResultSet] whose rows can also be fetched by their [RowIdName.ROWID] column, which
+ * holds the index of each row.
+ */
+class FakeKeyPagedSqliteResultSet(
+  size: Int = 100,
+  private val delegate: FakeSqliteResultSet = FakeSqliteResultSet(size)
+) : KeyPagedSqliteResultSet, SqliteResultSet by delegate {
+  val rows
+    get() = delegate.rows
+
+  /** The rows returned by [getRowBatch] and [getRowBatchByKey], in call order. */
+  val invocations
+    get() = delegate.invocations
+
+  /** The positions passed to [getRowBatchByKey], in call order. */
+  val keyPositions = mutableListOf<KeyPosition>()
+
+  override fun getRowBatchByKey(
+    keyColumnName: String,
+    position: KeyPosition,
+    rowBatchSize: Int
+  ): ListenableFuture<List<SqliteRow>> {
+    assert(keyColumnName == RowIdName.ROWID.stringName)
+    assert(rowBatchSize > 0)
+    keyPositions.add(position)
+
+    val batch =
+      when (position) {
+        is KeyPosition.AtOffset -> rows.drop(position.rowOffset).take(rowBatchSize)
+        is KeyPosition.After -> rows.filter { it.key > position.key }.take(rowBatchSize)
+        is KeyPosition.Before -> rows.filter { it.key < position.key }.takeLast(rowBatchSize)
+        is KeyPosition.Last -> rows.takeLast(rowBatchSize)
+      }
+    invocations.add(batch)
+    return Futures.immediateFuture(batch)
+  }
+
+  private val SqliteRow.key: Long
+    get() =
+      (values.first { it.columnName == RowIdName.ROWID.stringName }.value as SqliteValue.StringValue)
+        .value
+        .toLong()
+}
@@ -22,11 +22,11 @@ import com.android.tools.idea.appinspection.inspectors.network.model.analytics.N
 import com.android.tools.idea.appinspection.inspectors.network.model.connections.GrpcData
 import com.android.tools.idea.appinspection.inspectors.network.model.connections.HttpData
 import com.android.tools.idea.flags.StudioFlags
+import com.android.tools.idea.protobuf.ByteString
 import com.intellij.openapi.diagnostic.debug
 import com.intellij.openapi.diagnostic.thisLogger
 import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap
-import java.util.concurrent.CopyOnWriteArrayList
 import java.util.concurrent.TimeUnit.NANOSECONDS
 import kotlin.Boolean
 import kotlin.Long
@@ -56,16 +56,22 @@ import studio.network.inspection.NetworkInspectorProtocol.SpeedEvent
  * Handles [HttpConnectionEvent]s and [SpeedEvent]s
  *
  * 'HttpConnectionEvent's are assembled into [HttpData] objects and 'SpeedEvent's are collected to a
- * list.
+ * [SpeedDataStore]. Large request and response payloads are offloaded to a [PayloadStore] and
+ * only read back by [loadPayloads], for the connection whose details are shown.
  *
  * The functions [handleSpeedEvent] and [handleHttpConnectionEvent] return a [Result] object
  * containing hints to the caller.
  */
-internal class DataHandler(private val usageTracker: NetworkInspectorTracker) {
+internal class DataHandler(
+  private val usageTracker: NetworkInspectorTracker,
+  private val payloadStore: PayloadStore = PayloadStore(),
+) : AutoCloseable {
   private val logger = thisLogger()
 
-  private val speedData = CopyOnWriteArrayList<Event>()
+  private val speedData = SpeedDataStore()
   @GuardedBy("itself") private val httpDataMap = Long2ObjectLinkedOpenHashMap<HttpData>()
+  @GuardedBy("httpDataMap")
+  private val offloadedPayloads = Long2ObjectOpenHashMap<OffloadedPayloads>()
   @GuardedBy("itself") private val grpcDataMap = Long2ObjectLinkedOpenHashMap<GrpcData>()
 
   /**
@@ -124,7 +130,8 @@ internal class DataHandler(private val usageTracker: NetworkInspectorTracker) {
       activeConnections.getValue(id).endNs = event.timestamp
       logger.debug { "Connection ended: id=$id time=${event.timestamp.nanosToSeconds()}" }
     }
-    synchronized(httpDataMap) { httpDataMap[id] = newData }
+    val storedData = offloadPayloads(newData)
+    synchronized(httpDataMap) { httpDataMap[id] = storedData }
     return Result(updateTimeline = true)
   }
 
@@ -172,12 +179,91 @@ internal class DataHandler(private val usageTracker: NetworkInspectorTracker) {
 
   fun getSpeedForRange(range: Range) = speedData.searchRange(range)
 
-  fun getHttpDataForRange(range: Range) =
+  /**
+   * Returns the connections in [range]. Their payloads offloaded to the [payloadStore] are left
+   * out, see [loadPayloads].
+   */
+  fun getHttpDataForRange(range: Range): List<HttpData> =
     synchronized(httpDataMap) { httpDataMap.values.filter { it.intersectsRange(range) } }
 
+  /** Returns [data] with its payloads offloaded to the [payloadStore] read back. */
+  fun loadPayloads(data: HttpData): HttpData {
+    if (data.offloadedRequestPayloadSize == 0 && data.offloadedResponsePayloadSize == 0) {
+      return data
+    }
+    val payloads =
+      synchronized(httpDataMap) { offloadedPayloads[data.id]?.let { it.request to it.response } }
+        ?: return data
+    // Read offloaded payloads outside the lock, so the event handling is not blocked on disk.
+    val request = loadPayload(data.offloadedRequestPayloadSize, payloads.first)
+    val response = loadPayload(data.offloadedResponsePayloadSize, payloads.second)
+    return data.copy(
+      requestPayload = request ?: data.requestPayload,
+      responsePayload = response ?: data.responsePayload,
+      offloadedRequestPayloadSize = if (request != null) 0 else data.offloadedRequestPayloadSize,
+      offloadedResponsePayloadSize = if (response != null) 0 else data.offloadedResponsePayloadSize,
+    )
+  }
+
   fun getGrpcDataForRange(range: Range) =
     synchronized(grpcDataMap) { grpcDataMap.values.filter { it.intersectsRange(range) } }
 
+  override fun close() {
+    payloadStore.close()
+  }
+
+  /**
+   * Moves large payloads of [data] to the [payloadStore], and returns the [HttpData] to keep in
+   * memory.
+   */
+  private fun offloadPayloads(data: HttpData): HttpData {
+    if (data.requestPayload.isEmpty && data.responsePayload.isEmpty) {
+      return data
+    }
+    val request = offloadPayload(data.requestPayload)
+    val response = offloadPayload(data.responsePayload)
+    synchronized(httpDataMap) {
+      val payloads = offloadedPayloads.getOrPut(data.id) { OffloadedPayloads() }
+      // A non-empty payload is a new one, replacing any previously offloaded payload.
+      if (!data.requestPayload.isEmpty) payloads.request = request
+      if (!data.responsePayload.isEmpty) payloads.response = response
+      if (payloads.request == null && payloads.response == null) {
+        offloadedPayloads.remove(data.id)
+      }
+    }
+    return data.copy(
+      requestPayload = if (request != null) ByteString.EMPTY else data.requestPayload,
+      responsePayload = if (response != null) ByteString.EMPTY else data.responsePayload,
+      offloadedRequestPayloadSize =
+        offloadedSize(data.requestPayload, request, data.offloadedRequestPayloadSize),
+      offloadedResponsePayloadSize =
+        offloadedSize(data.responsePayload, response, data.offloadedResponsePayloadSize),
+    )
+  }
+
+  /**
+   * Returns the size of the payload left out of an [HttpData], given its new [payload], the [ref]
+   * it was offloaded to, if any, and the [previousSize] left out.
+   */
+  private fun offloadedSize(payload: ByteString, ref: PayloadStore.PayloadRef?, previousSize: Int) =
+    when {
+      ref != null -> ref.length
+      payload.isEmpty -> previousSize
+      else -> 0
+    }
+
+  private fun offloadPayload(payload: ByteString) =
+    if (payloadStore.shouldOffload(payload)) payloadStore.put(payload) else null
+
+  /**
+   * Returns the payload at [ref] if the [offloadedSize] bytes left out of a connection were
+   * offloaded there, or null. A connection returned earlier by [getHttpDataForRange] is not given
+   * a payload that has replaced its own since.
+   */
+  private fun loadPayload(offloadedSize: Int, ref: PayloadStore.PayloadRef?) =
+    if (ref != null && offloadedSize > 0 && ref.length == offloadedSize) payloadStore.get(ref)
+    else null
+
   private fun shouldUpdateTimeline(event: Event): Boolean {
     val endedConnections = findEndedConnections(event)
     val isActive = hasActiveConnection(event)
@@ -222,6 +308,11 @@ internal class DataHandler(private val usageTracker: NetworkInspectorTracker) {
    */
   class Result(val updateTimeline: Boolean)
 
+  private class OffloadedPayloads {
+    var request: PayloadStore.PayloadRef? = null
+    var response: PayloadStore.PayloadRef? = null
+  }
+
   private data class ActiveConnection(val startNs: Long, var endNs: Long = Long.MAX_VALUE) {
     fun contains(timestampNs: Long) = timestampNs in startNs..endNs
 
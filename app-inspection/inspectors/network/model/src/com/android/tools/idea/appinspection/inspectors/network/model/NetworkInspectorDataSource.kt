@@ -19,10 +19,12 @@ import com.android.tools.adtui.model.Range
 import com.android.tools.idea.appinspection.inspector.api.AppInspectorMessenger
 import com.android.tools.idea.appinspection.inspectors.network.model.analytics.NetworkInspectorTracker
 import com.android.tools.idea.appinspection.inspectors.network.model.connections.ConnectionData
+import com.android.tools.idea.appinspection.inspectors.network.model.connections.HttpData
 import com.android.tools.idea.concurrency.createChildScope
 import com.intellij.util.containers.ContainerUtil
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.job
 import kotlinx.coroutines.launch
 import studio.network.inspection.NetworkInspectorProtocol.Event
 
@@ -33,8 +35,14 @@ import studio.network.inspection.NetworkInspectorProtocol.Event
  * time ranges.
  */
 interface NetworkInspectorDataSource {
+  /**
+   * Returns the connections in [range]. Large payloads may be left out of them, see [loadPayloads].
+   */
   fun queryForConnectionData(range: Range): List<ConnectionData>
 
+  /** Returns [data] with the payloads that [queryForConnectionData] left out. */
+  fun loadPayloads(data: ConnectionData): ConnectionData
+
   fun queryForSpeedData(range: Range): List<Event>
 
   fun addOnExtendTimelineListener(listener: (Long) -> Unit)
@@ -53,6 +61,11 @@ class NetworkInspectorDataSourceImpl(
 
   @Volatile private var isStarted = false
 
+  init {
+    // Deletes the offloaded payloads once the inspector goes away.
+    scope.coroutineContext.job.invokeOnCompletion { dataHandler.close() }
+  }
+
   override fun start() {
     if (isStarted) {
       return
@@ -90,6 +103,9 @@ class NetworkInspectorDataSourceImpl(
       it.requestStartTimeUs
     }
 
+  override fun loadPayloads(data: ConnectionData): ConnectionData =
+    if (data is HttpData) dataHandler.loadPayloads(data) else data
+
   override fun queryForSpeedData(range: Range): List<Event> = dataHandler.getSpeedForRange(range)
 
   private fun notifyTimelineExtended(timestampNs: Long) {
@@ -46,7 +46,7 @@ private val VIEW_LENGTH_US = TimeUnit.SECONDS.toMicros(30)
 /** The model class for `NetworkInspectorView`. */
 class NetworkInspectorModel(
   services: NetworkInspectorServices,
-  dataSource: NetworkInspectorDataSource,
+  private val dataSource: NetworkInspectorDataSource,
   scope: CoroutineScope,
   connectionsModel: ConnectionDataModel = ConnectionDataModelImpl(dataSource),
 ) : AspectModel<NetworkInspectorAspect>() {
@@ -140,6 +140,12 @@ class NetworkInspectorModel(
     return true
   }
 
+  /**
+   * Returns [data] with the payloads left out of the queried connections, to show the details of a
+   * single connection. See [NetworkInspectorDataSource.loadPayloads].
+   */
+  fun loadPayloads(data: ConnectionData): ConnectionData = dataSource.loadPayloads(data)
+
   /**
    * Sets the active interception rule, or clears the previously selected one if given rule is null.
    * Setting a non-null rule will deselect [selectedConnection].
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.appinspection.inspectors.network.model
+
+import com.android.annotations.concurrency.GuardedBy
+import com.android.tools.idea.protobuf.ByteString
+import com.intellij.openapi.diagnostic.thisLogger
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.file.Files
+import java.nio.file.Path
+
+/** Payloads smaller than this are kept in memory. */
+private const val DEFAULT_OFFLOAD_THRESHOLD_BYTES = 32 * 1024
+
+/** Maximum total size of the offloaded payloads kept in memory. */
+private const val DEFAULT_CACHE_SIZE_BYTES = 16L * 1024 * 1024
+
+/**
+ * Disk backed store for large request and response payloads.
+ *
+ * Payloads are appended to a temporary file that lives as long as the store, with a size bounded
+ * LRU cache of the recently read payloads in front of it. The file is deleted by [close].
+ */
+internal open class PayloadStore(
+  private val offloadThresholdBytes: Int = DEFAULT_OFFLOAD_THRESHOLD_BYTES,
+  private val cacheSizeBytes: Long = DEFAULT_CACHE_SIZE_BYTES,
+) : AutoCloseable {
+  private val logger = thisLogger()
+
+  /** Location of a payload in the backing file. */
+  class PayloadRef internal constructor(val offset: Long, val length: Int)
+
+  @GuardedBy("this") private var path: Path? = null
+  @GuardedBy("this") private var file: RandomAccessFile? = null
+  @GuardedBy("this") private var closed = false
+
+  @GuardedBy("this")
+  private val cache = LinkedHashMap<PayloadRef, ByteString>(16, 0.75f, true)
+
+  @GuardedBy("this") private var cachedBytes = 0L
+
+  /** Returns true if [payload] is large enough to be offloaded to disk. */
+  fun shouldOffload(payload: ByteString) = payload.size() >= offloadThresholdBytes
+
+  /**
+   * Writes [payload] to the backing file and returns its location, or null if the payload could
+   * not be written, in which case the caller should keep it in memory.
+   */
+  @Synchronized
+  fun put(payload: ByteString): PayloadRef? {
+    if (closed) {
+      return null
+    }
+    return try {
+      val file = file ?: openFile()
+      val ref = PayloadRef(file.length(), payload.size())
+      file.seek(ref.offset)
+      file.write(payload.toByteArray())
+      ref
+    } catch (e: IOException) {
+      logger.warn("Unable to offload network payload to disk", e)
+      null
+    }
+  }
+
+  /** Returns the payload at [ref], or an empty payload if it could not be read. */
+  @Synchronized
+  open fun get(ref: PayloadRef): ByteString {
+    cache[ref]?.let {
+      return it
+    }
+    val file = file
+    if (file == null || closed) {
+      return ByteString.EMPTY
+    }
+    return try {
+      val bytes = ByteArray(ref.length)
+      file.seek(ref.offset)
+      file.readFully(bytes)
+      ByteString.copyFrom(bytes).also { addToCache(ref, it) }
+    } catch (e: IOException) {
+      logger.warn("Unable to read network payload from disk", e)
+      ByteString.EMPTY
+    }
+  }
+
+  @Synchronized
+  override fun close() {
+    closed = true
+    cache.clear()
+    cachedBytes = 0
+    try {
+      file?.close()
+      path?.let { Files.deleteIfExists(it) }
+    } catch (e: IOException) {
+      logger.warn("Unable to delete network payload file", e)
+    }
+    file = null
+    path = null
+  }
+
+  @GuardedBy("this")
+  private fun openFile(): RandomAccessFile {
+    val path = Files.createTempFile("network-inspector-payloads", ".bin")
+    path.toFile().deleteOnExit()
+    this.path = path
+    return RandomAccessFile(path.toFile(), "rw").also { file = it }
+  }
+
+  @GuardedBy("this")
+  private fun addToCache(ref: PayloadRef, payload: ByteString) {
+    if (payload.size() > cacheSizeBytes) {
+      return
+    }
+    cache[ref] = payload
+    cachedBytes += payload.size()
+    val iterator = cache.values.iterator()
+    while (cachedBytes > cacheSizeBytes && iterator.hasNext()) {
+      cachedBytes -= iterator.next().size()
+      iterator.remove()
+    }
+  }
+}
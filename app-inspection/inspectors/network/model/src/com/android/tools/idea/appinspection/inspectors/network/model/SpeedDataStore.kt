@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.appinspection.inspectors.network.model
+
+import com.android.tools.adtui.model.Range
+import java.util.concurrent.TimeUnit.MICROSECONDS
+import studio.network.inspection.NetworkInspectorProtocol.Event
+import studio.network.inspection.NetworkInspectorProtocol.SpeedEvent
+
+private const val DEFAULT_CHUNK_SIZE = 4096
+
+/**
+ * Append-only store of [SpeedEvent]s.
+ *
+ * Samples are kept as primitive columns (timestamp, rx, tx) in fixed size chunks, so appending
+ * never copies existing samples and a sample costs 24 bytes instead of a full [Event].
+ *
+ * Samples are expected to be appended in timestamp order by a single thread. [searchRange] can be
+ * called concurrently from any thread: a sample becomes visible to readers once [size] is updated.
+ */
+internal class SpeedDataStore(private val chunkSize: Int = DEFAULT_CHUNK_SIZE) {
+  private class Chunk(size: Int) {
+    val timestamps = LongArray(size)
+    val rxSpeeds = LongArray(size)
+    val txSpeeds = LongArray(size)
+  }
+
+  @Volatile private var chunks = arrayOfNulls<Chunk>(16)
+
+  @Volatile
+  var size = 0
+    private set
+
+  fun add(event: Event) {
+    val index = size
+    val chunkIndex = index / chunkSize
+    var chunks = chunks
+    if (chunkIndex == chunks.size) {
+      chunks = chunks.copyOf(chunks.size * 2)
+      this.chunks = chunks
+    }
+    val chunk = chunks[chunkIndex] ?: Chunk(chunkSize).also { chunks[chunkIndex] = it }
+    val offset = index % chunkSize
+    chunk.timestamps[offset] = event.timestamp
+    chunk.rxSpeeds[offset] = event.speedEvent.rxSpeed
+    chunk.txSpeeds[offset] = event.speedEvent.txSpeed
+    // Publish the sample to readers.
+    size = index + 1
+  }
+
+  /**
+   * Return all events that fall within [range] inclusive.
+   *
+   * This function is designed to be fast (logN + number of results) because it gets called
+   * frequently by the frontend.
+   */
+  fun searchRange(range: Range): List<Event> {
+    // Read the size before the chunks: all the chunks holding the first `size` samples are then
+    // guaranteed to be visible.
+    val size = size
+    val chunks = chunks
+    val min = MICROSECONDS.toNanos(range.min.toLong())
+    val max = MICROSECONDS.toNanos(range.max.toLong())
+    val startIndex = findFirstIndexAfter(chunks, size) { it >= min }
+    val endIndex = findFirstIndexAfter(chunks, size) { it > max }
+    if (startIndex >= endIndex) {
+      return emptyList()
+    }
+    return (startIndex until endIndex).map { index ->
+      val chunk = chunks[index / chunkSize]!!
+      val offset = index % chunkSize
+      Event.newBuilder()
+        .setTimestamp(chunk.timestamps[offset])
+        .setSpeedEvent(
+          SpeedEvent.newBuilder()
+            .setRxSpeed(chunk.rxSpeeds[offset])
+            .setTxSpeed(chunk.txSpeeds[offset])
+        )
+        .build()
+    }
+  }
+
+  /** Find the index of the first sample whose timestamp satisfies [predicate], or [size]. */
+  private inline fun findFirstIndexAfter(
+    chunks: Array<Chunk?>,
+    size: Int,
+    predicate: (Long) -> Boolean
+  ): Int {
+    var low = 0
+    var high = size
+    while (low < high) {
+      val mid = (low + high) ushr 1
+      if (predicate(chunks[mid / chunkSize]!!.timestamps[mid % chunkSize])) {
+        high = mid
+      } else {
+        low = mid + 1
+      }
+    }
+    return low
+  }
+}
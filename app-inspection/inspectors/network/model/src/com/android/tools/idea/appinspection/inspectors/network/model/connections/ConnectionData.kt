@@ -37,12 +37,16 @@ interface ConnectionData {
   val trace: String
   val requestHeaders: Map<String, List<String>>
   val requestPayload: ByteString
+  val requestPayloadSize: Int
+    get() = requestPayload.size()
   val requestType: String
   val requestPayloadText: String
   val status: String
   val error: String
   val responseHeaders: Map<String, List<String>>
   val responsePayload: ByteString
+  val responsePayloadSize: Int
+    get() = responsePayload.size()
   val responseType: String
   val responsePayloadText: String
   val responseTrailers: Map<String, List<String>>
@@ -16,6 +16,7 @@
 package com.android.tools.idea.appinspection.inspectors.network.model.connections
 
 import com.android.tools.adtui.model.Range
+import com.android.tools.idea.appinspection.inspectors.network.model.NetworkInspectorDataSource
 import com.android.tools.idea.protobuf.ByteString
 import com.intellij.util.io.URLUtil
 import java.io.ByteArrayInputStream
@@ -37,6 +38,11 @@ private const val CONTENT_TYPE = "content-type"
  * Data of http url connection. Each [HttpData] object matches a http connection with a unique id,
  * and it includes both request data and response data. Request data is filled immediately when the
  * connection starts. Response data may start empty but filled when connection completes.
+ *
+ * Large payloads are left out of the connections returned by
+ * [NetworkInspectorDataSource.queryForConnectionData]. Their [requestPayload] or [responsePayload]
+ * is then empty, [requestPayloadSize] and [responsePayloadSize] still report the size of the
+ * payloads, and [NetworkInspectorDataSource.loadPayloads] returns them.
  */
 data class HttpData(
   override val id: Long,
@@ -56,6 +62,10 @@ data class HttpData(
   override val responseHeaders: Map<String, List<String>>,
   override val responsePayload: ByteString,
   val responseCode: Int,
+  /** Size of the request payload left out of [requestPayload], or 0 if it is kept there. */
+  internal val offloadedRequestPayloadSize: Int = 0,
+  /** Size of the response payload left out of [responsePayload], or 0 if it is kept there. */
+  internal val offloadedResponsePayloadSize: Int = 0,
 ) : ConnectionData {
   private val uri: URI? = runCatching { URI.create(url) }.getOrNull()
 
@@ -95,6 +105,9 @@ data class HttpData(
   override val requestType: String
     get() = getRequestContentType().mimeType
 
+  override val requestPayloadSize: Int
+    get() = if (requestPayload.isEmpty) offloadedRequestPayloadSize else requestPayload.size()
+
   override val requestPayloadText: String
     get() = "N/A"
 
@@ -107,6 +120,9 @@ data class HttpData(
   override val responseType: String
     get() = getResponseContentType().mimeType
 
+  override val responsePayloadSize: Int
+    get() = if (responsePayload.isEmpty) offloadedResponsePayloadSize else responsePayload.size()
+
   override val responsePayloadText: String
     get() = "N/A"
 
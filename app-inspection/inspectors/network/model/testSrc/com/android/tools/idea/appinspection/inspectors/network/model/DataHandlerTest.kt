@@ -158,6 +158,82 @@ class DataHandlerTest {
     assertThat(handler.getHttpDataForRangeSec(13..14)).containsExactly(data2)
   }
 
+  @Test
+  fun handleHttpConnectionEvent_largePayloadsAreOffloaded() {
+    val handler = DataHandler(StubNetworkInspectorTracker(), PayloadStore(offloadThresholdBytes = 10))
+    val range = Range(9.secondsInMicros, 20.secondsInMicros)
+    val id = 1L
+
+    handler.handleHttpConnectionEvent(
+      httpRequestStarted(id, 10.secondsInNanos),
+      httpRequestPayload(id, 11.secondsInNanos, "a large request payload"),
+      httpResponsePayload(id, 12.secondsInNanos, "small"),
+      httpResponsePayload(id, 13.secondsInNanos, "a large response payload"),
+      httpClosed(id, 14.secondsInNanos, true),
+    )
+
+    val data = handler.getHttpDataForRange(range).single()
+    assertThat(data.requestPayload).isEqualTo(ByteString.EMPTY)
+    assertThat(data.requestPayloadSize).isEqualTo("a large request payload".length)
+    assertThat(data.responsePayload).isEqualTo(ByteString.EMPTY)
+    assertThat(data.responsePayloadSize).isEqualTo("a large response payload".length)
+
+    val loaded = handler.loadPayloads(data)
+    assertThat(loaded.requestPayload).isEqualTo("a large request payload".toByteString())
+    assertThat(loaded.responsePayload).isEqualTo("a large response payload".toByteString())
+    assertThat(loaded.requestPayloadSize).isEqualTo("a large request payload".length)
+    assertThat(loaded.responsePayloadSize).isEqualTo("a large response payload".length)
+
+    handler.close()
+  }
+
+  @Test
+  fun getHttpDataForRange_doesNotReadOffloadedPayloads() {
+    val payloadStore = CountingPayloadStore()
+    val handler = DataHandler(StubNetworkInspectorTracker(), payloadStore)
+    val range = Range(9.secondsInMicros, 20.secondsInMicros)
+
+    for (id in 1L..3L) {
+      handler.handleHttpConnectionEvent(
+        httpRequestStarted(id, 10.secondsInNanos),
+        httpResponsePayload(id, 11.secondsInNanos, "a large response payload $id"),
+        httpClosed(id, 12.secondsInNanos, true),
+      )
+    }
+
+    repeat(3) { assertThat(handler.getHttpDataForRange(range)).hasSize(3) }
+    assertThat(payloadStore.reads).isEqualTo(0)
+
+    val data = handler.getHttpDataForRange(range).first { it.id == 2L }
+    assertThat(handler.loadPayloads(data).responsePayload)
+      .isEqualTo("a large response payload 2".toByteString())
+    assertThat(payloadStore.reads).isEqualTo(1)
+
+    handler.close()
+  }
+
+  @Test
+  fun loadPayloads_keepsPayloadsReplacedSince() {
+    val handler = DataHandler(StubNetworkInspectorTracker(), PayloadStore(offloadThresholdBytes = 10))
+    val range = Range(9.secondsInMicros, 20.secondsInMicros)
+    val id = 1L
+
+    handler.handleHttpConnectionEvent(
+      httpRequestStarted(id, 10.secondsInNanos),
+      httpResponsePayload(id, 11.secondsInNanos, "a large response payload"),
+    )
+    val data = handler.getHttpDataForRange(range).single()
+    handler.handleHttpConnectionEvent(
+      httpResponsePayload(id, 12.secondsInNanos, "a longer large response payload")
+    )
+
+    val loaded = handler.loadPayloads(data)
+    assertThat(loaded.responsePayload).isEqualTo(ByteString.EMPTY)
+    assertThat(loaded.responsePayloadSize).isEqualTo("a large response payload".length)
+
+    handler.close()
+  }
+
   @Test
   fun handleSpeedEvent_addSpeedData() {
     val handler = DataHandler(StubNetworkInspectorTracker())
@@ -483,6 +559,17 @@ class DataHandlerTest {
   }
 }
 
+/** A [PayloadStore] counting the payloads read back. */
+private class CountingPayloadStore : PayloadStore(offloadThresholdBytes = 10) {
+  var reads = 0
+    private set
+
+  override fun get(ref: PayloadStore.PayloadRef): ByteString {
+    reads++
+    return super.get(ref)
+  }
+}
+
 private fun DataHandler.getSpeedForRangeSec(range: IntRange) =
   getSpeedForRange(Range(range.first.secondsInMicros, range.last.secondsInMicros))
 
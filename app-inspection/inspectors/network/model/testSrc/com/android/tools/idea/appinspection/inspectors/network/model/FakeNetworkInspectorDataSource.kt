@@ -18,6 +18,7 @@ package com.android.tools.idea.appinspection.inspectors.network.model
 import com.android.tools.adtui.model.Range
 import com.android.tools.idea.appinspection.inspectors.network.model.analytics.StubNetworkInspectorTracker
 import com.android.tools.idea.appinspection.inspectors.network.model.connections.ConnectionData
+import com.android.tools.idea.appinspection.inspectors.network.model.connections.HttpData
 import java.util.concurrent.TimeUnit
 import studio.network.inspection.NetworkInspectorProtocol.Event
 
@@ -37,6 +38,9 @@ class FakeNetworkInspectorDataSource(
   override fun queryForConnectionData(range: Range): List<ConnectionData> =
     dataHandler.getHttpDataForRange(range) + dataHandler.getGrpcDataForRange(range)
 
+  override fun loadPayloads(data: ConnectionData): ConnectionData =
+    if (data is HttpData) dataHandler.loadPayloads(data) else data
+
   override fun queryForSpeedData(range: Range) = speedEventList.filter { it.isInRange(range) }
 
   override fun addOnExtendTimelineListener(listener: (Long) -> Unit) {}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.appinspection.inspectors.network.model
+
+import com.android.tools.adtui.model.Range
+import com.google.common.truth.Truth.assertThat
+import java.util.concurrent.TimeUnit.MICROSECONDS
+import java.util.concurrent.TimeUnit.NANOSECONDS
+import org.junit.Test
+
+/** Tests for [SpeedDataStore] */
+class SpeedDataStoreTest {
+
+  @Test
+  fun searchRange() {
+    // Use a small chunk size so that the searches cross chunk boundaries
+    val store = storeOf(3, 5, 5, 5, 7)
+
+    assertThat(store.searchRange(3..7)).containsExactly(3, 5, 5, 5, 7)
+    assertThat(store.searchRange(5..7)).containsExactly(5, 5, 5, 7)
+    assertThat(store.searchRange(3..5)).containsExactly(3, 5, 5, 5)
+    assertThat(store.searchRange(5..5)).containsExactly(5, 5, 5)
+    assertThat(store.searchRange(4..6)).containsExactly(5, 5, 5)
+    assertThat(store.searchRange(2..8)).containsExactly(3, 5, 5, 5, 7)
+    assertThat(store.searchRange(1..2)).containsExactly()
+    assertThat(store.searchRange(8..9)).containsExactly()
+  }
+
+  @Test
+  fun searchRange_emptyStore() {
+    assertThat(SpeedDataStore().searchRange(0..10)).isEmpty()
+  }
+
+  @Test
+  fun searchRange_restoresSpeeds() {
+    val store = SpeedDataStore(chunkSize = 2)
+    val events = (1..5L).map { speedEvent(MICROSECONDS.toNanos(it), rxSpeed = it * 10, txSpeed = it * 20) }
+    events.forEach { store.add(it) }
+
+    assertThat(store.size).isEqualTo(5)
+    assertThat(store.searchRange(Range(2.0, 4.0))).containsExactlyElementsIn(events.subList(1, 4)).inOrder()
+  }
+}
+
+private fun storeOf(vararg timestamps: Long) =
+  SpeedDataStore(chunkSize = 2).apply {
+    timestamps.forEach { add(speedEvent(MICROSECONDS.toNanos(it))) }
+  }
+
+/** Convenience method that handles Micro <-> Nano & Int <-> Long conversions */
+private fun SpeedDataStore.searchRange(range: IntRange) =
+  searchRange(Range(range.first.toDouble(), range.last.toDouble())).map {
+    NANOSECONDS.toMicros(it.timestamp).toInt()
+  }
@@ -69,12 +69,12 @@ internal enum class ConnectionColumn(
     override fun getCellRenderer(table: JTable, model: NetworkInspectorModel) = simpleRenderer
   },
   REQUEST_SIZE("Request Size", 0.05, java.lang.Integer::class.java, visible = false) {
-    override fun getValueFrom(data: ConnectionData) = data.requestPayload.size()
+    override fun getValueFrom(data: ConnectionData) = data.requestPayloadSize
 
     override fun getCellRenderer(table: JTable, model: NetworkInspectorModel) = sizeRenderer
   },
   SIZE("Size", 0.05, java.lang.Integer::class.java, visible = true) {
-    override fun getValueFrom(data: ConnectionData) = data.responsePayload.size()
+    override fun getValueFrom(data: ConnectionData) = data.responsePayloadSize
 
     override fun getCellRenderer(table: JTable, model: NetworkInspectorModel) = sizeRenderer
   },
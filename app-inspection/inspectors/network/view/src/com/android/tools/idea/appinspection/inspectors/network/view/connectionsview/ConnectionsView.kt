@@ -129,7 +129,7 @@ class ConnectionsView(private val model: NetworkInspectorModel) : AspectObserver
       return
     }
     val connectionData = e.getConnectionData() ?: return
-    val actions = connectionData.getActions()
+    val actions = connectionData.getActions(model)
     if (actions.isEmpty()) {
       return
     }
@@ -166,12 +166,12 @@ class ConnectionsView(private val model: NetworkInspectorModel) : AspectObserver
   }
 }
 
-private fun ConnectionData.getActions(): List<AnAction> {
+private fun ConnectionData.getActions(model: NetworkInspectorModel): List<AnAction> {
   val data = this@getActions
   return buildList {
     add(CopyUrlAction(data))
     if (data is HttpData && StudioFlags.NETWORK_INSPECTOR_COPY_AS_CURL.get()) {
-      add(CopyAsCurlAction(data))
+      add(CopyAsCurlAction(data, loadPayloads = { model.loadPayloads(it) as HttpData }))
     }
   }
 }
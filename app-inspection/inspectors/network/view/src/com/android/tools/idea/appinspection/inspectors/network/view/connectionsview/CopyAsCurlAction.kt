@@ -29,6 +29,7 @@ import java.awt.datatransfer.StringSelection
 internal class CopyAsCurlAction(
   data: ConnectionData,
   private val getClipboard: () -> Clipboard = { Toolkit.getDefaultToolkit().systemClipboard },
+  private val loadPayloads: (HttpData) -> HttpData = { it },
 ) : AnAction("Copy as cURL") {
   private val data: HttpData
 
@@ -44,6 +45,8 @@ internal class CopyAsCurlAction(
   }
 
   override fun actionPerformed(e: AnActionEvent) {
+    // The request payload may have been left out of the connection shown in the list.
+    val data = loadPayloads(data)
     val curlCommand = buildString {
       append("curl '${data.url}'")
       if (data.method != "GET") {
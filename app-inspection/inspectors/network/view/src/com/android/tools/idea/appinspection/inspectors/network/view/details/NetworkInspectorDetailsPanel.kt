@@ -69,7 +69,7 @@ internal class NetworkInspectorDetailsPanel(
       NetworkInspectorAspect.SELECTED_CONNECTION
     ) {
       usageTracker.trackConnectionDetailsSelected()
-      model.selectedConnection?.let { setConnectionData(it) }
+      model.selectedConnection?.let { setConnectionData(model.loadPayloads(it)) }
       repaint()
     }
     model.aspect.addDependency(aspectObserver).onChange(NetworkInspectorAspect.SELECTED_RULE) {
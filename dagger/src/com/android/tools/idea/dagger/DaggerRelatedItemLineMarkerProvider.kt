@@ -20,18 +20,21 @@ import com.android.tools.idea.dagger.concepts.AssistedFactoryMethodDaggerElement
 import com.android.tools.idea.dagger.concepts.ConsumerDaggerElementBase
 import com.android.tools.idea.dagger.concepts.DaggerElement
 import com.android.tools.idea.dagger.concepts.getDaggerElement
+import com.android.tools.idea.dagger.index.DaggerIndexCache
 import com.android.tools.idea.dagger.localization.DaggerBundle
 import com.google.wireless.android.sdk.stats.DaggerEditorEvent
 import com.intellij.codeInsight.daemon.GutterIconNavigationHandler
 import com.intellij.codeInsight.daemon.RelatedItemLineMarkerInfo
 import com.intellij.codeInsight.daemon.RelatedItemLineMarkerProvider
 import com.intellij.codeInsight.navigation.getRelatedItemsPopup
+import com.intellij.concurrency.JobLauncher
 import com.intellij.navigation.GotoRelatedItem
 import com.intellij.openapi.components.service
 import com.intellij.openapi.editor.markup.GutterIconRenderer
 import com.intellij.openapi.progress.ProgressManager
 import com.intellij.psi.PsiElement
 import com.intellij.psi.PsiIdentifier
+import com.intellij.psi.PsiNameIdentifierOwner
 import com.intellij.psi.impl.source.tree.LeafPsiElement
 import com.intellij.psi.presentation.java.SymbolPresentationUtil
 import com.intellij.ui.awt.RelativePoint
@@ -61,6 +64,45 @@ class DaggerRelatedItemLineMarkerProvider : RelatedItemLineMarkerProvider() {
 
   override fun isEnabledByDefault(): Boolean = true
 
+  /**
+   * Computes the markers of all the [elements] of a file in parallel. The Dagger elements of a file are usually related to the same
+   * types, so their lookups largely overlap, and are answered once by [DaggerIndexCache].
+   */
+  @WorkerThread
+  override fun collectNavigationMarkers(
+    elements: List<PsiElement>,
+    result: MutableCollection<in RelatedItemLineMarkerInfo<*>>,
+    forNavigation: Boolean
+  ) {
+    if (suppressAndroidPlugin()) return
+
+    // When navigating, elements may not be leaves, see RelatedItemLineMarkerProvider.
+    val navigationElements =
+      if (forNavigation) elements.mapNotNull { (it as? PsiNameIdentifierOwner)?.nameIdentifier }
+      else emptyList()
+    val candidates = (elements + navigationElements).filter { it.canReceiveLineMarker() }.distinct()
+    if (candidates.isEmpty()) return
+    val project = candidates.first().project
+    if (!project.service<DaggerDependencyChecker>().isDaggerPresent()) return
+
+    val markers = arrayOfNulls<Marker>(candidates.size)
+    // Runs in the read action of the caller, and is cancelled with it.
+    JobLauncher.getInstance()
+      .invokeConcurrentlyUnderProgress(
+        candidates.indices.toList(),
+        ProgressManager.getInstance().progressIndicator
+      ) {
+        markers[it] = computeMarker(candidates[it])
+        true
+      }
+
+    val analyticsTracker = project.service<DaggerAnalyticsTracker>()
+    markers.filterNotNull().forEach {
+      analyticsTracker.trackGutterWasDisplayed(it.metricsType, it.elapsedTimeMillis)
+      result.add(it.lineMarkerInfo)
+    }
+  }
+
   @WorkerThread
   override fun collectNavigationMarkers(
     element: PsiElement,
@@ -68,24 +110,40 @@ class DaggerRelatedItemLineMarkerProvider : RelatedItemLineMarkerProvider() {
   ) {
     if (suppressAndroidPlugin()) return
 
+    ProgressManager.checkCanceled()
+    if (!element.project.service<DaggerDependencyChecker>().isDaggerPresent()) return
+    val marker = computeMarker(element) ?: return
+
+    element.project
+      .service<DaggerAnalyticsTracker>()
+      .trackGutterWasDisplayed(marker.metricsType, marker.elapsedTimeMillis)
+    result.add(marker.lineMarkerInfo)
+  }
+
+  private class Marker(
+    val lineMarkerInfo: RelatedItemLineMarkerInfo<PsiElement>,
+    val metricsType: DaggerEditorEvent.ElementType,
+    val elapsedTimeMillis: Long
+  )
+
+  private fun computeMarker(element: PsiElement): Marker? {
     val metricsType: DaggerEditorEvent.ElementType
     val lineMarkerInfo: RelatedItemLineMarkerInfo<PsiElement>
 
     val elapsedTimeMillis = measureTimeMillis {
       ProgressManager.checkCanceled()
-      if (!element.project.service<DaggerDependencyChecker>().isDaggerPresent()) return
 
       // Only leaf elements should be given markers; see `LineMarkerProvider.getLineMarkerInfo` for
       // details.
-      if (!element.canReceiveLineMarker()) return
+      if (!element.canReceiveLineMarker()) return null
 
       // Since element is either an identifier or the `constructor` keyword, its parent is the
       // potential Dagger element.
-      val daggerElement = element.parent.getDaggerElement() ?: return
+      val daggerElement = element.parent.getDaggerElement() ?: return null
       metricsType = daggerElement.metricsElementType
 
       val gotoItems = daggerElement.getGotoItems()
-      if (gotoItems.isEmpty()) return
+      if (gotoItems.isEmpty()) return null
 
       lineMarkerInfo =
         RelatedItemLineMarkerInfo(
@@ -99,10 +157,7 @@ class DaggerRelatedItemLineMarkerProvider : RelatedItemLineMarkerProvider() {
         )
     }
 
-    element.project
-      .service<DaggerAnalyticsTracker>()
-      .trackGutterWasDisplayed(metricsType, elapsedTimeMillis)
-    result.add(lineMarkerInfo)
+    return Marker(lineMarkerInfo, metricsType, elapsedTimeMillis)
   }
 
   companion object {
@@ -17,11 +17,13 @@ package com.android.tools.idea.dagger.concepts
 
 import com.android.tools.idea.AndroidPsiUtils
 import com.android.tools.idea.dagger.index.DaggerIndex
+import com.android.tools.idea.dagger.index.DaggerIndexCache
 import com.android.tools.idea.dagger.index.getIndexKeys
 import com.android.tools.idea.dagger.localization.DaggerBundle
 import com.android.tools.idea.kotlin.psiType
 import com.android.tools.idea.kotlin.toPsiType
 import com.google.wireless.android.sdk.stats.DaggerEditorEvent
+import com.intellij.openapi.components.service
 import com.intellij.psi.PsiClass
 import com.intellij.psi.PsiElement
 import com.intellij.psi.PsiField
@@ -72,10 +74,11 @@ sealed class DaggerElement {
   ): List<DaggerElement> {
     val project = psiElement.project
     val scope = project.projectScope()
+    val indexCache = project.service<DaggerIndexCache>()
 
     return indexKeys
       // Look up the keys in the index
-      .flatMap { DaggerIndex.getValues(it, scope) }
+      .flatMap { indexCache.getValues(it, scope) }
       // Remove types we aren't interested in before resolving
       .filter { indexValue ->
         val daggerElementJavaType = indexValue.dataType.daggerElementType.java
@@ -85,7 +88,7 @@ sealed class DaggerElement {
       // identical values)
       .distinct()
       // Resolve index values
-      .flatMap { it.resolveToDaggerElements(project, scope) }
+      .flatMap { indexCache.resolveToDaggerElements(it, scope) }
       // Ensure there are no duplicate resolved values
       .distinct()
       // Filter out any candidates that are not applicable.
@@ -34,7 +34,7 @@ import org.jetbrains.kotlin.idea.KotlinFileType
 
 class DaggerIndex : FileBasedIndexExtension<String, Set<IndexValue>>() {
   companion object {
-    private val NAME: ID<String, Set<IndexValue>> =
+    internal val NAME: ID<String, Set<IndexValue>> =
       ID.create("com.android.tools.idea.dagger.index.DaggerIndex")
 
     internal fun getValues(key: String, scope: GlobalSearchScope): Set<IndexValue> {
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.dagger.index
+
+import com.android.tools.idea.dagger.concepts.DaggerElement
+import com.intellij.openapi.components.Service
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.ModificationTracker
+import com.intellij.psi.search.GlobalSearchScope
+import com.intellij.psi.util.CachedValueProvider
+import com.intellij.psi.util.CachedValuesManager
+import com.intellij.psi.util.PsiModificationTracker
+import com.intellij.util.indexing.FileBasedIndex
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Caches the values read from [DaggerIndex] and the [DaggerElement]s they resolve to.
+ *
+ * The Dagger elements of a file are often related to the same types, so they look up the same keys and resolve the same values.
+ * Sharing the results between all the lookups answers each of them once, including when the lookups run in parallel. The results
+ * are dropped when the index or any PSI changes.
+ */
+@Service(Service.Level.PROJECT)
+class DaggerIndexCache(private val project: Project) {
+
+  private class Lookups {
+    val values = ConcurrentHashMap<Pair<String, GlobalSearchScope>, Set<IndexValue>>()
+    val resolvedValues = ConcurrentHashMap<Pair<IndexValue, GlobalSearchScope>, List<DaggerElement>>()
+  }
+
+  private val indexModificationTracker = ModificationTracker {
+    FileBasedIndex.getInstance().getIndexModificationStamp(DaggerIndex.NAME, project)
+  }
+
+  private fun lookups(): Lookups =
+    CachedValuesManager.getManager(project).getCachedValue(project) {
+      CachedValueProvider.Result(Lookups(), indexModificationTracker, PsiModificationTracker.MODIFICATION_COUNT)
+    }
+
+  /** Returns the values of [DaggerIndex] for [key] in [scope]. */
+  fun getValues(key: String, scope: GlobalSearchScope): Set<IndexValue> =
+    lookups().values.getOrCompute(key to scope) { DaggerIndex.getValues(key, scope) }
+
+  /** Returns the [DaggerElement]s [value] resolves to in [scope], see [IndexValue.resolveToDaggerElements]. */
+  fun resolveToDaggerElements(value: IndexValue, scope: GlobalSearchScope): List<DaggerElement> =
+    lookups().resolvedValues.getOrCompute(value to scope) { value.resolveToDaggerElements(project, scope) }
+
+  /**
+   * Like [ConcurrentHashMap.computeIfAbsent], but without holding a lock while computing, as index lookups are slow and can be
+   * cancelled. Concurrent computations of the same key are rare and give the same result.
+   */
+  private fun <K : Any, V : Any> ConcurrentHashMap<K, V>.getOrCompute(key: K, compute: () -> V): V =
+    get(key) ?: compute().let { putIfAbsent(key, it) ?: it }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.dagger.index
+
+import com.android.tools.idea.dagger.concepts.InjectedConstructorIndexValue
+import com.android.tools.idea.dagger.concepts.ProviderDaggerElement
+import com.android.tools.idea.testing.AndroidProjectRule
+import com.android.tools.idea.testing.onEdt
+import com.google.common.truth.Truth.assertThat
+import com.intellij.openapi.components.service
+import com.intellij.openapi.project.Project
+import com.intellij.testFramework.RunsInEdt
+import com.intellij.testFramework.fixtures.CodeInsightTestFixture
+import org.jetbrains.kotlin.idea.base.util.projectScope
+import org.jetbrains.kotlin.name.ClassId
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+
+@RunWith(JUnit4::class)
+@RunsInEdt
+class DaggerIndexCacheTest {
+
+  @get:Rule val projectRule = AndroidProjectRule.inMemory().onEdt()
+
+  private val myFixture: CodeInsightTestFixture by lazy { projectRule.fixture }
+  private val myProject: Project by lazy { myFixture.project }
+
+  @Test
+  fun lookupsAreSharedUntilTheIndexChanges() {
+    val indexCache = myProject.service<DaggerIndexCache>()
+    val scope = myProject.projectScope()
+    assertThat(indexCache.getValues("com.example.Foo", scope)).isEmpty()
+
+    myFixture.addFileToProject(
+      "src/com/example/Foo.java",
+      // language=java
+      """
+      package com.example;
+      import javax.inject.Inject;
+
+      public class Foo {
+        @Inject
+        public Foo() {}
+      }
+      """
+        .trimIndent()
+    )
+
+    val values = indexCache.getValues("com.example.Foo", scope)
+    assertThat(values)
+      .containsExactly(InjectedConstructorIndexValue(ClassId.fromString("com/example/Foo")))
+    assertThat(indexCache.getValues("com.example.Foo", scope)).isSameAs(values)
+
+    val resolved = indexCache.resolveToDaggerElements(values.single(), scope)
+    assertThat(resolved.single()).isInstanceOf(ProviderDaggerElement::class.java)
+    assertThat(indexCache.resolveToDaggerElements(values.single(), scope)).isSameAs(resolved)
+  }
+}
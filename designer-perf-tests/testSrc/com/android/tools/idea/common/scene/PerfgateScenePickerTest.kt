@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.common.scene
+
+import com.android.tools.perflogger.Benchmark
+import com.android.tools.perflogger.Metric
+import com.android.tools.perflogger.Metric.MetricSample
+import com.google.common.base.Stopwatch
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import kotlin.random.Random
+
+private const val NUMBER_OF_SAMPLES = 40
+private const val NUMBER_OF_WIDGETS = 5_000
+private const val NUMBER_OF_HOVERS = 2_000
+
+private val benchmark =
+  Benchmark.Builder("DesignTools ScenePicker Benchmark")
+    .setProject("Design Tools")
+    .setDescription("Base line for ScenePicker hit testing (mean) after $NUMBER_OF_SAMPLES samples.")
+    .build()
+
+/**
+ * Adds the hit shapes of [NUMBER_OF_WIDGETS] synthetic widgets laid out in a grid, similar to the ones added by the
+ * constraint layout targets: the widget bounds, its four anchors and a connection to the previous widget.
+ */
+private fun ScenePicker.addSyntheticScene() {
+  addRect(RootObject, 0, 0, 0, 10_000, 10_000)
+  val random = Random(20240101L)
+  var previousX = 0
+  var previousY = 0
+  repeat(NUMBER_OF_WIDGETS) {
+    val x = (it % 70) * 140 + random.nextInt(20)
+    val y = (it / 70) * 140 + random.nextInt(20)
+    val width = 40 + random.nextInt(80)
+    val height = 20 + random.nextInt(80)
+    addRect(it, 0, x, y, x + width, y + height)
+    addCircle(it, 2, x, y + height / 2, 4)
+    addCircle(it, 2, x + width, y + height / 2, 4)
+    addCircle(it, 2, x + width / 2, y, 4)
+    addCircle(it, 2, x + width / 2, y + height, 4)
+    addLine(it, 2, previousX, previousY, x, y + height / 2, 1)
+    previousX = x + width
+    previousY = y + height / 2
+  }
+}
+
+private object RootObject
+
+class PerfgateScenePickerTest {
+  private val hovers =
+    Random(20240102L).let { random -> List(NUMBER_OF_HOVERS) { random.nextInt(10_000) to random.nextInt(10_000) } }
+
+  private fun measure(metricName: String, picker: ScenePicker, operation: () -> Unit) {
+    var rootHits = 0
+    picker.setSelectListener { over, _ -> if (over == RootObject) rootHits++ }
+    val samples = mutableListOf<MetricSample>()
+    repeat(NUMBER_OF_SAMPLES) {
+      val stopWatch = Stopwatch.createStarted()
+      operation()
+      samples.add(MetricSample(System.currentTimeMillis(), stopWatch.elapsed().toMillis()))
+    }
+    // Every location is over the root, so the picker must have found it.
+    assertTrue(rootHits > 0)
+
+    Metric(metricName).apply {
+      addSamples(benchmark, *samples.toTypedArray())
+      commit()
+    }
+  }
+
+  /** Hovers over a scene that does not change, like the [SceneContext.getScenePicker] between two paints. */
+  @Test
+  fun testHoverStaticScene() {
+    val picker = ScenePicker()
+    picker.addSyntheticScene()
+    measure("scene_picker_${NUMBER_OF_WIDGETS}_widgets_hover_time", picker) {
+      hovers.forEach { (x, y) -> picker.find(x, y) }
+    }
+  }
+
+  /** Fills the picker before each hover, like [SceneHitListener.find]. */
+  @Test
+  fun testFillAndHover() {
+    val picker = ScenePicker()
+    measure("scene_picker_${NUMBER_OF_WIDGETS}_widgets_fill_and_hover_time", picker) {
+      hovers.take(NUMBER_OF_HOVERS / 10).forEach { (x, y) ->
+        picker.reset()
+        picker.addSyntheticScene()
+        picker.find(x, y)
+      }
+    }
+  }
+}
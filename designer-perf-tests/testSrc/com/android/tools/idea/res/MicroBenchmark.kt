@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.res
+
+import com.android.tools.perflogger.Benchmark
+import com.android.tools.perflogger.Metric
+import com.android.tools.perflogger.Metric.MetricSample
+import java.lang.management.ManagementFactory
+import java.time.Instant
+
+/**
+ * Runs an operation many times and records, for each sample, the average time and memory allocated by one call of the operation,
+ * similarly to a JMH benchmark in average time mode with the GC profiler.
+ *
+ * The results are committed as [Metric]s of [benchmark], `<name>_time_ns` and, unless disabled, `<name>_allocated_bytes`, so they
+ * are tracked by perfgate across builds like the other benchmarks of this module.
+ */
+internal class MicroBenchmark(
+  private val benchmark: Benchmark,
+  private val warmUpSamples: Int = 5,
+  private val samples: Int = 20,
+  private val operationsPerSample: Int = 50,
+) {
+  private val threadMXBean = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+
+  /**
+   * Measures [operation]. [setUp] is called before every call of [operation] and is not measured. Only the memory allocated by the
+   * calling thread is measured, so [measureAllocations] should be false for operations that do most of their work on other threads.
+   */
+  fun measure(name: String, setUp: () -> Unit = {}, measureAllocations: Boolean = true, operation: () -> Any?) {
+    val threadId = Thread.currentThread().id
+    val timeSamples = mutableListOf<MetricSample>()
+    val allocationSamples = mutableListOf<MetricSample>()
+    repeat(warmUpSamples + samples) { sample ->
+      var elapsedNanos = 0L
+      var allocatedBytes = 0L
+      repeat(operationsPerSample) {
+        setUp()
+        val allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId)
+        val start = System.nanoTime()
+        blackhole = operation()
+        elapsedNanos += System.nanoTime() - start
+        allocatedBytes += threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore
+      }
+      blackhole = null
+      if (sample >= warmUpSamples) {
+        val timestamp = Instant.now().toEpochMilli()
+        timeSamples.add(MetricSample(timestamp, elapsedNanos / operationsPerSample))
+        allocationSamples.add(MetricSample(timestamp, allocatedBytes / operationsPerSample))
+      }
+    }
+    commit("${name}_time_ns", timeSamples)
+    if (measureAllocations) {
+      commit("${name}_allocated_bytes", allocationSamples)
+    }
+  }
+
+  private fun commit(metricName: String, samples: List<MetricSample>) {
+    Metric(metricName).apply {
+      addSamples(benchmark, *samples.toTypedArray())
+      commit()
+    }
+  }
+
+  companion object {
+    /** Keeps the results of the measured operations, so that they can't be optimized away. */
+    @Volatile private var blackhole: Any? = null
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.res
+
+import com.android.SdkConstants
+import com.android.ide.common.rendering.api.ResourceNamespace
+import com.android.ide.common.rendering.api.ResourceReference
+import com.android.resources.ResourceType
+import com.android.test.testutils.TestUtils
+import com.android.tools.idea.configurations.ConfigurationManager
+import com.android.tools.idea.testing.AndroidProjectRule
+import com.android.tools.idea.testing.onEdt
+import com.android.tools.idea.testing.waitForResourceRepositoryUpdates
+import com.android.tools.idea.util.androidFacet
+import com.android.tools.perflogger.Benchmark
+import com.android.tools.res.MultiResourceRepository
+import com.intellij.openapi.command.WriteCommandAction
+import com.intellij.psi.PsiDocumentManager
+import com.intellij.psi.PsiFile
+import com.intellij.testFramework.RunsInEdt
+import com.intellij.testFramework.fixtures.JavaCodeInsightTestFixture
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+
+/**
+ * The number of resources of each type in the synthetic repository. Can be changed with the `resource.benchmark.size` system
+ * property to see how the measured operations scale.
+ */
+private val RESOURCE_COUNT = Integer.getInteger("resource.benchmark.size", 2_000)
+
+/** The number of resources per values file. */
+private const val RESOURCES_PER_FILE = 100
+
+private val benchmark =
+  Benchmark.Builder("DesignTools Resource Repository Benchmark")
+    .setProject("Design Tools")
+    .setDescription(
+      "Base line for resource repository and resolver operations on $RESOURCE_COUNT resources of each type (mean time and " +
+        "allocations per call)."
+    )
+    .build()
+
+/**
+ * Micro-benchmarks of the resource repository and resolver operations used by the editors and the rendering, run on a synthetic
+ * module with [RESOURCE_COUNT] strings, colors and dimensions, in several configurations, and a chain of themes.
+ */
+@RunsInEdt
+class PerfgateResourceRepositoryTest {
+  @get:Rule val projectRule = AndroidProjectRule.withSdk().onEdt()
+
+  private val fixture by lazy {
+    projectRule.fixture.apply {
+      testDataPath = TestUtils.resolveWorkspacePath("tools/adt/idea/android/testData").toString()
+    } as JavaCodeInsightTestFixture
+  }
+  private val facet by lazy { fixture.module.androidFacet!! }
+  private val microBenchmark = MicroBenchmark(benchmark)
+
+  private lateinit var editedFile: PsiFile
+
+  @Before
+  fun setUp() {
+    fixture.copyFileToProject(SdkConstants.FN_ANDROID_MANIFEST_XML, SdkConstants.FN_ANDROID_MANIFEST_XML)
+    for (folder in listOf("values", "values-night", "values-en")) {
+      for (file in 0 until RESOURCE_COUNT / RESOURCES_PER_FILE) {
+        val first = file * RESOURCES_PER_FILE
+        val resources = (first until first + RESOURCES_PER_FILE).joinToString("\n") {
+          """
+          <string name="string_$it">String $it in $folder</string>
+          <color name="color_$it">#${"%06x".format(it)}</color>
+          <dimen name="dimen_$it">${it}dp</dimen>
+          """
+        }
+        val psiFile = fixture.addFileToProject("res/$folder/resources_$file.xml", "<resources>\n$resources\n</resources>")
+        if (folder == "values" && file == 0) {
+          editedFile = psiFile
+        }
+      }
+    }
+    val themes = (0 until 20).joinToString("\n") {
+      val parent = if (it == 0) "android:Theme.Material.Light" else "Theme.Benchmark$it"
+      """
+      <style name="Theme.Benchmark${it + 1}" parent="$parent">
+        <item name="android:colorPrimary">@color/color_$it</item>
+        <item name="android:textColor">@color/color_${it + 1}</item>
+      </style>
+      """
+    }
+    fixture.addFileToProject("res/values/themes.xml", "<resources>\n$themes\n</resources>")
+    fixture.addFileToProject("res/layout/layout.xml", "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"/>")
+    waitForResourceRepositoryUpdates(facet, 30)
+  }
+
+  @Test
+  fun testGetResources() {
+    val repository = StudioResourceRepositoryManager.getAppResources(facet)
+    assertEquals(3 * RESOURCE_COUNT, repository.getResources(ResourceNamespace.RES_AUTO, ResourceType.STRING).size())
+
+    microBenchmark.measure("app_repository_get_resources") {
+      repository.getResources(ResourceNamespace.RES_AUTO, ResourceType.STRING)
+    }
+    microBenchmark.measure(
+      "app_repository_get_resources_uncached",
+      setUp = { (repository as MultiResourceRepository<*>).invalidateCache() }
+    ) {
+      repository.getResources(ResourceNamespace.RES_AUTO, ResourceType.STRING)
+    }
+  }
+
+  @Test
+  fun testGetResourceResolver() {
+    val layout = fixture.findFileInTempDir("res/layout/layout.xml")
+    val configurationManager = ConfigurationManager.getOrCreateInstance(fixture.module)
+    val configuration = configurationManager.getConfiguration(layout)
+    val resolverCache = configurationManager.resolverCache
+    val theme = "@style/Theme.Benchmark20"
+    val getResolver = { resolverCache.getResourceResolver(configuration.target, theme, configuration.fullConfig) }
+    assertNotNull(getResolver().getStyle(ResourceReference.style(ResourceNamespace.RES_AUTO, "Theme.Benchmark20")))
+
+    microBenchmark.measure("resource_resolver_cache_get_resolver", operation = getResolver)
+    microBenchmark.measure("resource_resolver_cache_get_resolver_uncached", setUp = { resolverCache.reset() }, operation = getResolver)
+  }
+
+  @Test
+  fun testIncrementalUpdate() {
+    val repository = StudioResourceRepositoryManager.getModuleResources(facet)
+    val document = PsiDocumentManager.getInstance(fixture.project).getDocument(editedFile)!!
+    var edit = 0
+    // Every edit replaces the character after "String 0", so that the offset of the edit doesn't change.
+    val offset = document.text.indexOf("String 0 in values") + "String 0".length
+    assertTrue(offset >= "String 0".length)
+    WriteCommandAction.runWriteCommandAction(fixture.project) {
+      document.insertString(offset, "x")
+      PsiDocumentManager.getInstance(fixture.project).commitDocument(document)
+    }
+    waitForResourceRepositoryUpdates(facet)
+
+    // Measures the time from the edit of a string value to the update of the repository. The update runs on background threads,
+    // where the allocations are not measured.
+    microBenchmark.measure("resource_folder_repository_incremental_update", measureAllocations = false) {
+      WriteCommandAction.runWriteCommandAction(fixture.project) {
+        document.replaceString(offset, offset + 1, (edit++ % 10).toString())
+        PsiDocumentManager.getInstance(fixture.project).commitDocument(document)
+      }
+      waitForResourceRepositoryUpdates(facet)
+      repository.modificationCount
+    }
+  }
+}
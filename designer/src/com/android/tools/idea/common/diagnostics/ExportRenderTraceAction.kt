@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.common.diagnostics
+
+import com.android.tools.rendering.tracing.RenderTrace
+import com.intellij.openapi.actionSystem.ActionUpdateThread
+import com.intellij.openapi.actionSystem.AnAction
+import com.intellij.openapi.actionSystem.AnActionEvent
+import com.intellij.openapi.fileChooser.FileChooserFactory
+import com.intellij.openapi.fileChooser.FileSaverDescriptor
+import com.intellij.openapi.ui.Messages
+import com.intellij.openapi.util.SystemInfo
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Path
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
+
+/**
+ * Exports the render phases recorded by [RenderTrace] to a JSON trace file that can be opened in
+ * Perfetto (https://ui.perfetto.dev).
+ */
+class ExportRenderTraceAction : AnAction("Export Render Trace...") {
+  override fun getActionUpdateThread() = ActionUpdateThread.BGT
+
+  override fun update(e: AnActionEvent) {
+    e.presentation.isEnabled = e.project != null
+  }
+
+  override fun actionPerformed(e: AnActionEvent) {
+    val project = e.project ?: return
+    // Take the snapshot before the dialog is shown, so the trace contains the renders the user wants to look at.
+    val trace = StringBuilder().also { RenderTrace.writeTrace(it) }.toString()
+
+    val descriptor = FileSaverDescriptor("Export Render Trace", "Save the render trace for Perfetto", "json")
+    var fileName = "render_trace_" + SimpleDateFormat("yyyy.MM.dd_HH.mm", Locale.US).format(Date())
+    // Append extension manually to file name on MacOS because FileSaverDialog does not do it automatically.
+    fileName += if (SystemInfo.isMac) ".json" else ""
+    val result =
+      FileChooserFactory.getInstance().createSaveFileDialog(descriptor, project).save(null as Path?, fileName) ?: return
+    try {
+      Files.writeString(result.file.toPath(), trace)
+    } catch (ex: IOException) {
+      Messages.showErrorDialog(project, "Unable to write ${result.file}: ${ex.message}", "Export Render Trace")
+    }
+  }
+}
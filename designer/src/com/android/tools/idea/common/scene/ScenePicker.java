@@ -20,11 +20,25 @@ import java.util.function.Consumer;
 
 /**
  * This class provides efficient detection of many objects
+ * <p>
+ * When many objects are added, the first {@link #find(int, int)} builds a uniform grid of their bounding rectangles, so
+ * that the following calls only test the objects close to the location, until the picker is modified again.
  */
 public class ScenePicker {
   private final static int MAX_DATA_SIZE = 10;
   private final static int INITAL_OBJECT_STORE = 30;
   private final static double EPSILON = 0.00001;
+  /**
+   * The number of objects under which {@link #find(int, int)} tests all of them, as building the grid would be slower.
+   */
+  private final static int MIN_INDEXED_OBJECTS = 64;
+  /**
+   * Objects covering more grid cells than this, like the root component, are tested on every {@link #find(int, int)}
+   * instead of being added to all the cells they cover.
+   */
+  private final static int MAX_CELLS_PER_OBJECT = 64;
+  private final static int MIN_CELL_SIZE = 8;
+  private final static int MAX_GRID_DIMENSION = 256;
   private double[] mObjectData = new double[100];
   private int mObjectDataUsed = 0;
   private int[] mObjectOffset = new int[INITAL_OBJECT_STORE];
@@ -34,6 +48,19 @@ public class ScenePicker {
   HitElementListener mHitElementListener;
 
   private int mObjectCount = 0;
+
+  // Grid of the bounding rectangles, see buildIndex(). The objects of a cell are in mCellObjects, from
+  // mCellStart[cell] to mCellStart[cell + 1], in the order they were added.
+  private boolean mIndexValid = false;
+  private int mGridX;
+  private int mGridY;
+  private int mCellSize;
+  private int mGridColumns;
+  private int mGridRows;
+  private int[] mCellStart = new int[0];
+  private int[] mCellObjects = new int[0];
+  private int[] mUnindexed = new int[0];
+  private int mUnindexedCount = 0;
   private final static int OBJECT_LINE = 0;
   private final static int OBJECT_CURVE = 1;
   private final static int OBJECT_RECTANGLE = 2;
@@ -67,21 +94,159 @@ public class ScenePicker {
    * @param y location y
    */
   public void find(int x, int y) {
+    if (mObjectCount < MIN_INDEXED_OBJECTS) {
+      for (int i = 0; i < mObjectCount; i++) {
+        find(i, x, y);
+      }
+      return;
+    }
+    if (!mIndexValid) {
+      buildIndex();
+    }
+    int cell = -1;
+    if (mGridColumns > 0 && x >= mGridX && y >= mGridY) {
+      int column = (int)(((long)x - mGridX) / mCellSize);
+      int row = (int)(((long)y - mGridY) / mCellSize);
+      if (column < mGridColumns && row < mGridRows) {
+        cell = row * mGridColumns + column;
+      }
+    }
+    int next = cell < 0 ? 0 : mCellStart[cell];
+    int end = cell < 0 ? 0 : mCellStart[cell + 1];
+    int nextUnindexed = 0;
+    // Merge the objects of the cell with the unindexed ones, so the listener sees them in the order they were added.
+    while (next < end || nextUnindexed < mUnindexedCount) {
+      if (nextUnindexed == mUnindexedCount || (next < end && mCellObjects[next] < mUnindexed[nextUnindexed])) {
+        find(mCellObjects[next++], x, y);
+      }
+      else {
+        find(mUnindexed[nextUnindexed++], x, y);
+      }
+    }
+  }
+
+  private void find(int i, int x, int y) {
+    int p = i * 4;
+    int x1 = mRect[p++];
+    int y1 = mRect[p++];
+    int x2 = mRect[p++];
+    int y2 = mRect[p];
+    if (inRect(x, y, x1, y1, x2, y2)) {
+      SelectionEngine selector = myEngines[mTypes[i]];
+      if (selector.inRange(i, x, y)) {
+        mHitElementListener.over(mObjects[i], selector.distance());
+      }
+    }
+  }
+
+  /**
+   * Builds the grid used by {@link #find(int, int)}. The cells are squares sized so that there are about as many cells
+   * as objects, and each object is added to all the cells its bounding rectangle intersects, or to the unindexed
+   * objects if it intersects too many of them.
+   */
+  private void buildIndex() {
+    int minX = Integer.MAX_VALUE;
+    int minY = Integer.MAX_VALUE;
+    int maxX = Integer.MIN_VALUE;
+    int maxY = Integer.MIN_VALUE;
     for (int i = 0; i < mObjectCount; i++) {
       int p = i * 4;
-      int x1 = mRect[p++];
-      int y1 = mRect[p++];
-      int x2 = mRect[p++];
-      int y2 = mRect[p];
-      if (inRect(x, y, x1, y1, x2, y2)) {
-        SelectionEngine selector = myEngines[mTypes[i]];
-        if (selector.inRange(i, x, y)) {
-          mHitElementListener.over(mObjects[i], selector.distance());
+      if (mRect[p] > mRect[p + 2] || mRect[p + 1] > mRect[p + 3]) {
+        continue; // can never be found
+      }
+      minX = Math.min(minX, mRect[p]);
+      minY = Math.min(minY, mRect[p + 1]);
+      maxX = Math.max(maxX, mRect[p + 2]);
+      maxY = Math.max(maxY, mRect[p + 3]);
+    }
+    mIndexValid = true;
+    mUnindexedCount = 0;
+    if (minX > maxX) {
+      mGridColumns = 0;
+      mGridRows = 0;
+      return;
+    }
+    long width = (long)maxX - minX + 1;
+    long height = (long)maxY - minY + 1;
+    double cellSize = Math.sqrt((double)width * height / mObjectCount);
+    cellSize = Math.max(cellSize, (double)Math.max(width, height) / MAX_GRID_DIMENSION);
+    mCellSize = (int)Math.min(Integer.MAX_VALUE, Math.max(MIN_CELL_SIZE, Math.ceil(cellSize)));
+    mGridX = minX;
+    mGridY = minY;
+    mGridColumns = (int)((width + mCellSize - 1) / mCellSize);
+    mGridRows = (int)((height + mCellSize - 1) / mCellSize);
+
+    int cellCount = mGridColumns * mGridRows;
+    if (mCellStart.length < cellCount + 1) {
+      mCellStart = new int[cellCount + 1];
+    }
+    else {
+      Arrays.fill(mCellStart, 0, cellCount + 1, 0);
+    }
+    if (mUnindexed.length < mObjectCount) {
+      mUnindexed = new int[mObjects.length];
+    }
+
+    // Count the objects of each cell, then place them with a counting sort, which keeps them in order.
+    int total = 0;
+    for (int i = 0; i < mObjectCount; i++) {
+      if (!isIndexed(i)) {
+        continue;
+      }
+      int p = i * 4;
+      for (int row = row(mRect[p + 1]); row <= row(mRect[p + 3]); row++) {
+        for (int column = column(mRect[p]); column <= column(mRect[p + 2]); column++) {
+          mCellStart[row * mGridColumns + column + 1]++;
+          total++;
+        }
+      }
+    }
+    for (int cell = 0; cell < cellCount; cell++) {
+      mCellStart[cell + 1] += mCellStart[cell];
+    }
+    if (mCellObjects.length < total) {
+      mCellObjects = new int[Math.max(total, mCellObjects.length * 2)];
+    }
+    int[] fill = Arrays.copyOf(mCellStart, cellCount);
+    for (int i = 0; i < mObjectCount; i++) {
+      int p = i * 4;
+      if (mRect[p] > mRect[p + 2] || mRect[p + 1] > mRect[p + 3]) {
+        continue;
+      }
+      if (!isIndexed(i)) {
+        mUnindexed[mUnindexedCount++] = i;
+        continue;
+      }
+      for (int row = row(mRect[p + 1]); row <= row(mRect[p + 3]); row++) {
+        for (int column = column(mRect[p]); column <= column(mRect[p + 2]); column++) {
+          mCellObjects[fill[row * mGridColumns + column]++] = i;
         }
       }
     }
   }
 
+  /**
+   * Returns true if the object {@code i} has a valid bounding rectangle intersecting at most
+   * {@link #MAX_CELLS_PER_OBJECT} cells.
+   */
+  private boolean isIndexed(int i) {
+    int p = i * 4;
+    if (mRect[p] > mRect[p + 2] || mRect[p + 1] > mRect[p + 3]) {
+      return false;
+    }
+    long columns = column(mRect[p + 2]) - column(mRect[p]) + 1;
+    long rows = row(mRect[p + 3]) - row(mRect[p + 1]) + 1;
+    return columns * rows <= MAX_CELLS_PER_OBJECT;
+  }
+
+  private int column(int x) {
+    return (int)(((long)x - mGridX) / mCellSize);
+  }
+
+  private int row(int y) {
+    return (int)(((long)y - mGridY) / mCellSize);
+  }
+
   /**
    * set the listener to be notified of the objects in range
    *
@@ -121,6 +286,7 @@ public class ScenePicker {
   public void reset() {
     mObjectCount = 0;
     mObjectDataUsed = 0;
+    mIndexValid = false;
     Arrays.fill(mObjects, null);// delete references
   }
 
@@ -210,6 +376,7 @@ public class ScenePicker {
     protected int mDataOffset;
 
     protected void addRect(int x1, int y1, int x2, int y2) {
+      mIndexValid = false;
       int off = mObjectCount * 4;
       mRect[off++] = x1;
       mRect[off++] = y1;
@@ -90,6 +90,8 @@ import com.android.tools.rendering.RenderService;
 import com.android.tools.rendering.RenderTask;
 import com.android.tools.rendering.api.RenderModelModule;
 import com.android.tools.rendering.imagepool.ImagePool;
+import com.android.tools.rendering.tracing.RenderPhase;
+import com.android.tools.rendering.tracing.RenderTrace;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
@@ -106,6 +108,7 @@ import com.intellij.util.concurrency.EdtExecutorService;
 import com.intellij.util.ui.UIUtil;
 import com.intellij.util.ui.update.Update;
 import java.awt.event.KeyEvent;
+import java.awt.image.BufferedImage;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
@@ -400,6 +403,12 @@ public class LayoutlibSceneManager extends SceneManager implements InteractiveSc
    */
   private boolean myCacheSuccessfulRenderImage = false;
 
+  /**
+   * Image shown until this {@link LayoutlibSceneManager} has a render result with an image, for example the image of a previous render of
+   * the same content.
+   */
+  @Nullable private volatile BufferedImage myPlaceholderImage;
+
   protected static LayoutEditorRenderResult.Trigger getTriggerFromChangeType(@Nullable NlModel.ChangeType changeType) {
     if (changeType == null) {
       return null;
@@ -870,7 +879,9 @@ public class LayoutlibSceneManager extends SceneManager implements InteractiveSc
       return CompletableFuture.completedFuture(null);
     }
 
+    long requestStart = RenderTrace.start();
     CompletableFuture<Void> callback = new CompletableFuture<>();
+    callback.whenComplete((result, exception) -> RenderTrace.end(RenderPhase.REQUEST, requestStart));
     synchronized (myFuturesLock) {
       myPendingFutures.add(callback);
       if (myIsCurrentlyRendering) {
@@ -1100,6 +1111,19 @@ public class LayoutlibSceneManager extends SceneManager implements InteractiveSc
     }
   }
 
+  /**
+   * Sets the image to show until the first render result with an image is available. The placeholder is dropped as soon as such a result
+   * is available.
+   */
+  public void setPlaceholderImage(@Nullable BufferedImage image) {
+    myPlaceholderImage = image;
+  }
+
+  @Nullable
+  public BufferedImage getPlaceholderImage() {
+    return myPlaceholderImage;
+  }
+
   @Nullable
   public RenderResult getRenderResult() {
     myRenderResultLock.readLock().lock();
@@ -1203,16 +1227,25 @@ public class LayoutlibSceneManager extends SceneManager implements InteractiveSc
     myRenderedVersion = resourceNotificationManager.getCurrentVersion(facet, getModel().getFile(), configuration);
 
     RenderService renderService = StudioRenderService.getInstance(getModel().getProject());
-    RenderLogger logger = myLogRenderErrors ? RenderServiceUtilsKt.createHtmlLogger(renderService, project) : renderService.getNopLogger();
+    Supplier<RenderLogger> loggerFactory = myLogRenderErrors
+                                           ? () -> RenderServiceUtilsKt.createHtmlLogger(renderService, project)
+                                           : renderService::getNopLogger;
+    RenderLogger logger = loggerFactory.get();
     RenderModelModule renderModule = createRenderModule(facet);
     RenderService.RenderTaskBuilder renderTaskBuilder = renderService.taskBuilder(renderModule, configuration, logger)
       .withPsiFile(new PsiXmlFile(getModel().getFile()))
       .withLayoutScanner(myLayoutScannerConfig.isLayoutScannerEnabled())
       .withTopic(myRenderingTopic)
       .setUseCustomInflater(myUseCustomInflater);
+    if (StudioFlags.NELE_RENDER_TASK_WARM_POOL.get()) {
+      renderTaskBuilder.useWarmPool(() -> createRenderModule(facet), loggerFactory);
+    }
     return setupRenderTaskBuilder(renderTaskBuilder).build()
       .thenCompose(newTask -> {
         if (newTask != null) {
+          // A task taken from the warm pool reports to its own logger and module
+          RenderLogger taskLogger = newTask.getLogger();
+          RenderModelModule taskModule = newTask.getContext().getModule();
           newTask.setDefaultForegroundColor('#' + ColorUtil.toHex(UIUtil.getLabelForeground()));
           return newTask.inflate().whenComplete((result, inflateException) -> {
             Throwable exception = null;
@@ -1229,13 +1262,13 @@ public class LayoutlibSceneManager extends SceneManager implements InteractiveSc
               if (result == null || !result.getRenderResult().isSuccess()) {
                 // Do not ignore ClassNotFoundException on inflate
                 if (exception instanceof ClassNotFoundException) {
-                  logger.addMessage(RenderProblem.createHtml(ERROR,
-                                                             "Error inflating the preview",
-                                                             renderModule.getProject(),
-                                                             logger.getLinkManager(), exception, ShowFixFactory.INSTANCE));
+                  taskLogger.addMessage(RenderProblem.createHtml(ERROR,
+                                                                 "Error inflating the preview",
+                                                                 taskModule.getProject(),
+                                                                 taskLogger.getLinkManager(), exception, ShowFixFactory.INSTANCE));
                 }
                 else {
-                  logger.error(ILayoutLog.TAG_INFLATE, "Error inflating the preview", exception, null, null);
+                  taskLogger.error(ILayoutLog.TAG_INFLATE, "Error inflating the preview", exception, null, null);
                 }
               }
               Logger.getInstance(LayoutlibSceneManager.class).warn(exception);
@@ -1316,6 +1349,9 @@ public class LayoutlibSceneManager extends SceneManager implements InteractiveSc
         invalidateCachedResponse();
       }
       myRenderResult = result;
+      if (result != null && result.getRenderedImage().isValid()) {
+        myPlaceholderImage = null;
+      }
       return result;
     }
     finally {
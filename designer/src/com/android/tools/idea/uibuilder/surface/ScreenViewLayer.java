@@ -215,6 +215,10 @@ public class ScreenViewLayer extends Layer {
       }
     }
 
+    if (cachedVisibleImage[0] == null && myLastRenderResult == null) {
+      paintPlaceholder(g);
+    }
+
     if (cachedVisibleImage[0] != null) {
       Shape screenShape = myScreenView.getScreenShape();
       if (screenShape != null) {
@@ -233,6 +237,23 @@ public class ScreenViewLayer extends Layer {
     g.dispose();
   }
 
+  /**
+   * Paints the placeholder image of the {@link LayoutlibSceneManager}, if any, scaled to the size of the screen view. Used while there is
+   * no render result to paint.
+   */
+  private void paintPlaceholder(@NotNull Graphics2D g) {
+    BufferedImage placeholder = myScreenView.getSceneManager().getPlaceholderImage();
+    if (placeholder == null) {
+      return;
+    }
+    Graphics2D placeholderGraphics = (Graphics2D)g.create();
+    placeholderGraphics.setRenderingHints(HQ_RENDERING_HINTS);
+    placeholderGraphics.clip(myScreenViewVisibleRect);
+    placeholderGraphics.drawImage(placeholder, myScreenView.getX(), myScreenView.getY(),
+                                  myScreenViewSize.width, myScreenViewSize.height, null);
+    placeholderGraphics.dispose();
+  }
+
   protected void setLastRenderResult(@Nullable RenderResult result) {
     myLastRenderResult = result;
     if (myImageFilter == null || result == null) return;
@@ -23,6 +23,7 @@ import com.android.tools.idea.common.surface.Layer
 import com.android.tools.idea.rendering.StudioRenderService
 import com.android.tools.idea.uibuilder.surface.LAYER_FONT
 import com.android.tools.idea.uibuilder.surface.drawMultilineString
+import com.android.tools.rendering.tracing.RenderTrace
 import com.intellij.openapi.project.Project
 import com.intellij.ui.JBColor
 import com.intellij.util.io.IOUtil.MiB
@@ -35,6 +36,8 @@ import java.util.concurrent.TimeUnit
 private val PCT_FORMAT = DecimalFormat("###.##")
 private val LAST_RENDER_BACKGROUND = Color(0x10, 0x10, 0x10, 0x20)
 
+private const val NANOS_PER_MS = 1_000_000.0
+
 private const val MAX_TIME_BAR_LENGTH = 50
 private const val TIME_BAR_WIDTH = 6
 private const val TIME_BAR_SPACE = 2
@@ -56,7 +59,9 @@ class DiagnosticsLayer(private val diagnosticKey: NlDiagnosticKey, private val p
     val runtime = Runtime.getRuntime()
     val freeMemPct = runtime.freeMemory().toDouble() / runtime.totalMemory() * 100
     val lastRenderMs = diagnostics.lastRenders().takeLast(1).firstOrNull() ?: -1
-    val poolStats = StudioRenderService.getInstance(project).sharedImagePool.stats
+    val renderService = StudioRenderService.getInstance(project)
+    val poolStats = renderService.sharedImagePool.stats
+    val warmPool = renderService.warmPool
 
     val bucketStats =
       poolStats?.bucketStats?.joinToString("\n") {
@@ -67,6 +72,15 @@ class DiagnosticsLayer(private val diagnosticKey: NlDiagnosticKey, private val p
           "hits=${it.bucketHits()} misses=${it.bucketMisses()} wasFull=${it.bucketWasFull()} hadSpace=${it.imageWasReturned()}"
       } ?: ""
 
+    val phaseStats =
+      RenderTrace.percentiles(50, 90, 99).entries.joinToString("\n") { (phase, percentiles) ->
+        " ${phase.displayName.padEnd(14)}" +
+          listOf(50, 90, 99).joinToString(" / ") {
+            PCT_FORMAT.format((percentiles[it] ?: -1) / NANOS_PER_MS)
+          } +
+          "ms"
+      }
+
     return """
       |General
       | Mem avail     ${runtime.freeMemory() / MiB}MB ${PCT_FORMAT.format(freeMemPct)}%
@@ -78,6 +92,12 @@ class DiagnosticsLayer(private val diagnosticKey: NlDiagnosticKey, private val p
       | In use        ${(poolStats?.totalBytesInUse() ?: -1) / MiB}MB
       | Free          ${((poolStats?.totalBytesAllocated() ?: -1) - (poolStats?.totalBytesInUse() ?: 0)) / MiB}MB
       |
+      |Render task pool
+      | Hit rate      ${if (warmPool.hitRate < 0) "-" else PCT_FORMAT.format(warmPool.hitRate * 100)}% (${warmPool.hitCount} hits / ${warmPool.missCount} misses)
+      |
+      |Render phases (50% / 90% / 99%)
+      |${phaseStats}
+      |
       |Buckets
       |${bucketStats}
     """
@@ -19,6 +19,9 @@ import junit.framework.TestCase;
 
 import java.awt.*;
 import java.awt.geom.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
 /**
  * Test ScenePicker
@@ -345,4 +348,65 @@ public class ScenePickerTest extends TestCase {
       scenePicker.find((int)x, (int)y);
     }
   }
+
+  public void testManyObjects() {
+    Random random = new Random(42);
+    List<Rectangle> rectangles = new ArrayList<>();
+    // A large rectangle covering everything, which is not added to the grid.
+    rectangles.add(new Rectangle(0, 0, 2000, 2000));
+    for (int i = 0; i < 1000; i++) {
+      rectangles.add(new Rectangle(random.nextInt(2000), random.nextInt(2000), 1 + random.nextInt(100), 1 + random.nextInt(100)));
+    }
+    rectangles.add(new Rectangle(500, 500, 1000, 1000));
+
+    ScenePicker scenePicker = new ScenePicker();
+    for (int i = 0; i < rectangles.size(); i++) {
+      Rectangle r = rectangles.get(i);
+      scenePicker.addRect(i, 0, r.x, r.y, r.x + r.width, r.y + r.height);
+    }
+    List<Integer> found = new ArrayList<>();
+    scenePicker.setSelectListener((obj, dist) -> found.add((Integer)obj));
+
+    for (int i = 0; i < 1000; i++) {
+      int x = random.nextInt(2200) - 100;
+      int y = random.nextInt(2200) - 100;
+      List<Integer> expected = new ArrayList<>();
+      for (int j = 0; j < rectangles.size(); j++) {
+        Rectangle r = rectangles.get(j);
+        if (x >= r.x && x <= r.x + r.width && y >= r.y && y <= r.y + r.height) {
+          expected.add(j);
+        }
+      }
+      found.clear();
+      scenePicker.find(x, y);
+      assertEquals("find(" + x + ", " + y + ")", expected, found);
+    }
+  }
+
+  public void testManyObjectsAfterModification() {
+    ScenePicker scenePicker = new ScenePicker();
+    for (int i = 0; i < 100; i++) {
+      scenePicker.addRect(i, 0, i * 10, 0, i * 10 + 5, 5);
+    }
+    List<Object> found = new ArrayList<>();
+    scenePicker.setSelectListener((obj, dist) -> found.add(obj));
+
+    scenePicker.find(502, 2);
+    assertEquals(List.of(50), found);
+
+    found.clear();
+    scenePicker.addCircle("circle", 0, 502, 2, 2);
+    scenePicker.find(502, 2);
+    assertEquals(List.of(50, "circle"), found);
+
+    found.clear();
+    scenePicker.reset();
+    for (int i = 0; i < 100; i++) {
+      scenePicker.addRect(i, 0, 0, i * 10, 5, i * 10 + 5);
+    }
+    scenePicker.find(502, 2);
+    assertEquals(List.of(), found);
+    scenePicker.find(2, 502);
+    assertEquals(List.of(50), found);
+  }
 }
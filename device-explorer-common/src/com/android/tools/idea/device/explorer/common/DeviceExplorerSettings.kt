@@ -29,6 +29,8 @@ import com.intellij.util.xmlb.XmlSerializerUtil
 class DeviceExplorerSettings : PersistentStateComponent<DeviceExplorerSettings> {
   var downloadLocation: String = getDefaultDownloadLocation()
   var isPackageFilterActive: Boolean = false
+  /** Maximum number of files transferred concurrently when downloading or uploading directories */
+  var fileTransferParallelism: Int = 4
 
   companion object {
     @JvmStatic
@@ -72,7 +72,10 @@ import kotlinx.coroutines.CancellationException
 import kotlinx.coroutines.CompletableDeferred
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.asCoroutineDispatcher
+import kotlinx.coroutines.coroutineScope
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
 import kotlinx.coroutines.time.withTimeout
 import kotlinx.coroutines.withContext
 import org.jetbrains.annotations.TestOnly
@@ -305,7 +308,6 @@ class DeviceFileExplorerControllerImpl(
 
   @UiThread
   private inner class ViewListener : DeviceExplorerViewListener {
-
     override fun openNodesInEditorInvoked(treeNodes: List<DeviceFileEntryNode>) {
       if (treeNodes.isEmpty()) {
         return
@@ -462,7 +464,8 @@ class DeviceFileExplorerControllerImpl(
       performTransfer: suspend (FileTransferOperationTracker) -> Unit,
       backgroundable: Boolean
     ): FileTransferSummary = withContext(uiThread) {
-      val tracker = FileTransferOperationTracker(view, backgroundable)
+      val parallelism = DeviceExplorerSettings.getInstance().fileTransferParallelism.coerceIn(1, MAX_FILE_TRANSFER_PARALLELISM)
+      val tracker = FileTransferOperationTracker(view, backgroundable, Semaphore(parallelism))
       registerLongRunningOperation(tracker)
       tracker.start()
       tracker.setCalculatingText(0, 0)
@@ -505,6 +508,24 @@ class DeviceFileExplorerControllerImpl(
       tracker.addWorkEstimate(estimate)
     }
 
+    /**
+     * Transfers the given files concurrently, with at most as many transfers in flight as
+     * the [FileTransferOperationTracker.getTransferPermits] of [tracker] allow. Each transfer uses its own sync session with the device,
+     * so this hides the per-file round trips when transferring many small files.
+     */
+    private suspend fun <T> transferFilesConcurrently(
+      tracker: FileTransferOperationTracker,
+      files: List<T>,
+      transfer: suspend (T) -> Unit
+    ) {
+      val permits = tracker.transferPermits
+      coroutineScope {
+        for (file in files) {
+          launch { permits.withPermit { transfer(file) } }
+        }
+      }
+    }
+
     private fun createFileTransferEstimatorProgress(tracker: FileTransferOperationTracker): FileTransferWorkEstimatorProgress {
       return object : FileTransferWorkEstimatorProgress {
         override fun progress(fileCount: Int, directoryCount: Int) {
@@ -569,9 +590,14 @@ class DeviceFileExplorerControllerImpl(
       tracker.summary.addDirectoryCount(1)
       try {
         loadNodeChildren(treeNode)
-        for (node in treeNode.childEntryNodes) {
-          val nodePath = localDirectoryPath.resolve(node.entry.name)
-          downloadSingleNode(node, nodePath, tracker)
+        // Files are downloaded concurrently, then subdirectories are walked one at a time
+        // so that listing them doesn't compete with the transfers.
+        val (directories, files) = treeNode.childEntryNodes.partition { it.entry.isDirectory }
+        transferFilesConcurrently(tracker, files) { node ->
+          downloadSingleFile(node, localDirectoryPath.resolve(node.entry.name), tracker)
+        }
+        for (node in directories) {
+          downloadSingleDirectory(node, localDirectoryPath.resolve(node.entry.name), tracker)
         }
       } catch (t: Throwable) {
         tracker.addProblem(t)
@@ -871,26 +897,16 @@ class DeviceFileExplorerControllerImpl(
       files: List<VirtualFile>,
       tracker: FileTransferOperationTracker
     ) {
-      // Upload each file
-      files.forEach { uploadVirtualFile(parentNode, it, tracker) }
+      // Upload files concurrently, then each directory one at a time
+      val (directories, regularFiles) = files.partition { it.isDirectory }
+      transferFilesConcurrently(tracker, regularFiles) { uploadFile(parentNode, it, tracker) }
+      directories.forEach { uploadDirectory(parentNode, it, tracker) }
 
       // Refresh children nodes
       parentNode.isLoaded = false
       loadNodeChildren(parentNode)
     }
 
-    private suspend fun uploadVirtualFile(
-      treeNode: DeviceFileEntryNode,
-      file: VirtualFile,
-      tracker: FileTransferOperationTracker
-    ) {
-      if (file.isDirectory) {
-        uploadDirectory(treeNode, file, tracker)
-      } else {
-        uploadFile(treeNode, file, tracker)
-      }
-    }
-
     private suspend fun uploadDirectory(
       parentNode: DeviceFileEntryNode,
       file: VirtualFile,
@@ -1500,6 +1516,7 @@ class DeviceFileExplorerControllerImpl(
     private const val DEVICE_EXPLORER_BUSY_MESSAGE = "Device Explorer is busy, please retry later or cancel current operation"
     private val FILE_ENTRY_CREATION_TIMEOUT = Duration.ofMillis(10000)
     private val FILE_ENTRY_DELETION_TIMEOUT = Duration.ofMillis(10000)
+    private const val MAX_FILE_TRANSFER_PARALLELISM = 16
 
     @JvmStatic
     fun getProjectController(project: Project?): DeviceFileExplorerControllerImpl? {
@@ -21,6 +21,7 @@ import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.ExceptionUtil;
 import java.util.Locale;
 import java.util.concurrent.CancellationException;
+import kotlinx.coroutines.sync.Semaphore;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -34,6 +35,7 @@ import org.jetbrains.annotations.NotNull;
 public class FileTransferOperationTracker extends LongRunningOperationTracker {
   private static final int MAX_PATH_DISPLAY_LENGTH = 50;
   @NotNull private final FileTransferSummary mySummary;
+  @NotNull private final Semaphore myTransferPermits;
   private long myFinishedWorkUnits;
   private long myTotalWorkUnits;
   private int myCurrentFileCount;
@@ -41,9 +43,10 @@ public class FileTransferOperationTracker extends LongRunningOperationTracker {
   @SuppressWarnings("unused") private int myCurrentDirectoryCount;
   @SuppressWarnings("unused") private int myTotalDirectoryCount;
 
-  public FileTransferOperationTracker(@NotNull DeviceFileExplorerView view, boolean backgroundable) {
+  public FileTransferOperationTracker(@NotNull DeviceFileExplorerView view, boolean backgroundable, @NotNull Semaphore transferPermits) {
     super(view, backgroundable);
     mySummary = new FileTransferSummary();
+    myTransferPermits = transferPermits;
   }
 
   @NotNull
@@ -51,6 +54,14 @@ public class FileTransferOperationTracker extends LongRunningOperationTracker {
     return mySummary;
   }
 
+  /**
+   * Limits the number of files of this operation that are transferred at the same time.
+   */
+  @NotNull
+  public Semaphore getTransferPermits() {
+    return myTransferPermits;
+  }
+
   @Override
   public void stop() {
     super.stop();
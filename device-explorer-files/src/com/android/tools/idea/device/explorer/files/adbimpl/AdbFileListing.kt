@@ -15,6 +15,7 @@
  */
 package com.android.tools.idea.device.explorer.files.adbimpl
 
+import com.android.adblib.AdbFailResponseException
 import com.android.adblib.ConnectedDevice
 import com.android.ddmlib.FileListingService
 import com.android.tools.idea.adb.AdbShellCommandException
@@ -22,7 +23,10 @@ import com.android.tools.idea.adb.AdbShellCommandsUtil
 import com.android.tools.idea.device.explorer.files.adbimpl.AdbFileListingEntry.EntryKind
 import com.intellij.openapi.diagnostic.thisLogger
 import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import kotlinx.coroutines.withContext
+import java.util.concurrent.ConcurrentHashMap
 import java.util.regex.MatchResult
 
 class AdbFileListing(
@@ -32,6 +36,13 @@ class AdbFileListing(
   private val LOGGER = thisLogger()
   private val myShellCommandsUtil = AdbShellCommandsUtil.create(myDevice)
 
+  /**
+   * Symbolic links of the most recent listing of each directory, keyed by directory path and "run-as" package.
+   * They are resolved together on the first [isDirectoryLinkRunAs] call for one of them, and a new listing of
+   * the same directory replaces the batch along with any result that was not consumed yet.
+   */
+  private val myLinkBatches = ConcurrentHashMap<LinkKey, LinkBatch>()
+
   suspend fun getChildren(parentEntry: AdbFileListingEntry): List<AdbFileListingEntry> {
     return getChildrenRunAs(parentEntry, null)
   }
@@ -50,6 +61,17 @@ class AdbFileListing(
       if (entries.isEmpty() && commandResult.isError) {
         commandResult.throwIfError()
       }
+      // Remember the symbolic links so that they can later be resolved with a single command
+      val links = entries.filter { it.isSymbolicLink }
+      if (entries.isNotEmpty()) {
+        val key = LinkKey(AdbPathUtil.getParentPath(entries[0].fullPath), runAs)
+        if (links.size > 1) {
+          myLinkBatches[key] = LinkBatch(links)
+        }
+        else {
+          myLinkBatches.remove(key)
+        }
+      }
       entries
     }
   }
@@ -104,6 +126,7 @@ class AdbFileListing(
     return if (!entry.isSymbolicLink) {
       false
     } else withContext(dispatcher) {
+      resolveDirectoryLinkFromBatch(entry, runAs)?.let { return@withContext it }
 
       // We simply need to determine whether the referent is a directory or not.
       // We do this by running `ls -ld ${link}/`.  If the referent exists and is a
@@ -128,6 +151,46 @@ class AdbFileListing(
     }
   }
 
+  /**
+   * Returns whether [entry] points to a directory using a single shell command for all the symbolic links of
+   * the last listing of its parent directory, or `null` if the entry is not part of such a listing or the
+   * batched command is not supported by the device.
+   */
+  private suspend fun resolveDirectoryLinkFromBatch(entry: AdbFileListingEntry, runAs: String?): Boolean? {
+    val key = LinkKey(AdbPathUtil.getParentPath(entry.fullPath), runAs)
+    val batch = myLinkBatches[key] ?: return null
+    if (!batch.contains(entry)) {
+      return null
+    }
+    val resolved = batch.resolve(runAs)
+    if (resolved == null) {
+      myLinkBatches.remove(key, batch)
+      return null
+    }
+    val isDirectory = resolved.remove(entry.fullPath) ?: return null
+    if (resolved.isEmpty()) {
+      myLinkBatches.remove(key, batch)
+    }
+    return isDirectory
+  }
+
+  /**
+   * Runs `for f in <links>; do if [ -d "$f/" ]; then echo "$f"; fi; done` and returns the paths of the links
+   * whose referent is an accessible directory.
+   */
+  private suspend fun resolveDirectoryLinks(links: List<AdbFileListingEntry>, runAs: String?): Set<String> {
+    val command = getCommand(runAs, "for f in")
+    links.forEach { command.withText(" ").withEscapedPath(it.fullPath) }
+    command.withText("; do if [ -d \"\$f/\" ]; then echo \"\$f\"; fi; done") //$NON-NLS-1$
+    val commandResult = myShellCommandsUtil.executeCommand(command.build())
+    commandResult.throwIfError()
+    val directories = commandResult.output.filter { it.isNotEmpty() }.toSet()
+    if (!links.map { it.fullPath }.containsAll(directories)) {
+      throw AdbShellCommandException("Unexpected output resolving symbolic links: ${commandResult.output.firstOrNull()}")
+    }
+    return directories
+  }
+
   private suspend fun getCommand(runAs: String?, text: String): AdbShellCommandBuilder {
     val command = AdbShellCommandBuilder()
     if (runAs != null) {
@@ -170,7 +233,47 @@ class AdbFileListing(
       null
     )
   }
+  private data class LinkKey(val path: String, val runAs: String?)
+
+  /** The symbolic links of a single directory listing and, once resolved, whether each of them is a directory. */
+  private inner class LinkBatch(private val links: List<AdbFileListingEntry>) {
+    private val mutex = Mutex()
+    private var resolved: MutableMap<String, Boolean>? = null
+    private var failed = false
+
+    fun contains(entry: AdbFileListingEntry): Boolean = links.any { it.fullPath == entry.fullPath }
+
+    /**
+     * Resolves all the links of the batch the first time it is called, and returns the results that have
+     * not been consumed yet, or `null` if the batched command is not supported by the device.
+     */
+    suspend fun resolve(runAs: String?): MutableMap<String, Boolean>? = mutex.withLock {
+      if (resolved == null && !failed) {
+        try {
+          val result = ConcurrentHashMap<String, Boolean>()
+          for (chunk in links.chunked(MAX_LINKS_PER_COMMAND)) {
+            val directories = resolveDirectoryLinks(chunk, runAs)
+            chunk.forEach { result[it.fullPath] = directories.contains(it.fullPath) }
+          }
+          resolved = result
+        }
+        catch (e: AdbShellCommandException) {
+          LOGGER.debug("Unable to resolve symbolic links in a single command", e)
+          failed = true
+        }
+        catch (e: AdbFailResponseException) {
+          LOGGER.debug("Unable to resolve symbolic links in a single command", e)
+          failed = true
+        }
+      }
+      resolved
+    }
+  }
+
   companion object {
+    /** Upper bound on the number of symbolic links resolved by a single shell command, to keep the command line short. */
+    private const val MAX_LINKS_PER_COMMAND = 64
+
     private val defaultRoot: AdbFileListingEntry = AdbFileListingEntryBuilder().setPath("/").setKind(EntryKind.DIRECTORY).build()
     private val defaultData: AdbFileListingEntry = AdbFileListingEntryBuilder().setPath("/data/data/").setKind(EntryKind.DIRECTORY).build()
   }
@@ -89,6 +89,7 @@ import java.nio.file.Path
 import java.util.Arrays
 import java.util.Collections
 import java.util.Enumeration
+import java.util.Locale
 import java.util.Stack
 import java.util.concurrent.Executor
 import java.util.concurrent.atomic.AtomicReference
@@ -625,6 +626,68 @@ class DeviceFileExplorerControllerTest {
       listOf(myFooFile1, myFooFile2, myFooLink1, myFooDir).map { it.name })
   }
 
+  @Test
+  fun fileSystemTree_ContextMenu_SaveDirectoryAs_LimitsConcurrentTransfers() {
+    // Prepare
+    val manyFiles = myDevice1.root.addDirectory("ManyFiles")
+    for (i in 1..6) {
+      manyFiles.addFile("file$i.txt").size = 2000
+    }
+    val settings = DeviceExplorerSettings.getInstance()
+    val parallelism = settings.fileTransferParallelism
+    settings.fileTransferParallelism = 2
+    Disposer.register(androidProjectRule.testRootDisposable) { settings.fileTransferParallelism = parallelism }
+    createControllerAndVerifyViewInitialState()
+
+    // Act
+    // Select node
+    myMockView.tree.selectionPath = getFileEntryPath(manyFiles)
+    val actionGroup = myMockView.fileTreeActionGroup
+    val action = getActionByText(actionGroup, "Save As...")
+    checkNotNull(action)
+    val e = createContentMenuItemEvent()
+    action.update(e)
+
+    // Prepare
+    // The "Choose file" dialog does not work in headless mode, so we register a custom
+    // component that simply returns the tempFile we created above.
+    val tempDirectory = FileUtil.createTempDirectory("saveAsDir", "")
+    myDevice1.downloadChunkSize = 1000 // download chunks of 1000 bytes at a time
+    myDevice1.downloadChunkIntervalMillis = 10 // wait 10 millis between each 1000 bytes chunk
+    val factory: FileChooserFactoryImpl = object : FileChooserFactoryImpl() {
+      override fun createPathChooser(
+        descriptor: FileChooserDescriptor,
+        project: Project?,
+        parent: Component?
+      ): PathChooserDialog {
+        return PathChooserDialog { toSelect: VirtualFile?, callback: Consumer<in List<VirtualFile?>> ->
+          callback.consume(listOf(VirtualFileWrapper(tempDirectory).virtualFile))
+        }
+      }
+    }
+    ApplicationManager.getApplication().replaceService(
+      FileChooserFactory::class.java, factory, androidProjectRule.testRootDisposable)
+
+    // Act
+    myMockView.startTreeBusyIndicatorTacker.clear()
+    myMockView.stopTreeBusyIndicatorTacker.clear()
+    myMockView.reportMessageRelatedToNodeTracker.clear()
+    action.actionPerformed(e)
+
+    // Assert
+    pumpEventsAndWaitForFuture(myMockView.startTreeBusyIndicatorTacker.consume())
+    pumpEventsAndWaitForFuture(myMockView.stopTreeBusyIndicatorTacker.consume())
+    val summaryMessage = pumpEventsAndWaitForFuture(myMockView.reportMessageRelatedToNodeTracker.consume())
+    checkNotNull(summaryMessage)
+    assertThat(summaryMessage).startsWith(String.format(
+      Locale.getDefault(), "Successfully downloaded %,d files and %,d directory for a total size of %,d bytes", 6, 1, 12000))
+    // Each download takes at least two chunk intervals, so the two permitted transfers overlap
+    assertThat(myDevice1.maxConcurrentDownloads).isEqualTo(2)
+    val files = checkNotNull(tempDirectory.listFiles())
+    assertThat(files.map { it.name }).containsExactlyElementsIn((1..6).map { "file$it.txt" })
+    assertThat(files.map { it.length() }.sum()).isEqualTo(12000)
+  }
+
   @Test
   fun fileSystemTree_ContextMenu_SaveMultipleFilesAs_Works() {
     // Prepare
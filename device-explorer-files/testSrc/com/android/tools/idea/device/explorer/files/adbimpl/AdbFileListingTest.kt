@@ -206,6 +206,52 @@ class AdbFileListingTest {
     assertDirectoryLink(fileListing, rootEntries, "vendor", true)
   }
 
+  @Test
+  fun test_Nexus7Api23_IsDirectoryLinkResolvesAllLinksOfListingAtOnce(): Unit = runBlocking {
+    // Prepare
+    TestDevices.NEXUS_7_API23.addCommands(commands)
+    commands.add("for f in /charger /d /etc /sdcard /tombstones /vendor; do if [ -d \"\$f/\" ]; then echo \"\$f\"; fi; done" +
+                 TestDevices.COMMAND_ERROR_CHECK_SUFFIX,
+                 "/d\r\n/etc\r\n/sdcard\r\n/vendor\r\n")
+    for (link in listOf("charger", "d", "etc", "sdcard", "tombstones", "vendor")) {
+      commands.addError("ls -l -d /$link/", ShellCommandUnresponsiveException())
+    }
+    val fileListing = AdbFileListing(device, AdbDeviceCapabilities(scope, deviceName, device), dispatcher)
+
+    // Act
+    val root = fileListing.getRoot()
+    val rootEntries = fileListing.getChildren(root)
+
+    // Assert
+    assertDirectoryLink(fileListing, rootEntries, "charger", false)
+    assertDirectoryLink(fileListing, rootEntries, "d", true)
+    assertDirectoryLink(fileListing, rootEntries, "etc", true)
+    assertDirectoryLink(fileListing, rootEntries, "sdcard", true)
+    assertDirectoryLink(fileListing, rootEntries, "tombstones", false)
+    assertDirectoryLink(fileListing, rootEntries, "vendor", true)
+  }
+
+  @Test
+  fun test_Nexus7Api23_IsDirectoryLinkDoesNotReuseResultsOfPreviousListing(): Unit = runBlocking {
+    // Prepare
+    TestDevices.NEXUS_7_API23.addCommands(commands)
+    val resolveCommand = "for f in /charger /d /etc /sdcard /tombstones /vendor; do if [ -d \"\$f/\" ]; then echo \"\$f\"; fi; done" +
+                         TestDevices.COMMAND_ERROR_CHECK_SUFFIX
+    commands.add(resolveCommand, "/d\r\n/etc\r\n/sdcard\r\n/vendor\r\n")
+    val fileListing = AdbFileListing(device, AdbDeviceCapabilities(scope, deviceName, device), dispatcher)
+    val root = fileListing.getRoot()
+    assertDirectoryLink(fileListing, fileListing.getChildren(root), "d", true)
+
+    // Act
+    commands.add(resolveCommand, "/d\r\n")
+    val rootEntries = fileListing.getChildren(root)
+
+    // Assert
+    assertDirectoryLink(fileListing, rootEntries, "d", true)
+    assertDirectoryLink(fileListing, rootEntries, "etc", false)
+    assertDirectoryLink(fileListing, rootEntries, "vendor", false)
+  }
+
   @Test
   fun test_EmulatorApi25_GetRoot(): Unit = runBlocking {
     // Prepare
@@ -30,6 +30,8 @@ import java.io.FileOutputStream
 import java.io.OutputStream
 import java.nio.file.Files
 import java.nio.file.Path
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.math.max
 import kotlin.math.min
 
 class MockDeviceFileSystem(private val edtExecutor: FutureCallbackExecutor, override val name: String) : DeviceFileSystem {
@@ -43,6 +45,12 @@ class MockDeviceFileSystem(private val edtExecutor: FutureCallbackExecutor, over
   var downloadError: Throwable? = null
   var rootDirectoryError: Throwable? = null
   var uploadError: Throwable? = null
+  private val activeDownloads = AtomicInteger()
+  private val maxActiveDownloads = AtomicInteger()
+
+  /** The largest number of [downloadFile] calls that were in progress at the same time. */
+  val maxConcurrentDownloads: Int
+    get() = maxActiveDownloads.get()
 
   override fun toString() = "MockDevice-$name"
 
@@ -79,6 +87,17 @@ class MockDeviceFileSystem(private val edtExecutor: FutureCallbackExecutor, over
   }
 
   suspend fun downloadFile(entry: DeviceFileEntry, localPath: Path, progress: FileTransferProgress) {
+    val active = activeDownloads.incrementAndGet()
+    maxActiveDownloads.updateAndGet { max(it, active) }
+    try {
+      doDownloadFile(entry, localPath, progress)
+    }
+    finally {
+      activeDownloads.decrementAndGet()
+    }
+  }
+
+  private suspend fun doDownloadFile(entry: DeviceFileEntry, localPath: Path, progress: FileTransferProgress) {
     delay(OPERATION_TIMEOUT_MILLIS)
     downloadError?.let { throw it }
 
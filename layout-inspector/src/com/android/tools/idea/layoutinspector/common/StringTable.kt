@@ -15,6 +15,15 @@
  */
 package com.android.tools.idea.layoutinspector.common
 
+import com.google.common.collect.Interner
+import com.google.common.collect.Interners
+
+/**
+ * Interner shared by all [IndexedStringTable]s, such that the nodes and properties of different
+ * windows, layout events and snapshots share a single instance of strings like class names.
+ */
+private val interner: Interner<String> = Interners.newWeakInterner()
+
 interface StringTable {
   val keys: Set<Int>
 
@@ -25,3 +34,47 @@ interface StringTable {
    */
   operator fun get(id: Int): String
 }
+
+/**
+ * A [StringTable] of strings received from the device.
+ *
+ * The ids sent by the device are small consecutive numbers, so the strings are stored in an array
+ * indexed by id instead of a map of boxed ids. The strings are interned, see [interner].
+ *
+ * @param size the number of strings
+ * @param idAt returns the id of the string at the specified index
+ * @param stringAt returns the string at the specified index
+ */
+open class IndexedStringTable(size: Int, idAt: (Int) -> Int, stringAt: (Int) -> String) :
+  StringTable {
+  private val strings: Array<String?>
+  private val sparseStrings: Map<Int, String>?
+
+  init {
+    var maxId = -1
+    var minId = 0
+    for (index in 0 until size) {
+      val id = idAt(index)
+      maxId = maxOf(maxId, id)
+      minId = minOf(minId, id)
+    }
+    if (minId >= 0 && maxId <= 2 * size + 16) {
+      strings = arrayOfNulls(maxId + 1)
+      for (index in 0 until size) {
+        strings[idAt(index)] = interner.intern(stringAt(index))
+      }
+      sparseStrings = null
+    } else {
+      strings = emptyArray()
+      sparseStrings = (0 until size).associateBy(idAt) { interner.intern(stringAt(it)) }
+    }
+  }
+
+  override val keys: Set<Int> by lazy {
+    sparseStrings?.keys ?: strings.indices.filterTo(mutableSetOf()) { strings[it] != null }
+  }
+
+  override operator fun get(id: Int): String =
+    if (sparseStrings != null) sparseStrings[id].orEmpty()
+    else strings.getOrNull(id).orEmpty()
+}
@@ -24,9 +24,12 @@ import com.android.tools.idea.layoutinspector.view.inspection.LayoutInspectorVie
 import com.android.tools.idea.layoutinspector.view.inspection.LayoutInspectorViewProtocol.FoldEvent.SpecialAngles.NO_FOLD_ANGLE_VALUE
 import com.android.tools.idea.util.ListenerCollection
 import com.google.wireless.android.sdk.stats.DynamicLayoutInspectorErrorInfo
+import com.intellij.openapi.diagnostic.Logger
 import com.intellij.openapi.project.Project
 import org.jetbrains.annotations.VisibleForTesting
 import java.awt.Dimension
+import java.awt.Polygon
+import java.awt.Shape
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.Executors.newSingleThreadExecutor
 import java.util.concurrent.ScheduledExecutorService
@@ -43,6 +46,9 @@ val DECREASE_TIMEUNIT = TimeUnit.MILLISECONDS
 val DECREASE_FACTOR = 2.0.pow(DECREASE_DELAY.toDouble() / DECREASE_HALF_TIME.toDouble()).toFloat()
 const val DECREASE_BREAK_OFF = 0.75f
 
+/** The time an [InspectorModel.update] may take without delaying the next frame from the device. */
+private val UPDATE_FRAME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(16)
+
 enum class SelectionOrigin {
   INTERNAL,
   COMPONENT_TREE
@@ -68,6 +74,17 @@ class InspectorModel(
       newWindow: AndroidWindow?,
       isStructuralChange: Boolean
     )
+
+    /**
+     * Called instead of [onModification] when [update] knows exactly which views of [newWindow]
+     * changed. Listeners that can patch their state in place should override this.
+     */
+    fun onUpdate(
+      oldWindow: AndroidWindow?,
+      newWindow: AndroidWindow?,
+      isStructuralChange: Boolean,
+      diff: ViewNodeDiff
+    ) = onModification(oldWindow, newWindow, isStructuralChange)
   }
 
   fun interface HoverListener {
@@ -309,12 +326,16 @@ class InspectorModel(
     generation: Int,
     notifyUpdateCompleted: () -> Unit = {}
   ) {
+    val startTime = System.nanoTime()
     if (windows.isEmpty()) {
       // Reset the recomposition counters if this is a new connection:
       resetRecompositionCounters()
     }
     var structuralChange: Boolean = windows.keys.retainAll(allIds)
+    // The id lookup can only be patched if no other windows were removed.
+    var canPatchIdLookup = !structuralChange
     val oldWindow = if (newWindow != null) windows[newWindow.id] else null
+    var diff: ViewNodeDiff? = null
     updating = true
     try {
       ViewNode.writeAccess {
@@ -329,6 +350,14 @@ class InspectorModel(
           ) {
             windows[newWindow.id] = newWindow
             structuralChange = true
+            diff =
+              ViewNodeDiff(
+                newWindow.root.flatten().toList(),
+                oldWindow?.root?.flatten()?.toList() ?: emptyList(),
+                emptyList(),
+                emptyList(),
+                emptyList()
+              )
             if (oldWindow == null) {
               // build draw tree on initial load of the window, so we can scale and scroll
               // correctly.
@@ -340,8 +369,11 @@ class InspectorModel(
           } else {
             oldWindow.copyFrom(newWindow)
             val updater = Updater(oldWindow.root, newWindow.root, this)
-            structuralChange = updater.update() || structuralChange
+            diff = updater.update()
+            structuralChange = diff!!.isStructuralChange || structuralChange
           }
+        } else {
+          canPatchIdLookup = false
         }
 
         updateRoot(allIds)
@@ -352,11 +384,19 @@ class InspectorModel(
           hoveredNode = null
         }
         lastGeneration = generation
-        idLookup.clear()
-        val allNodes = root.flatten().toSet()
-        hiddenNodes.removeIf { !allNodes.contains(it) }
+        val updateDiff = diff
+        if (canPatchIdLookup && updateDiff != null) {
+          patchIdLookup(updateDiff)
+        } else {
+          idLookup.clear()
+        }
+        val allNodes = root.flatten().toList()
+        if (hiddenNodes.isNotEmpty()) {
+          val allNodeSet = allNodes.toSet()
+          hiddenNodes.removeIf { !allNodeSet.contains(it) }
+        }
         maxRecomposition.reset()
-        root.flatten().forEach { maxRecomposition.maxOf(it) }
+        allNodes.forEach { maxRecomposition.maxOf(it) }
         if (
           StudioFlags.DYNAMIC_LAYOUT_INSPECTOR_ENABLE_RECOMPOSITION_HIGHLIGHTS.get() &&
             scheduler != null &&
@@ -375,7 +415,37 @@ class InspectorModel(
 
     notifyUpdateCompleted()
     val window = if (newWindow != null) windows[newWindow.id] else null
-    modificationListeners.forEach { it.onModification(oldWindow, window, structuralChange) }
+    val currentDiff = diff
+    modificationListeners.forEach {
+      if (currentDiff != null) it.onUpdate(oldWindow, window, structuralChange, currentDiff)
+      else it.onModification(oldWindow, window, structuralChange)
+    }
+    logSlowUpdate(System.nanoTime() - startTime, currentDiff)
+  }
+
+  /** Logs an [update] which took longer than [UPDATE_FRAME_BUDGET_NANOS], including the listeners. */
+  private fun logSlowUpdate(nanos: Long, diff: ViewNodeDiff?) {
+    val logger = Logger.getInstance(InspectorModel::class.java)
+    if (nanos > UPDATE_FRAME_BUDGET_NANOS && logger.isDebugEnabled) {
+      logger.debug(
+        "Layout Inspector update took ${TimeUnit.NANOSECONDS.toMillis(nanos)}ms " +
+          "(added: ${diff?.added?.size}, removed: ${diff?.removed?.size}, " +
+          "changed: ${diff?.changed?.size})"
+      )
+    }
+  }
+
+  /**
+   * Patches [idLookup] with the nodes added and removed by an update, instead of rebuilding it
+   * lazily from the whole tree.
+   */
+  private fun patchIdLookup(diff: ViewNodeDiff) {
+    if (idLookup.isEmpty()) {
+      // The lookup hasn't been built yet
+      return
+    }
+    diff.removed.forEach { idLookup.remove(it.drawId, it) }
+    diff.added.forEach { idLookup[it.drawId] = it }
   }
 
   fun addSelectionListener(listener: SelectionListener) {
@@ -510,27 +580,31 @@ class InspectorModel(
       access.run {
         oldRoot.flatten().filter { it.drawId != 0L }.associateByTo(mutableMapOf()) { it.drawId }
       }
+    private val added = mutableListOf<ViewNode>()
+    private val moved = mutableListOf<ViewNode>()
+    private val childrenChanged = mutableListOf<ViewNode>()
+    private val changed = mutableListOf<ViewNode>()
 
-    fun update(): Boolean {
+    fun update(): ViewNodeDiff {
       return access.run {
-        val modified = update(oldRoot, oldRoot.parent, newRoot)
+        update(oldRoot, oldRoot.parent, newRoot)
         oldNodes.values.forEach { it.parent = null }
-        modified
+        ViewNodeDiff(added, oldNodes.values.toList(), moved, childrenChanged, changed)
       }
     }
 
     /**
      * Called when the view has changed on the device. All the information from the [newNode] is
-     * copied into the [oldNode].
+     * copied into the [oldNode], and the differences are recorded for the [ViewNodeDiff].
      */
-    private fun ViewNode.WriteAccess.update(
-      oldNode: ViewNode,
-      parent: ViewNode?,
-      newNode: ViewNode
-    ): Boolean {
-      var modified = (parent != oldNode.parent) || !sameChildren(oldNode, newNode)
-      // TODO: should changes below cause modified to be set to true?
-      // Maybe each view should have its own modification listener that can listen for such changes?
+    private fun ViewNode.WriteAccess.update(oldNode: ViewNode, parent: ViewNode?, newNode: ViewNode) {
+      if (parent != oldNode.parent) {
+        moved.add(oldNode)
+      }
+      var childrenModified = !sameChildren(oldNode, newNode)
+      if (!sameAttributes(oldNode, newNode)) {
+        changed.add(oldNode)
+      }
       oldNode.layoutBounds = newNode.layoutBounds
       oldNode.qualifiedName = newNode.qualifiedName
       oldNode.layout = newNode.layout
@@ -554,16 +628,19 @@ class InspectorModel(
       for (newChild in newNode.children) {
         val oldChild = oldNodes[newChild.drawId]
         if (oldChild != null && oldChild.javaClass == newChild.javaClass) {
-          modified = update(oldChild, oldNode, newChild) || modified
+          update(oldChild, oldNode, newChild)
           oldNode.children.add(oldChild)
           oldNodes.remove(newChild.drawId)
         } else {
-          modified = true
+          childrenModified = true
           oldNode.children.add(newChild)
           newChild.parent = oldNode
+          added.addAll(newChild.flatten())
         }
       }
-      return modified
+      if (childrenModified) {
+        childrenChanged.add(oldNode)
+      }
     }
 
     private fun ViewNode.WriteAccess.sameChildren(oldNode: ViewNode?, newNode: ViewNode?): Boolean {
@@ -574,5 +651,37 @@ class InspectorModel(
         oldNode.children[it].drawId == newNode?.children?.get(it)?.drawId
       } ?: true
     }
+
+    /** Returns true if the attributes copied by [update] that affect the rendering are the same. */
+    private fun sameAttributes(oldNode: ViewNode, newNode: ViewNode): Boolean {
+      if (
+        oldNode.layoutBounds != newNode.layoutBounds ||
+          !sameShape(oldNode.renderBounds, newNode.renderBounds) ||
+          oldNode.qualifiedName != newNode.qualifiedName ||
+          oldNode.layout != newNode.layout ||
+          oldNode.layoutFlags != newNode.layoutFlags
+      ) {
+        return false
+      }
+      return oldNode !is ComposeViewNode ||
+        newNode !is ComposeViewNode ||
+        (oldNode.composeFilename == newNode.composeFilename &&
+          oldNode.composePackageHash == newNode.composePackageHash &&
+          oldNode.composeOffset == newNode.composeOffset &&
+          oldNode.composeLineNumber == newNode.composeLineNumber &&
+          oldNode.composeFlags == newNode.composeFlags)
+    }
+
+    /** Polygons don't implement equals, so compare their points. */
+    private fun sameShape(oldShape: Shape, newShape: Shape): Boolean =
+      when {
+        oldShape is Polygon && newShape is Polygon ->
+          oldShape.npoints == newShape.npoints &&
+            (0 until oldShape.npoints).all {
+              oldShape.xpoints[it] == newShape.xpoints[it] &&
+                oldShape.ypoints[it] == newShape.ypoints[it]
+            }
+        else -> oldShape == newShape
+      }
   }
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.layoutinspector.model
+
+/**
+ * The changes made to the views of a window by a single [InspectorModel.update].
+ *
+ * @param added the nodes that are new in the model, including all the nodes of new subtrees
+ * @param removed the nodes that are no longer in the model, including all the nodes of removed
+ *   subtrees
+ * @param moved the existing nodes that now have a different parent
+ * @param childrenChanged the existing nodes whose list of children changed in any way
+ * @param changed the existing nodes whose bounds, class, layout or flags changed
+ */
+class ViewNodeDiff(
+  val added: List<ViewNode>,
+  val removed: List<ViewNode>,
+  val moved: List<ViewNode>,
+  val childrenChanged: List<ViewNode>,
+  val changed: List<ViewNode>
+) {
+  /** True if the hierarchy of the views changed. */
+  val isStructuralChange: Boolean
+    get() =
+      added.isNotEmpty() || removed.isNotEmpty() || moved.isNotEmpty() || childrenChanged.isNotEmpty()
+
+  /** True if nothing but the images and recomposition counts may have changed. */
+  val isEmpty: Boolean
+    get() = !isStructuralChange && changed.isEmpty()
+
+  /**
+   * Returns the closest common ancestor of all the nodes whose children changed, or null if the
+   * hierarchy didn't change within the existing nodes.
+   *
+   * Every node that was added or moved is a descendant of the returned node, and so was every node
+   * that was removed.
+   */
+  fun structuralChangeRoot(): ViewNode? =
+    ViewNode.readAccess {
+      childrenChanged.reduceOrNull { result, node ->
+        val ancestors = result.parentSequence.toSet()
+        node.parentSequence.firstOrNull { it in ancestors } ?: return@readAccess null
+      }
+    }
+}
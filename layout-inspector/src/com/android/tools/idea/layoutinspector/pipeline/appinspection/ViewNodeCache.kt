@@ -42,7 +42,9 @@ abstract class ViewNodeCache<D>(protected val model: InspectorModel) {
 
   // Specifically, this is a Map<RootId, Map<ViewId, Data>>()
   // Occasionally, roots are discarded, so we can drop whole branches of cached data in that case.
-  private val cache: MutableMap<Long, ConcurrentHashMap<Long, D>> = ConcurrentHashMap()
+  // The data is held lazily, such that data received in bulk is only decoded for the views that
+  // are actually inspected, see [setLazyDataFor].
+  private val cache: MutableMap<Long, ConcurrentHashMap<Long, Lazy<D>>> = ConcurrentHashMap()
 
   /** Remove all nested data for views that are children to [rootId]. */
   fun clearFor(rootId: Long) {
@@ -68,7 +70,7 @@ abstract class ViewNodeCache<D>(protected val model: InspectorModel) {
    */
   suspend fun getDataFor(node: ViewNode): D? {
     val root = model.rootFor(node) ?: return null // Unrooted nodes are not supported
-    val cached = cache[root.drawId]?.get(node.drawId)
+    val cached = cache[root.drawId]?.get(node.drawId)?.value
     if (cached != null) {
       return cached
     }
@@ -86,13 +88,22 @@ abstract class ViewNodeCache<D>(protected val model: InspectorModel) {
     }
   }
 
-  fun getCachedDataFor(rootId: Long, composeId: Long): D? = cache[rootId]?.get(composeId)
+  fun getCachedDataFor(rootId: Long, composeId: Long): D? = cache[rootId]?.get(composeId)?.value
 
   protected abstract suspend fun fetchDataFor(root: ViewNode, node: ViewNode): D?
 
   protected fun setDataFor(rootId: Long, viewId: Long, data: D) {
     val innerMap = cache.computeIfAbsent(rootId) { ConcurrentHashMap() }
-    innerMap[viewId] = data
+    innerMap[viewId] = lazyOf(data)
+  }
+
+  /**
+   * Cache the data created by [generate] for the view with [viewId]. The data is not generated
+   * until it is requested the first time.
+   */
+  protected fun setLazyDataFor(rootId: Long, viewId: Long, generate: () -> D) {
+    val innerMap = cache.computeIfAbsent(rootId) { ConcurrentHashMap() }
+    innerMap[viewId] = lazy(generate)
   }
 
   fun clear() {
@@ -69,14 +69,16 @@ class ComposeParametersCache(
   }
 
   fun setAllFrom(response: GetAllParametersResponse) {
+    // Each lazy entry only holds its own parameter group, the strings of that group and the lookup
+    // at the time of the response, such that the response itself can be garbage collected.
     val stringTable = StringTableImpl(response.stringsList)
+    val lookup: ViewNodeAndResourceLookup = this
+    val rootId = response.rootViewId
     for (group in response.parameterGroupsList) {
-      val rootId = response.rootViewId
-      setDataFor(
-        rootId,
-        group.composableId,
-        ComposeParametersDataGenerator(stringTable, this).generate(rootId, group)
-      )
+      val groupStringTable = stringTable.subset(group.stringIds())
+      setLazyDataFor(rootId, group.composableId) {
+        ComposeParametersDataGenerator(groupStringTable, lookup).generate(rootId, group)
+      }
     }
   }
 
@@ -183,3 +183,22 @@ class ComposeParametersDataGenerator(
     }
   }
 }
+
+/** The ids of all strings that [ComposeParametersDataGenerator] may look up for this group. */
+fun ParameterGroup.stringIds(): Set<Int> {
+  val ids = mutableSetOf<Int>()
+  parameterList.forEach { it.addStringIds(ids) }
+  mergedSemanticsList.forEach { it.addStringIds(ids) }
+  unmergedSemanticsList.forEach { it.addStringIds(ids) }
+  return ids
+}
+
+private fun Parameter.addStringIds(ids: MutableSet<Int>) {
+  ids.add(name)
+  ids.add(int32Value)
+  ids.add(lambdaValue.packageName)
+  ids.add(lambdaValue.fileName)
+  ids.add(lambdaValue.lambdaName)
+  ids.add(lambdaValue.functionName)
+  elementsList.forEach { it.addStringIds(ids) }
+}
@@ -15,12 +15,20 @@
  */
 package com.android.tools.idea.layoutinspector.pipeline.appinspection.compose
 
-import com.android.tools.idea.layoutinspector.common.StringTable
+import com.android.tools.idea.layoutinspector.common.IndexedStringTable
 import layoutinspector.compose.inspection.LayoutInspectorComposeProtocol
 
-class StringTableImpl(strings: List<LayoutInspectorComposeProtocol.StringEntry>) : StringTable {
-  private val table = strings.associateBy({ it.id }, { it.str })
-  override val keys: Set<Int> = table.keys
+class StringTableImpl
+private constructor(size: Int, idAt: (Int) -> Int, stringAt: (Int) -> String) :
+  IndexedStringTable(size, idAt, stringAt) {
 
-  override operator fun get(id: Int): String = table[id].orEmpty()
+  constructor(
+    strings: List<LayoutInspectorComposeProtocol.StringEntry>
+  ) : this(strings.size, { strings[it].id }, { strings[it].str })
+
+  /** Returns a table with only the strings of the specified [ids]. */
+  fun subset(ids: Collection<Int>): StringTableImpl {
+    val idArray = ids.filter { it in keys }.toIntArray()
+    return StringTableImpl(idArray.size, { idArray[it] }, { this[idArray[it]] })
+  }
 }
@@ -18,19 +18,22 @@ package com.android.tools.idea.layoutinspector.pipeline.appinspection.view
 import com.android.tools.idea.layoutinspector.model.InspectorModel
 import com.android.tools.idea.layoutinspector.model.ViewNode
 import com.android.tools.idea.layoutinspector.pipeline.appinspection.ViewNodeCache
+import com.android.tools.idea.layoutinspector.properties.ViewNodeAndResourceLookup
 import com.android.tools.idea.layoutinspector.view.inspection.LayoutInspectorViewProtocol.GetPropertiesResponse
 import com.android.tools.idea.layoutinspector.view.inspection.LayoutInspectorViewProtocol.PropertiesEvent
 
 /** Cache of view properties, to avoid expensive refetches when possible. */
 sealed class ViewPropertiesCache(model: InspectorModel) : ViewNodeCache<ViewPropertiesData>(model) {
   fun setAllFrom(event: PropertiesEvent) {
+    // Each lazy entry only holds its own property group, the strings of that group and the lookup
+    // at the time of the event, such that the event itself can be garbage collected.
     val stringTable = StringTableImpl(event.stringsList)
+    val lookup: ViewNodeAndResourceLookup = model
     for (propertyGroup in event.propertyGroupsList) {
-      setDataFor(
-        event.rootId,
-        propertyGroup.viewId,
-        ViewPropertiesDataGenerator(stringTable, propertyGroup, model).generate()
-      )
+      val groupStringTable = stringTable.subset(propertyGroup.stringIds())
+      setLazyDataFor(event.rootId, propertyGroup.viewId) {
+        ViewPropertiesDataGenerator(groupStringTable, propertyGroup, lookup).generate()
+      }
     }
   }
 }
@@ -248,3 +248,25 @@ class ViewPropertiesDataGenerator(
     resolutionStackTable.put(item.namespace, item.name, resolutionStack)
   }
 }
+
+/** The ids of all strings that [ViewPropertiesDataGenerator] may look up for this group. */
+fun PropertyGroup.stringIds(): Set<Int> {
+  val ids = mutableSetOf<Int>()
+  ids.addResource(layout)
+  for (property in propertyList) {
+    ids.add(property.namespace)
+    ids.add(property.name)
+    ids.add(property.int32Value)
+    ids.addAll(property.flagValue.flagList)
+    ids.addResource(property.source)
+    ids.addResource(property.resourceValue)
+    property.resolutionStackList.forEach { ids.addResource(it) }
+  }
+  return ids
+}
+
+private fun MutableSet<Int>.addResource(resource: Resource) {
+  add(resource.type)
+  add(resource.namespace)
+  add(resource.name)
+}
@@ -31,6 +31,7 @@ import com.android.tools.idea.layoutinspector.model.IconProvider
 import com.android.tools.idea.layoutinspector.model.InspectorModel
 import com.android.tools.idea.layoutinspector.model.SelectionOrigin
 import com.android.tools.idea.layoutinspector.model.ViewNode
+import com.android.tools.idea.layoutinspector.model.ViewNodeDiff
 import com.android.tools.idea.layoutinspector.model.ViewNode.Companion.readAccess
 import com.android.tools.idea.layoutinspector.pipeline.InspectorClient
 import com.android.tools.idea.layoutinspector.pipeline.appinspection.AppInspectionInspectorClient
@@ -110,9 +111,25 @@ class LayoutInspectorTreePanel(parentDisposable: Disposable) : ToolContent<Layou
   private var toolWindowCallback: ToolWindowCallback? = null
   private var filter = ""
   private val modelModifiedListener =
-    InspectorModel.ModificationListener { oldWindow, newWindow, isStructuralChange ->
-      modelModified(oldWindow, newWindow, isStructuralChange)
-      componentTreePanel.repaint()
+    object : InspectorModel.ModificationListener {
+      override fun onModification(
+        oldWindow: AndroidWindow?,
+        newWindow: AndroidWindow?,
+        isStructuralChange: Boolean
+      ) {
+        modelModified(oldWindow, newWindow, isStructuralChange)
+        componentTreePanel.repaint()
+      }
+
+      override fun onUpdate(
+        oldWindow: AndroidWindow?,
+        newWindow: AndroidWindow?,
+        isStructuralChange: Boolean,
+        diff: ViewNodeDiff
+      ) {
+        modelModified(oldWindow, newWindow, isStructuralChange, diff)
+        componentTreePanel.repaint()
+      }
     }
   private val selectionChangedListener: (ViewNode?, ViewNode?, SelectionOrigin) -> Unit =
     { oldView, newView, origin ->
@@ -483,10 +500,18 @@ class LayoutInspectorTreePanel(parentDisposable: Disposable) : ToolContent<Layou
     cleanUp()
   }
 
-  private fun modelModified(old: AndroidWindow?, new: AndroidWindow?, structuralChange: Boolean) {
+  private fun modelModified(
+    old: AndroidWindow?,
+    new: AndroidWindow?,
+    structuralChange: Boolean,
+    diff: ViewNodeDiff? = null
+  ) {
     if (structuralChange) {
       val added = new?.let { addToRoot(it) } ?: emptyList()
-      var changedNode = added.singleOrNull() ?: root
+      var changedNode =
+        diff?.takeIf { old === new }?.let { findChangedTreeNode(it, added) }
+          ?: added.singleOrNull()
+          ?: root
       val toExpand = if (old == null) added else emptyList()
       if (windowRoots.keys.retainAll(inspectorModel?.windows?.keys ?: emptySet())) {
         // If a different window was removed then force an update of the root node
@@ -509,6 +534,32 @@ class LayoutInspectorTreePanel(parentDisposable: Disposable) : ToolContent<Layou
     invokeLater { toolWindowCallback?.updateActions() }
   }
 
+  /**
+   * Find the [TreeViewNode] of the smallest subtree of the component tree that contains all the
+   * structural changes in [diff], such that only that subtree has to be refreshed. Return null if
+   * the changes cannot be confined to a subtree of one of the [windowNodes].
+   */
+  private fun findChangedTreeNode(diff: ViewNodeDiff, windowNodes: List<TreeViewNode>): TreeViewNode? {
+    if (!diff.isStructuralChange) {
+      return null
+    }
+    val treeSettings = layoutInspector?.treeSettings ?: return null
+    val changeRoot = diff.structuralChangeRoot() ?: return null
+    return readAccess {
+      // Whether a node is collapsed into its parent depends on the number of children of its
+      // parent, so the parent of the change root has to be refreshed as well.
+      // Nodes that are not in the component tree have their children added to the closest
+      // ancestor that is.
+      val node =
+        changeRoot.parentSequence.drop(1).firstOrNull {
+          it.isInComponentTree(treeSettings) && !it.isSingleCall(treeSettings)
+        } ?: return@readAccess null
+      node.treeNode.takeIf { treeNode ->
+        generateSequence(treeNode) { it.parent }.any { it in windowNodes }
+      }
+    }
+  }
+
   /**
    * Add the TreeViewNode(s) of [window] root to the corresponding [windowRoots] such that the
    * TreeViewNode tree reflect the current system filter setting. Since the [window] root may be
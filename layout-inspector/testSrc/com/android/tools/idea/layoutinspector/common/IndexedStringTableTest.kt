@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.layoutinspector.common
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class IndexedStringTableTest {
+
+  private fun table(vararg entries: Pair<Int, String>) =
+    IndexedStringTable(entries.size, { entries[it].first }, { entries[it].second })
+
+  @Test
+  fun testDenseIds() {
+    val table = table(1 to "androidx.compose.ui", 2 to "Text", 3 to "text.kt")
+
+    assertThat(table[1]).isEqualTo("androidx.compose.ui")
+    assertThat(table[3]).isEqualTo("text.kt")
+    assertThat(table[0]).isEmpty()
+    assertThat(table[4]).isEmpty()
+    assertThat(table[-1]).isEmpty()
+    assertThat(table.keys).containsExactly(1, 2, 3)
+  }
+
+  @Test
+  fun testSparseIds() {
+    val table = table(1 to "Button", 100000 to "Text", -5 to "Box")
+
+    assertThat(table[1]).isEqualTo("Button")
+    assertThat(table[100000]).isEqualTo("Text")
+    assertThat(table[-5]).isEqualTo("Box")
+    assertThat(table[2]).isEmpty()
+    assertThat(table.keys).containsExactly(1, 100000, -5)
+  }
+
+  @Test
+  fun testStringsAreShared() {
+    val first = table(1 to String(charArrayOf('T', 'e', 'x', 't')))
+    val second = table(7 to String(charArrayOf('T', 'e', 'x', 't')))
+
+    assertThat(second[7]).isSameAs(first[1])
+  }
+}
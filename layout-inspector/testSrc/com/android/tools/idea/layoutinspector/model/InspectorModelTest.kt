@@ -211,6 +211,82 @@ class InspectorModelTest {
     assertSingleRoot(model, FakeTreeSettings())
   }
 
+  @Test
+  fun testUpdateDiff() {
+    val model = model {
+      view(ROOT, 1, 2, 3, 4, qualifiedName = "rootType") {
+        view(VIEW1, 4, 3, 2, 1, qualifiedName = "v1Type") {
+          view(VIEW3, 5, 6, 7, 8, qualifiedName = "v3Type")
+        }
+        view(VIEW2, 8, 7, 6, 5, qualifiedName = "v2Type") {
+          view(VIEW5, 5, 6, 7, 8, qualifiedName = "v5Type")
+        }
+      }
+    }
+    val origNodes = model.root.flattenedList().associateBy { it.drawId }
+    var lastDiff: ViewNodeDiff? = null
+    model.addModificationListener(
+      object : InspectorModel.ModificationListener {
+        override fun onModification(
+          oldWindow: AndroidWindow?,
+          newWindow: AndroidWindow?,
+          isStructuralChange: Boolean
+        ) {}
+
+        override fun onUpdate(
+          oldWindow: AndroidWindow?,
+          newWindow: AndroidWindow?,
+          isStructuralChange: Boolean,
+          diff: ViewNodeDiff
+        ) {
+          assertThat(isStructuralChange).isEqualTo(diff.isStructuralChange)
+          lastDiff = diff
+        }
+      }
+    )
+
+    // Move VIEW3 to VIEW2, add VIEW4 to VIEW1 and remove VIEW5, and change the bounds of VIEW1.
+    val newWindow =
+      window(ROOT, ROOT, 1, 2, 3, 4, rootViewQualifiedName = "rootType") {
+        view(VIEW1, 4, 3, 2, 2, qualifiedName = "v1Type") {
+          view(VIEW4, 5, 6, 7, 8, qualifiedName = "v4Type")
+        }
+        view(VIEW2, 8, 7, 6, 5, qualifiedName = "v2Type") {
+          view(VIEW3, 5, 6, 7, 8, qualifiedName = "v3Type")
+        }
+      }
+    model.update(newWindow, listOf(ROOT), 0)
+
+    val diff = lastDiff!!
+    assertThat(diff.added.map { it.drawId }).containsExactly(VIEW4)
+    assertThat(diff.removed).containsExactly(origNodes[VIEW5])
+    assertThat(diff.moved).containsExactly(origNodes[VIEW3])
+    assertThat(diff.childrenChanged).containsExactly(origNodes[VIEW1], origNodes[VIEW2])
+    assertThat(diff.changed).contains(origNodes[VIEW1])
+    assertThat(diff.changed).containsNoneOf(origNodes[VIEW2], origNodes[VIEW3])
+    assertThat(diff.structuralChangeRoot()).isSameAs(origNodes[ROOT])
+
+    // The id lookup is patched with the added and removed nodes
+    assertThat(model[VIEW4]).isSameAs(diff.added.single())
+    assertThat(model[VIEW5]).isNull()
+    assertThat(model[VIEW3]).isSameAs(origNodes[VIEW3])
+
+    // An identical update doesn't change anything
+    lastDiff = null
+    val sameWindow =
+      window(ROOT, ROOT, 1, 2, 3, 4, rootViewQualifiedName = "rootType") {
+        view(VIEW1, 4, 3, 2, 2, qualifiedName = "v1Type") {
+          view(VIEW4, 5, 6, 7, 8, qualifiedName = "v4Type")
+        }
+        view(VIEW2, 8, 7, 6, 5, qualifiedName = "v2Type") {
+          view(VIEW3, 5, 6, 7, 8, qualifiedName = "v3Type")
+        }
+      }
+    model.update(sameWindow, listOf(ROOT), 1)
+    assertThat(lastDiff!!.isEmpty).isTrue()
+    assertThat(lastDiff!!.structuralChangeRoot()).isNull()
+  }
+
   @Test
   fun testWindows() {
     val model = InspectorModel(mock())
@@ -59,6 +59,34 @@ class ViewNodeCacheTest {
       .registerServiceInstance(AndroidExecutors::class.java, executors, disposableRule.disposable)
   }
 
+  @Test
+  fun testLazyData() {
+    val model = model {
+      view(ROOT, x = 2, y = 4, width = 6, height = 8, qualifiedName = "root") {
+        view(VIEW1, 8, 6, 4, 2, qualifiedName = "v1Type")
+        view(VIEW2, 6, 7, 8, 9, qualifiedName = "v2Type")
+      }
+    }
+    val generated = mutableListOf<Long>()
+    val cache =
+      object : ViewNodeCache<Long>(model) {
+        override suspend fun fetchDataFor(root: ViewNode, node: ViewNode): Long? = null
+
+        fun setAll(ids: List<Long>) {
+          ids.forEach { id -> setLazyDataFor(ROOT, id) { id.also { generated.add(it) } } }
+        }
+      }
+    cache.setAll(listOf(ROOT, VIEW1, VIEW2))
+    assertThat(generated).isEmpty()
+
+    runBlocking {
+      assertThat(cache.getDataFor(model[VIEW1]!!)).isEqualTo(VIEW1)
+      assertThat(cache.getDataFor(model[VIEW1]!!)).isEqualTo(VIEW1)
+    }
+    assertThat(cache.getCachedDataFor(ROOT, VIEW2)).isEqualTo(VIEW2)
+    assertThat(generated).containsExactly(VIEW1, VIEW2).inOrder()
+  }
+
   @Test
   fun testThreading() {
     val model = model {
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.layoutinspector.pipeline.appinspection.view
+
+import com.android.tools.idea.layoutinspector.view.inspection.LayoutInspectorViewProtocol.FlagValue
+import com.android.tools.idea.layoutinspector.view.inspection.LayoutInspectorViewProtocol.Property
+import com.android.tools.idea.layoutinspector.view.inspection.LayoutInspectorViewProtocol.PropertyGroup
+import com.android.tools.idea.layoutinspector.view.inspection.LayoutInspectorViewProtocol.Resource
+import com.android.tools.idea.layoutinspector.view.inspection.LayoutInspectorViewProtocol.StringEntry
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class StringTableImplTest {
+
+  @Test
+  fun testSubsetOfPropertyGroup() {
+    val strings =
+      listOf("android", "layout", "activity_main", "text", "Hello", "gravity", "top", "unused")
+        .mapIndexed { index, str -> StringEntry.newBuilder().setId(index + 1).setStr(str).build() }
+    val table = StringTableImpl(strings)
+    val group =
+      PropertyGroup.newBuilder()
+        .setViewId(1L)
+        .setLayout(Resource.newBuilder().setNamespace(1).setType(2).setName(3))
+        .addProperty(
+          Property.newBuilder()
+            .setNamespace(1)
+            .setName(4)
+            .setType(Property.Type.STRING)
+            .setInt32Value(5)
+        )
+        .addProperty(
+          Property.newBuilder()
+            .setNamespace(1)
+            .setName(6)
+            .setType(Property.Type.GRAVITY)
+            .setFlagValue(FlagValue.newBuilder().addFlag(7))
+        )
+        .build()
+
+    val subset = table.subset(group.stringIds())
+
+    assertThat(subset.keys).containsExactly(1, 2, 3, 4, 5, 6, 7)
+    assertThat(subset[5]).isEqualTo("Hello")
+    assertThat(subset[7]).isEqualTo("top")
+    assertThat(subset[8]).isEmpty()
+    assertThat(subset[group.layout]?.name).isEqualTo("activity_main")
+  }
+}
@@ -41,10 +41,16 @@ import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.module.ModuleUtilCore;
 import com.intellij.openapi.module.impl.scopes.ModuleWithDependenciesScope;
 import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.SensitiveProgressWrapper;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
 import com.intellij.openapi.project.IndexNotReadyException;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.registry.Registry;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiElementVisitor;
@@ -52,18 +58,24 @@ import com.intellij.psi.PsiFile;
 import com.intellij.psi.search.LocalSearchScope;
 import com.intellij.psi.search.SearchScope;
 import com.intellij.testFramework.LightVirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
 
 public class LintGlobalInspectionContext implements GlobalInspectionContextExtension<LintGlobalInspectionContext> {
   static final Key<LintGlobalInspectionContext> ID = Key.create("LintGlobalInspectionContext");
@@ -71,6 +83,15 @@ public class LintGlobalInspectionContext implements GlobalInspectionContextExten
   private LintBaseline myBaseline;
   private Issue myEnabledIssue;
 
+  /**
+   * Registry key overriding the maximum number of modules analyzed concurrently by a batch inspection; 1 disables splitting the
+   * analysis per module, and 0 uses {@link #DEFAULT_MODULE_PARALLELISM}.
+   */
+  @VisibleForTesting
+  static final String MODULE_PARALLELISM_KEY = "android.lint.batch.module.parallelism";
+
+  private static final int DEFAULT_MODULE_PARALLELISM = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
   @NotNull
   @Override
   public Key<LintGlobalInspectionContext> getID() {
@@ -260,10 +281,6 @@ public class LintGlobalInspectionContext implements GlobalInspectionContextExten
       }
     }
 
-    LintRequest request = new LintIdeRequest(client, project, files, modules, false);
-    request.setScope(lintScope);
-    final LintDriver lint = client.createDriver(request);
-
     // Baseline analysis?
     myBaseline = null;
     Module severityModule = null;
@@ -282,7 +299,6 @@ public class LintGlobalInspectionContext implements GlobalInspectionContextExten
           }
         }
         myBaseline = new LintBaseline(client, baselineFile);
-        lint.setBaseline(myBaseline);
         if (!baselineFile.isFile()) {
           myBaseline.setWriteOnClose(true);
         }
@@ -294,7 +310,20 @@ public class LintGlobalInspectionContext implements GlobalInspectionContextExten
       }
     }
 
-    lint.analyze();
+    final LintDriver lint;
+    int moduleParallelism = getModuleParallelism();
+    if (files == null && myBaseline == null && !runningSingleInspection && modules.size() > 1 && moduleParallelism > 1) {
+      lint = analyzeModulesInParallel(project, client, lintResult, issues, scope, lintScope, modules, moduleParallelism);
+    }
+    else {
+      LintRequest request = new LintIdeRequest(client, project, files, modules, false);
+      request.setScope(lintScope);
+      lint = client.createDriver(request);
+      if (myBaseline != null) {
+        lint.setBaseline(myBaseline);
+      }
+      lint.analyze();
+    }
 
     // Running all detectors? Then add dynamically registered detectors too.
     if (!runningSingleInspection) {
@@ -337,6 +366,157 @@ public class LintGlobalInspectionContext implements GlobalInspectionContextExten
     myResults = problemMap;
   }
 
+  /**
+   * Runs lint over several modules using more than one core. Issues which can be checked one file at a time are analyzed with one
+   * lint request per module, run concurrently on a bounded pool. Each of those requests only checks the sources of its own module;
+   * the modules it depends on are checked by their own request, so the requests do not need to wait for each other. Issues which need
+   * to see several files at once (unused resources, call graphs, ...) rely on lint seeing library modules along with the modules
+   * depending on them, so they are analyzed by a single request over all the modules, on the calling thread, when any is enabled.
+   * All problems end up in the problem map of {@code lintResult}.
+   *
+   * @return the driver of the request over all the modules, used to log the session. When no such request was needed, it is a driver
+   * created by {@code client} for the same request which is not run.
+   */
+  @NotNull
+  private static LintDriver analyzeModulesInParallel(@NotNull Project project,
+                                                     @NotNull LintIdeClient client,
+                                                     @NotNull LintBatchResult lintResult,
+                                                     @NotNull Set<Issue> issues,
+                                                     @NotNull AnalysisScope scope,
+                                                     @Nullable EnumSet<Scope> lintScope,
+                                                     @NotNull List<Module> modules,
+                                                     int moduleParallelism) {
+    Set<Issue> moduleIssues = new HashSet<>();
+    Set<Issue> projectIssues = new HashSet<>();
+    splitIssuesByScope(issues, moduleIssues, projectIssues);
+
+    ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+    ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Android Lint batch analysis", moduleParallelism);
+    AtomicInteger analyzedModules = new AtomicInteger();
+    List<Future<Map<Issue, Map<File, List<LintProblemData>>>>> futures = new ArrayList<>();
+    try {
+      if (!moduleIssues.isEmpty()) {
+        for (Module module : modules) {
+          futures.add(executor.submit(() -> {
+            Map<Issue, Map<File, List<LintProblemData>>> moduleProblems = new HashMap<>();
+            LintBatchResult moduleResult = new LintBatchResult(project, moduleProblems, scope, moduleIssues);
+            Runnable analyzeModule = () -> {
+              LintIdeClient moduleClient = LintIdeSupport.get().createBatchClient(moduleResult);
+              try {
+                LintRequest request = new LintIdeRequest(moduleClient, project, null, Collections.singletonList(module), false);
+                request.setScope(lintScope);
+                LintDriver moduleLint = moduleClient.createDriver(request);
+                // The modules this one depends on are analyzed by their own request
+                moduleLint.setCheckDependencies(false);
+                moduleLint.analyze();
+              }
+              finally {
+                Disposer.dispose(moduleClient);
+              }
+            };
+            ProgressManager.getInstance().runProcess(analyzeModule, indicator != null ? new SensitiveProgressWrapper(indicator) : null);
+            if (indicator != null) {
+              indicator.setText2(LintBundle.message("android.lint.batch.module.analyzed", module.getName(),
+                                                    analyzedModules.incrementAndGet(), modules.size()));
+            }
+            return moduleProblems;
+          }));
+        }
+      }
+
+      LintDriver lint;
+      Map<Issue, Map<File, List<LintProblemData>>> projectProblems = new HashMap<>();
+      if (projectIssues.isEmpty()) {
+        LintRequest request = new LintIdeRequest(client, project, null, modules, false);
+        request.setScope(lintScope);
+        lint = client.createDriver(request);
+      }
+      else {
+        LintBatchResult projectResult = new LintBatchResult(project, projectProblems, scope, projectIssues);
+        LintIdeClient projectClient = LintIdeSupport.get().createBatchClient(projectResult);
+        try {
+          LintRequest request = new LintIdeRequest(projectClient, project, null, modules, false);
+          request.setScope(lintScope);
+          lint = projectClient.createDriver(request);
+          lint.analyze();
+        }
+        finally {
+          Disposer.dispose(projectClient);
+        }
+      }
+
+      List<Map<Issue, Map<File, List<LintProblemData>>>> moduleProblems = new ArrayList<>();
+      for (Future<Map<Issue, Map<File, List<LintProblemData>>>> future : futures) {
+        moduleProblems.add(ProgressIndicatorUtils.awaitWithCheckCanceled(future));
+      }
+      mergeProblems(lintResult.getProblemMap(), projectProblems, moduleProblems, projectIssues);
+      return lint;
+    }
+    finally {
+      for (Future<?> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  private static int getModuleParallelism() {
+    int parallelism = Registry.intValue(MODULE_PARALLELISM_KEY, 0);
+    return parallelism > 0 ? parallelism : DEFAULT_MODULE_PARALLELISM;
+  }
+
+  /**
+   * Adds the issues which lint can check one file at a time to {@code moduleIssues}, and the others to {@code projectIssues}.
+   */
+  @VisibleForTesting
+  static void splitIssuesByScope(@NotNull Set<Issue> issues, @NotNull Set<Issue> moduleIssues, @NotNull Set<Issue> projectIssues) {
+    for (Issue issue : issues) {
+      if (Scope.checkSingleFile(issue.getImplementation().getScope())) {
+        moduleIssues.add(issue);
+      }
+      else {
+        projectIssues.add(issue);
+      }
+    }
+  }
+
+  /**
+   * Adds to {@code target} the problems found by the request over all the modules and by the per-module requests. The problems of
+   * {@code projectIssues} are only taken from {@code projectProblems}. Checks which are not filtered by the IDE configuration (e.g.
+   * third-party checks) run as part of every request, so problems reported more than once are only added once.
+   */
+  @VisibleForTesting
+  static void mergeProblems(@NotNull Map<Issue, Map<File, List<LintProblemData>>> target,
+                            @NotNull Map<Issue, Map<File, List<LintProblemData>>> projectProblems,
+                            @NotNull List<Map<Issue, Map<File, List<LintProblemData>>>> moduleProblems,
+                            @NotNull Set<Issue> projectIssues) {
+    Set<String> reported = new HashSet<>();
+    addProblems(target, projectProblems, null, reported);
+    for (Map<Issue, Map<File, List<LintProblemData>>> problems : moduleProblems) {
+      addProblems(target, problems, projectIssues, reported);
+    }
+  }
+
+  private static void addProblems(@NotNull Map<Issue, Map<File, List<LintProblemData>>> target,
+                                  @NotNull Map<Issue, Map<File, List<LintProblemData>>> source,
+                                  @Nullable Set<Issue> excludedIssues,
+                                  @NotNull Set<String> reported) {
+    for (Map.Entry<Issue, Map<File, List<LintProblemData>>> issueEntry : source.entrySet()) {
+      Issue issue = issueEntry.getKey();
+      if (excludedIssues != null && excludedIssues.contains(issue)) {
+        continue;
+      }
+      for (Map.Entry<File, List<LintProblemData>> fileEntry : issueEntry.getValue().entrySet()) {
+        File file = fileEntry.getKey();
+        for (LintProblemData problem : fileEntry.getValue()) {
+          String key = issue.getId() + '|' + file.getPath() + '|' + problem.getTextRange() + '|' + problem.getMessage();
+          if (reported.add(key)) {
+            target.computeIfAbsent(issue, k -> new HashMap<>()).computeIfAbsent(file, k -> new ArrayList<>()).add(problem);
+          }
+        }
+      }
+    }
+  }
+
   @Nullable
   public Map<Issue, Map<File, List<LintProblemData>>> getResults() {
     return myResults;
@@ -19,6 +19,11 @@ import com.android.test.testutils.TestUtils.getWorkspaceRoot
 import com.android.tools.idea.util.StudioPathManager
 import com.android.tools.lint.checks.CommentDetector
 import com.android.tools.lint.client.api.LintClient
+import com.android.tools.lint.detector.api.Category
+import com.android.tools.lint.detector.api.Implementation
+import com.android.tools.lint.detector.api.Issue
+import com.android.tools.lint.detector.api.Scope
+import com.android.tools.lint.detector.api.Severity
 import com.android.tools.tests.AdtTestProjectDescriptors
 import com.google.common.base.Verify
 import com.google.common.collect.Lists
@@ -33,17 +38,23 @@ import com.intellij.codeInspection.GlobalInspectionTool
 import com.intellij.codeInspection.ex.GlobalInspectionToolWrapper
 import com.intellij.codeInspection.ex.InspectionToolWrapper
 import com.intellij.ide.highlighter.ModuleFileType
+import com.intellij.openapi.application.WriteAction
 import com.intellij.openapi.application.ex.PathManagerEx
 import com.intellij.openapi.command.WriteCommandAction
 import com.intellij.openapi.fileEditor.FileDocumentManager
 import com.intellij.openapi.module.Module
 import com.intellij.openapi.module.ModuleManager
 import com.intellij.openapi.project.Project
+import com.intellij.openapi.roots.ModuleRootModificationUtil
+import com.intellij.openapi.util.TextRange
 import com.intellij.openapi.util.io.FileUtil
+import com.intellij.openapi.util.registry.Registry
+import com.intellij.openapi.vfs.LocalFileSystem
 import com.intellij.openapi.vfs.VfsUtilCore
 import com.intellij.openapi.vfs.newvfs.impl.VfsRootAccess
 import com.intellij.psi.PsiFile
 import com.intellij.testFramework.InspectionTestUtil
+import com.intellij.testFramework.PsiTestUtil
 import com.intellij.testFramework.UsefulTestCase
 import com.intellij.testFramework.builders.JavaModuleFixtureBuilder
 import com.intellij.testFramework.createGlobalContextForTool
@@ -60,6 +71,7 @@ import com.intellij.workspaceModel.ide.legacyBridge.impl.java.JAVA_MODULE_ENTITY
 import java.io.File
 import java.io.IOException
 import java.nio.file.Files
+import java.util.EnumSet
 
 class LintIdeTest : UsefulTestCase() {
   init {
@@ -276,6 +288,107 @@ class LintIdeTest : UsefulTestCase() {
     }
   }
 
+  fun testBatchAnalysisOfSeveralModules() {
+    val wasEnabled = CommentDetector.STOP_SHIP.isEnabledByDefault()
+    try {
+      CommentDetector.STOP_SHIP.setEnabledByDefault(true)
+      Registry.get(LintGlobalInspectionContext.MODULE_PARALLELISM_KEY).setValue(2, testRootDisposable)
+
+      // A second module, which the first one depends on
+      val libRoot = File(myFixture.tempDirPath, "lib")
+      File(libRoot, "src").mkdirs()
+      val libRootFile = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(libRoot)!!
+      val lib =
+        WriteAction.computeAndWait<Module, Throwable> {
+          ModuleManager.getInstance(project)
+            .newModule(
+              "${libRoot.path}/lib${ModuleFileType.DOT_DEFAULT_EXTENSION}",
+              JAVA_MODULE_ENTITY_TYPE_ID_NAME
+            )
+        }
+      PsiTestUtil.addContentRoot(lib, libRootFile)
+      PsiTestUtil.addSourceRoot(lib, libRootFile.findChild("src")!!)
+      ModuleRootModificationUtil.addDependency(myModule, lib)
+
+      myFixture.addFileToProject("src/p1/App.java", "package p1;\n// STOPSHIP\npublic class App {}")
+      myFixture.addFileToProject("lib/src/p2/Lib.java", "package p2;\n// STOPSHIP\npublic class Lib {}")
+
+      // Run more than one inspection, single inspections are analyzed with a single request
+      val wrappers =
+        listOf<InspectionToolWrapper<*, *>>(
+          GlobalInspectionToolWrapper(AndroidLintStopShipInspection()),
+          GlobalInspectionToolWrapper(AndroidLintUseValueOfInspection())
+        )
+      wrappers.forEach { myFixture.enableInspections(it.tool) }
+      val scope = AnalysisScope(project)
+      val globalContext = createGlobalContextForTool(scope, project, wrappers)
+      InspectionTestUtil.runTool(wrappers[0], scope, globalContext)
+
+      val results = globalContext.getExtension(LintGlobalInspectionContext.ID).results!!
+      val stopShipProblems = results[CommentDetector.STOP_SHIP]!!
+      assertThat(stopShipProblems.keys.map { it.name }).containsExactly("App.java", "Lib.java")
+      // lib is analyzed by its own request only, not again as a dependency of app
+      assertThat(stopShipProblems.values.flatten()).hasSize(2)
+    } finally {
+      CommentDetector.STOP_SHIP.setEnabledByDefault(wasEnabled)
+    }
+  }
+
+  fun testMergeBatchProblemsOfSeveralModules() {
+    val moduleIssue = CommentDetector.STOP_SHIP
+    val projectIssue =
+      Issue.create(
+        "TestSeveralFiles",
+        "Test issue",
+        "Test issue checking several files at once",
+        Category.CORRECTNESS,
+        5,
+        Severity.WARNING,
+        Implementation(CommentDetector::class.java, EnumSet.of(Scope.ALL_JAVA_FILES))
+      )
+    val moduleIssues = mutableSetOf<Issue>()
+    val projectIssues = mutableSetOf<Issue>()
+    LintGlobalInspectionContext.splitIssuesByScope(
+      setOf(moduleIssue, projectIssue),
+      moduleIssues,
+      projectIssues
+    )
+    assertThat(moduleIssues).containsExactly(moduleIssue)
+    assertThat(projectIssues).containsExactly(projectIssue)
+
+    fun problem(issue: Issue, offset: Int) =
+      LintProblemData(issue, "Problem at $offset", TextRange(offset, offset + 1), null, null)
+    val appFile = File("app/src/App.java")
+    val libFile = File("lib/src/Lib.java")
+    val projectProblem = problem(projectIssue, 0)
+    val appProblem = problem(moduleIssue, 1)
+    val libProblem = problem(moduleIssue, 2)
+    val projectProblems =
+      mapOf(
+        projectIssue to mapOf(appFile to listOf(projectProblem)),
+        // Checks not filtered by the IDE configuration are reported by every request
+        moduleIssue to mapOf(libFile to listOf(libProblem))
+      )
+    val appProblems =
+      mapOf(
+        moduleIssue to mapOf(appFile to listOf(appProblem)),
+        // Only the request over all the modules sees enough files to report these
+        projectIssue to mapOf(appFile to listOf(problem(projectIssue, 3)))
+      )
+    val libProblems = mapOf(moduleIssue to mapOf(libFile to listOf(problem(moduleIssue, 2))))
+
+    val merged = HashMap<Issue, Map<File, List<LintProblemData>>>()
+    LintGlobalInspectionContext.mergeProblems(
+      merged,
+      projectProblems,
+      listOf(appProblems, libProblems),
+      projectIssues
+    )
+    assertThat(merged[projectIssue]).containsExactly(appFile, listOf(projectProblem))
+    assertThat(merged[moduleIssue])
+      .containsExactly(appFile, listOf(appProblem), libFile, listOf(libProblem))
+  }
+
   fun testGradleWindows() {
     doTestWithFix(
       AndroidLintGradlePathInspection(),
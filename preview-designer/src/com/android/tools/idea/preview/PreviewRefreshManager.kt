@@ -18,6 +18,7 @@ package com.android.tools.idea.preview
 import com.android.annotations.concurrency.GuardedBy
 import com.android.tools.idea.concurrency.AndroidDispatchers
 import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.diagnostic.debug
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.CoroutineStart
 import kotlinx.coroutines.Job
@@ -29,6 +30,7 @@ import org.jetbrains.annotations.TestOnly
 import java.util.Collections
 import java.util.PriorityQueue
 import java.util.concurrent.CancellationException
+import java.util.concurrent.TimeUnit
 import java.util.concurrent.locks.ReentrantLock
 import kotlin.concurrent.withLock
 
@@ -90,6 +92,15 @@ interface PreviewRefreshRequest : Comparable<PreviewRefreshRequest> {
    */
   fun onRefreshCompleted(result: RefreshResult, throwable: Throwable?)
 
+  /**
+   * Method called right before [onRefreshCompleted] with the time this request waited in the queue
+   * of the [PreviewRefreshManager] until [doRefresh] was called, and the time from that call until
+   * the refresh completed.
+   *
+   * Note that this will never be used on skipped requests.
+   */
+  fun onRefreshTimings(queueWaitMillis: Long, refreshMillis: Long) {}
+
   /**
    * Method called when a request is skipped by the [PreviewRefreshManager] due to another request
    * with the same [clientId] that has higher priority, or that has equal priority but is newer.
@@ -124,6 +135,10 @@ class PreviewRefreshManager(private val scope: CoroutineScope) {
   private val allPendingRequests: PriorityQueue<PreviewRefreshRequest> =
     PriorityQueue(Collections.reverseOrder()) // higher first
 
+  /** The [System.nanoTime] at which each pending request was added to the queue. */
+  @GuardedBy("requestsLock")
+  private val enqueueTimesNanos: MutableMap<PreviewRefreshRequest, Long> = mutableMapOf()
+
   @GuardedBy("requestsLock") private var runningRequest: PreviewRefreshRequest? = null
   @GuardedBy("requestsLock") private var runningJob: Job? = null
 
@@ -141,6 +156,7 @@ class PreviewRefreshManager(private val scope: CoroutineScope) {
         val lazyWrapperJob: Job
         var currentRefreshJob: Job? = null
         val currentRequest: PreviewRefreshRequest
+        val queueWaitNanos: Long
         requestsLock.withLock {
           if (allPendingRequests.isEmpty()) {
             _refreshingTypeFlow.value = null
@@ -148,6 +164,7 @@ class PreviewRefreshManager(private val scope: CoroutineScope) {
           }
           currentRequest = allPendingRequests.remove()
           pendingRequestsPerClient.remove(currentRequest.clientId)
+          queueWaitNanos = System.nanoTime() - (enqueueTimesNanos.remove(currentRequest) ?: 0L)
           // Don't start the refresh inside the requestsLock to avoid
           // a potential deadlock with the UI thread.
           lazyWrapperJob =
@@ -161,6 +178,7 @@ class PreviewRefreshManager(private val scope: CoroutineScope) {
 
         try {
           _refreshingTypeFlow.value = currentRequest.refreshType
+          val refreshStartNanos = System.nanoTime()
           lazyWrapperJob.invokeOnCompletion {
             if (it != null) {
               currentRefreshJob?.cancel(if (it is CancellationException) it else null)
@@ -172,6 +190,13 @@ class PreviewRefreshManager(private val scope: CoroutineScope) {
                   RefreshResult.CANCELLED
                 else -> RefreshResult.FAILED
               }
+            val queueWaitMillis = TimeUnit.NANOSECONDS.toMillis(queueWaitNanos)
+            val refreshMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - refreshStartNanos)
+            log.debug {
+              "Refresh $result ($currentRequest): waited ${queueWaitMillis}ms in the queue, " +
+                "refresh took ${refreshMillis}ms"
+            }
+            currentRequest.onRefreshTimings(queueWaitMillis, refreshMillis)
             currentRequest.onRefreshCompleted(result, it)
             // Log unexpected failures
             if (result == RefreshResult.FAILED) {
@@ -234,9 +259,11 @@ class PreviewRefreshManager(private val scope: CoroutineScope) {
             currentPendingRequestOfClient?.let {
               it.onSkip(request)
               allPendingRequests.remove(it)
+              enqueueTimesNanos.remove(it)
             }
             pendingRequestsPerClient[request.clientId] = request
             allPendingRequests.add(request)
+            enqueueTimesNanos[request] = System.nanoTime()
           }
           requestsFlow.tryEmit(Unit)
         }
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.preview
+
+import com.android.tools.idea.common.scene.SceneManager
+import com.android.tools.idea.uibuilder.scene.LayoutlibSceneManager
+import com.android.tools.idea.uibuilder.surface.NlDesignSurface
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.diagnostic.debug
+import com.intellij.openapi.util.Disposer
+import org.jetbrains.annotations.VisibleForTesting
+
+/**
+ * Decides the order in which the previews of a [NlDesignSurface] are rendered during a refresh.
+ *
+ * After the order requested by the caller of [forEachInRenderOrder], previews are rendered in the
+ * following order:
+ * - The preview the user is interacting with, i.e. the focused one.
+ * - The visible previews.
+ * - The previews that are not visible.
+ *
+ * Within each group, previews that were faster to render the last time go first, so that the
+ * largest number of previews are shown as soon as possible.
+ *
+ * Visibility is evaluated again before each render, so previews scrolled out of view while a
+ * refresh is running are deferred until the visible ones are rendered, and previews scrolled into
+ * view are rendered next.
+ */
+internal class PreviewRenderScheduler
+@VisibleForTesting
+constructor(
+  private val visibility: PreviewVisibility,
+  private val renderCost: (LayoutlibSceneManager) -> Long
+) {
+  constructor(
+    surface: NlDesignSurface
+  ) : this(SurfacePreviewVisibility(surface), { it.lastRenderDurationMs() })
+
+  /**
+   * Calls [render] for each of [items] in render order, see [PreviewRenderScheduler].
+   *
+   * @param sceneManager returns the [LayoutlibSceneManager] rendering an item
+   * @param baseOrder order that takes precedence over the render order
+   * @param render called with the position of the item in the render order and the item
+   */
+  suspend fun <T> forEachInRenderOrder(
+    items: List<T>,
+    sceneManager: (T) -> LayoutlibSceneManager,
+    baseOrder: Comparator<LayoutlibSceneManager> = Comparator { _, _ -> 0 },
+    render: suspend (Int, T) -> Unit
+  ) {
+    // The base order and the render cost of the pending items don't change during the refresh, so
+    // the items are sorted by them once. Only focus and visibility are evaluated before each
+    // render, and only the focused and visible items are looked at to choose the next one.
+    val sortedItems = items.sortedWith(compareBy(baseOrder.thenBy(renderCost), sceneManager))
+    val queue = RenderQueue(sortedItems, sceneManager)
+    val trackingDisposable = Disposer.newDisposable()
+    try {
+      visibility.track(trackingDisposable)
+      var index = 0
+      while (queue.isNotEmpty()) {
+        val next =
+          queue.removeNext(
+            baseOrder,
+            visibility.findFocusedSceneManager(),
+            visibility.findVisibleSceneManagers()
+          )
+        render(index++, next)
+      }
+    } finally {
+      Disposer.dispose(trackingDisposable)
+    }
+  }
+}
+
+/** The visibility and focus of the previews, used by [PreviewRenderScheduler]. */
+internal interface PreviewVisibility {
+  /** Starts tracking changes of the visibility of the previews until [disposable] is disposed. */
+  fun track(disposable: Disposable)
+
+  /** Returns the scene manager the user is interacting with, if any. */
+  fun findFocusedSceneManager(): SceneManager?
+
+  /** Returns the visible scene managers, or null if all of them are visible. */
+  fun findVisibleSceneManagers(): Set<SceneManager>?
+}
+
+/**
+ * [PreviewVisibility] of the previews of a [NlDesignSurface]. The geometry of the surface is only
+ * measured again after it's panned, zoomed or its models change, see [SceneViewGeometryCache].
+ */
+private class SurfacePreviewVisibility(private val surface: NlDesignSurface) : PreviewVisibility {
+  private val log = Logger.getInstance(PreviewRenderScheduler::class.java)
+  private val geometry = SceneViewGeometryCache(surface)
+
+  override fun track(disposable: Disposable) {
+    geometry.invalidateOnSurfaceChanges(disposable)
+  }
+
+  override fun findFocusedSceneManager(): SceneManager? = surface.focusedSceneView?.sceneManager
+
+  override fun findVisibleSceneManagers(): Set<SceneManager>? =
+    geometry.findVisibleSceneManagers().also {
+      log.debug { "${it?.size ?: "All"} of ${surface.sceneManagers.size} previews visible" }
+    }
+}
+
+/**
+ * The items pending to be rendered, sorted by base order and render cost.
+ *
+ * Choosing the next item only looks at the focused and visible scene managers, so a refresh of n
+ * previews with v visible ones takes O(n * v) instead of sorting the pending items for each render.
+ */
+private class RenderQueue<T>(
+  private val sortedItems: List<T>,
+  private val sceneManager: (T) -> LayoutlibSceneManager
+) {
+  private val isPending = BooleanArray(sortedItems.size) { true }
+  private val positionsBySceneManager: Map<SceneManager, List<Int>> =
+    sortedItems.indices.groupBy<Int, SceneManager> { sceneManager(sortedItems[it]) }
+  private var first = 0
+
+  fun isNotEmpty(): Boolean = first < sortedItems.size
+
+  /**
+   * Removes and returns the next item to render: the first pending item in base order, preferring
+   * the focused one and then the visible ones among the items with the same base order.
+   */
+  fun removeNext(
+    baseOrder: Comparator<LayoutlibSceneManager>,
+    focused: SceneManager?,
+    visible: Set<SceneManager>?
+  ): T {
+    val firstSceneManager = sceneManager(sortedItems[first])
+    fun firstPendingOf(candidate: SceneManager?): Int? =
+      positionsBySceneManager[candidate]?.firstOrNull {
+        isPending[it] && baseOrder.compare(sceneManager(sortedItems[it]), firstSceneManager) == 0
+      }
+
+    val position =
+      firstPendingOf(focused)
+        ?: visible?.let { visible.mapNotNull { firstPendingOf(it) }.minOrNull() ?: first }
+        ?: first
+    isPending[position] = false
+    while (first < sortedItems.size && !isPending[first]) first++
+    return sortedItems[position]
+  }
+}
+
+/** Returns the time the last render took, or 0 if unknown. */
+private fun LayoutlibSceneManager.lastRenderDurationMs(): Long =
+  renderResult?.stats?.totalRenderDurationMs?.coerceAtLeast(0) ?: 0
@@ -15,12 +15,10 @@
  */
 package com.android.tools.idea.preview
 
-import com.android.annotations.concurrency.GuardedBy
 import com.android.tools.editor.PanZoomListener
 import com.android.tools.idea.common.model.NlModel
 import com.android.tools.idea.common.surface.DesignSurface
 import com.android.tools.idea.common.surface.DesignSurfaceListener
-import com.android.tools.idea.common.surface.SceneView
 import com.android.tools.idea.concurrency.AndroidCoroutineScope
 import com.android.tools.idea.concurrency.disposableCallbackFlow
 import com.android.tools.idea.modes.essentials.EssentialsMode
@@ -31,10 +29,7 @@ import com.android.tools.idea.uibuilder.surface.NlDesignSurface
 import com.intellij.openapi.util.Disposer
 import kotlinx.coroutines.flow.debounce
 import kotlinx.coroutines.launch
-import java.awt.Rectangle
 import java.awt.event.AdjustmentEvent
-import java.util.concurrent.locks.ReentrantLock
-import kotlin.concurrent.withLock
 import kotlin.math.abs
 
 /**
@@ -89,10 +84,7 @@ class DefaultRenderQualityManager(
   private val scope = AndroidCoroutineScope(mySurface)
   private var isPaused = false
 
-  private val uiDataLock = ReentrantLock()
-  @GuardedBy("uiDataLock") private var sceneViewRectangles: Map<SceneView, Rectangle?> = emptyMap()
-  @GuardedBy("uiDataLock") private var scrollRectangle: Rectangle? = null
-  @GuardedBy("uiDataLock") private var isUiDataUpToDate = false
+  private val geometry = SceneViewGeometryCache(mySurface)
 
   init {
     scope.launch {
@@ -128,33 +120,15 @@ class DefaultRenderQualityManager(
         .collect {
           // Mark the ui data as outdated,
           // but don't refresh it now as it may not be needed until later
-          uiDataLock.withLock { isUiDataUpToDate = false }
+          geometry.invalidate()
           onQualityChangeMightBeNeeded()
         }
     }
   }
 
-  private fun isSceneManagerVisible(sceneManager: LayoutlibSceneManager): Boolean {
-    return uiDataLock.withLock {
-      // A null scrollRectangle should be caused by a not-scrollable surface, and in such case
-      // all previews are considered to be visible
-      scrollRectangle == null ||
-        sceneManager.sceneViews.any {
-          sceneViewRectangles.getOrDefault(it, null)?.intersects(scrollRectangle!!) == true
-        }
-    }
-  }
-
   override fun getTargetQuality(sceneManager: LayoutlibSceneManager): Float {
     if (isPaused) return getDefaultPreviewQuality()
-    uiDataLock.withLock {
-      if (!isUiDataUpToDate) {
-        sceneViewRectangles = mySurface.findSceneViewRectangles()
-        scrollRectangle = mySurface.currentScrollRectangle
-        isUiDataUpToDate = true
-      }
-    }
-    return myPolicy.getTargetQuality(mySurface.scale, isSceneManagerVisible(sceneManager))
+    return myPolicy.getTargetQuality(mySurface.scale, geometry.isVisible(sceneManager))
   }
 
   override fun needsQualityChange(sceneManager: LayoutlibSceneManager): Boolean =
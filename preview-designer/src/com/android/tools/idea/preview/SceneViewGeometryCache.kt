@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.preview
+
+import com.android.annotations.concurrency.GuardedBy
+import com.android.tools.editor.PanZoomListener
+import com.android.tools.idea.common.model.NlModel
+import com.android.tools.idea.common.scene.SceneManager
+import com.android.tools.idea.common.surface.DesignSurface
+import com.android.tools.idea.common.surface.DesignSurfaceListener
+import com.android.tools.idea.common.surface.SceneView
+import com.android.tools.idea.uibuilder.surface.NlDesignSurface
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.util.Disposer
+import java.awt.Rectangle
+import java.awt.event.AdjustmentEvent
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * Cache of the geometry of the [SceneView]s of a [NlDesignSurface], used to know which previews
+ * are visible without measuring the Swing components of the surface for each preview.
+ *
+ * The geometry is measured on the first use after [invalidate].
+ */
+internal class SceneViewGeometryCache(private val surface: NlDesignSurface) {
+  private val lock = ReentrantLock()
+  @GuardedBy("lock") private var visibleSceneViews: Set<SceneView>? = null
+  @GuardedBy("lock") private var visibleSceneManagers: Set<SceneManager>? = null
+  @GuardedBy("lock") private var isUpToDate = false
+
+  /** Marks the geometry as outdated, so it's measured again the next time it's needed. */
+  fun invalidate() {
+    lock.withLock { isUpToDate = false }
+  }
+
+  /**
+   * Invalidates the geometry whenever the surface is panned or zoomed, or its models change, until
+   * [parentDisposable] is disposed.
+   */
+  fun invalidateOnSurfaceChanges(parentDisposable: Disposable) {
+    val panZoomListener =
+      object : PanZoomListener {
+        override fun zoomChanged(previousScale: Double, newScale: Double) = invalidate()
+
+        override fun panningChanged(adjustmentEvent: AdjustmentEvent?) = invalidate()
+      }
+    val designSurfaceListener =
+      object : DesignSurfaceListener {
+        override fun modelChanged(surface: DesignSurface<*>, model: NlModel?) = invalidate()
+      }
+    surface.addPanZoomListener(panZoomListener)
+    surface.addListener(designSurfaceListener)
+    Disposer.register(parentDisposable) {
+      surface.removePanZoomListener(panZoomListener)
+      surface.removeListener(designSurfaceListener)
+    }
+  }
+
+  /**
+   * Returns the scene managers with a scene view that intersects the visible area of the surface,
+   * or null if all of them are visible because the surface is not scrollable.
+   */
+  fun findVisibleSceneManagers(): Set<SceneManager>? =
+    lock.withLock {
+      update()
+      visibleSceneManagers
+    }
+
+  /** Returns true if any of the scene views of [sceneManager] is visible. */
+  fun isVisible(sceneManager: SceneManager): Boolean {
+    val visibleSceneViews =
+      lock.withLock {
+        update()
+        visibleSceneViews
+      } ?: return true
+    return sceneManager.sceneViews.any { it in visibleSceneViews }
+  }
+
+  @GuardedBy("lock")
+  private fun update() {
+    if (!isUpToDate) {
+      // A null scrollRectangle should be caused by a not-scrollable surface, and in such case
+      // all previews are considered to be visible
+      val scrollRectangle: Rectangle? = surface.currentScrollRectangle
+      visibleSceneViews =
+        scrollRectangle?.let {
+          surface
+            .findSceneViewRectangles()
+            .filterValues { rectangle -> rectangle?.intersects(scrollRectangle) == true }
+            .keys
+        }
+      visibleSceneManagers = visibleSceneViews?.mapTo(HashSet()) { it.sceneManager }
+      isUpToDate = true
+    }
+  }
+}
@@ -27,12 +27,17 @@ import com.android.tools.idea.concurrency.getPsiFileSafely
 import com.android.tools.idea.configurations.ConfigurationManager
 import com.android.tools.idea.preview.PreviewBundle.message
 import com.android.tools.idea.preview.navigation.PreviewNavigationHandler
+import com.android.tools.idea.preview.rendering.PreviewRenderCache
+import com.android.tools.idea.preview.rendering.compiledClassesHash
+import com.android.tools.idea.preview.rendering.previewRenderCacheKey
 import com.android.tools.idea.uibuilder.model.NlComponentRegistrar
 import com.android.tools.idea.uibuilder.scene.LayoutlibSceneManager
+import com.android.tools.idea.uibuilder.scene.hasRenderErrors
 import com.android.tools.idea.uibuilder.surface.NlDesignSurface
 import com.android.tools.preview.MethodPreviewElement
 import com.android.tools.preview.PreviewDisplaySettings
 import com.android.tools.preview.PreviewElement
+import com.google.common.hash.HashCode
 import com.intellij.openapi.Disposable
 import com.intellij.openapi.application.runReadAction
 import com.intellij.openapi.diagnostic.Logger
@@ -112,6 +117,8 @@ fun <T : PreviewElement, M> matchElementsToModels(
  *   [LayoutlibSceneManager].
  * @param refreshFilter a filter to only refresh some of the existing previews. By default, all of
  *   them are refreshed
+ * @param refreshOrder previews with a lower value are refreshed first. Previews with the same value
+ *   are refreshed in the order decided by [PreviewRenderScheduler].
  */
 @Slow
 suspend fun <T : PreviewElement> NlDesignSurface.refreshExistingPreviewElements(
@@ -123,13 +130,19 @@ suspend fun <T : PreviewElement> NlDesignSurface.refreshExistingPreviewElements(
   refreshOrder: (LayoutlibSceneManager) -> Int = { 0 }
 ) {
   val previewElementsToSceneManagers =
-    sceneManagers.filter(refreshFilter).sortedBy(refreshOrder).mapNotNull {
+    sceneManagers.filter(refreshFilter).mapNotNull {
       val previewElement = modelToPreview(it.model) ?: return@mapNotNull null
       previewElement to it
     }
-  previewElementsToSceneManagers.forEachIndexed { index, pair ->
+  val refreshOrders =
+    previewElementsToSceneManagers.associate { it.second to refreshOrder(it.second) }
+  PreviewRenderScheduler(this).forEachInRenderOrder(
+    previewElementsToSceneManagers,
+    sceneManager = { it.second },
+    baseOrder = compareBy { refreshOrders[it] }
+  ) { index, pair ->
     if (progressIndicator.isCanceled)
-      return@refreshExistingPreviewElements // Return early if user cancels the refresh.
+      return@forEachInRenderOrder // Skip the remaining renders if user cancels the refresh.
     progressIndicator.text =
       message(
         "refresh.progress.indicator.rendering.preview",
@@ -209,6 +222,10 @@ suspend fun <T : PreviewElement> NlDesignSurface.updatePreviewsAndRefresh(
     Disposer.dispose(it)
   }
 
+  // The hashes of the compiled classes of the files defining the previews, used to look up the
+  // previews in the PreviewRenderCache.
+  val compiledClassesHashes = mutableMapOf<PsiFile, HashCode?>()
+
   // Second, reorder the models to reuse and create the new models needed,
   // adding placeholders for all of them, but without rendering anything yet.
   val elementsToSceneManagers =
@@ -290,11 +307,20 @@ suspend fun <T : PreviewElement> NlDesignSurface.updatePreviewsAndRefresh(
         } ?: psiFile
       navigationHandler.setDefaultLocation(newModel, defaultFile, offset)
 
-      withContext(AndroidDispatchers.workerThread) {
-        previewElementModelAdapter.applyToConfiguration(previewElement, newModel.configuration)
+      val renderCacheKey =
+        withContext(AndroidDispatchers.workerThread) {
+          previewElementModelAdapter.applyToConfiguration(previewElement, newModel.configuration)
+          compiledClassesHashes
+            .getOrPut(defaultFile) { compiledClassesHash(defaultFile) }
+            ?.let { previewRenderCacheKey(facet, it, fileContents, newModel.configuration) }
+        }
+      // Models without a render result show the image of a previous render of the same
+      // preview, if any, until they are rendered.
+      if (renderCacheKey != null && sceneManager.renderResult == null) {
+        sceneManager.placeholderImage = PreviewRenderCache.getInstance().get(renderCacheKey)
       }
 
-      previewElement to sceneManager
+      PreviewRender(previewElement, sceneManager, renderCacheKey)
     }
 
   // Relayout the scene views and repaint, so that the updated lists of previews is shown before
@@ -302,17 +328,39 @@ suspend fun <T : PreviewElement> NlDesignSurface.updatePreviewsAndRefresh(
   // will keep their current Preview image and new models will be empty.
   revalidateScrollArea()
 
-  // Finally, render
+  // Finally, render. Previews showing a cached image might be outdated, so they are rendered in
+  // the same order as the others.
   var previewsRendered = 0
-  elementsToSceneManagers.forEachIndexed { idx, (_, sceneManager) ->
-    if (progressIndicator.isCanceled) return@forEachIndexed
+  PreviewRenderScheduler(this).forEachInRenderOrder(
+    elementsToSceneManagers,
+    sceneManager = { it.sceneManager }
+  ) { idx, (_, sceneManager, renderCacheKey) ->
+    if (progressIndicator.isCanceled) return@forEachInRenderOrder
     progressIndicator.text =
       message("refresh.progress.indicator.rendering.preview", idx + 1, elementsToSceneManagers.size)
     sceneManager.render { previewsRendered++ }
+    if (renderCacheKey != null && !sceneManager.hasRenderErrors()) {
+      val image = sceneManager.renderResult?.renderedImage?.takeIf { it.isValid }?.copy
+      if (image != null) {
+        PreviewRenderCache.getInstance().put(renderCacheKey, image)
+      }
+    }
   }
   onRenderCompleted(previewsRendered)
 
   debugLogger?.logRenderComplete(this)
   log.info("Render completed")
-  return elementsToSceneManagers.map { it.first }
+  return elementsToSceneManagers.map { it.previewElement }
 }
+
+/**
+ * A preview to be rendered by [updatePreviewsAndRefresh].
+ *
+ * @param renderCacheKey the key of the render in the [PreviewRenderCache], or null if the render
+ *   can not be cached
+ */
+private data class PreviewRender<T : PreviewElement>(
+  val previewElement: T,
+  val sceneManager: LayoutlibSceneManager,
+  val renderCacheKey: HashCode?
+)
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.preview.rendering
+
+import com.android.annotations.concurrency.Slow
+import com.android.tools.adtui.ImageUtils
+import com.android.tools.configurations.Configuration
+import com.android.tools.idea.projectsystem.getModuleSystem
+import com.android.tools.idea.res.StudioResourceRepositoryManager
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import com.google.common.hash.HashCode
+import com.google.common.hash.Hashing
+import com.intellij.openapi.application.runReadAction
+import com.intellij.psi.PsiClassOwner
+import com.intellij.psi.PsiFile
+import com.intellij.util.concurrency.AppExecutorUtil
+import org.jetbrains.android.facet.AndroidFacet
+import org.jetbrains.annotations.VisibleForTesting
+import java.awt.image.BufferedImage
+import java.util.concurrent.Executor
+
+/** Scale applied to the rendered images before storing them in a [PreviewRenderCache]. */
+private const val CACHED_IMAGE_SCALE = 0.5
+
+/**
+ * An in-memory cache of the images of previous preview renders, used to show a preview before
+ * layoutlib has rendered it, for example when a preview file is opened again.
+ *
+ * Entries are keyed by [previewRenderCacheKey]. The key does not cover everything that affects a
+ * render, like the classes of other files and libraries, so a cached image may be outdated and is
+ * only a placeholder until the preview is rendered again. The key uses the modification count of
+ * the resources, which is only meaningful within an IDE session, so the images are not persisted.
+ *
+ * Images are stored downscaled by [CACHED_IMAGE_SCALE], and only the [maxEntries] most recently
+ * used are kept. They are softly referenced, so they can be reclaimed under memory pressure.
+ */
+class PreviewRenderCache
+@VisibleForTesting
+constructor(
+  maxEntries: Long = 64,
+  private val executor: Executor =
+    AppExecutorUtil.createBoundedApplicationPoolExecutor("PreviewRenderCache", 1)
+) {
+  private val images: Cache<HashCode, BufferedImage> =
+    CacheBuilder.newBuilder().concurrencyLevel(1).maximumSize(maxEntries).softValues().build()
+
+  /** Returns the image stored for [key], or null if there is none. */
+  fun get(key: HashCode): BufferedImage? = images.getIfPresent(key)
+
+  /**
+   * Stores a downscaled copy of [image] for [key]. The image is downscaled on a background thread,
+   * so [image] must not be modified after this call.
+   */
+  fun put(key: HashCode, image: BufferedImage) {
+    executor.execute { images.put(key, ImageUtils.scale(image, CACHED_IMAGE_SCALE)) }
+  }
+
+  /** Removes all the entries. */
+  fun clear() {
+    images.invalidateAll()
+  }
+
+  companion object {
+    private val instance by lazy { PreviewRenderCache() }
+
+    @JvmStatic fun getInstance(): PreviewRenderCache = instance
+  }
+}
+
+/**
+ * Returns the hash of the compiled classes of [psiFile], or null if they can not be found, for
+ * example because the project has not been built.
+ *
+ * Only the classes defined in [psiFile] are hashed, not the ones they depend on.
+ */
+@Slow
+fun compiledClassesHash(psiFile: PsiFile): HashCode? {
+  val classOwner = psiFile as? PsiClassOwner ?: return null
+  val classNames = runReadAction { classOwner.classes.mapNotNull { it.qualifiedName } }
+  val classFileFinder =
+    runReadAction {
+      classOwner.getModuleSystem()?.getClassFileFinderForSourceFile(classOwner.virtualFile)
+    } ?: return null
+  val classContents = classNames.mapNotNull { classFileFinder.findClassFile(it) }
+  if (classContents.isEmpty()) return null
+
+  val hasher = Hashing.murmur3_128().newHasher()
+  classContents.forEach { hasher.putBytes(it.content) }
+  return hasher.hash()
+}
+
+/**
+ * Returns the key of the render of the preview with the given [previewXml] and [configuration],
+ * defined in a file whose compiled classes have the given [compiledClassesHash].
+ *
+ * The key combines the identity of the preview (its [previewXml], which includes its parameters),
+ * the bytecode of the classes it is defined in, the modification count of the app resources and
+ * the [configuration] used to render it. Changes to other classes, like the composables called by
+ * the preview, do not change the key.
+ */
+@Slow
+fun previewRenderCacheKey(
+  facet: AndroidFacet,
+  compiledClassesHash: HashCode,
+  previewXml: String,
+  configuration: Configuration
+): HashCode {
+  val hasher = Hashing.murmur3_128().newHasher()
+  hasher.putUnencodedChars(previewXml)
+  hasher.putBytes(compiledClassesHash.asBytes())
+  hasher.putLong(StudioResourceRepositoryManager.getAppResources(facet).modificationCount)
+  hasher.putUnencodedChars(configuration.fullConfig.qualifierString)
+  hasher.putUnencodedChars(configuration.theme)
+  hasher.putUnencodedChars(configuration.device?.id ?: "")
+  hasher.putInt(configuration.target?.version?.apiLevel ?: 0)
+  hasher.putFloat(configuration.fontScale)
+  hasher.putInt(configuration.uiModeFlagValue)
+  return hasher.hash()
+}
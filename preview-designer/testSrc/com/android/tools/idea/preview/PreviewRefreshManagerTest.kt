@@ -66,6 +66,9 @@ private class TestPreviewRefreshRequest(
 
   var runningRefreshJob: Job? = null
 
+  /** The queue wait and refresh times reported by [onRefreshTimings]. */
+  @Volatile var timings: Pair<Long, Long>? = null
+
   override fun doRefresh(): Job {
     doBeforeLaunchingRefresh()
     runningRefreshJob =
@@ -80,6 +83,10 @@ private class TestPreviewRefreshRequest(
     return runningRefreshJob!!
   }
 
+  override fun onRefreshTimings(queueWaitMillis: Long, refreshMillis: Long) {
+    timings = queueWaitMillis to refreshMillis
+  }
+
   override fun onRefreshCompleted(result: RefreshResult, throwable: Throwable?) {
     testLock.withLock {
       when (result) {
@@ -369,6 +376,23 @@ class PreviewRefreshManagerTest {
     )
   }
 
+  @Test
+  fun testRefreshTimings() = runBlocking {
+    TestPreviewRefreshRequest.expectedLogPrintCount = CountDownLatch(4)
+    val request1 = TestPreviewRefreshRequest(myScope, "client1", 2, "req1")
+    val request2 = TestPreviewRefreshRequest(myScope, "client2", 1, "req2")
+    refreshManager.requestRefreshSync(request1)
+    refreshManager.requestRefreshSync(request2)
+    TestPreviewRefreshRequest.expectedLogPrintCount.await()
+
+    // Each refresh takes at least 1 second, and req2 has to wait for req1 to finish.
+    val (_, refresh1) = request1.timings!!
+    val (queueWait2, refresh2) = request2.timings!!
+    assertTrue(refresh1 >= 1000, "req1 refresh took ${refresh1}ms")
+    assertTrue(refresh2 >= 1000, "req2 refresh took ${refresh2}ms")
+    assertTrue(queueWait2 >= 500, "req2 waited ${queueWait2}ms")
+  }
+
   /**
    * Send the [request] to the refresh manager and wait for it to be actually enqueued.
    *
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.preview
+
+import com.android.testutils.MockitoKt.mock
+import com.android.tools.idea.common.scene.SceneManager
+import com.android.tools.idea.uibuilder.scene.LayoutlibSceneManager
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.util.Disposer
+import com.intellij.testFramework.ApplicationRule
+import kotlinx.coroutines.runBlocking
+import org.junit.Rule
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+private class TestPreviewVisibility : PreviewVisibility {
+  var focused: SceneManager? = null
+  var visible: Set<SceneManager>? = null
+  var isTracking = false
+
+  override fun track(disposable: Disposable) {
+    isTracking = true
+    Disposer.register(disposable) { isTracking = false }
+  }
+
+  override fun findFocusedSceneManager(): SceneManager? = focused
+
+  override fun findVisibleSceneManagers(): Set<SceneManager>? = visible
+}
+
+class PreviewRenderSchedulerTest {
+  @get:Rule val applicationRule = ApplicationRule()
+
+  private val visibility = TestPreviewVisibility()
+  private val costs = mutableMapOf<LayoutlibSceneManager, Long>()
+  private val names = mutableMapOf<LayoutlibSceneManager, String>()
+  private val scheduler = PreviewRenderScheduler(visibility) { costs[it] ?: 0 }
+
+  private fun sceneManager(name: String, cost: Long): LayoutlibSceneManager =
+    mock<LayoutlibSceneManager>().also {
+      costs[it] = cost
+      names[it] = name
+    }
+
+  private fun renderOrder(
+    sceneManagers: List<LayoutlibSceneManager>,
+    baseOrder: Comparator<LayoutlibSceneManager> = Comparator { _, _ -> 0 },
+    onRender: (LayoutlibSceneManager) -> Unit = {}
+  ): List<String> {
+    val rendered = mutableListOf<String>()
+    runBlocking {
+      scheduler.forEachInRenderOrder(sceneManagers, { it }, baseOrder) { index, sceneManager ->
+        assertEquals(rendered.size, index)
+        rendered.add(names[sceneManager]!!)
+        onRender(sceneManager)
+      }
+    }
+    return rendered
+  }
+
+  @Test
+  fun testCheapestPreviewsAreRenderedFirstWhenAllAreVisible() {
+    val sceneManagers =
+      listOf(
+        sceneManager("a", 50),
+        sceneManager("b", 10),
+        sceneManager("c", 0),
+        sceneManager("d", 20)
+      )
+    visibility.visible = null
+
+    assertEquals(listOf("c", "b", "d", "a"), renderOrder(sceneManagers))
+  }
+
+  @Test
+  fun testFocusedThenVisibleThenNotVisible() {
+    val a = sceneManager("a", 50)
+    val b = sceneManager("b", 10)
+    val c = sceneManager("c", 30)
+    val d = sceneManager("d", 20)
+    val e = sceneManager("e", 5)
+    visibility.focused = c
+    visibility.visible = setOf(a, c, d)
+
+    assertEquals(listOf("c", "d", "a", "e", "b"), renderOrder(listOf(a, b, c, d, e)))
+  }
+
+  @Test
+  fun testBaseOrderTakesPrecedence() {
+    val a = sceneManager("a", 50)
+    val b = sceneManager("b", 10)
+    val c = sceneManager("c", 30)
+    val d = sceneManager("d", 20)
+    visibility.focused = c
+    visibility.visible = setOf(c, d)
+
+    // b and a go first, even if they are not visible nor focused.
+    assertEquals(
+      listOf("b", "a", "c", "d"),
+      renderOrder(listOf(a, b, c, d), baseOrder = compareBy { if (it == a || it == b) 0 else 1 })
+    )
+  }
+
+  @Test
+  fun testVisibilityIsEvaluatedBeforeEachRender() {
+    val a = sceneManager("a", 10)
+    val b = sceneManager("b", 20)
+    val c = sceneManager("c", 30)
+    val d = sceneManager("d", 40)
+    visibility.visible = setOf(a, b)
+
+    // After the first render, the user scrolls so that only d is visible, and then focuses b.
+    val order =
+      renderOrder(listOf(a, b, c, d)) {
+        when (it) {
+          a -> visibility.visible = setOf(d)
+          d -> visibility.focused = b
+        }
+      }
+
+    assertEquals(listOf("a", "d", "b", "c"), order)
+  }
+
+  @Test
+  fun testVisibilityIsTrackedWhileRendering() {
+    val a = sceneManager("a", 10)
+    val b = sceneManager("b", 20)
+
+    renderOrder(listOf(a, b)) { assertTrue(visibility.isTracking) }
+
+    assertFalse(visibility.isTracking)
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.preview.rendering
+
+import com.google.common.hash.HashCode
+import com.google.common.hash.Hashing
+import com.google.common.truth.Truth.assertThat
+import com.google.common.util.concurrent.MoreExecutors
+import java.awt.Color
+import java.awt.image.BufferedImage
+import java.util.concurrent.Executor
+import org.junit.Test
+
+class PreviewRenderCacheTest {
+  private fun key(name: String): HashCode = Hashing.murmur3_128().hashUnencodedChars(name)
+
+  private fun image(color: Color): BufferedImage =
+    BufferedImage(100, 60, BufferedImage.TYPE_INT_ARGB).also {
+      val graphics = it.createGraphics()
+      graphics.color = color
+      graphics.fillRect(0, 0, 100, 60)
+      graphics.dispose()
+    }
+
+  @Test
+  fun testImagesAreStoredDownscaled() {
+    val cache = PreviewRenderCache(executor = MoreExecutors.directExecutor())
+
+    assertThat(cache.get(key("preview"))).isNull()
+    cache.put(key("preview"), image(Color.RED))
+
+    val cached = cache.get(key("preview"))!!
+    assertThat(cached.width).isEqualTo(50)
+    assertThat(cached.height).isEqualTo(30)
+    assertThat(Color(cached.getRGB(25, 15), true)).isEqualTo(Color.RED)
+    assertThat(cache.get(key("other"))).isNull()
+  }
+
+  @Test
+  fun testImagesAreStoredByTheExecutor() {
+    val pending = mutableListOf<Runnable>()
+    val cache = PreviewRenderCache(executor = Executor { pending.add(it) })
+
+    cache.put(key("preview"), image(Color.RED))
+    assertThat(cache.get(key("preview"))).isNull()
+
+    pending.forEach { it.run() }
+    assertThat(cache.get(key("preview"))).isNotNull()
+  }
+
+  @Test
+  fun testLeastRecentlyUsedEntriesAreEvicted() {
+    val cache = PreviewRenderCache(maxEntries = 2, executor = MoreExecutors.directExecutor())
+    cache.put(key("a"), image(Color.RED))
+    cache.put(key("b"), image(Color.GREEN))
+    // Make "b" the least recently used entry.
+    assertThat(cache.get(key("a"))).isNotNull()
+
+    cache.put(key("c"), image(Color.BLUE))
+
+    assertThat(cache.get(key("a"))).isNotNull()
+    assertThat(cache.get(key("b"))).isNull()
+    assertThat(cache.get(key("c"))).isNotNull()
+  }
+
+  @Test
+  fun testClear() {
+    val cache = PreviewRenderCache(executor = MoreExecutors.directExecutor())
+    cache.put(key("a"), image(Color.RED))
+
+    cache.clear()
+
+    assertThat(cache.get(key("a"))).isNull()
+  }
+}
@@ -33,6 +33,8 @@ import com.android.tools.profilers.perfetto.traceprocessor.TraceProcessorService
 import com.google.common.annotations.VisibleForTesting
 import com.google.common.base.Stopwatch
 import com.google.common.base.Ticker
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
 import com.google.wireless.android.sdk.stats.TraceProcessorDaemonQueryStats
 import com.intellij.openapi.Disposable
 import com.intellij.openapi.application.ApplicationManager
@@ -45,12 +47,28 @@ import java.util.concurrent.TimeUnit
 
 /**
  * See {@link TraceProcessorService} for API details.
+ *
+ * Results of successful queries are kept in a memory bounded cache keyed by the query parameters, which include the trace
+ * id and, for process specific queries, the process id. Reopening a recent capture or reselecting a process is then served
+ * from the cache, and the trace is only (re)loaded into the daemon when a query misses the cache.
  */
 @Service
 class TraceProcessorServiceImpl(
   private val ticker: Ticker = Ticker.systemTicker(),
-  private val client: TraceProcessorDaemonClient = TraceProcessorDaemonClient(ticker)) : TraceProcessorService, Disposable {
-  private val loadedTraces = mutableMapOf<Long, File>()
+  private val client: TraceProcessorDaemonClient = TraceProcessorDaemonClient(ticker),
+  queryResultCacheMaxWeight: Long = QUERY_RESULT_CACHE_MAX_WEIGHT) : TraceProcessorService, Disposable {
+  private val loadedTraces = mutableMapOf<Long, LoadedTrace>()
+
+  /** The id of the trace most recently loaded into the daemon, which only keeps one trace at a time. Guarded by [daemonLock]. */
+  private var daemonTraceId: Long? = null
+  private val daemonLock = Any()
+
+  private val queryResultCache: Cache<QueryParameters, QueryResult> = CacheBuilder.newBuilder()
+    // A single segment, so the whole weight is available to each result and the least recently used results are evicted first.
+    .concurrencyLevel(1)
+    .maximumWeight(queryResultCacheMaxWeight)
+    .weigher { _: QueryParameters, result: QueryResult -> estimatedHeapSize(result) }
+    .build()
 
   init {
     Disposer.register(this, client)
@@ -59,6 +77,21 @@ class TraceProcessorServiceImpl(
   companion object {
     private val LOGGER = Logger.getInstance(TraceProcessorServiceImpl::class.java)
 
+    /** Approximate maximum size in bytes of the query results kept in memory, see [estimatedHeapSize]. */
+    private val QUERY_RESULT_CACHE_MAX_WEIGHT = minOf(Runtime.getRuntime().maxMemory() / 16, 256L * 1024 * 1024)
+
+    /**
+     * Ratio between the heap size of a parsed query result and its serialized size. The results are mostly repeated messages of
+     * small numbers: a varint of one or two bytes becomes an 8 byte field, and each message adds an object header and its slot in
+     * a list.
+     */
+    private const val HEAP_BYTES_PER_SERIALIZED_BYTE = 8L
+
+    /** Estimates the number of bytes [result] takes on the heap. */
+    @VisibleForTesting
+    internal fun estimatedHeapSize(result: QueryResult): Int =
+      (result.serializedSize * HEAP_BYTES_PER_SERIALIZED_BYTE).coerceAtMost(Int.MAX_VALUE.toLong()).toInt()
+
     @JvmStatic
     fun getInstance(): TraceProcessorService {
       return ApplicationManager.getApplication().getService(TraceProcessorServiceImpl::class.java)
@@ -133,6 +166,30 @@ class TraceProcessorServiceImpl(
   }
 
   override fun loadTrace(traceId: Long, traceFile: File, ideProfilerServices: IdeProfilerServices): Boolean {
+    val loadedTrace = LoadedTrace(traceFile)
+    synchronized(loadedTraces) {
+      if (loadedTraces[traceId] == loadedTrace) {
+        // The trace file hasn't changed since it was loaded. It is loaded into the daemon again if a query misses the cache.
+        LOGGER.info("TPD Service: Trace $traceId already loaded.")
+        return true
+      }
+    }
+    invalidateCachedResults(traceId)
+    return loadTraceIntoDaemon(traceId, loadedTrace, ideProfilerServices)
+  }
+
+  private fun loadTraceIntoDaemon(traceId: Long, loadedTrace: LoadedTrace, ideProfilerServices: IdeProfilerServices): Boolean =
+    synchronized(daemonLock) {
+      daemonTraceId = null
+      doLoadTrace(traceId, loadedTrace.file, ideProfilerServices).also { loaded ->
+        if (loaded) {
+          daemonTraceId = traceId
+          synchronized(loadedTraces) { loadedTraces[traceId] = loadedTrace }
+        }
+      }
+    }
+
+  private fun doLoadTrace(traceId: Long, traceFile: File, ideProfilerServices: IdeProfilerServices): Boolean {
     // load trace had no business logic in Java side, so we use a single stopwatch to track both query and method timings.
     val stopwatch = Stopwatch.createStarted(ticker)
     val symbolPaths = ideProfilerServices.nativeSymbolsDirectories
@@ -171,7 +228,6 @@ class TraceProcessorServiceImpl(
     ideProfilerServices.featureTracker.trackTraceProcessorLoadTrace(queryStatus, queryTimeMs, queryTimeMs, traceSizeBytes)
     if (response.ok) {
       LOGGER.info("TPD Service: Trace $traceId loaded.")
-      loadedTraces[traceId] = traceFile
       return true
     }
     else {
@@ -293,20 +349,69 @@ class TraceProcessorServiceImpl(
   }
 
   /**
-   * Execute {@code query} on TPD, reloading the trace if has been unloaded (e.g. TPD crashed between loading and the query request).
+   * Execute {@code query}, using the cached results of its individual queries when available, and caches the successful results
+   * of the queries sent to TPD.
+   *
+   * The results of the response are in the same order as the queries. As with TPD responses, the response may have fewer results
+   * than queries, in which case the results are a prefix of the ones expected.
    */
   private fun executeBatchQuery(traceId: Long,
                                 query: QueryBatchRequest,
                                 ideProfilerServices: IdeProfilerServices): TraceProcessorDaemonQueryResult<QueryBatchResponse> {
+    val cachedResults = query.queryList.map { queryResultCache.getIfPresent(it) }
+    val missingQueries = query.queryList.filterIndexed { i, _ -> cachedResults[i] == null }
+    if (missingQueries.isEmpty()) {
+      LOGGER.info("TPD Service: Using cached results for trace $traceId.")
+      return TraceProcessorDaemonQueryResult(QueryBatchResponse.newBuilder().addAllResult(cachedResults.map { it!! }).build())
+    }
+
+    val queryResult = synchronized(daemonLock) {
+      ensureTraceLoadedIntoDaemon(traceId, ideProfilerServices)
+      executeBatchQueryOnDaemon(traceId, QueryBatchRequest.newBuilder().addAllQuery(missingQueries).build(), ideProfilerServices)
+    }
+    val response = queryResult.response ?: return queryResult
+
+    val fetchedResults = response.resultList.iterator()
+    val results = mutableListOf<QueryResult>()
+    for ((i, parameters) in query.queryList.withIndex()) {
+      val result = cachedResults[i] ?: (if (fetchedResults.hasNext()) fetchedResults.next() else break)
+      if (cachedResults[i] == null && result.ok) {
+        queryResultCache.put(parameters, result)
+      }
+      results.add(result)
+    }
+    return TraceProcessorDaemonQueryResult(response.toBuilder().clearResult().addAllResult(results).build())
+  }
+
+  /** Loads the trace into TPD if another trace has been loaded since the trace was last loaded. Must be called holding [daemonLock]. */
+  private fun ensureTraceLoadedIntoDaemon(traceId: Long, ideProfilerServices: IdeProfilerServices) {
+    if (daemonTraceId == traceId) {
+      return
+    }
+    val loadedTrace = synchronized(loadedTraces) { loadedTraces[traceId] } ?: return
+    loadTraceIntoDaemon(traceId, loadedTrace, ideProfilerServices)
+  }
+
+  private fun invalidateCachedResults(traceId: Long) {
+    queryResultCache.asMap().keys.removeIf { it.traceId == traceId }
+  }
+
+  /**
+   * Execute {@code query} on TPD, reloading the trace if has been unloaded (e.g. TPD crashed between loading and the query request).
+   * Must be called holding [daemonLock].
+   */
+  private fun executeBatchQueryOnDaemon(traceId: Long,
+                                        query: QueryBatchRequest,
+                                        ideProfilerServices: IdeProfilerServices): TraceProcessorDaemonQueryResult<QueryBatchResponse> {
     var queryResult = client.queryBatchRequest(query, ideProfilerServices.featureTracker)
 
     // If we got a response from TPD, we check if TPD could execute the query correctly or if there was any error we can try to
     // recover from, like for example when the trace was not loaded.
     if (queryResult.response?.resultList?.any { it.failureReason == QueryResult.QueryFailureReason.TRACE_NOT_FOUND } == true) {
-      val loadedTrace = loadedTraces[traceId]
+      val loadedTrace = synchronized(loadedTraces) { loadedTraces[traceId] }
       if (loadedTrace != null) {
         // We loaded this trace before, but something happened and the trace is not there anymore. Let's try to reload it:
-        loadTrace(traceId, loadedTrace, ideProfilerServices)
+        loadTraceIntoDaemon(traceId, loadedTrace, ideProfilerServices)
         queryResult = client.queryBatchRequest(query, ideProfilerServices.featureTracker)
       }
       else {
@@ -318,7 +423,14 @@ class TraceProcessorServiceImpl(
     return queryResult
   }
 
-  override fun dispose() {}
+  override fun dispose() {
+    queryResultCache.invalidateAll()
+  }
+
+  /** A trace file as it was when it was loaded, used to detect changes of the file. */
+  private data class LoadedTrace(val file: File, val length: Long, val lastModified: Long) {
+    constructor(file: File) : this(file, file.length(), file.lastModified())
+  }
 
   private data class RequestBuilder(val setUpQuery: QueryParameters.Builder.() -> Unit,
                                     val handle: (QueryResult) -> Unit)
@@ -262,6 +262,79 @@ class TraceProcessorServiceImplTest {
       Pair.of(AndroidProfilerEvent.Type.TPD_QUERY_LOAD_CPU_DATA, getFailMetricStatsFor(30, 10)))
   }
 
+  @Test
+  fun `loadCpuData - cached results are reused`() {
+    val client = TraceProcessorDaemonClient(fakeTicker, TraceProcessorServiceGrpc.newBlockingStub(fakeGrpcChannel.channel))
+    val ideService = TraceProcessorServiceImpl(fakeTicker, client)
+    Disposer.register(disposableRule.disposable, ideService)
+
+    fakeGrpcService.loadTraceResponse = TraceProcessor.LoadTraceResponse.newBuilder()
+      .setOk(true)
+      .build()
+    val traceFile = tempFolder.newFile("perfetto.trace")
+    traceFile.writeBytes(Random.Default.nextBytes(256))
+    ideService.loadTrace(10, traceFile, fakeIdeProfilerServices)
+
+    fakeGrpcService.queryBatchResponse = TraceProcessor.QueryBatchResponse.newBuilder().apply {
+      repeat(10) { addResult(TraceProcessor.QueryResult.newBuilder().setOk(true)) }
+    }.build()
+    ideService.loadCpuData(10, listOf(fakeProcess(33), fakeProcess(42)), ProcessModel(123, "foo", emptyMap(), emptyMap()),
+                           fakeIdeProfilerServices)
+    fakeGrpcService.lastQueryBatchRequest = null
+
+    // Reloading the same trace and repeating the same queries doesn't reach the daemon.
+    fakeGrpcService.lastLoadTraceRequest = null
+    assertThat(ideService.loadTrace(10, traceFile, fakeIdeProfilerServices)).isTrue()
+    ideService.loadCpuData(10, listOf(fakeProcess(33), fakeProcess(42)), ProcessModel(123, "foo", emptyMap(), emptyMap()),
+                           fakeIdeProfilerServices)
+    assertThat(fakeGrpcService.lastLoadTraceRequest).isNull()
+    assertThat(fakeGrpcService.lastQueryBatchRequest).isNull()
+
+    // Only the queries specific to a newly selected process are sent.
+    ideService.loadCpuData(10, listOf(fakeProcess(33), fakeProcess(55)), ProcessModel(123, "foo", emptyMap(), emptyMap()),
+                           fakeIdeProfilerServices)
+    val expectedRequest = TraceProcessor.QueryBatchRequest.newBuilder()
+      .addQuery(TraceProcessor.QueryParameters.newBuilder()
+                  .setTraceId(10)
+                  .setTraceEventsRequest(TraceProcessor.QueryParameters.TraceEventsParameters.newBuilder().setProcessId(55)))
+      .addQuery(TraceProcessor.QueryParameters.newBuilder()
+                  .setTraceId(10)
+                  .setProcessCountersRequest(TraceProcessor.QueryParameters.ProcessCountersParameters.newBuilder().setProcessId(55)))
+      .build()
+    assertThat(fakeGrpcService.lastQueryBatchRequest).isEqualTo(expectedRequest)
+  }
+
+  @Test
+  fun `loadCpuData - least recently used results are evicted`() {
+    val okResult = TraceProcessor.QueryResult.newBuilder().setOk(true).build()
+    // Room for the results of 3 queries.
+    val maxWeight = 3L * TraceProcessorServiceImpl.estimatedHeapSize(okResult)
+    val client = TraceProcessorDaemonClient(fakeTicker, TraceProcessorServiceGrpc.newBlockingStub(fakeGrpcChannel.channel))
+    val ideService = TraceProcessorServiceImpl(fakeTicker, client, maxWeight)
+    Disposer.register(disposableRule.disposable, ideService)
+
+    fakeGrpcService.loadTraceResponse = TraceProcessor.LoadTraceResponse.newBuilder()
+      .setOk(true)
+      .build()
+    val traceFile = tempFolder.newFile("perfetto.trace")
+    traceFile.writeBytes(Random.Default.nextBytes(256))
+    ideService.loadTrace(10, traceFile, fakeIdeProfilerServices)
+
+    fakeGrpcService.queryBatchResponse = TraceProcessor.QueryBatchResponse.newBuilder().apply {
+      repeat(10) { addResult(okResult) }
+    }.build()
+    ideService.loadCpuData(10, listOf(fakeProcess(33), fakeProcess(42)), ProcessModel(123, "foo", emptyMap(), emptyMap()),
+                           fakeIdeProfilerServices)
+    val allQueries = fakeGrpcService.lastQueryBatchRequest!!.queryList
+    assertThat(allQueries).hasSize(10)
+    fakeGrpcService.lastQueryBatchRequest = null
+
+    // Only the results of the last 3 queries are kept.
+    ideService.loadCpuData(10, listOf(fakeProcess(33), fakeProcess(42)), ProcessModel(123, "foo", emptyMap(), emptyMap()),
+                           fakeIdeProfilerServices)
+    assertThat(fakeGrpcService.lastQueryBatchRequest!!.queryList).containsExactlyElementsIn(allQueries.take(7)).inOrder()
+  }
+
   private class TPServiceInMemoryForTesting: TraceProcessorServiceGrpc.TraceProcessorServiceImplBase() {
 
     var loadTraceResponse = TraceProcessor.LoadTraceResponse.getDefaultInstance()
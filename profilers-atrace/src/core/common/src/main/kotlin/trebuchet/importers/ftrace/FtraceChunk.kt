@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package trebuchet.importers.ftrace
+
+import trebuchet.io.DataSlice
+import trebuchet.util.StringCache
+
+/**
+ * A block of consecutive ftrace lines copied out of the input stream.
+ *
+ * The fixed part of each line (task, pid, tgid, cpu, timestamp and function) is parsed by [parse], which only touches
+ * the chunk itself and so can run on any thread. The parsed lines are then fed to an [FtraceImporterState] in input
+ * order by [replay], which keeps the resulting model identical to importing the lines one by one.
+ *
+ * @param resetsState true if the importer state has to be discarded before replaying this chunk, see
+ * [FtraceImporter.handleLine]
+ */
+internal class FtraceChunk(capacity: Int, val resetsState: Boolean) {
+    private val data = ByteArray(capacity)
+    private var size = 0
+    private var lineStarts = IntArray(1024)
+    private var lineEnds = IntArray(1024)
+
+    var lineCount = 0
+        private set
+
+    // Parsed columns, allocated by parse.
+    private lateinit var tasks: Array<String?>
+    private lateinit var pids: IntArray
+    private lateinit var tgids: IntArray
+    private lateinit var cpus: IntArray
+    private lateinit var timestamps: DoubleArray
+    private lateinit var functionStarts: IntArray
+    private lateinit var functionEnds: IntArray
+    private lateinit var detailStarts: IntArray
+    private lateinit var errors: Array<Exception?>
+
+    /** Returns true if [line] was appended, or false if the chunk doesn't have enough space left for it. */
+    fun append(line: DataSlice): Boolean {
+        if (size + line.length > data.size) {
+            return false
+        }
+        if (lineCount == lineStarts.size) {
+            lineStarts = lineStarts.copyOf(lineCount * 2)
+            lineEnds = lineEnds.copyOf(lineCount * 2)
+        }
+        System.arraycopy(line.buffer, line.startIndex, data, size, line.length)
+        lineStarts[lineCount] = size
+        size += line.length
+        lineEnds[lineCount] = size
+        lineCount++
+        return true
+    }
+
+    /** Parses the fixed part of all lines. Lines that fail to parse are reported by [replay]. */
+    fun parse(): FtraceChunk {
+        tasks = arrayOfNulls(lineCount)
+        pids = IntArray(lineCount)
+        tgids = IntArray(lineCount)
+        cpus = IntArray(lineCount)
+        timestamps = DoubleArray(lineCount)
+        functionStarts = IntArray(lineCount)
+        functionEnds = IntArray(lineCount)
+        detailStarts = IntArray(lineCount)
+        errors = arrayOfNulls(lineCount)
+        // Each chunk has its own string cache, since StringCache is not thread safe.
+        val parser = FtraceLine.Parser(StringCache())
+        val slice = DataSlice()
+        for (i in 0 until lineCount) {
+            slice.set(data, lineStarts[i], lineEnds[i])
+            try {
+                parser.parseLine(slice) { line ->
+                    tasks[i] = line.task
+                    pids[i] = line.pid
+                    tgids[i] = line.tgid
+                    cpus[i] = line.cpu
+                    timestamps[i] = line.timestamp
+                    functionStarts[i] = line.function.startIndex
+                    functionEnds[i] = line.function.endIndex
+                    detailStarts[i] = line.functionDetailsReader.index
+                }
+            } catch (ex: Exception) {
+                errors[i] = ex
+            }
+        }
+        return this
+    }
+
+    /**
+     * Feeds the lines parsed by [parse] to [state] in order. [onError] is called for lines that failed to parse or
+     * to be imported.
+     */
+    fun replay(state: FtraceImporterState, replayer: FtraceLine.Replayer, onError: (DataSlice, Exception) -> Unit) {
+        val slice = DataSlice()
+        for (i in 0 until lineCount) {
+            slice.set(data, lineStarts[i], lineEnds[i])
+            val error = errors[i]
+            if (error != null) {
+                onError(slice, error)
+                continue
+            }
+            try {
+                replayer.replay(tasks[i], pids[i], tgids[i], cpus[i], timestamps[i], data, functionStarts[i], functionEnds[i],
+                        detailStarts[i], lineEnds[i], state)
+            } catch (ex: Exception) {
+                onError(slice, ex)
+            }
+        }
+    }
+}
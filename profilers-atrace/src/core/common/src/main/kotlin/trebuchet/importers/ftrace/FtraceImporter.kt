@@ -25,22 +25,45 @@ import trebuchet.io.StreamingLineReader
 import trebuchet.io.StreamingReader
 import trebuchet.model.fragments.ModelFragment
 import trebuchet.util.contains
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Future
 import java.util.regex.Pattern
 
-class FtraceImporter(val feedback: ImportFeedback) : Importer {
+/**
+ * Imports ftrace text.
+ *
+ * Lines are copied into chunks of about [chunkSize] bytes, and the fixed part of the lines of each chunk is parsed on
+ * a background thread while the following chunks are read. The parsed chunks are then applied to the importer state
+ * strictly in input order on the importing thread, so the result doesn't depend on how the input was chunked.
+ */
+class FtraceImporter(val feedback: ImportFeedback, private val chunkSize: Int = DEFAULT_CHUNK_SIZE) : Importer {
     var foundHeader = false
     var state = FtraceImporterState(feedback)
-    val parser = FtraceLine.Parser(state.stringCache)
 
     // Create captured lambads here to avoid extra kotlin-generated overhead
     private val lineReaderCallback: (DataSlice) -> Unit = this::handleLine
-    private var ftraceParserCallback: (FtraceLine) -> Unit = state::importLine
+    private val replayErrorCallback: (DataSlice, Exception) -> Unit = this::reportLineError
     private val coreStartedRegex = Pattern.compile("^#+ CPU \\d buffer started #+")
+    private val replayer = FtraceLine.Replayer()
+    private var chunk: FtraceChunk? = null
+    private var nextChunkResetsState = false
+    private val pendingChunks = ArrayDeque<Future<FtraceChunk>>()
+    private val maxPendingChunks = 2 * Runtime.getRuntime().availableProcessors()
 
     override fun import(stream: StreamingReader): ModelFragment? {
-        val lineReader = StreamingLineReader(1024, stream)
+        val lineReader = StreamingLineReader(MAX_LINE_LENGTH, stream)
         foundHeader = false
-        lineReader.forEachLine(lineReaderCallback)
+        try {
+            lineReader.forEachLine(lineReaderCallback)
+            submitChunk()
+            while (pendingChunks.isNotEmpty()) {
+                replayNextChunk()
+            }
+        } finally {
+            pendingChunks.forEach { it.cancel(false) }
+            pendingChunks.clear()
+        }
         return state.finish()
     }
 
@@ -57,23 +80,58 @@ class FtraceImporter(val feedback: ImportFeedback) : Importer {
             //  The circular buffers are kept per CPU, so it is not guaranteed that the
             //  beginning of a slice is overwritten before the end. To work around this, we
             //  throw away the prefix of the trace where not all CPUs have events yet.
-            state = FtraceImporterState(feedback)
-            ftraceParserCallback = state::importLine
+            //
+            //  The state is replaced once the lines preceding this one have been replayed.
+            submitChunk()
+            nextChunkResetsState = true
         }
         else if (line[0] == '#'.code.toByte()) {
             foundHeader = true
         } else if (foundHeader) {
-            try {
-                parser.parseLine(line, ftraceParserCallback)
-            } catch (ex: Exception) {
-                if (line.toString().isNotBlank()) {
-                    feedback.reportImportWarning("Failed to parse: '$line'")
-                    feedback.reportImportException(ex)
-                }
+            val chunk = chunk ?: newChunk()
+            if (!chunk.append(line)) {
+                submitChunk()
+                newChunk().append(line)
             }
         }
     }
 
+    private fun newChunk(): FtraceChunk {
+        val chunk = FtraceChunk(chunkSize.coerceAtLeast(MAX_LINE_LENGTH), nextChunkResetsState)
+        nextChunkResetsState = false
+        this.chunk = chunk
+        return chunk
+    }
+
+    /** Starts parsing the current chunk in background and replays the oldest parsed chunks if too many are pending. */
+    private fun submitChunk() {
+        val chunk = chunk ?: if (nextChunkResetsState) newChunk() else return
+        this.chunk = null
+        pendingChunks.addLast(CompletableFuture.supplyAsync { chunk.parse() })
+        while (pendingChunks.size > maxPendingChunks) {
+            replayNextChunk()
+        }
+    }
+
+    private fun replayNextChunk() {
+        val chunk = try {
+            pendingChunks.removeFirst().get()
+        } catch (ex: ExecutionException) {
+            throw ex.cause ?: ex
+        }
+        if (chunk.resetsState) {
+            state = FtraceImporterState(feedback)
+        }
+        chunk.replay(state, replayer, replayErrorCallback)
+    }
+
+    private fun reportLineError(line: DataSlice, ex: Exception) {
+        if (line.toString().isNotBlank()) {
+            feedback.reportImportWarning("Failed to parse: '$line'")
+            feedback.reportImportException(ex)
+        }
+    }
+
     object Factory : ImporterFactory {
         override fun importerFor(buffer: GenericByteBuffer, feedback: ImportFeedback): Importer? {
             if (buffer.contains("# tracer: nop\n", 1000)) {
@@ -82,4 +140,10 @@ class FtraceImporter(val feedback: ImportFeedback) : Importer {
             return null
         }
     }
+
+    companion object {
+        /** Size of the chunks of input lines parsed in parallel. */
+        const val DEFAULT_CHUNK_SIZE = 1024 * 1024
+        private const val MAX_LINE_LENGTH = 1024
+    }
 }
\ No newline at end of file
@@ -62,6 +62,24 @@ class FtraceLine private constructor() {
         _functionDetails = funcDetails
     }
 
+    /** Feeds lines parsed ahead of time by an [FtraceChunk] to an [FtraceImporterState]. */
+    internal class Replayer {
+        private val ftraceLine = FtraceLine()
+        private val function = DataSlice()
+        private val detailsReader = BufferReader()
+
+        fun replay(taskName: String?, pid: Int, tgid: Int, cpu: Int, timestamp: Double, buffer: ByteArray,
+                   functionStart: Int, functionEnd: Int, detailsStart: Int, lineEnd: Int, state: FtraceImporterState) {
+            function.set(buffer, functionStart, functionEnd)
+            detailsReader.buffer = buffer
+            detailsReader.index = detailsStart
+            detailsReader.endIndexExclusive = lineEnd
+            detailsReader.stringCache = state.stringCache
+            ftraceLine.set(taskName, pid, tgid, cpu, timestamp, function, detailsReader)
+            state.importLine(ftraceLine)
+        }
+    }
+
     class Parser(val stringCache: StringCache) {
         private val NullTaskName = stringCache.stringFor("<...>".asSlice())
         private val ftraceLine = FtraceLine()
@@ -61,7 +61,8 @@ open class BufferReaderState(var buffer: ByteArray, var index: Int, var endIndex
 }
 
 class PreviewReader : BufferReaderState() {
-    val startIndex = index
+    /** The index [rewind] must not go past. */
+    var startIndex = index
     inline fun rewind() {
         index--
         if (index < startIndex) { throw IndexOutOfBoundsException() }
@@ -111,6 +112,7 @@ class MatchResult(val reader: BufferReader) {
         val tempPreview = reader.tempPreview
         tempPreview.buffer = reader.buffer
         tempPreview.index = startIndex + matcher!!.start(group)
+        tempPreview.startIndex = tempPreview.index
         tempPreview.endIndexExclusive = startIndex + matcher!!.end(group)
         return cb.invoke(tempPreview)
     }
@@ -202,6 +204,7 @@ class BufferReader : BufferReaderState() {
     inline fun sliceTo(slice: DataSlice = DataSlice(), init: PreviewReader.() -> Unit): DataSlice {
         tempPreview.buffer = buffer
         tempPreview.index = index
+        tempPreview.startIndex = index
         tempPreview.endIndexExclusive = endIndexExclusive
         tempPreview.init()
         slice.set(buffer, index, tempPreview.index)
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package trebuchet.importers.ftrace
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import trebuchet.importers.ImportFeedback
+import trebuchet.io.BufferProducer
+import trebuchet.io.DataSlice
+import trebuchet.io.StreamingReader
+import trebuchet.model.base.SliceGroup
+import trebuchet.model.fragments.ModelFragment
+import java.util.Locale
+
+class FtraceImporterTest {
+    private class StringBufferProducer(source: String, private val sliceSize: Int = 4096) : BufferProducer {
+        private val source = source.toByteArray()
+        private var tail = 0
+
+        override fun next(): DataSlice? {
+            val start = tail
+            tail = (start + sliceSize).coerceAtMost(source.size)
+            return if (start == tail) null else DataSlice(source, start, tail)
+        }
+    }
+
+    private class RecordingFeedback : ImportFeedback {
+        val warnings = mutableListOf<String>()
+
+        override fun reportImportWarning(warning: String) {
+            warnings.add(warning)
+        }
+
+        override fun reportImportException(exception: Throwable) {}
+    }
+
+    private fun createTrace(): String {
+        val trace = StringBuilder("# tracer: nop\n#\n")
+        var timestamp = 100.0
+        for (i in 0 until 2000) {
+            val pid = 1000 + i % 7
+            val cpu = i % 4
+            trace.append(String.format(Locale.ROOT, "          app-%d  (%5d) [%03d] ...1 %12.6f: tracing_mark_write: B|%d|slice %d\n",
+                                       pid, pid, cpu, timestamp, pid, i))
+            timestamp += 0.000010
+            trace.append(String.format(Locale.ROOT, "          app-%d  (%5d) [%03d] ...1 %12.6f: tracing_mark_write: E|%d\n",
+                                       pid, pid, cpu, timestamp, pid))
+            timestamp += 0.000010
+            if (i % 100 == 0) {
+                trace.append("not an ftrace line\n")
+            }
+        }
+        return trace.toString()
+    }
+
+    private fun import(trace: String, chunkSize: Int, feedback: ImportFeedback = RecordingFeedback()): ModelFragment =
+        FtraceImporter(feedback, chunkSize).import(StreamingReader(StringBufferProducer(trace)))!!
+
+    /** Returns a textual dump of the contents of [fragment]. */
+    private fun dump(fragment: ModelFragment): String {
+        val result = StringBuilder()
+        result.append("${fragment.globalStartTime}..${fragment.globalEndTime} cpus=${fragment.cpus.map { it.id }}\n")
+        for (process in fragment.processes) {
+            result.append("process ${process.id} ${process.name}\n")
+            for (thread in process.threads) {
+                result.append("  thread ${thread.id} ${thread.name}\n")
+                thread.slices.forEach { dumpSlice(it, "    ", result) }
+            }
+        }
+        return result.toString()
+    }
+
+    private fun dumpSlice(slice: SliceGroup, indent: String, result: StringBuilder) {
+        result.append("$indent${slice.name} ${slice.startTime}..${slice.endTime}\n")
+        slice.children.forEach { dumpSlice(it, "$indent  ", result) }
+    }
+
+    @Test
+    fun `chunked import is identical to single chunk import`() {
+        val trace = createTrace()
+        val singleChunkFeedback = RecordingFeedback()
+        val chunkedFeedback = RecordingFeedback()
+
+        val singleChunk = import(trace, trace.length, singleChunkFeedback)
+        val chunked = import(trace, 1024, chunkedFeedback)
+
+        assertThat(singleChunk.processes).hasSize(7)
+        assertThat(dump(chunked)).isEqualTo(dump(singleChunk))
+        assertThat(chunkedFeedback.warnings).hasSize(20)
+        assertThat(chunkedFeedback.warnings).isEqualTo(singleChunkFeedback.warnings)
+    }
+
+    @Test
+    fun `lines before cpu buffer started marker are discarded`() {
+        val trace = createTrace() + "##### CPU 2 buffer started ####\n" +
+                    "          app-3000  ( 3000) [002] ...1   200.000000: tracing_mark_write: B|3000|after\n" +
+                    "          app-3000  ( 3000) [002] ...1   200.000010: tracing_mark_write: E|3000\n"
+
+        val fragment = import(trace, 1024)
+
+        assertThat(fragment.processes.map { it.id }).containsExactly(3000)
+        assertThat(dump(fragment)).contains("after 200.0..")
+    }
+}
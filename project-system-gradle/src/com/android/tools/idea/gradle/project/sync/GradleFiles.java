@@ -31,11 +31,15 @@ import com.android.tools.idea.gradle.util.GradleWrapper;
 import com.android.tools.idea.res.AndroidFileChangeListener;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
 import com.intellij.ide.impl.ProjectUtilKt;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.Application;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.fileEditor.FileEditor;
@@ -78,6 +82,14 @@ import org.jetbrains.plugins.groovy.lang.lexer.GroovyTokenTypes;
 import org.jetbrains.plugins.groovy.lang.psi.api.statements.blocks.GrCodeBlock;
 
 public class GradleFiles implements Disposable.Default {
+  private static final Logger LOG = Logger.getInstance(GradleFiles.class);
+
+  /**
+   * Streaming hash function used to fingerprint the content of build files; it consumes the document's char sequence directly, without
+   * materializing a copy of the text.
+   */
+  private static final HashFunction CONTENT_HASH_FUNCTION = Hashing.murmur3_128();
+
   @NotNull private final Project myProject;
 
   @NotNull private final Object myLock = new Object();
@@ -92,7 +104,15 @@ public class GradleFiles implements Disposable.Default {
 
   @GuardedBy("myLock")
   @NotNull
-  private final Map<VirtualFile, Integer> myFileHashes = new HashMap<>();
+  private final Map<VirtualFile, FileFingerprint> myFileHashes = new HashMap<>();
+
+  /**
+   * Fingerprints of changed files whose content was found to differ from the one recorded at the last sync. Used to avoid rehashing
+   * the same document content on every "sync needed?" check while the file is not edited further.
+   */
+  @GuardedBy("myLock")
+  @NotNull
+  private final Map<VirtualFile, FileFingerprint> myModifiedFileFingerprints = new HashMap<>();
 
   @GuardedBy("myLock")
   @NotNull
@@ -172,6 +192,7 @@ public class GradleFiles implements Disposable.Default {
     synchronized (myLock) {
       myChangedFiles.clear();
       myChangedExternalFiles.clear();
+      myModifiedFileFingerprints.clear();
     }
   }
 
@@ -186,14 +207,16 @@ public class GradleFiles implements Disposable.Default {
     }
   }
 
-  private static void putHashForFile(@NotNull Map<VirtualFile, Integer> map, @NotNull VirtualFile file) {
-    Integer hash = computeHash(file);
-    if (hash != null) {
-      map.put(file, hash);
+  private void putHashForFile(@NotNull Map<VirtualFile, FileFingerprint> map, @NotNull VirtualFile file) {
+    FileFingerprint fingerprint = computeFingerprint(file, getStoredHashForFile(file));
+    if (fingerprint != null) {
+      synchronized (map) {
+        map.put(file, fingerprint);
+      }
     }
   }
 
-  private void storeHashesForFiles(@NotNull Map<VirtualFile, Integer> files) {
+  private void storeHashesForFiles(@NotNull Map<VirtualFile, FileFingerprint> files) {
     synchronized (myLock) {
       myFileHashes.clear();
       myFileHashes.putAll(files);
@@ -201,12 +224,10 @@ public class GradleFiles implements Disposable.Default {
   }
 
   /**
-   * Gets the hash value for a given file from the map and stores the value as the first element
-   * in hashValue. If this method returns false then the file was not in the map and the value
-   * in hashValue should be ignored.
+   * Gets the fingerprint recorded for a given file at the last sync, or {@code null} if the file was not hashed.
    */
   @Nullable
-  private Integer getStoredHashForFile(@NotNull VirtualFile file) {
+  private FileFingerprint getStoredHashForFile(@NotNull VirtualFile file) {
     synchronized (myLock) {
       return myFileHashes.get(file);
     }
@@ -231,22 +252,59 @@ public class GradleFiles implements Disposable.Default {
   }
 
   /**
-   * Computes a hash for a given {@code VirtualFile} by using the string obtained from its {@code PsiFile},
-   * and stores it as the first element in hashValue. If this method returns false the hash was not computed
-   * and its value should not be used.
+   * Returns the modification stamp of the content of the given file: the stamp of its cached {@code Document} if there is one, or the
+   * stamp of the {@code VirtualFile} otherwise. A document loaded from disk starts with the file's stamp and saving a document
+   * propagates its stamp back to the file, so both are comparable.
+   */
+  private static long getContentModificationStamp(@NotNull VirtualFile file) {
+    Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+    return document != null ? document.getModificationStamp() : file.getModificationStamp();
+  }
+
+  /**
+   * Computes a {@link FileFingerprint} for a given {@code VirtualFile}. If {@code previous} was taken at the same modification stamp
+   * it is returned as is, otherwise the content of the file's {@code Document} is hashed. Returns {@code null} if the file is invalid
+   * or has no document.
    */
   @Nullable
-  private static Integer computeHash(@NotNull VirtualFile file) {
+  private static FileFingerprint computeFingerprint(@NotNull VirtualFile file, @Nullable FileFingerprint previous) {
     return ReadAction.compute(() -> {
       if (!file.isValid()) return null;
+      long stamp = getContentModificationStamp(file);
+      if (previous != null && previous.modificationStamp == stamp) return previous;
       Document document = FileDocumentManager.getInstance().getDocument(file);
-      return document == null ? null : document.getText().hashCode();
+      if (document == null) return null;
+      long hash = CONTENT_HASH_FUNCTION.hashUnencodedChars(document.getImmutableCharSequence()).asLong();
+      return new FileFingerprint(document.getModificationStamp(), hash);
     });
   }
 
+  /**
+   * Compares the current content of the given file with the one recorded at the last sync. The content is only rehashed when its
+   * modification stamp has changed since it was last looked at.
+   */
+  @GuardedBy("myLock")
   private boolean areHashesEqual(@NotNull VirtualFile file) {
-    Integer oldHash = getStoredHashForFile(file);
-    return oldHash != null && oldHash.equals(computeHash(file));
+    FileFingerprint stored = myFileHashes.get(file);
+    if (stored == null) {
+      return false;
+    }
+    FileFingerprint lastModified = myModifiedFileFingerprints.get(file);
+    FileFingerprint current = computeFingerprint(file, lastModified != null ? lastModified : stored);
+    if (current == null) {
+      return false;
+    }
+    if (current == stored) {
+      return true;
+    }
+    if (current.hash == stored.hash) {
+      // Same content as at the last sync, remember the new stamp so that subsequent checks do not need to hash it again.
+      myFileHashes.put(file, current);
+      myModifiedFileFingerprints.remove(file);
+      return true;
+    }
+    myModifiedFileFingerprints.put(file, current);
+    return false;
   }
 
   /**
@@ -264,6 +322,7 @@ public class GradleFiles implements Disposable.Default {
    * Filters the files given removing any that have a hash matching the last one stored. Returns true if
    * the filtered collection is empty, false otherwise.
    */
+  @GuardedBy("myLock")
   private boolean filterHashes(@NotNull Collection<VirtualFile> files) {
     boolean status = true;
     Set<VirtualFile> toRemove = new HashSet<>();
@@ -290,8 +349,8 @@ public class GradleFiles implements Disposable.Default {
     ProgressIndicator progressIndicator = progressManager.getProgressIndicator();
     Application application = ApplicationManager.getApplication();
 
-    // Local map to minimize time holding myLock
-    Map<VirtualFile, Integer> fileHashes = new HashMap<>();
+    // Local map to minimize time holding myLock, it is populated concurrently by the per-module tasks below.
+    Map<VirtualFile, FileFingerprint> fileHashes = new HashMap<>();
 
     Runnable computeWrapperHashRunnable = () -> {
       GradleWrapper gradleWrapper = GradleWrapper.find(project);
@@ -446,7 +505,26 @@ public class GradleFiles implements Disposable.Default {
    */
   public boolean areGradleFilesModified() {
     // Checks if any file in myChangedFiles actually has changes.
-    return ReadAction.compute(() -> !checkHashesOfChangedFiles());
+    boolean modified = ReadAction.compute(() -> !checkHashesOfChangedFiles());
+    if (modified && LOG.isDebugEnabled()) {
+      LOG.debug("Gradle files modified since last sync: " + getModifiedFiles());
+    }
+    return modified;
+  }
+
+  /**
+   * Returns the build files (including external build files) whose content differs from the one they had at the last sync, i.e. the
+   * files responsible for {@link #areGradleFilesModified()} returning {@code true}.
+   */
+  @NotNull
+  public Set<VirtualFile> getModifiedFiles() {
+    return ReadAction.compute(() -> {
+      synchronized (myLock) {
+        filterHashes(myChangedFiles);
+        filterHashes(myChangedExternalFiles);
+        return ImmutableSet.<VirtualFile>builder().addAll(myChangedFiles).addAll(myChangedExternalFiles).build();
+      }
+    });
   }
 
   public boolean areExternalBuildFilesModified() {
@@ -479,6 +557,19 @@ public class GradleFiles implements Disposable.Default {
     resetChangedFilesState();
   }
 
+  /**
+   * Content fingerprint of a build file: the modification stamp it was taken at and a 64-bit hash of the content at that stamp.
+   */
+  private static final class FileFingerprint {
+    private final long modificationStamp;
+    private final long hash;
+
+    private FileFingerprint(long modificationStamp, long hash) {
+      this.modificationStamp = modificationStamp;
+      this.hash = hash;
+    }
+  }
+
   /**
    * Listens for changes to the PsiTree of gradle build files. If a tree changes in any
    * meaningful way then relevant file is recorded. A change is meaningful under the following
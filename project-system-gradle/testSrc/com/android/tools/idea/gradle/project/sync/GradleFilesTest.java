@@ -182,6 +182,13 @@ public class GradleFilesTest extends AndroidGradleTestCase {
     runFakeModificationTest((factory, file) -> file.add(factory.createExpressionFromText("ext.coolexpression = 'nice!'")), true);
   }
 
+  public void testModifiedFilesContainsChangedBuildFile() throws Exception {
+    loadSimpleApplication();
+    assertThat(myGradleFiles.getModifiedFiles()).isEmpty();
+    runFakeModificationTest((factory, file) -> file.add(factory.createExpressionFromText("ext.coolexpression = 'nice!'")), true);
+    assertThat(myGradleFiles.getModifiedFiles()).containsExactly(getAppBuildFile());
+  }
+
   public void testNotModifiedWhenAddingWhitespaceInSettingsFile() throws Exception {
     loadSimpleApplication();
 
@@ -22,6 +22,7 @@ import com.android.ide.common.rendering.api.MergeCookie;
 import com.android.ide.common.rendering.api.SessionParams;
 import com.android.ide.common.rendering.api.ViewInfo;
 import com.android.sdklib.IAndroidTarget;
+import com.android.sdklib.devices.Device;
 import com.android.tools.configurations.Configuration;
 import com.android.tools.idea.layoutlib.LayoutLibrary;
 import com.android.tools.idea.layoutlib.RenderingException;
@@ -35,15 +36,19 @@ import com.android.tools.rendering.parsers.ILayoutPullParserFactory;
 import com.android.tools.rendering.parsers.RenderXmlFile;
 import com.android.tools.rendering.parsers.RenderXmlTag;
 import com.android.tools.rendering.parsers.TagSnapshot;
+import com.android.tools.rendering.tracing.RenderPhase;
+import com.android.tools.rendering.tracing.RenderTrace;
 import com.android.tools.rendering.tracking.RenderTaskAllocationTracker;
 import com.android.tools.rendering.tracking.RenderTaskAllocationTrackerImpl;
 import com.android.tools.rendering.tracking.StackTraceCapture;
 import com.google.common.annotations.VisibleForTesting;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.project.Project;
 import com.intellij.util.IncorrectOperationException;
 import com.intellij.util.concurrency.AppExecutorUtil;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -108,6 +113,8 @@ final public class RenderService implements Disposable {
 
   private final Consumer<RenderTaskBuilder> myConfigureBuilder;
 
+  private final RenderTaskWarmPool myWarmPool = new RenderTaskWarmPool();
+
   @NotNull
   public static RenderAsyncActionExecutor getRenderAsyncActionExecutor() {
     return getOrCreateExecutor();
@@ -151,13 +158,14 @@ final public class RenderService implements Disposable {
   public RenderTaskBuilder taskBuilder(@NotNull RenderModelModule module,
                                        @NotNull Configuration configuration,
                                        @NotNull RenderLogger logger) {
-    RenderTaskBuilder builder = new RenderTaskBuilder(module, configuration, myImagePool, myCredential, logger);
+    RenderTaskBuilder builder = new RenderTaskBuilder(module, configuration, myImagePool, myCredential, logger, myWarmPool);
     myConfigureBuilder.accept(builder);
     return builder;
   }
 
   @Override
   public void dispose() {
+    myWarmPool.dispose();
     myImagePool.dispose();
   }
 
@@ -248,6 +256,14 @@ final public class RenderService implements Disposable {
     return myImagePool;
   }
 
+  /**
+   * Returns the pool of the {@link RenderTask}s kept ready for the builders that use {@link RenderTaskBuilder#useWarmPool}.
+   */
+  @NotNull
+  public RenderTaskWarmPool getWarmPool() {
+    return myWarmPool;
+  }
+
   /** This is the View.MeasureSpec mode shift */
   private static final int MEASURE_SPEC_MODE_SHIFT = 30;
 
@@ -281,6 +297,9 @@ final public class RenderService implements Disposable {
     private SessionParams.RenderingMode myRenderingMode = null;
     private boolean useTransparentBackground = false;
     private Function<Object, List<ViewInfo>> myCustomContentHierarchyParser = null;
+    @NotNull private final RenderTaskWarmPool myWarmPool;
+    @Nullable private Supplier<RenderModelModule> myWarmPoolModuleFactory = null;
+    @Nullable private Supplier<RenderLogger> myWarmPoolLoggerFactory = null;
 
     /**
      * If two RenderTasks share the same ModuleClassLoader they share the same compose framework. This way they share the state. If we would
@@ -334,11 +353,13 @@ final public class RenderService implements Disposable {
                               @NotNull Configuration configuration,
                               @NotNull ImagePool defaultImagePool,
                               @NotNull Object credential,
-                              @NotNull RenderLogger logger) {
+                              @NotNull RenderLogger logger,
+                              @NotNull RenderTaskWarmPool warmPool) {
       myContext = new RenderContext(module, configuration);
       myImagePool = defaultImagePool;
       myCredential = credential;
       myLogger = logger;
+      myWarmPool = warmPool;
     }
 
 
@@ -525,101 +546,202 @@ final public class RenderService implements Disposable {
       return this;
     }
 
+    /**
+     * Allows the {@link RenderTask} to be taken from the {@link RenderTaskWarmPool} of the {@link RenderService}, and keeps a new task
+     * ready in the pool for the next request with the same module, device, qualifiers and theme, once such requests are repeated. The
+     * factories create the module and the logger of that new task, since every task owns its module.
+     * <p/>
+     * When the task comes from the pool, it renders with the {@link Configuration} of this builder, the module passed to
+     * {@link RenderService#taskBuilder} is disposed and the problems found while creating the task are reported to its own logger, see
+     * {@link RenderTask#getLogger()}.
+     * The pool is not used for tasks with a private class loader, a custom parser factory or a test event listener. A pooled task keeps
+     * the {@link #setOnNewClassLoader} callback of the builder that created it, so the callers using the pool are expected to use the
+     * same one.
+     */
+    @NotNull
+    public RenderTaskBuilder useWarmPool(@NotNull Supplier<RenderModelModule> moduleFactory, @NotNull Supplier<RenderLogger> loggerFactory) {
+      myWarmPoolModuleFactory = moduleFactory;
+      myWarmPoolLoggerFactory = loggerFactory;
+      return this;
+    }
+
     /**
      * Builds a new {@link RenderTask}. The returned future always completes successfully but the value might be null if the RenderTask
      * can not be created.
      */
     @NotNull
     public CompletableFuture<RenderTask> build() {
+      long requestStart = RenderTrace.start();
       RenderTaskAllocationTracker tracker = new RenderTaskAllocationTrackerImpl(myContext.getModule().getEnvironment().isInTest());
       StackTraceCapture stackTraceCaptureElement = tracker.captureAllocationStackTrace();
 
       return CompletableFuture.supplyAsync(() -> {
-        RenderModelModule module = myContext.getModule();
-        if (module.isDisposed()) {
-          getLogger().warn("Module was already disposed");
-          return null;
+        RenderTaskWarmPool.Key warmPoolKey = getWarmPoolKey(myContext.getModule(), myContext.getConfiguration());
+        RenderTask task = warmPoolKey != null ? myWarmPool.take(warmPoolKey) : null;
+        if (task != null) {
+          // The pooled task has its own module, the one of this builder is not used.
+          Disposer.dispose(myContext.getModule());
+          task.setConfiguration(myContext.getConfiguration());
         }
-        IAndroidTarget target = myContext.getConfiguration().getTarget();
-
-        if (module.getAndroidPlatform() == null) {
-          myContext.getModule().getEnvironment().reportMissingSdkDependency(myLogger);
-          return null;
+        else {
+          task = createTask(myContext, myLogger, stackTraceCaptureElement, tracker);
+          if (task == null) {
+            return null;
+          }
         }
+        configureTask(task);
+        task.setRequestStartNanos(requestStart);
 
-        if (target == null) {
-          myLogger.addMessage(RenderProblem.createPlain(ERROR, "No render target was chosen"));
-          return null;
+        if (warmPoolKey != null) {
+          CompletableFuture.runAsync(() -> myWarmPool.replenish(warmPoolKey, () -> createWarmPoolTask(warmPoolKey)),
+                                     AppExecutorUtil.getAppExecutorService());
         }
+        return task;
+      }, AppExecutorUtil.getAppExecutorService());
+    }
 
-        LayoutLibrary layoutLib;
-        try {
-          layoutLib = LayoutlibFactory.getLayoutLibrary(target, module.getAndroidPlatform(), module.getEnvironment().getLayoutlibContext());
-        }
-        catch (UnsupportedJavaRuntimeException e) {
-          RenderProblem.Html javaVersionProblem = RenderProblem.create(ERROR);
-          javaVersionProblem.getHtmlBuilder()
-            .add(e.getPresentableMessage())
-            .newline()
-            .addLink("Install a supported JDK", JDK_INSTALL_URL);
-          myLogger.addMessage(javaVersionProblem);
+    /**
+     * Returns the {@link RenderTaskWarmPool.Key} of the tasks built by this builder for the given module and configuration, or null if
+     * they can not be pooled.
+     */
+    @Nullable
+    private RenderTaskWarmPool.Key getWarmPoolKey(@NotNull RenderModelModule module, @NotNull Configuration configuration) {
+      if (myWarmPoolModuleFactory == null || myWarmPoolLoggerFactory == null || module.isDisposed() || privateClassLoader ||
+          myParserFactory != null || myTestEventListener != RenderTask.NOP_TEST_EVENT_LISTENER) {
+        return null;
+      }
+      Device device = configuration.getDevice();
+      IAndroidTarget target = configuration.getTarget();
+      return new RenderTaskWarmPool.Key(
+        module.getModuleKey(),
+        device != null ? device.getId() : null,
+        configuration.getFullConfig().getQualifierString(),
+        configuration.getTheme(),
+        target != null ? target.hashString() : null,
+        module.getResourceRepositoryManager().getAppResources().getModificationCount(),
+        Arrays.asList(myImagePool, myQuality, isSecurityManagerEnabled, myAdditionalProjectTransform.getId(),
+                      myAdditionalNonProjectTransform.getId(), classesToPreload, reportOutOfDateUserClasses, myTopic, useCustomInflater));
+    }
+
+    /**
+     * Creates a task for the {@link RenderTaskWarmPool} with a new module and a copy of the configuration, so the task does not keep the
+     * configuration of this builder. Returns null if the configuration or the resources do not match the given key anymore.
+     */
+    @Nullable
+    private RenderTask createWarmPoolTask(@NotNull RenderTaskWarmPool.Key key) {
+      RenderModelModule module = myWarmPoolModuleFactory.get();
+      RenderTask task = null;
+      try {
+        Configuration configuration = myContext.getConfiguration().clone();
+        if (!key.equals(getWarmPoolKey(module, configuration))) {
           return null;
         }
-        catch (RenderingException e) {
-          String message = e.getPresentableMessage();
-          message = message != null ? message : RenderingBundle.message("android.layout.preview.default.error.message");
-          myLogger.addMessage(
-            RenderProblem.createHtml(
-              ERROR, message, module.getProject(), myLogger.getLinkManager(), e, module.getEnvironment().getRunnableFixFactory()));
-          return null;
+        RenderTaskAllocationTracker tracker = new RenderTaskAllocationTrackerImpl(module.getEnvironment().isInTest());
+        task = createTask(new RenderContext(module, configuration), myWarmPoolLoggerFactory.get(), tracker.captureAllocationStackTrace(),
+                          tracker);
+        return task;
+      }
+      finally {
+        if (task == null && !module.isDisposed()) {
+          Disposer.dispose(module);
         }
+      }
+    }
 
-        try {
-          RenderTask task =
-            new RenderTask(myContext, myContext.getModule().getEnvironment().getModuleClassLoaderManager(), myLogger, layoutLib,
-                           myCredential, myContext.getModule().getEnvironment().getCrashReporter(), myImagePool,
-                           myParserFactory, isSecurityManagerEnabled, myQuality, stackTraceCaptureElement, tracker,
-                           privateClassLoader, myAdditionalProjectTransform, myAdditionalNonProjectTransform, myOnNewModuleClassLoader,
-                           classesToPreload, reportOutOfDateUserClasses, myTopic, useCustomInflater, myTestEventListener);
+    @Nullable
+    private RenderTask createTask(@NotNull RenderContext context,
+                                  @NotNull RenderLogger logger,
+                                  @NotNull StackTraceCapture stackTraceCaptureElement,
+                                  @NotNull RenderTaskAllocationTracker tracker) {
+      long traceStart = RenderTrace.start();
+      RenderModelModule module = context.getModule();
+      if (module.isDisposed()) {
+        getLogger().warn("Module was already disposed");
+        return null;
+      }
+      IAndroidTarget target = context.getConfiguration().getTarget();
 
-          if (myXmlFile != null) {
-            task.setXmlFile(myXmlFile);
-          }
+      if (module.getAndroidPlatform() == null) {
+        module.getEnvironment().reportMissingSdkDependency(logger);
+        return null;
+      }
 
-          task
-            .setDecorations(showDecorations)
-            .setShowWithToolsVisibilityAndPosition(showWithToolsVisibilityAndPosition)
-            .setEnableLayoutScanner(enableLayoutScanner);
+      if (target == null) {
+        logger.addMessage(RenderProblem.createPlain(ERROR, "No render target was chosen"));
+        return null;
+      }
 
-          if (myMaxRenderWidth != -1 && myMaxRenderHeight != -1) {
-            task.setMaxRenderSize(myMaxRenderWidth, myMaxRenderHeight);
-          }
+      LayoutLibrary layoutLib;
+      try {
+        layoutLib = LayoutlibFactory.getLayoutLibrary(target, module.getAndroidPlatform(), module.getEnvironment().getLayoutlibContext());
+      }
+      catch (UnsupportedJavaRuntimeException e) {
+        RenderProblem.Html javaVersionProblem = RenderProblem.create(ERROR);
+        javaVersionProblem.getHtmlBuilder()
+          .add(e.getPresentableMessage())
+          .newline()
+          .addLink("Install a supported JDK", JDK_INSTALL_URL);
+        logger.addMessage(javaVersionProblem);
+        return null;
+      }
+      catch (RenderingException e) {
+        String message = e.getPresentableMessage();
+        message = message != null ? message : RenderingBundle.message("android.layout.preview.default.error.message");
+        logger.addMessage(
+          RenderProblem.createHtml(
+            ERROR, message, module.getProject(), logger.getLinkManager(), e, module.getEnvironment().getRunnableFixFactory()));
+        return null;
+      }
 
-          if (useTransparentBackground) {
-            task.setTransparentBackground();
-          }
+      try {
+        RenderTask task =
+          new RenderTask(context, module.getEnvironment().getModuleClassLoaderManager(), logger, layoutLib,
+                         myCredential, module.getEnvironment().getCrashReporter(), myImagePool,
+                         myParserFactory, isSecurityManagerEnabled, myQuality, stackTraceCaptureElement, tracker,
+                         privateClassLoader, myAdditionalProjectTransform, myAdditionalNonProjectTransform, myOnNewModuleClassLoader,
+                         classesToPreload, reportOutOfDateUserClasses, myTopic, useCustomInflater, myTestEventListener);
+
+        // Only successful creations are recorded, the failed ones stop early and would skew the percentiles.
+        RenderTrace.end(RenderPhase.TASK_CREATION, traceStart);
+        return task;
+      } catch (NoDeviceException e) {
+        logger.addMessage(RenderProblem.createPlain(ERROR, "No device selected"));
+        return null;
+      } catch (IllegalStateException | IncorrectOperationException | AssertionError e) {
+        // Ignore the exception if it was generated when the facet is being disposed (project is being closed)
+        if (!module.isDisposed()) {
+          throw e;
+        }
+      }
 
-          if (myRenderingMode != null) {
-            task.setRenderingMode(myRenderingMode);
-          }
+      return null;
+    }
 
-          if (myCustomContentHierarchyParser != null) {
-            task.setCustomContentHierarchyParser(myCustomContentHierarchyParser);
-          }
+    private void configureTask(@NotNull RenderTask task) {
+      if (myXmlFile != null) {
+        task.setXmlFile(myXmlFile);
+      }
 
-          return task;
-        } catch (NoDeviceException e) {
-          myLogger.addMessage(RenderProblem.createPlain(ERROR, "No device selected"));
-          return null;
-        } catch (IllegalStateException | IncorrectOperationException | AssertionError e) {
-          // Ignore the exception if it was generated when the facet is being disposed (project is being closed)
-          if (!module.isDisposed()) {
-            throw e;
-          }
-        }
+      task
+        .setDecorations(showDecorations)
+        .setShowWithToolsVisibilityAndPosition(showWithToolsVisibilityAndPosition)
+        .setEnableLayoutScanner(enableLayoutScanner);
 
-        return null;
-      }, AppExecutorUtil.getAppExecutorService());
+      if (myMaxRenderWidth != -1 && myMaxRenderHeight != -1) {
+        task.setMaxRenderSize(myMaxRenderWidth, myMaxRenderHeight);
+      }
+
+      if (useTransparentBackground) {
+        task.setTransparentBackground();
+      }
+
+      if (myRenderingMode != null) {
+        task.setRenderingMode(myRenderingMode);
+      }
+
+      if (myCustomContentHierarchyParser != null) {
+        task.setCustomContentHierarchyParser(myCustomContentHierarchyParser);
+      }
     }
   }
 }
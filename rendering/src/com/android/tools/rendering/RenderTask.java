@@ -67,6 +67,8 @@ import com.android.tools.rendering.parsers.LayoutRenderPullParser;
 import com.android.tools.rendering.parsers.RenderXmlFile;
 import com.android.tools.rendering.parsers.RenderXmlTag;
 import com.android.tools.rendering.security.RenderSecurityManager;
+import com.android.tools.rendering.tracing.RenderPhase;
+import com.android.tools.rendering.tracing.RenderTrace;
 import com.android.tools.rendering.tracking.RenderTaskAllocationTracker;
 import com.android.tools.rendering.tracking.StackTraceCapture;
 import com.android.tools.sdk.CompatibilityRenderTarget;
@@ -97,6 +99,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -161,7 +164,7 @@ public class RenderTask {
 
   @NotNull RenderTaskAllocationTracker myTracker;
   @NotNull private final ImagePool myImagePool;
-  @NotNull private final RenderContext myContext;
+  @NotNull private volatile RenderContext myContext;
 
   @NotNull private final ModuleClassLoaderManager<?> myClassLoaderManager;
   @NotNull private final RenderLogger myLogger;
@@ -192,6 +195,8 @@ public class RenderTask {
   @NotNull private final Object myCredential;
   private boolean myProvideCookiesForIncludedViews = false;
   @Nullable private RenderSession myRenderSession;
+  /** Time at which this task was requested, or 0 once its first image has been rendered. */
+  private final AtomicLong myRequestStartNanos = new AtomicLong();
   @NotNull private IImageFactory myCachingImageFactory = SIMPLE_IMAGE_FACTORY;
   @Nullable private IImageFactory myImageFactoryDelegate;
   private final boolean isSecurityManagerEnabled;
@@ -379,7 +384,7 @@ public class RenderTask {
   }
 
   @NotNull
-  public IRenderLogger getLogger() {
+  public RenderLogger getLogger() {
     return myLogger;
   }
 
@@ -400,6 +405,32 @@ public class RenderTask {
     return isDisposed.get();
   }
 
+  /**
+   * Returns true if this task has not been used yet and can still be handed to a new owner, see {@link RenderTaskWarmPool}.
+   */
+  boolean isReusable() {
+    if (isDisposed() || myRenderSession != null) {
+      return false;
+    }
+    ModuleClassLoader classLoader = myModuleClassLoaderReference.getClassLoader();
+    return !classLoader.isDisposed() && classLoader.isUserCodeUpToDate();
+  }
+
+  /**
+   * Makes this task render with the given {@link Configuration} instead of the one it was created with. Both must have the same device,
+   * qualifiers and theme. Only used for the tasks handed to a new owner by the {@link RenderTaskWarmPool}.
+   */
+  void setConfiguration(@NotNull Configuration configuration) {
+    myContext = new RenderContext(myContext.getModule(), configuration);
+  }
+
+  /**
+   * Sets the time at which this task was requested, so the time to its first image can be recorded in the {@link RenderTrace}.
+   */
+  void setRequestStartNanos(long requestStartNanos) {
+    myRequestStartNanos.set(requestStartNanos);
+  }
+
   // Workaround for http://b/143378087
   private void clearClassLoader() {
     try {
@@ -618,7 +649,17 @@ public class RenderTask {
     // an error has happened. Even if the image is valid, a 1x1 image is not useful so we approximate it to
     // the null image.
     if (result != null && result.getWidth() > 1 && result.getHeight() > 1) {
-      return myImagePool.copyOf(result);
+      long start = RenderTrace.start();
+      try {
+        return myImagePool.copyOf(result);
+      }
+      finally {
+        RenderTrace.end(RenderPhase.IMAGE_COPY, start);
+        long requestStart = myRequestStartNanos.getAndSet(0);
+        if (requestStart != 0) {
+          RenderTrace.end(RenderPhase.FIRST_IMAGE, requestStart);
+        }
+      }
     }
     return ImagePool.NULL_POOLED_IMAGE;
   }
@@ -652,7 +693,9 @@ public class RenderTask {
       return null;
     }
 
+    long parseStart = RenderTrace.start();
     ILayoutPullParser modelParser = LayoutPullParsers.create(this);
+    RenderTrace.end(RenderPhase.PARSING, parseStart);
     if (modelParser == null) {
       return null;
     }
@@ -782,7 +825,9 @@ public class RenderTask {
       }
 
       try {
+        long inflateStart = RenderTrace.start();
         RenderSession session = myLayoutLib.createSession(params);
+        RenderTrace.end(RenderPhase.INFLATE, inflateStart);
 
         if (session.getResult().isSuccess()) {
           session.setSystemBootTimeNanos(0);
@@ -989,7 +1034,9 @@ public class RenderTask {
       RenderSession renderSession = myRenderSession;
       RenderXmlFile xmlFile = getXmlFile();
       return runAsyncRenderAction(() -> {
+        long start = RenderTrace.start();
         myRenderSession.measure();
+        RenderTrace.end(RenderPhase.MEASURE, start);
         return RenderResult.create(myContext, renderSession, xmlFile, myLogger, ImagePool.NULL_POOLED_IMAGE, myLayoutlibCallback.isUsed());
       });
     }
@@ -1116,7 +1163,9 @@ public class RenderTask {
         long startRenderTimeMs = System.currentTimeMillis();
         return runAsyncRenderAction(() -> {
           myTestEventListener.onBeforeRender();
+          long start = RenderTrace.start();
           myRenderSession.render(forceMeasure);
+          RenderTrace.end(RenderPhase.RENDER, start);
           BufferedImage resultImage = myRenderSession.getImage();
           RenderResult result =
             RenderResult.create(myContext, myRenderSession, xmlFile, myLogger, toPooledImage(resultImage), myLayoutlibCallback.isUsed());
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.rendering
+
+import com.android.annotations.concurrency.GuardedBy
+import com.android.tools.configurations.Configuration
+import com.android.tools.module.ModuleKey
+import com.intellij.openapi.diagnostic.Logger
+import java.util.concurrent.atomic.AtomicLong
+
+/** Max number of [RenderTaskWarmPool.Key]s for which a [RenderTask] is kept ready. */
+private const val DEFAULT_CAPACITY = 4
+
+/** Number of recently requested [RenderTaskWarmPool.Key]s remembered per task of the pool capacity. */
+private const val REQUESTED_KEYS_PER_TASK = 4
+
+/**
+ * Pool of [RenderTask]s created ahead of time. A task taken from the pool has already set up its layout library, its
+ * [LayoutlibCallbackImpl] and its module class loader, so the caller only pays for the inflation of the layout.
+ *
+ * At most one task is kept for each of the most recently used [Key]s. A task is only created for a key that is requested
+ * repeatedly, see [replenish] and [RenderService.RenderTaskBuilder.useWarmPool].
+ */
+class RenderTaskWarmPool(private val capacity: Int = DEFAULT_CAPACITY) {
+  /**
+   * Identifies the requests that can use the same [RenderTask], whatever the file or the [Configuration] object they come from.
+   *
+   * The [deviceId], [qualifiers] (see [Configuration.getFullConfig]), [theme] and [target] are the parts of the [Configuration] read
+   * when the task is created. The [resourcesVersion] covers the app resources read by the [LayoutlibCallbackImpl]. The [settings] are
+   * the rest of the [RenderService.RenderTaskBuilder] parameters used to create the task.
+   */
+  data class Key(
+    val moduleKey: ModuleKey,
+    val deviceId: String?,
+    val qualifiers: String,
+    val theme: String?,
+    val target: String?,
+    val resourcesVersion: Long,
+    val settings: List<Any?>
+  )
+
+  /** The tasks in the pool, from the least to the most recently offered. */
+  @GuardedBy("this") private val tasks = LinkedHashMap<Key, RenderTask>()
+
+  /**
+   * The keys recently passed to [take], from the least to the most recently taken, mapped to true if a task was kept for them or
+   * they had already been taken before.
+   */
+  @GuardedBy("this") private val requestedKeys = LinkedHashMap<Key, Boolean>()
+
+  /** The keys for which [replenish] is creating a task. */
+  @GuardedBy("this") private val pendingKeys = HashSet<Key>()
+
+  private val hits = AtomicLong()
+  private val misses = AtomicLong()
+
+  /** Number of [take] calls that returned a task. */
+  val hitCount: Long
+    get() = hits.get()
+
+  /** Number of [take] calls that did not return a task. */
+  val missCount: Long
+    get() = misses.get()
+
+  /** Number of tasks kept in the pool. */
+  val size: Int
+    get() = synchronized(this) { tasks.size }
+
+  /** Ratio of the [take] calls that returned a task, or -1 if [take] has not been called. */
+  val hitRate: Double
+    get() {
+      val total = hitCount + missCount
+      return if (total > 0) hitCount.toDouble() / total else -1.0
+    }
+
+  /**
+   * Returns the task kept for [key] and removes it from the pool, or null if there is none or it can not be used anymore. The caller
+   * owns the returned task.
+   */
+  fun take(key: Key): RenderTask? {
+    val task = synchronized(this) {
+      val task = tasks.remove(key)
+      requestedKeys[key] = requestedKeys.remove(key) != null || task != null
+      val iterator = requestedKeys.keys.iterator()
+      while (requestedKeys.size > capacity * REQUESTED_KEYS_PER_TASK) {
+        iterator.next()
+        iterator.remove()
+      }
+      task
+    }
+    if (task == null || !task.isReusable) {
+      task?.let { dispose(it) }
+      misses.incrementAndGet()
+      return null
+    }
+    hits.incrementAndGet()
+    return task
+  }
+
+  /**
+   * Creates a task for [key] with [createTask] and keeps it for a future [take], if the last [take] for [key] returned a task or [key]
+   * had already been taken before. Nothing is created while a task is kept or being created for [key].
+   */
+  fun replenish(key: Key, createTask: () -> RenderTask?) {
+    synchronized(this) {
+      if (requestedKeys[key] != true || key in tasks || !pendingKeys.add(key)) {
+        return
+      }
+    }
+    val task = try {
+      createTask()
+    } finally {
+      synchronized(this) { pendingKeys.remove(key) }
+    }
+    task?.let { offer(key, it) }
+  }
+
+  /**
+   * Keeps [task] for a future [take] with the given [key]. The task replaces the one already kept for [key], and the task of the least
+   * recently offered key is disposed when the pool is full.
+   */
+  fun offer(key: Key, task: RenderTask) {
+    val discarded = mutableListOf<RenderTask>()
+    synchronized(this) {
+      tasks.remove(key)?.let { discarded.add(it) }
+      tasks[key] = task
+      val iterator = tasks.values.iterator()
+      while (tasks.size > capacity) {
+        discarded.add(iterator.next())
+        iterator.remove()
+      }
+    }
+    discarded.forEach { dispose(it) }
+  }
+
+  /** Disposes all the tasks in the pool. */
+  fun dispose() {
+    val discarded = synchronized(this) {
+      requestedKeys.clear()
+      tasks.values.toList().also { tasks.clear() }
+    }
+    discarded.forEach { dispose(it) }
+  }
+
+  private fun dispose(task: RenderTask) {
+    if (task.isDisposed) return
+    try {
+      task.dispose()
+    } catch (t: Throwable) {
+      Logger.getInstance(RenderTaskWarmPool::class.java).warn(t)
+    }
+  }
+}
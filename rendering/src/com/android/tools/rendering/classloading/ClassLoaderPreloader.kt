@@ -17,6 +17,7 @@ package com.android.tools.rendering.classloading
 
 import com.google.common.util.concurrent.MoreExecutors
 import java.lang.ref.WeakReference
+import java.util.concurrent.ConcurrentLinkedQueue
 import java.util.concurrent.Executor
 
 /**
@@ -46,3 +47,33 @@ fun preload(
     }
   }
 }
+
+/**
+ * Runs [prepareClass] for each of the [classesToPrepare] on [parallelism] tasks submitted to
+ * [executor]. This is intended for the work that can be done in advance without defining the
+ * classes, like reading and transforming their bytes. Unlike [preload], that work does not need the
+ * [ClassLoader] lock, so it scales with the number of threads available in the [executor].
+ *
+ * The preparation stops once [isActive] returns false. Failures to prepare a class are ignored, the
+ * class will be loaded normally when needed.
+ */
+fun prepareInParallel(
+  classesToPrepare: Collection<String>,
+  isActive: () -> Boolean,
+  executor: Executor,
+  parallelism: Int,
+  prepareClass: (String) -> Unit
+) {
+  if (classesToPrepare.isEmpty()) return
+  val pending = ConcurrentLinkedQueue(classesToPrepare)
+  repeat(parallelism.coerceIn(1, classesToPrepare.size)) {
+    executor.execute {
+      while (isActive()) {
+        val classToPrepare = pending.poll() ?: break
+        try {
+          prepareClass(classToPrepare)
+        } catch (_: Exception) {} catch (_: LinkageError) {}
+      }
+    }
+  }
+}
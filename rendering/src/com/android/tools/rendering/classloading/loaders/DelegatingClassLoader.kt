@@ -15,6 +15,7 @@
  */
 package com.android.tools.rendering.classloading.loaders
 
+import com.android.tools.rendering.tracing.RenderTrace
 import org.jetbrains.org.objectweb.asm.ClassReader
 
 /**
@@ -71,6 +72,7 @@ open class DelegatingClassLoader(parent: ClassLoader?, private val loader: Loade
   final override fun findClass(name: String): Class<*> {
     onBeforeFindClass(name)
     val start = System.currentTimeMillis()
+    val traceStart = RenderTrace.startClassLoading()
     var found = false
     try {
       val bytes = loader.loadClass(name) ?: throw ClassNotFoundException(name)
@@ -101,6 +103,7 @@ open class DelegatingClassLoader(parent: ClassLoader?, private val loader: Loade
       found = true
       return clazz
     } finally {
+      RenderTrace.endClassLoading(traceStart)
       onAfterFindClass(name, found, System.currentTimeMillis() - start)
     }
   }
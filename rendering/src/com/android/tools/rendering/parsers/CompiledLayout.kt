@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.rendering.parsers
+
+import com.google.common.collect.ImmutableMap
+
+/**
+ * [TagSnapshot] of a layout file together with the information that [LayoutRenderPullParser]
+ * derives from it.
+ *
+ * The snapshot is not modified by the parsers so, when [isShareable] is true, the same
+ * [CompiledLayout] can be used by all the parsers of the file until it changes. For example, by the
+ * parsers of a layout included several times, or rendered in several configurations. See
+ * [RenderXmlFile.getCompiledLayout].
+ */
+class CompiledLayout(
+  val root: TagSnapshot,
+  val hasToolsNamespace: Boolean,
+  val declaredAaptAttrs: ImmutableMap<String, TagSnapshot>,
+  /** True if the snapshot references sample data, which each parser resolves to different items. */
+  val usesSampleData: Boolean
+) {
+  /**
+   * False if the snapshot can not be used by more than one parser. That is the case when it
+   * references sample data, or declares aapt:attr resources, whose ids must be unique within a
+   * render.
+   */
+  val isShareable: Boolean
+    get() = !usesSampleData && declaredAaptAttrs.isEmpty()
+}
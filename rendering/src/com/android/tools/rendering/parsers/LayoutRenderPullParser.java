@@ -136,6 +136,8 @@ public class LayoutRenderPullParser extends LayoutPullParser implements AaptAttr
                                                                                  ),
                                                                                  ImmutableList.of(), null);
 
+  private static final CompiledLayout EMPTY_COMPILED_LAYOUT = new CompiledLayout(EMPTY_LAYOUT, false, ImmutableMap.of(), false);
+
   private static final Consumer<TagSnapshot> TAG_SNAPSHOT_DECORATOR = (tagSnapshot) -> {
     if ("com.google.android.gms.ads.AdView".equals(tagSnapshot.tagName) || "com.google.android.gms.maps.MapView".equals(tagSnapshot.tagName)) {
       tagSnapshot.setAttribute(ATTR_MIN_WIDTH, TOOLS_URI, TOOLS_PREFIX, "50dp", false);
@@ -303,7 +305,7 @@ public class LayoutRenderPullParser extends LayoutPullParser implements AaptAttr
                                    @Nullable NavGraphResolver navGraphResolver,
                                    @Nullable ResourceRepositoryManager resourceRepositoryManager,
                                    int sampleDataCounter) {
-    this(file.getRootTag(), logger, honorMergeParentTag, navGraphResolver, resourceRepositoryManager, sampleDataCounter, true);
+    this(file, file.getRootTag(), logger, honorMergeParentTag, navGraphResolver, resourceRepositoryManager, sampleDataCounter, true);
   }
 
   /**
@@ -380,27 +382,75 @@ public class LayoutRenderPullParser extends LayoutPullParser implements AaptAttr
                                    @Nullable ResourceRepositoryManager repositoryManager,
                                    int sampleDataCounter,
                                    boolean useToolsPositionAndVisibility) {
+    this(null, root, logger, honorMergeParentTag, navGraphResolver, repositoryManager, sampleDataCounter, useToolsPositionAndVisibility);
+  }
+
+  /**
+   * @param file if not null, the file of the {@code root} tag. The {@link CompiledLayout} of the file is then shared with the other
+   *             parsers of the file, see {@link RenderXmlFile#getCompiledLayout}.
+   */
+  private LayoutRenderPullParser(@Nullable RenderXmlFile file,
+                                 @Nullable final RenderXmlTag root,
+                                 @NotNull ILayoutLog logger,
+                                 boolean honorMergeParentTag,
+                                 @Nullable NavGraphResolver navGraphResolver,
+                                 @Nullable ResourceRepositoryManager repositoryManager,
+                                 int sampleDataCounter,
+                                 boolean useToolsPositionAndVisibility) {
     myNavGraphResolver = navGraphResolver;
     myLogger = logger;
     mySampleDataCounter = sampleDataCounter;
     myUseToolsPositionAndVisibility = useToolsPositionAndVisibility;
 
-    Ref<TagSnapshot> myRootRef = new Ref<>(EMPTY_LAYOUT);
+    Ref<CompiledLayout> myLayoutRef = new Ref<>(EMPTY_COMPILED_LAYOUT);
     Ref<ResourceNamespace> myLayoutNamespaceRef = new Ref<>(ResourceNamespace.RES_AUTO);
     ReadAction.run(() -> {
       if (root != null && root.isValid()) {
-        myRootRef.set(createSnapshot(root, honorMergeParentTag, mySampleDataProcessing));
+        Ref<Boolean> compiledForThisParser = new Ref<>(false);
+        CompiledLayout layout = file != null ? file.getCompiledLayout(honorMergeParentTag, () -> {
+          compiledForThisParser.set(true);
+          return compile(root, honorMergeParentTag);
+        }) : null;
+        // A layout that can not be shared is only used by the parser that compiled it, and only if it does not need the sample data
+        // references to be resolved by this parser.
+        if (layout == null || !(layout.isShareable() || compiledForThisParser.get() && !layout.getUsesSampleData())) {
+          layout = compile(createSnapshot(root, honorMergeParentTag, mySampleDataProcessing), false);
+        }
+        myLayoutRef.set(layout);
         if (repositoryManager != null) {
           myLayoutNamespaceRef.set(repositoryManager.getNamespace());
         }
       }
     });
 
-    myRoot = myRootRef.get();
+    CompiledLayout layout = myLayoutRef.get();
+    myRoot = layout.getRoot();
     myLayoutNamespace = myLayoutNamespaceRef.get();
-    myHasToolsNamespace = hasToolsNamespace(myRoot);
+    myHasToolsNamespace = layout.getHasToolsNamespace();
+    myDeclaredAaptAttrs = layout.getDeclaredAaptAttrs();
+  }
+
+  /**
+   * Creates the {@link CompiledLayout} of the given root tag, without resolving the sample data references.
+   */
+  @NotNull
+  private static CompiledLayout compile(@NotNull RenderXmlTag root, boolean honorMergeParentTag) {
+    Ref<Boolean> usesSampleData = new Ref<>(false);
+    TagSnapshot snapshot = createSnapshot(root, honorMergeParentTag, (tagSnapshot) -> {
+      for (AttributeSnapshot attributeSnapshot : tagSnapshot.attributes) {
+        String value = attributeSnapshot.value;
+        if (value != null && (value.startsWith(SAMPLE_PREFIX) || value.startsWith(TOOLS_SAMPLE_PREFIX))) {
+          usesSampleData.set(true);
+        }
+      }
+    });
+    return compile(snapshot, usesSampleData.get());
+  }
+
+  @NotNull
+  private static CompiledLayout compile(@NotNull TagSnapshot root, boolean usesSampleData) {
     // Obtain a list of all the aapt declared attributes
-    myDeclaredAaptAttrs = findDeclaredAaptAttrs(myRoot);
+    return new CompiledLayout(root, hasToolsNamespace(root), findDeclaredAaptAttrs(root), usesSampleData);
   }
 
   protected LayoutRenderPullParser(@NotNull TagSnapshot root, @NotNull ResourceNamespace layoutNamespace, @NotNull ILayoutLog log) {
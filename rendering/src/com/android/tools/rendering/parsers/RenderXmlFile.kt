@@ -43,4 +43,14 @@ interface RenderXmlFile : Supplier<PsiFile> {
   val resourceNamespace: ResourceNamespace?
 
   fun getRootTagAttribute(attribute: String, namespace: String?): String?
+
+  /**
+   * Returns the [CompiledLayout] of this file created by [compile]. Implementations that can track
+   * the modifications of the file return the one created by a previous call, with the same
+   * [honorMergeParentTag], until the file is modified.
+   */
+  fun getCompiledLayout(
+    honorMergeParentTag: Boolean,
+    compile: Supplier<CompiledLayout>
+  ): CompiledLayout = compile.get()
 }
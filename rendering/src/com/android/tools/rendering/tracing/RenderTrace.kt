@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.rendering.tracing
+
+import com.google.common.math.Quantiles
+import org.jetbrains.annotations.TestOnly
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * Max number of spans kept by [RenderTrace]. Older spans are overwritten by new ones. A size of 0
+ * disables the tracing.
+ */
+private val DEFAULT_TRACE_BUFFER_SIZE = Integer.getInteger("layoutlib.render.trace.buffer.size", 8192)
+
+/** Phases of the render pipeline recorded by [RenderTrace]. */
+enum class RenderPhase(val displayName: String, internal val isAsync: Boolean = false) {
+  /**
+   * From the render request to the completion of the render. Requests can overlap, so they are
+   * exported as async spans.
+   */
+  REQUEST("Render request", isAsync = true),
+  /** Creation of a [com.android.tools.rendering.RenderTask] by the render service. */
+  TASK_CREATION("Task creation"),
+  /**
+   * Classes loaded by the module class loader, including their transformations, while one of the
+   * other phases ran on the same thread. Classes are not recorded one by one, see
+   * [RenderTrace.startClassLoading].
+   */
+  CLASS_LOADING("Class loading"),
+  /** Creation of the layout parser. */
+  PARSING("Parsing"),
+  /** Creation of the layoutlib session, which inflates the layout. */
+  INFLATE("Inflate"),
+  /** Measure pass of the layoutlib session without drawing. */
+  MEASURE("Measure"),
+  /** Measure and draw of the layoutlib session. */
+  RENDER("Render"),
+  /** Copy of the rendered image to the image pool. */
+  IMAGE_COPY("Image copy"),
+  /**
+   * From the request of a [com.android.tools.rendering.RenderTask] to the first image it renders.
+   * It includes the creation of the task, unless it was taken from the warm pool.
+   */
+  FIRST_IMAGE("First image", isAsync = true),
+}
+
+private val PHASES = RenderPhase.values()
+
+/** A phase recorded by [RenderTrace]. All the times are in nanoseconds from [System.nanoTime]. */
+data class RenderSpan(
+  val phase: RenderPhase,
+  val startNanos: Long,
+  val durationNanos: Long,
+  val threadId: Long
+)
+
+/**
+ * Ring buffer of [RenderSpan]s. Recording a span does not allocate and does not lock, so it can be
+ * called from the render thread and the class loaders at a negligible cost.
+ */
+internal class RenderTraceBuffer(capacity: Int) {
+  private val capacity = if (capacity > 0) Integer.highestOneBit(capacity) else 0
+  private val mask = this.capacity - 1L
+  private val nextIndex = AtomicLong()
+
+  private val phases = IntArray(this.capacity)
+  private val starts = LongArray(this.capacity)
+  private val durations = LongArray(this.capacity)
+  private val threadIds = LongArray(this.capacity)
+
+  /**
+   * Name of the thread of the span stored in each slot. Only the names of the threads of the spans
+   * in the buffer are kept.
+   */
+  private val threadNames = arrayOfNulls<String>(this.capacity)
+
+  /**
+   * Index + 1 of the span stored in each slot, or 0 while the slot is being written. Readers
+   * ignore the slots that change while they read them.
+   */
+  private val sequences = AtomicLongArray(this.capacity)
+
+  val isEnabled: Boolean
+    get() = capacity > 0
+
+  fun record(phase: RenderPhase, startNanos: Long, durationNanos: Long, thread: Thread) {
+    if (!isEnabled) return
+    val index = nextIndex.getAndIncrement()
+    val slot = (index and mask).toInt()
+    sequences.set(slot, 0)
+    phases[slot] = phase.ordinal
+    starts[slot] = startNanos
+    durations[slot] = durationNanos
+    threadIds[slot] = thread.id
+    threadNames[slot] = thread.name
+    sequences.set(slot, index + 1)
+  }
+
+  /** Returns the spans in the buffer, from the oldest to the most recent. */
+  fun spans(): List<RenderSpan> {
+    if (!isEnabled) return emptyList()
+    val end = nextIndex.get()
+    val spans = ArrayList<RenderSpan>(minOf(end, capacity.toLong()).toInt())
+    for (index in maxOf(0, end - capacity) until end) {
+      val slot = (index and mask).toInt()
+      if (sequences.get(slot) != index + 1) continue
+      val span =
+        RenderSpan(PHASES[phases[slot]], starts[slot], durations[slot], threadIds[slot])
+      if (sequences.get(slot) == index + 1) {
+        spans.add(span)
+      }
+    }
+    return spans
+  }
+
+  /** Returns the names of the threads of the spans in the buffer, by thread id. */
+  fun threadNames(): Map<Long, String> {
+    val names = mutableMapOf<Long, String>()
+    for (slot in 0 until capacity) {
+      val name = threadNames[slot] ?: continue
+      names[threadIds[slot]] = name
+    }
+    return names
+  }
+
+  fun clear() {
+    nextIndex.set(0)
+    for (slot in 0 until capacity) {
+      sequences.set(slot, 0)
+      threadNames[slot] = null
+    }
+  }
+}
+
+/**
+ * Records the duration of the phases of the render pipeline, from the render request to the copy
+ * of the rendered image, and exposes their latency percentiles.
+ *
+ * The most recent spans are kept in a fixed size ring buffer (see
+ * `layoutlib.render.trace.buffer.size`) and can be exported in the JSON trace event format, which
+ * can be opened by Perfetto (https://ui.perfetto.dev).
+ *
+ * Usage from Java:
+ * ```
+ * long start = RenderTrace.start();
+ * try {
+ *   ...
+ * } finally {
+ *   RenderTrace.end(RenderPhase.INFLATE, start);
+ * }
+ * ```
+ */
+object RenderTrace {
+  private val buffer = RenderTraceBuffer(DEFAULT_TRACE_BUFFER_SIZE)
+  private val classLoading = ThreadLocal.withInitial { ClassLoadingTime() }
+
+  /** Returns the start time of a span to be passed to [end]. */
+  @JvmStatic fun start(): Long = if (buffer.isEnabled) System.nanoTime() else 0L
+
+  /** Records a span of [phase] started at [startNanos], as returned by [start], and ending now. */
+  @JvmStatic
+  fun end(phase: RenderPhase, startNanos: Long) {
+    if (!buffer.isEnabled) return
+    val thread = Thread.currentThread()
+    buffer.record(phase, startNanos, System.nanoTime() - startNanos, thread)
+    if (!phase.isAsync) {
+      classLoading.get().flush(buffer, thread)
+    }
+  }
+
+  /**
+   * Returns the start time of the load of a class, to be passed to [endClassLoading].
+   *
+   * Loading a class often loads others, like its super class, so only the outermost loads are
+   * measured. Their time is added up and recorded as a single [RenderPhase.CLASS_LOADING] span when
+   * the next phase of the same thread ends, such that the class loads of a render don't push the
+   * other phases out of the buffer.
+   */
+  @JvmStatic
+  fun startClassLoading(): Long {
+    if (!buffer.isEnabled) return 0L
+    return classLoading.get().start()
+  }
+
+  /** Ends the load of a class started at [startNanos], as returned by [startClassLoading]. */
+  @JvmStatic
+  fun endClassLoading(startNanos: Long) {
+    if (!buffer.isEnabled) return
+    classLoading.get().end(startNanos)
+  }
+
+  /** Runs [block] and records its duration as a span of [phase]. */
+  inline fun <T> trace(phase: RenderPhase, block: () -> T): T {
+    val start = start()
+    try {
+      return block()
+    } finally {
+      end(phase, start)
+    }
+  }
+
+  /** Returns the recorded spans, from the oldest to the most recent. */
+  @JvmStatic fun spans(): List<RenderSpan> = buffer.spans()
+
+  /**
+   * Returns the given [percentiles] of the duration of the recorded spans of each phase in
+   * nanoseconds. Phases without spans are not included.
+   */
+  @JvmStatic
+  fun percentiles(vararg percentiles: Int): Map<RenderPhase, Map<Int, Long>> =
+    computePercentiles(buffer.spans(), *percentiles)
+
+  /**
+   * Writes the recorded spans to [out] in the JSON trace event format, which can be opened by
+   * Perfetto.
+   */
+  @JvmStatic
+  fun writeTrace(out: Appendable) {
+    val spans = buffer.spans()
+    val threadNames = buffer.threadNames()
+    writeTraceEvents(spans, { threadNames[it] ?: "Thread $it" }, out)
+  }
+
+  @TestOnly @JvmStatic fun clear() = buffer.clear()
+}
+
+/** The class loading time of a thread since its last phase, see [RenderTrace.startClassLoading]. */
+internal class ClassLoadingTime {
+  private var depth = 0
+  private var firstStartNanos = 0L
+  private var totalNanos = 0L
+
+  fun start(): Long {
+    val startNanos = System.nanoTime()
+    if (depth++ == 0 && totalNanos == 0L) {
+      firstStartNanos = startNanos
+    }
+    return startNanos
+  }
+
+  fun end(startNanos: Long) {
+    if (--depth == 0) {
+      totalNanos += System.nanoTime() - startNanos
+    }
+  }
+
+  /** Records the class loading time since the last call, if any, as a span in [buffer]. */
+  fun flush(buffer: RenderTraceBuffer, thread: Thread) {
+    if (totalNanos == 0L) return
+    buffer.record(RenderPhase.CLASS_LOADING, firstStartNanos, totalNanos, thread)
+    totalNanos = 0L
+  }
+}
+
+internal fun computePercentiles(
+  spans: List<RenderSpan>,
+  vararg percentiles: Int
+): Map<RenderPhase, Map<Int, Long>> =
+  spans
+    .groupBy({ it.phase }, { it.durationNanos })
+    .toSortedMap()
+    .mapValues { (_, durations) ->
+      Quantiles.percentiles().indexes(*percentiles).compute(durations).mapValues { it.value.toLong() }
+    }
+
+/** Formats [nanos] as microseconds, the unit of the timestamps of the trace event format. */
+private fun micros(nanos: Long): String = "${nanos / 1000}.${(nanos % 1000).toString().padStart(3, '0')}"
+
+internal fun writeTraceEvents(spans: List<RenderSpan>, threadName: (Long) -> String, out: Appendable) {
+  val origin = spans.minOfOrNull { it.startNanos } ?: 0L
+  val events = mutableListOf<String>()
+  spans
+    .map { it.threadId }
+    .distinct()
+    .forEach {
+      val name = threadName(it).replace("\\", "\\\\").replace("\"", "\\\"")
+      events.add("""{"name":"thread_name","ph":"M","pid":1,"tid":$it,"args":{"name":"$name"}}""")
+    }
+  spans.forEachIndexed { id, span ->
+    val start = micros(span.startNanos - origin)
+    val end = micros(span.startNanos - origin + span.durationNanos)
+    val name = span.phase.displayName
+    if (span.phase.isAsync) {
+      events.add("""{"name":"$name","cat":"render","ph":"b","id":$id,"ts":$start,"pid":1,"tid":${span.threadId}}""")
+      events.add("""{"name":"$name","cat":"render","ph":"e","id":$id,"ts":$end,"pid":1,"tid":${span.threadId}}""")
+    } else {
+      val duration = micros(span.durationNanos)
+      events.add("""{"name":"$name","cat":"render","ph":"X","ts":$start,"dur":$duration,"pid":1,"tid":${span.threadId}}""")
+    }
+  }
+  out.append("{\"displayTimeUnit\":\"ns\",\"traceEvents\":[\n")
+  events.joinTo(out, ",\n")
+  out.append("\n]}\n")
+}
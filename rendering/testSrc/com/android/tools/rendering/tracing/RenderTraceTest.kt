@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.rendering.tracing
+
+import com.google.gson.JsonParser
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+internal class RenderTraceTest {
+  private val thread = Thread.currentThread()
+
+  @Test
+  fun testRingBufferKeepsMostRecentSpans() {
+    val buffer = RenderTraceBuffer(4)
+    repeat(6) { buffer.record(RenderPhase.INFLATE, it * 10L, it.toLong(), thread) }
+
+    assertEquals(listOf(2L, 3L, 4L, 5L), buffer.spans().map { it.durationNanos })
+    assertTrue(buffer.spans().all { it.phase == RenderPhase.INFLATE && it.threadId == thread.id })
+
+    buffer.clear()
+    assertTrue(buffer.spans().isEmpty())
+  }
+
+  @Test
+  fun testOnlyThreadNamesOfBufferedSpansAreKept() {
+    val buffer = RenderTraceBuffer(2)
+    val other = Thread("other")
+    buffer.record(RenderPhase.INFLATE, 0, 1, other)
+    assertEquals(mapOf(other.id to "other"), buffer.threadNames())
+
+    buffer.record(RenderPhase.INFLATE, 10, 1, thread)
+    buffer.record(RenderPhase.RENDER, 20, 1, thread)
+    assertEquals(mapOf(thread.id to thread.name), buffer.threadNames())
+  }
+
+  @Test
+  fun testNestedClassLoadsAreRecordedAsOneSpan() {
+    val buffer = RenderTraceBuffer(8)
+    val classLoading = ClassLoadingTime()
+
+    val outer = classLoading.start()
+    classLoading.end(classLoading.start())
+    classLoading.end(outer)
+    classLoading.end(classLoading.start())
+    assertTrue(buffer.spans().isEmpty())
+
+    classLoading.flush(buffer, thread)
+    val spans = buffer.spans()
+    assertEquals(listOf(RenderPhase.CLASS_LOADING), spans.map { it.phase })
+    assertEquals(outer, spans.single().startNanos)
+
+    // Nothing is recorded when no class was loaded since the last flush.
+    classLoading.flush(buffer, thread)
+    assertEquals(1, buffer.spans().size)
+  }
+
+  @Test
+  fun testDisabledBuffer() {
+    val buffer = RenderTraceBuffer(0)
+    buffer.record(RenderPhase.RENDER, 0, 10, thread)
+
+    assertTrue(buffer.spans().isEmpty())
+  }
+
+  @Test
+  fun testPercentiles() {
+    val spans =
+      (1..100).map { RenderSpan(RenderPhase.RENDER, 0, it * 1000L, 1) } +
+        RenderSpan(RenderPhase.PARSING, 0, 500, 1)
+
+    val percentiles = computePercentiles(spans, 50, 99)
+    assertEquals(listOf(RenderPhase.PARSING, RenderPhase.RENDER), percentiles.keys.toList())
+    assertEquals(500L, percentiles[RenderPhase.PARSING]!![99])
+    assertEquals(50_500L, percentiles[RenderPhase.RENDER]!![50])
+    assertEquals(99_010L, percentiles[RenderPhase.RENDER]!![99])
+  }
+
+  @Test
+  fun testTraceEvents() {
+    val spans =
+      listOf(
+        RenderSpan(RenderPhase.REQUEST, 1_000_000, 5_000_500, 1),
+        RenderSpan(RenderPhase.INFLATE, 2_000_000, 1_500_250, 2),
+      )
+
+    val out = StringBuilder()
+    writeTraceEvents(spans, { if (it == 2L) "Layoutlib \"Render\" Thread" else "main" }, out)
+
+    val events = JsonParser.parseString(out.toString()).asJsonObject.getAsJsonArray("traceEvents").map { it.asJsonObject }
+    assertEquals(
+      listOf("M/thread_name", "M/thread_name", "b/Render request", "e/Render request", "X/Inflate"),
+      events.map { "${it["ph"].asString}/${it["name"].asString}" }
+    )
+    assertEquals("Layoutlib \"Render\" Thread", events[1]["args"].asJsonObject["name"].asString)
+    assertEquals(events[2]["id"].asInt, events[3]["id"].asInt)
+    assertEquals(0.0, events[2]["ts"].asDouble, 0.0)
+    assertEquals(5000.5, events[3]["ts"].asDouble, 0.0)
+    assertEquals(1000.0, events[4]["ts"].asDouble, 0.0)
+    assertEquals(1500.25, events[4]["dur"].asDouble, 0.0)
+  }
+}
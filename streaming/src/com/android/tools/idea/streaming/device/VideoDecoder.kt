@@ -18,21 +18,27 @@ package com.android.tools.idea.streaming.device
 import com.android.annotations.concurrency.AnyThread
 import com.android.annotations.concurrency.GuardedBy
 import com.android.sdklib.deviceprovisioner.DeviceProperties
-import com.android.tools.adtui.ImageUtils
-import com.android.tools.adtui.ImageUtils.ellipticalClip
+import com.android.tools.analytics.toProto
+import com.android.tools.idea.flags.StudioFlags
 import com.android.tools.idea.streaming.core.PRIMARY_DISPLAY_ID
 import com.android.tools.idea.streaming.core.getUInt
 import com.android.tools.idea.streaming.core.rotatedByQuadrants
 import com.android.tools.idea.streaming.core.scaled
+import com.google.protobuf.TextFormat.shortDebugString
+import com.intellij.openapi.Disposable
 import com.intellij.openapi.application.ApplicationManager
 import com.intellij.openapi.diagnostic.debug
 import com.intellij.openapi.diagnostic.thisLogger
+import com.intellij.openapi.util.Disposer
 import com.intellij.openapi.util.text.StringUtil.toHexString
+import com.intellij.util.Alarm
 import com.intellij.util.containers.ContainerUtil
 import com.intellij.util.io.toByteArray
+import com.intellij.util.ui.ImageUtil.applyQualityRenderingHints
 import kotlinx.coroutines.CompletableDeferred
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.launch
+import org.HdrHistogram.Histogram
 import org.bytedeco.ffmpeg.avcodec.AVCodec
 import org.bytedeco.ffmpeg.avcodec.AVCodecContext
 import org.bytedeco.ffmpeg.avcodec.AVCodecParserContext
@@ -79,6 +85,7 @@ import org.jetbrains.annotations.VisibleForTesting
 import java.awt.Dimension
 import java.awt.Point
 import java.awt.color.ColorSpace
+import java.awt.geom.Ellipse2D
 import java.awt.image.BufferedImage
 import java.awt.image.DataBuffer
 import java.awt.image.DataBufferInt
@@ -89,6 +96,7 @@ import java.io.EOFException
 import java.lang.Long.toHexString
 import java.nio.ByteBuffer
 import java.nio.ByteOrder.LITTLE_ENDIAN
+import java.nio.IntBuffer
 import java.nio.channels.ClosedChannelException
 import java.util.concurrent.ConcurrentHashMap
 import java.util.function.Consumer
@@ -253,7 +261,19 @@ internal class VideoDecoder(
 
     @GuardedBy("imageLock") var displayFrame: VideoFrame? = null
       private set
+    /** The value of [System.nanoTime] when [displayFrame] was produced, or 0 if it has already been consumed. */
+    @GuardedBy("imageLock") private var displayFrameReadyTime = 0L
     private val imageLock = Any()
+    /**
+     * Image that is not referenced by [displayFrame] and can be reused for the next frame. Together with the image
+     * of [displayFrame] it forms a double buffer, so that decoded frames are copied into existing images without
+     * holding [imageLock].
+     */
+    @GuardedBy("this") private var spareImage: BufferedImage? = null
+    @GuardedBy("this") private var rowPixels = IntArray(0)
+    /** Mask clipping the frames of a round display, or null if the display is not round or no frame was decoded yet. */
+    @GuardedBy("this") private var roundDisplayMask: EllipticalMask? = null
+    private val stats = if (StudioFlags.DEVICE_MIRRORING_FRAME_STATISTICS.get()) Stats(displayId) else null
     @GuardedBy("this") private lateinit var codecContext: AVCodecContext
     @GuardedBy("this") private lateinit var decodingFrame: AVFrame
     @GuardedBy("this") private var renderingFrame: AVFrame? = null
@@ -316,7 +336,13 @@ internal class VideoDecoder(
 
     fun consumeDisplayFrame(consumer: Consumer<VideoFrame>) {
       synchronized(imageLock) {
-        displayFrame?.let { consumer.accept(it) }
+        displayFrame?.let {
+          consumer.accept(it)
+          if (stats != null && displayFrameReadyTime != 0L) {
+            stats.recordDisplayLatency(System.nanoTime() - displayFrameReadyTime)
+            displayFrameReadyTime = 0
+          }
+        }
       }
     }
 
@@ -339,6 +365,9 @@ internal class VideoDecoder(
         av_packet_free(pendingPacket)
       }
       initialized = null
+      spareImage = null
+      roundDisplayMask = null
+      stats?.let { Disposer.dispose(it) }
     }
 
     @Synchronized
@@ -415,6 +444,7 @@ internal class VideoDecoder(
     }
 
     private fun processFrame(packet: AVPacket, header: VideoPacketHeader) {
+      val decodingStart = System.nanoTime()
       val ret = avcodec_send_packet(codecContext, packet)
       if (ret < 0) {
         throw VideoDecoderException(
@@ -438,6 +468,7 @@ internal class VideoDecoder(
       if (av_frame_make_writable(renderingFrame) < 0) {
         throw RuntimeException("av_frame_make_writable failed")
       }
+      val conversionStart = System.nanoTime()
 
       sws_scale(getSwsContext(renderingFrame), decodingFrame.data(), decodingFrame.linesize(), 0, frameHeight,
                 renderingFrame.data(), renderingFrame.linesize())
@@ -452,28 +483,26 @@ internal class VideoDecoder(
       framePixels.position(startY * frameWidth) // Skip the potential black strip at the top of the frame.
 
       val displayIsRound = header.isDisplayRound && header.displaySize.width == header.displaySize.height
-      synchronized(imageLock) {
-        var image = displayFrame?.image
-        if (image?.width == frameWidth && image.height == imageHeight &&
-            displayFrame?.orientationCorrection == 0 && header.displayOrientationCorrection == 0 && !displayIsRound) {
-          val imagePixels = (image.raster.dataBuffer as DataBufferInt).data
-          framePixels.get(imagePixels, 0, imageHeight * frameWidth)
-        }
-        else {
-          val imagePixels = IntArray(frameWidth * imageHeight)
-          framePixels.get(imagePixels, 0, imageHeight * frameWidth)
-          val buffer = DataBufferInt(imagePixels, imagePixels.size)
-          val sampleModel = SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, frameWidth, imageHeight, SAMPLE_MODEL_BIT_MASKS)
-          val raster = Raster.createWritableRaster(sampleModel, buffer, ZERO_POINT)
-          image = ImageUtils.rotateByQuadrants(BufferedImage(COLOR_MODEL, raster, false, null), header.displayOrientationCorrection)
-          if (displayIsRound) {
-            image = ellipticalClip(image, null)
-          }
-        }
+      val orientationCorrection = header.displayOrientationCorrection and 0x3
+      val image = if (orientationCorrection % 2 == 0) getSpareImage(frameWidth, imageHeight) else getSpareImage(imageHeight, frameWidth)
+      if (rowPixels.size < frameWidth) {
+        rowPixels = IntArray(frameWidth)
+      }
+      copyRotated(framePixels, frameWidth, imageHeight, orientationCorrection, image, rowPixels)
+      if (displayIsRound) {
+        getRoundDisplayMask(image.width, image.height).apply(image)
+      }
+      val frameReadyTime = System.nanoTime()
 
+      val previousImage: BufferedImage?
+      synchronized(imageLock) {
+        previousImage = displayFrame?.image
         displayFrame = VideoFrame(image, header.displaySize, header.displayOrientation, header.displayOrientationCorrection,
                                   displayIsRound, header.frameNumber, header.originationTimestampUs / 1000)
+        displayFrameReadyTime = frameReadyTime
       }
+      spareImage = previousImage
+      stats?.recordFrame(conversionStart - decodingStart, frameReadyTime - conversionStart)
 
       onNewFrameAvailable()
 
@@ -491,6 +520,28 @@ internal class VideoDecoder(
       }
     }
 
+    /** Returns the spare image if it has the given dimensions, or a new image otherwise. */
+    private fun getSpareImage(width: Int, height: Int): BufferedImage {
+      val image = spareImage
+      if (image != null && image.width == width && image.height == height) {
+        spareImage = null
+        return image
+      }
+      val buffer = DataBufferInt(width * height)
+      val sampleModel = SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, width, height, SAMPLE_MODEL_BIT_MASKS)
+      val raster = Raster.createWritableRaster(sampleModel, buffer, ZERO_POINT)
+      return BufferedImage(COLOR_MODEL, raster, false, null)
+    }
+
+    /** Returns the mask for clipping frames of a round display with the given dimensions. */
+    private fun getRoundDisplayMask(width: Int, height: Int): EllipticalMask {
+      val mask = roundDisplayMask
+      if (mask != null && mask.width == width && mask.height == height) {
+        return mask
+      }
+      return EllipticalMask(width, height).also { roundDisplayMask = it }
+    }
+
     private fun getSwsContext(renderingFrame: AVFrame): SwsContext {
       val context = sws_getCachedContext(swsContext, decodingFrame.width(), decodingFrame.height(), decodingFrame.format(),
                                          renderingFrame.width(), renderingFrame.height(), renderingFrame.format(),
@@ -521,6 +572,68 @@ internal class VideoDecoder(
     }
   }
 
+  /** Latency statistics of the frames of a single display. Logged periodically when enabled by a Studio flag. */
+  private class Stats(private val displayId: Int) : Disposable {
+    @GuardedBy("this")
+    private var data = Data()
+    private val alarm = Alarm(Alarm.ThreadToUse.POOLED_THREAD, this)
+
+    init {
+      scheduleNextLogging()
+    }
+
+    @Synchronized
+    fun recordFrame(decodingNanos: Long, conversionNanos: Long) {
+      data.frameCount++
+      data.decodingLatency.recordValue(decodingNanos / 1000)
+      data.conversionLatency.recordValue(conversionNanos / 1000)
+    }
+
+    @Synchronized
+    fun recordDisplayLatency(latencyNanos: Long) {
+      data.displayLatency.recordValue(latencyNanos / 1000)
+    }
+
+    @Synchronized
+    override fun dispose() {
+      data.log()
+    }
+
+    @Synchronized
+    private fun getAndSetData(newData: Data): Data {
+      val oldData = data
+      data = newData
+      return oldData
+    }
+
+    private fun scheduleNextLogging() {
+      alarm.addRequest(::logAndReset, STATS_LOG_INTERVAL_MILLIS)
+    }
+
+    private fun logAndReset() {
+      getAndSetData(Data()).log()
+      scheduleNextLogging()
+    }
+
+    private inner class Data {
+      var frameCount = 0
+      val decodingLatency = Histogram(2)
+      val conversionLatency = Histogram(2)
+      val displayLatency = Histogram(2)
+      val collectionStart = System.currentTimeMillis()
+
+      fun log() {
+        if (frameCount != 0) {
+          val frameRate = String.format("%.2g", frameCount * 1000.0 / (System.currentTimeMillis() - collectionStart))
+          thisLogger().info("Display $displayId frames: $frameCount average frame rate: $frameRate\n" +
+                            "decoding latency (µs): ${shortDebugString(decodingLatency.toProto())}\n" +
+                            "conversion latency (µs): ${shortDebugString(conversionLatency.toProto())}\n" +
+                            "display latency (µs): ${shortDebugString(displayLatency.toProto())}")
+        }
+      }
+    }
+  }
+
   private class VideoPacketHeader private constructor(
     val displayId: Int,
     val displaySize: Dimension,
@@ -593,6 +706,90 @@ internal class VideoDecoder(
   }
 }
 
+/**
+ * Copies a [width] by [height] block of [pixels] to [image] rotating it counterclockwise by [numQuadrants].
+ * The rotation has the same semantics as [com.android.tools.adtui.ImageUtils.rotateByQuadrants] but doesn't
+ * require an intermediate image. [rowPixels] is a temporary buffer that has to hold at least [width] pixels.
+ */
+@VisibleForTesting
+internal fun copyRotated(
+    pixels: IntBuffer, width: Int, height: Int, numQuadrants: Int, image: BufferedImage, rowPixels: IntArray) {
+  val imagePixels = (image.raster.dataBuffer as DataBufferInt).data
+  if (numQuadrants == 0) {
+    pixels.get(imagePixels, 0, width * height)
+    return
+  }
+  val row = rowPixels
+  for (y in 0 until height) {
+    pixels.get(row, 0, width)
+    when (numQuadrants) {
+      1 -> { // (x, y) -> (y, width - 1 - x) in a height by width image.
+        var offset = (width - 1) * height + y
+        for (x in 0 until width) {
+          imagePixels[offset] = row[x]
+          offset -= height
+        }
+      }
+      2 -> { // (x, y) -> (width - 1 - x, height - 1 - y).
+        var offset = (height - 1 - y) * width + width - 1
+        for (x in 0 until width) {
+          imagePixels[offset--] = row[x]
+        }
+      }
+      else -> { // (x, y) -> (height - 1 - y, x) in a height by width image.
+        var offset = height - 1 - y
+        for (x in 0 until width) {
+          imagePixels[offset] = row[x]
+          offset += height
+        }
+      }
+    }
+  }
+}
+
+/**
+ * Alpha mask of the ellipse inscribed into a [width] by [height] image. Applying it has the same effect as
+ * [com.android.tools.adtui.ImageUtils.ellipticalClip] without a background color, but modifies the image in place
+ * and touches only the pixels that are not fully inside the ellipse.
+ */
+@VisibleForTesting
+internal class EllipticalMask(val width: Int, val height: Int) {
+  /** Indices of the pixels that are not fully inside the ellipse. */
+  private val indices: IntArray
+  /** Alpha values of the mask for the pixels in [indices]. */
+  private val alphas: IntArray
+
+  init {
+    val mask = BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB)
+    val g2 = mask.createGraphics()
+    applyQualityRenderingHints(g2)
+    g2.fill(Ellipse2D.Double(0.0, 0.0, width.toDouble(), height.toDouble()))
+    g2.dispose()
+    val maskPixels = (mask.raster.dataBuffer as DataBufferInt).data
+    indices = IntArray(maskPixels.count { it ushr 24 != 0xFF })
+    alphas = IntArray(indices.size)
+    var i = 0
+    for (index in maskPixels.indices) {
+      val alpha = maskPixels[index] ushr 24
+      if (alpha != 0xFF) {
+        indices[i] = index
+        alphas[i++] = alpha
+      }
+    }
+  }
+
+  /** Clips [image], which has to be [width] by [height] and backed by a [DataBufferInt], by the ellipse. */
+  fun apply(image: BufferedImage) {
+    val pixels = (image.raster.dataBuffer as DataBufferInt).data
+    for (i in indices.indices) {
+      val index = indices[i]
+      val pixel = pixels[index]
+      val alpha = ((pixel ushr 24) * alphas[i] + 127) / 255
+      pixels[index] = (pixel and 0xFFFFFF) or (alpha shl 24)
+    }
+  }
+}
+
 internal class VideoDecoderException(message: String) : RuntimeException(message)
 
 private fun Pointer.asByteBufferOfSize(size: Int): ByteBuffer =
@@ -606,6 +803,8 @@ private const val CHANNEL_HEADER_LENGTH = 20
 @VisibleForTesting // Visible and mutable for testing.
 internal var BIT_RATE_STABILITY_FRAME_COUNT = 1000
 
+private val STATS_LOG_INTERVAL_MILLIS = StudioFlags.DEVICE_MIRRORING_STATISTICS_INTERVAL_SECONDS.get().toLong() * 1000
+
 private val ZERO_POINT = Point()
 private const val ALPHA_MASK = 0xFF shl 24
 private val SAMPLE_MODEL_BIT_MASKS = intArrayOf(0xFF0000, 0xFF00, 0xFF, ALPHA_MASK)
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.streaming.device
+
+import com.android.tools.adtui.ImageUtils
+import com.google.common.truth.Truth.assertThat
+import com.google.common.truth.Truth.assertWithMessage
+import org.junit.Test
+import java.awt.image.BufferedImage
+import java.awt.image.BufferedImage.TYPE_INT_ARGB
+import java.awt.image.DataBufferInt
+import java.nio.IntBuffer
+import kotlin.math.abs
+import kotlin.random.Random
+
+/**
+ * Tests for the image processing functions of [VideoDecoder].
+ */
+class VideoDecoderTest {
+
+  @Test
+  fun testCopyRotatedMatchesRotateByQuadrants() {
+    val random = Random(1)
+    for ((width, height) in listOf(Pair(7, 3), Pair(3, 7), Pair(16, 9), Pair(1, 5))) {
+      // The source pixels are preceded by a row that has to be skipped, like the black strip at the top of a video frame.
+      val pixels = IntArray((height + 1) * width) { random.nextInt() or ALPHA }
+      val source = BufferedImage(width, height, TYPE_INT_ARGB)
+      source.setRGB(0, 0, width, height, pixels, width, width)
+      for (numQuadrants in 0..3) {
+        val expected = ImageUtils.rotateByQuadrants(source, numQuadrants)
+        val image = if (numQuadrants % 2 == 0) BufferedImage(width, height, TYPE_INT_ARGB) else BufferedImage(height, width, TYPE_INT_ARGB)
+        val buffer = IntBuffer.wrap(pixels).position(width)
+
+        copyRotated(buffer, width, height, numQuadrants, image, IntArray(width))
+
+        assertWithMessage("$width x $height rotated by $numQuadrants").that(image.pixels).isEqualTo(expected.pixels)
+      }
+    }
+  }
+
+  @Test
+  fun testEllipticalMaskMatchesEllipticalClip() {
+    val random = Random(2)
+    for ((width, height) in listOf(Pair(40, 40), Pair(33, 20))) {
+      val image = BufferedImage(width, height, TYPE_INT_ARGB)
+      image.setRGB(0, 0, width, height, IntArray(width * height) { random.nextInt() or ALPHA }, 0, width)
+      val expected = ImageUtils.ellipticalClip(image, null)
+
+      EllipticalMask(width, height).apply(image)
+
+      val alphas = image.pixels.map { it ushr 24 }
+      val expectedAlphas = expected.pixels.map { it ushr 24 }
+      for (i in alphas.indices) {
+        assertWithMessage("alpha of pixel $i of $width x $height").that(abs(alphas[i] - expectedAlphas[i])).isAtMost(1)
+      }
+      assertThat(alphas.count { it == 0 }).isGreaterThan(0)
+      assertThat(alphas.count { it == 0xFF }).isGreaterThan(width * height / 2)
+    }
+  }
+
+  private val BufferedImage.pixels: List<Int>
+    get() = (raster.dataBuffer as DataBufferInt).data.toList()
+}
+
+private const val ALPHA = 0xFF shl 24